@@ -4,6 +4,7 @@ import java.util.Map;
 import org.hibernate.exception.JDBCConnectionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -30,6 +31,7 @@ import backend.exceptions.PasswordResetTokenCooldownException;
 import backend.exceptions.PurchaseOrderException;
 import backend.exceptions.RefreshTokenExpiredException;
 import backend.exceptions.RevokedRefreshTokenAccessException;
+import backend.exceptions.ServiceUnavailableException;
 import backend.exceptions.UserAlreadyExistsException;
 import backend.exceptions.UserDoesNotExistsException;
 import backend.exceptions.UserNotLoggedInException;
@@ -110,6 +112,12 @@ public class DefaultExceptionHandler extends ResponseEntityExceptionHandler {
 		return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.GONE, request);
 	}
 	
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public ResponseEntity<Object> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, WebRequest request) {
+		ENTITY_LOGGER.error("{}: {}", ex.getClass().getSimpleName(), ex.getMessage());
+		return handleExceptionInternal(ex, "The entity was changed by another request, please try again", new HttpHeaders(), HttpStatus.CONFLICT, request);
+	}
+	
 	@ExceptionHandler(PurchaseOrderException.class)
 	public ResponseEntity<Object> handlePurchaseOrderException(PurchaseOrderException ex, WebRequest request) {
 		ENTITY_LOGGER.error("{}: {}", ex.getClass().getSimpleName(), ex.getMessage());
@@ -195,6 +203,14 @@ public class DefaultExceptionHandler extends ResponseEntityExceptionHandler {
 		return handleExceptionInternal(ex, ex.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST, request);
 	}
 	
+	@ExceptionHandler(ServiceUnavailableException.class)
+	public ResponseEntity<Object> handleServiceUnavailableException(ServiceUnavailableException ex, WebRequest request) {
+		SYSTEM_LOGGER.warn("{}: {}", ex.getClass().getSimpleName(), ex.getMessage());
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()));
+		return handleExceptionInternal(ex, ex.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE, request);
+	}
+	
 	@ExceptionHandler(GeneralServerException.class)
 	public ResponseEntity<Object> handleGeneralServerException(GeneralServerException ex, WebRequest request) {
 		SYSTEM_LOGGER.error("{}: {}", ex.getClass().getSimpleName(), ex.getMessage());
@@ -17,5 +17,10 @@ public class MyFunctionContributor implements FunctionContributor {
         functionContributions.getFunctionRegistry()
         .registerPattern("date_add_seconds", 
         		"DATE_ADD(?1, INTERVAL ?2 SECOND)", resultType);
+        // relevance of a FULLTEXT index (mysql-fulltext-ngram.sql), 0 when the row does not match
+        BasicType<Double> relevanceType = functionContributions.getTypeConfiguration().getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+        functionContributions.getFunctionRegistry()
+        .registerPattern("match_against", 
+        		"MATCH(?1) AGAINST(?2 IN NATURAL LANGUAGE MODE)", relevanceType);
     }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -22,7 +23,9 @@ import backend.dtos.ActorDto;
 import backend.dtos.admin.ActorAdminReference;
 import backend.dtos.references.ActorReference;
 import backend.dtos.references.PersonReference;
+import backend.dtos.search.CursorPageDto;
 import backend.dtos.search.PersonFilter;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAdditionException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
@@ -47,6 +50,22 @@ public class ActorController {
     public Page<PersonReference> searchActors(PersonFilter personFilter, Pageable pageable) {
     	return actorService.searchActors(personFilter, pageable);
     }
+    
+    /**
+     * Searches the actors with the keyset (cursor) pagination, without counting the total.
+     *
+     * @param personFilter the search filter.
+     * @param cursor the cursor returned with the previous page, or none for the first page.
+     * @param size the size of the page.
+     * @param sort the sort of the actors.
+     * @return the page of {@link PersonReference} objects, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    @GetMapping("/search/cursor")
+    public CursorPageDto<PersonReference> searchActorsByCursor(PersonFilter personFilter, @RequestParam(name = "cursor", required = false) String cursor,
+    		@RequestParam(name = "size", defaultValue = "20") int size, Sort sort) throws BadRequestException {
+    	return actorService.searchActorsByCursor(personFilter, sort, cursor, size);
+    }
 
     /**
      * Retrieves a list of actors associated with a specific movie.
@@ -2,6 +2,7 @@ package backend.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -74,6 +75,9 @@ public class CartController {
             throws EntityNotFoundException, EntityAlreadyExistsException, BadRequestException {
         try {
             cartService.addProductToCart(dto, session);
+        } catch (OptimisticLockingFailureException e) {
+            // a concurrent change of the cart, answered with a conflict
+            throw e;
         } catch (DataAccessException e) {
             throw new EntityAdditionException("Unable to add the product \"" + dto.getProductId() + "\" to the cart", e);
         }
@@ -97,6 +101,9 @@ public class CartController {
             throws EntityNotFoundException {
         try {
             cartService.removeProductFromCart(productId, session);
+        } catch (OptimisticLockingFailureException e) {
+            // a concurrent change of the cart, answered with a conflict
+            throw e;
         } catch (DataAccessException e) {
             throw new EntityRemovalException("Unable to remove the product \"" + productId + "\" from the cart", e);
         }
@@ -108,6 +115,9 @@ public class CartController {
             throws EntityNotFoundException, BadRequestException {
         try {
             return cartService.updateCartProduct(productId, dto, session, request);
+        } catch (OptimisticLockingFailureException e) {
+            // a concurrent change of the cart, answered with a conflict
+            throw e;
         } catch (DataAccessException e) {
             throw new EntityAdditionException("Unable to update the product \"" + productId + "\" in the cart", e);
         }
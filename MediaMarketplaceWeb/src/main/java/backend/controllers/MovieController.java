@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,20 +15,30 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import backend.dtos.CreateMovieDto;
 import backend.dtos.MovieDto;
 import backend.dtos.MoviePageDto;
+import backend.dtos.ai.PageViewStatsDto;
 import backend.dtos.references.MovieReference;
+import backend.dtos.search.CacheStatsDto;
+import backend.dtos.search.CursorPageDto;
+import backend.dtos.search.MovieFacetsDto;
 import backend.dtos.search.MovieFilter;
-import backend.entities.Movie;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAdditionException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
+import backend.services.MoviePageCacheService;
+import backend.services.MovieReferenceCacheService;
+import backend.services.MovieSearchService;
 import backend.services.MovieService;
 import backend.services.ai.MovieLikeService;
 import backend.services.ai.MoviePageViewService;
+import backend.services.ai.SimilarMovieService;
+import backend.services.search.MovieSearchCacheService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
@@ -44,11 +55,41 @@ public class MovieController {
     @Autowired
     private MovieService movieService;
     
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+    
+    @Autowired
+    private MovieSearchService movieSearchService;
+    
     @Autowired
     private MoviePageViewService moviePageViewService;
     
     @Autowired
     private MovieLikeService movieLikeService;
+    
+    @Autowired
+    private MoviePageCacheService moviePageCacheService;
+    
+    @Autowired
+    private MovieReferenceCacheService movieReferenceCacheService;
+    
+    @Autowired
+    private SimilarMovieService similarMovieService;
+    
+    /**
+     * Retrieves the references of several movies at once, like the movies of a list or a cart.
+     * <p>
+     * The movies that do not exist are skipped, and the references keep the order of the ids.
+     * </p>
+     *
+     * @param ids The ids of the movies.
+     * @return A list of {@link MovieReference} objects.
+     * @throws BadRequestException If too many ids are requested.
+     */
+    @GetMapping("")
+    public List<MovieReference> getMovies(@RequestParam("ids") List<Long> ids) throws BadRequestException {
+    	return movieReferenceCacheService.getMovies(ids);
+    }
 
     /**
      * Retrieves all movies.
@@ -63,11 +104,115 @@ public class MovieController {
     	return movieService.searchMovies(movieFilter, pageable);
     }
     
+    /**
+     * Searches the movies with the keyset (cursor) pagination.
+     * <p>
+     * Unlike {@code /search}, the total is not counted, and the next page is requested with the cursor
+     * returned with the previous one, so deep pages are as fast as the first one.
+     * </p>
+     *
+     * @param movieFilter the search filter.
+     * @param cursor the cursor returned with the previous page, or none for the first page.
+     * @param size the size of the page.
+     * @param sort the sort of the movies.
+     * @return the page of {@link MovieReference} objects, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    @GetMapping("/search/cursor")
+    public CursorPageDto<MovieReference> searchMoviesByCursor(MovieFilter movieFilter, @RequestParam(name = "cursor", required = false) String cursor,
+    		@RequestParam(name = "size", defaultValue = "20") int size, Sort sort) throws BadRequestException {
+    	return movieService.searchMoviesByCursor(movieFilter, sort, cursor, size);
+    }
+    
+    /**
+     * Searches the movies by any of their names.
+     * <p>
+     * This endpoint returns the movies with a title, actor name, role name or director name that matches
+     * the query, the best matching first.
+     * </p>
+     *
+     * @param name the query.
+     * @param pageable the requested page.
+     * @return the page of matching {@link MovieReference} objects.
+     */
+    @GetMapping("/search/any-name")
+    public Page<MovieReference> searchMoviesByAnyName(@RequestParam(name = "name") String name, Pageable pageable) {
+    	return movieSearchService.searchMoviesByAnyName(name, pageable);
+    }
+    
     @GetMapping("/search/categories")
     public List<String> getMoviesSearchCategories(MovieFilter movieFilter) {
     	return movieService.getMoviesSearchCategories(movieFilter);
     }
     
+    /**
+     * Retrieves the facet counts of a movie search.
+     * <p>
+     * This endpoint returns how many of the movies that match the filter have every genre, keyword,
+     * release decade and rating bucket. While the facet index is loading, it responds with 503 Service
+     * Unavailable and a {@code Retry-After} header.
+     * </p>
+     *
+     * @param movieFilter the search filter.
+     * @return the {@link MovieFacetsDto} of the matching movies.
+     */
+    @GetMapping("/search/facets")
+    public MovieFacetsDto getMoviesSearchFacets(MovieFilter movieFilter) {
+    	return movieService.getMoviesSearchFacets(movieFilter);
+    }
+    
+    /**
+     * Retrieves the hit and miss counters of the movie search result cache.
+     * <p>
+     * This endpoint is only available to admins.
+     * </p>
+     *
+     * @return the {@link CacheStatsDto} of the search cache.
+     */
+    @GetMapping("/search/cache-stats")
+    public CacheStatsDto getSearchCacheStats() {
+    	return movieSearchCacheService.getStats();
+    }
+    
+    /**
+     * Retrieves the hit and miss counters of the movie page cache.
+     * <p>
+     * This endpoint is only available to admins.
+     * </p>
+     *
+     * @return the {@link CacheStatsDto} of the movie page cache.
+     */
+    @GetMapping("/page-cache-stats")
+    public CacheStatsDto getPageCacheStats() {
+    	return moviePageCacheService.getStats();
+    }
+    
+    /**
+     * Retrieves the hit and miss counters of the movie reference cache.
+     * <p>
+     * This endpoint is only available to admins.
+     * </p>
+     *
+     * @return the {@link CacheStatsDto} of the movie reference cache.
+     */
+    @GetMapping("/reference-cache-stats")
+    public CacheStatsDto getReferenceCacheStats() {
+    	return movieReferenceCacheService.getStats();
+    }
+    
+    /**
+     * Retrieves the counters of the page view ingestion: the queued, deduplicated, dropped and written views.
+     * <p>
+     * This endpoint is only available to admins.
+     * </p>
+     *
+     * @return the {@link PageViewStatsDto} of the page views.
+     */
+    @GetMapping("/page-view-stats")
+    public PageViewStatsDto getPageViewStats() {
+    	return moviePageViewService.getStats();
+    }
+    
     /**
      * Adds a new movie.
      * <p>
@@ -104,13 +249,31 @@ public class MovieController {
      */
     @GetMapping("/{id}")
     public MoviePageDto getMovie(@PathVariable("id") Long movieId, HttpServletRequest request) throws EntityNotFoundException {
-        // first we will log the page view
+        // the page is usually cached, and throws if the movie does not exist
+        MoviePageDto moviePage = movieService.getMovie(movieId);
+        // then we will queue the page view, it is written in the background,
     	// and if it fails we will just ignore it
     	try {
-    		Movie movie = movieService.getMovieByID(movieId); 
-			moviePageViewService.addMoviePageView(movie, request);
+			moviePageViewService.addMoviePageView(movieId, request);
 		} catch (Exception e) { /*ignore*/ }
-        return movieService.getMovie(movieId);
+        return moviePage;
+    }
+    
+    /**
+     * Retrieves the movies liked, rated or purchased by the users who also interacted with a movie.
+     * <p>
+     * The similar movies are computed in the background. A movie with too few interactions gets the movies
+     * with the most similar genres, keywords, cast and directors.
+     * </p>
+     *
+     * @param movieId The ID of the movie.
+     * @param limit The maximum number of similar movies.
+     * @return A list of {@link MovieReference} objects, the most similar first.
+     */
+    @GetMapping("/{id}/similar")
+    public List<MovieReference> getSimilarMovies(@PathVariable("id") Long movieId,
+    		@RequestParam(name = "limit", defaultValue = "10") Integer limit) {
+    	return similarMovieService.getSimilarMovies(movieId, limit);
     }
     
     /**
@@ -4,18 +4,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import backend.dtos.MovieReviewDto;
 import backend.dtos.references.MovieRatingReference;
 import backend.dtos.references.MovieReviewReference;
+import backend.dtos.search.CursorPageDto;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.MovieReviewValuesAreIncorrectException;
 import backend.exceptions.EntityAdditionException;
 import backend.exceptions.EntityNotFoundException;
@@ -51,6 +55,26 @@ public class MovieReviewController {
         return movieReviewService.getReviewsOfMovieByPage(movieId, pageable);
     }
     
+    /**
+     * Retrieves the reviews of a specified movie with the keyset (cursor) pagination.
+     * <p>
+     * The total is not counted, and the next page is requested with the cursor returned with the previous one.
+     * </p>
+     *
+     * @param movieId The ID of the movie for which to retrieve reviews.
+     * @param cursor The cursor returned with the previous page, or none for the first page.
+     * @param size The size of the page.
+     * @param sort The sort of the reviews.
+     * @return The page of {@link MovieReviewDto} objects, with the cursor of the next page.
+     * @throws EntityNotFoundException If the movie with the specified ID does not exist.
+     * @throws BadRequestException If the cursor is not valid for this sort.
+     */
+    @GetMapping("/reviews/{movieId}/cursor")
+    public CursorPageDto<MovieReviewDto> getReviewsOfMovieByCursor(@PathVariable("movieId") Long movieId, @RequestParam(name = "cursor", required = false) String cursor,
+    		@RequestParam(name = "size", defaultValue = "20") int size, Sort sort) throws EntityNotFoundException, BadRequestException {
+        return movieReviewService.getReviewsOfMovieByCursor(movieId, sort, cursor, size);
+    }
+    
     /**
      * Retrieves the review of a specific movie by a specific user.
      * <p>
@@ -5,6 +5,8 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,6 +22,7 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import backend.dtos.ProductDto;
 import backend.dtos.references.ProductReference;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAdditionException;
 import backend.exceptions.EntityNotFoundException;
 import backend.exceptions.EntityRemovalException;
@@ -54,6 +57,23 @@ public class ProductController {
         return productService.getAllProducts(session);
     }
     
+    /**
+     * Retrieves a page of the products sorted by their final price.
+     * <p>
+     * This endpoint returns a page of the products sorted by their final buy or rent price in the session/user
+     * currency, like {@code ?sort=finalBuyPrice,asc&page=0&size=20}.
+     * </p>
+     *
+     * @param pageable The page of the products, sorted by {@code finalBuyPrice} or {@code finalRentPrice}.
+     * @return A page of {@link ProductDto} objects.
+     * @throws EntityNotFoundException 
+     * @throws BadRequestException if the products are not sorted by {@code finalBuyPrice} or {@code finalRentPrice}.
+     */
+    @GetMapping("/by-price")
+    public Page<ProductDto> getProductsByPrice(HttpSession session, Pageable pageable) throws EntityNotFoundException, BadRequestException {
+        return productService.getProductsByPrice(session, pageable);
+    }
+    
     /**
      * Retrieves the product associated with a movie.
      * <p>
@@ -0,0 +1,25 @@
+package backend.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import backend.dtos.rails.RailsDto;
+import backend.services.RailService;
+
+@RestController
+@RequestMapping("/main/rails")
+public class RailController {
+
+	@Autowired
+	private RailService railService;
+
+	/**
+	 * The movie rails of the home page: trending, top rated and new releases, answered from memory.
+	 */
+	@GetMapping("")
+	public RailsDto getRails() {
+		return railService.getRails();
+	}
+}
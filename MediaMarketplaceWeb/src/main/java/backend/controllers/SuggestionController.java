@@ -0,0 +1,26 @@
+package backend.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import backend.dtos.search.SuggestionsDto;
+import backend.services.search.SuggestionService;
+
+@RestController
+@RequestMapping("/main/suggest")
+public class SuggestionController {
+
+	@Autowired
+	private SuggestionService suggestionService;
+
+	/**
+	 * Typeahead suggestions of movies, people and keywords for the typed prefix, answered from memory.
+	 */
+	@GetMapping("")
+	public SuggestionsDto suggest(@RequestParam("q") String prefix, @RequestParam(name = "limit", defaultValue = "5") int limit) {
+		return suggestionService.suggest(prefix, limit);
+	}
+}
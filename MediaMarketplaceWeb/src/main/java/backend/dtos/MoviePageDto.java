@@ -10,11 +10,24 @@ public class MoviePageDto {
 	private Integer averageRating;
 	
 	private Long totalRatings;
+	
+	private Long likes;
 
 	public MoviePageDto() {
 		// TODO Auto-generated constructor stub
 	}
 
+	public MoviePageDto(MovieDto movie, Integer averageRating, Long totalRatings) {
+		this.movie = movie;
+		this.averageRating = averageRating;
+		this.totalRatings = totalRatings;
+	}
+
+	public MoviePageDto(MovieDto movie, Integer averageRating, Long totalRatings, Long likes) {
+		this(movie, averageRating, totalRatings);
+		this.likes = likes;
+	}
+
 	public MovieDto getMovie() {
 		return movie;
 	}
@@ -27,6 +40,10 @@ public class MoviePageDto {
 		return totalRatings;
 	}
 
+	public Long getLikes() {
+		return likes;
+	}
+
 	public void setMovie(MovieDto movie) {
 		this.movie = movie;
 	}
@@ -38,4 +55,8 @@ public class MoviePageDto {
 	public void setTotalRatings(Long totalRatings) {
 		this.totalRatings = totalRatings;
 	}
+
+	public void setLikes(Long likes) {
+		this.likes = likes;
+	}
 }
\ No newline at end of file
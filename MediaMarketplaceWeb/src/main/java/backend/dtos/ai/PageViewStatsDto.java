@@ -0,0 +1,94 @@
+package backend.dtos.ai;
+
+/**
+ * The counters of the page view ingestion.
+ */
+public class PageViewStatsDto {
+
+	/**
+	 * The number of page views waiting to be written.
+	 */
+	private int queued;
+
+	/**
+	 * The number of page views accepted into the queue.
+	 */
+	private long accepted;
+
+	/**
+	 * The number of page views ignored because the viewer already viewed the movie during the cooldown.
+	 */
+	private long deduplicated;
+
+	/**
+	 * The number of page views dropped because the queue was full.
+	 */
+	private long dropped;
+
+	private long written;
+
+	/**
+	 * The number of page views lost because they were rejected or failed to be written after every attempt.
+	 */
+	private long failed;
+
+	public PageViewStatsDto() {
+	}
+
+	public PageViewStatsDto(int queued, long accepted, long deduplicated, long dropped, long written, long failed) {
+		this.queued = queued;
+		this.accepted = accepted;
+		this.deduplicated = deduplicated;
+		this.dropped = dropped;
+		this.written = written;
+		this.failed = failed;
+	}
+
+	public int getQueued() {
+		return queued;
+	}
+
+	public void setQueued(int queued) {
+		this.queued = queued;
+	}
+
+	public long getAccepted() {
+		return accepted;
+	}
+
+	public void setAccepted(long accepted) {
+		this.accepted = accepted;
+	}
+
+	public long getDeduplicated() {
+		return deduplicated;
+	}
+
+	public void setDeduplicated(long deduplicated) {
+		this.deduplicated = deduplicated;
+	}
+
+	public long getDropped() {
+		return dropped;
+	}
+
+	public void setDropped(long dropped) {
+		this.dropped = dropped;
+	}
+
+	public long getWritten() {
+		return written;
+	}
+
+	public void setWritten(long written) {
+		this.written = written;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	public void setFailed(long failed) {
+		this.failed = failed;
+	}
+}
@@ -0,0 +1,55 @@
+package backend.dtos.rails;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import backend.dtos.references.MovieReference;
+
+/**
+ * The movie rails of the home page, built periodically and shared by all the requests.
+ */
+public class RailsDto {
+
+	/**
+	 * The movies with the highest time-decayed score of page views and likes.
+	 */
+	private final List<MovieReference> trending;
+
+	/**
+	 * The movies with the highest average rating, among the movies with enough ratings.
+	 */
+	private final List<MovieReference> topRated;
+
+	/**
+	 * The latest released movies.
+	 */
+	private final List<MovieReference> newReleases;
+
+	/**
+	 * The time the rails were built.
+	 */
+	private final LocalDateTime builtAt;
+
+	public RailsDto(List<MovieReference> trending, List<MovieReference> topRated, List<MovieReference> newReleases, LocalDateTime builtAt) {
+		this.trending = List.copyOf(trending);
+		this.topRated = List.copyOf(topRated);
+		this.newReleases = List.copyOf(newReleases);
+		this.builtAt = builtAt;
+	}
+
+	public List<MovieReference> getTrending() {
+		return trending;
+	}
+
+	public List<MovieReference> getTopRated() {
+		return topRated;
+	}
+
+	public List<MovieReference> getNewReleases() {
+		return newReleases;
+	}
+
+	public LocalDateTime getBuiltAt() {
+		return builtAt;
+	}
+}
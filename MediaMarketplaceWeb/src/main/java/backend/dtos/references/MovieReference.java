@@ -22,6 +22,11 @@ public class MovieReference {
      */
     private String posterPath;
 
+    /**
+     * The number of likes of the movie.
+     */
+    private Long likes;
+
     /**
      * Gets the unique identifier for the movie.
      * 
@@ -76,6 +81,24 @@ public class MovieReference {
         this.posterPath = posterPath;
     }
 
+    /**
+     * Gets the number of likes of the movie.
+     * 
+     * @return the number of likes of the movie
+     */
+    public Long getLikes() {
+        return likes;
+    }
+
+    /**
+     * Sets the number of likes of the movie.
+     * 
+     * @param likes the number of likes of the movie
+     */
+    public void setLikes(Long likes) {
+        this.likes = likes;
+    }
+
     /**
      * Checks if this movie reference is equal to another object, using their id
      * 
@@ -0,0 +1,108 @@
+package backend.dtos.search;
+
+import backend.utils.collections.BoundedCache;
+
+/**
+ * The hit and miss counters of an in-process cache.
+ */
+public class CacheStatsDto {
+
+	/**
+	 * The number of cached entries.
+	 */
+	private int size;
+
+	private long hits;
+
+	private long misses;
+
+	/**
+	 * The ratio of the lookups that found a value, 0 if there were no lookups.
+	 */
+	private double hitRate;
+
+	/**
+	 * The number of entries evicted because the cache was full.
+	 */
+	private long evictions;
+
+	/**
+	 * The number of entries that expired.
+	 */
+	private long expirations;
+
+	/**
+	 * The number of entries invalidated by changes of the data.
+	 */
+	private long invalidations;
+
+	public CacheStatsDto() {
+	}
+
+	public CacheStatsDto(BoundedCache.Stats stats) {
+		this.size = stats.size();
+		this.hits = stats.hits();
+		this.misses = stats.misses();
+		long lookups = stats.hits() + stats.misses();
+		this.hitRate = lookups == 0 ? 0 : (double) stats.hits() / lookups;
+		this.evictions = stats.evictions();
+		this.expirations = stats.expirations();
+		this.invalidations = stats.invalidations();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public void setHits(long hits) {
+		this.hits = hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(long misses) {
+		this.misses = misses;
+	}
+
+	public double getHitRate() {
+		return hitRate;
+	}
+
+	public void setHitRate(double hitRate) {
+		this.hitRate = hitRate;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void setEvictions(long evictions) {
+		this.evictions = evictions;
+	}
+
+	public long getExpirations() {
+		return expirations;
+	}
+
+	public void setExpirations(long expirations) {
+		this.expirations = expirations;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public void setInvalidations(long invalidations) {
+		this.invalidations = invalidations;
+	}
+}
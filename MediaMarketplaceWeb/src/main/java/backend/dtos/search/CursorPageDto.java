@@ -0,0 +1,80 @@
+package backend.dtos.search;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of the keyset (cursor) pagination.
+ * <p>
+ * Unlike a {@link org.springframework.data.domain.Page}, it has no total count, the next page is requested
+ * with the {@link #getNextCursor() next cursor}.
+ * </p>
+ *
+ * @param <T> the type of the content.
+ */
+public class CursorPageDto<T> {
+
+	private List<T> content;
+
+	private int size;
+
+	private boolean hasNext;
+
+	/**
+	 * The cursor of the next page, or null if this is the last page.
+	 */
+	private String nextCursor;
+
+	public CursorPageDto() {
+	}
+
+	public CursorPageDto(List<T> content, int size, boolean hasNext, String nextCursor) {
+		this.content = content;
+		this.size = size;
+		this.hasNext = hasNext;
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Converts the content of the page.
+	 *
+	 * @param converter the converter of the content.
+	 * @return the page with the converted content, and the same cursor.
+	 */
+	public <U> CursorPageDto<U> map(Function<? super T, ? extends U> converter) {
+		List<U> convertedContent = content.stream().<U>map(converter).toList();
+		return new CursorPageDto<>(convertedContent, size, hasNext, nextCursor);
+	}
+
+	public List<T> getContent() {
+		return content;
+	}
+
+	public void setContent(List<T> content) {
+		this.content = content;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public boolean isHasNext() {
+		return hasNext;
+	}
+
+	public void setHasNext(boolean hasNext) {
+		this.hasNext = hasNext;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+}
@@ -0,0 +1,57 @@
+package backend.dtos.search;
+
+/**
+ * The number of movies of a single facet value (a genre, a keyword, a decade or a rating bucket)
+ * in the results of a movie search.
+ */
+public class FacetCountDto {
+
+	/**
+	 * The facet value, the id of the genre or keyword, the first year of the decade
+	 * or the lowest rating of the rating bucket.
+	 */
+	private Long value;
+
+	/**
+	 * The name of the genre or keyword, null for the decades and rating buckets.
+	 */
+	private String name;
+
+	/**
+	 * The number of movies with this facet value.
+	 */
+	private int count;
+
+	public FacetCountDto() {
+	}
+
+	public FacetCountDto(Long value, String name, int count) {
+		this.value = value;
+		this.name = name;
+		this.count = count;
+	}
+
+	public Long getValue() {
+		return value;
+	}
+
+	public void setValue(Long value) {
+		this.value = value;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public void setCount(int count) {
+		this.count = count;
+	}
+}
@@ -0,0 +1,77 @@
+package backend.dtos.search;
+
+import java.util.List;
+
+/**
+ * The facet counts of the results of a movie search.
+ */
+public class MovieFacetsDto {
+
+	/**
+	 * The number of movies that match the search.
+	 */
+	private int total;
+
+	/**
+	 * The genres of the matching movies, the most frequent first.
+	 */
+	private List<FacetCountDto> genres;
+
+	/**
+	 * The most frequent keywords of the matching movies.
+	 */
+	private List<FacetCountDto> keywords;
+
+	/**
+	 * The release decades of the matching movies, in ascending order.
+	 */
+	private List<FacetCountDto> decades;
+
+	/**
+	 * The rating buckets (of 10 points) of the matching movies, in ascending order.
+	 */
+	private List<FacetCountDto> ratings;
+
+	public MovieFacetsDto() {
+	}
+
+	public int getTotal() {
+		return total;
+	}
+
+	public void setTotal(int total) {
+		this.total = total;
+	}
+
+	public List<FacetCountDto> getGenres() {
+		return genres;
+	}
+
+	public void setGenres(List<FacetCountDto> genres) {
+		this.genres = genres;
+	}
+
+	public List<FacetCountDto> getKeywords() {
+		return keywords;
+	}
+
+	public void setKeywords(List<FacetCountDto> keywords) {
+		this.keywords = keywords;
+	}
+
+	public List<FacetCountDto> getDecades() {
+		return decades;
+	}
+
+	public void setDecades(List<FacetCountDto> decades) {
+		this.decades = decades;
+	}
+
+	public List<FacetCountDto> getRatings() {
+		return ratings;
+	}
+
+	public void setRatings(List<FacetCountDto> ratings) {
+		this.ratings = ratings;
+	}
+}
@@ -34,6 +34,11 @@ public class MovieFilter /*extends PageableDto*/ {
      */
     private Double ratingBelow;
     
+    /**
+     * The words to search for in the title, synopsis and keywords of the movie.
+     */
+    private String text;
+    
     private List<Long> actors;
     
     private List<Long> directors;
@@ -108,6 +113,15 @@ public class MovieFilter /*extends PageableDto*/ {
         return ratingBelow;
     }
     
+    /**
+     * Gets the words to search for in the title, synopsis and keywords of the movie.
+     * 
+     * @return the searched words.
+     */
+    public String getText() {
+        return text;
+    }
+    
     public List<Long> getActors() {
 		return actors;
 	}
@@ -170,6 +184,15 @@ public class MovieFilter /*extends PageableDto*/ {
         this.ratingBelow = ratingBelow;
     }
     
+    /**
+     * Sets the words to search for in the title, synopsis and keywords of the movie.
+     * 
+     * @param text the searched words.
+     */
+    public void setText(String text) {
+        this.text = text;
+    }
+    
     public void setActors(List<Long> actors) {
 		this.actors = actors;
     }
@@ -177,4 +200,15 @@ public class MovieFilter /*extends PageableDto*/ {
     public void setDirectors(List<Long> directors) {
 		this.directors = directors;
     }
+    
+    /**
+     * Checks if the filter has any criteria, a filter without criteria matches every movie.
+     * 
+     * @return {@code true} if at least one of the criteria is set.
+     */
+    public boolean hasCriteria() {
+        return name != null || text != null || genres != null || yearAbove != null || yearBelow != null
+        		|| ratingAbove != null || ratingBelow != null
+        		|| (actors != null && !actors.isEmpty()) || (directors != null && !directors.isEmpty());
+    }
 }
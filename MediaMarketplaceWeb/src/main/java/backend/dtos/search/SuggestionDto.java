@@ -0,0 +1,38 @@
+package backend.dtos.search;
+
+/**
+ * A typeahead suggestion: a movie, a person or a keyword whose name starts with the typed prefix.
+ */
+public class SuggestionDto {
+
+	/**
+	 * The id of the movie, person or keyword.
+	 */
+	private Long id;
+
+	private String name;
+
+	public SuggestionDto() {
+	}
+
+	public SuggestionDto(Long id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+}
@@ -0,0 +1,48 @@
+package backend.dtos.search;
+
+import java.util.List;
+
+/**
+ * The typeahead suggestions of a prefix, the most popular first.
+ */
+public class SuggestionsDto {
+
+	private List<SuggestionDto> movies;
+
+	private List<SuggestionDto> people;
+
+	private List<SuggestionDto> keywords;
+
+	public SuggestionsDto() {
+	}
+
+	public SuggestionsDto(List<SuggestionDto> movies, List<SuggestionDto> people, List<SuggestionDto> keywords) {
+		this.movies = movies;
+		this.people = people;
+		this.keywords = keywords;
+	}
+
+	public List<SuggestionDto> getMovies() {
+		return movies;
+	}
+
+	public void setMovies(List<SuggestionDto> movies) {
+		this.movies = movies;
+	}
+
+	public List<SuggestionDto> getPeople() {
+		return people;
+	}
+
+	public void setPeople(List<SuggestionDto> people) {
+		this.people = people;
+	}
+
+	public List<SuggestionDto> getKeywords() {
+		return keywords;
+	}
+
+	public void setKeywords(List<SuggestionDto> keywords) {
+		this.keywords = keywords;
+	}
+}
@@ -13,6 +13,7 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 
 /**
  * Represents a shopping cart in the database.
@@ -58,6 +59,15 @@ public class Cart {
 	@ManyToOne(fetch = FetchType.EAGER)
 	@JoinColumn(name = "user_id", referencedColumnName = "id", nullable = true, unique = true)
 	private User user;
+	
+	/**
+	 * The version of this cart, incremented on every change of the cart and its products.
+	 * The priced cart is cached for a version, and concurrent changes of the cart are detected with it.
+	 * 
+	 * @return the version of the cart
+	 */
+	@Version
+	private long version;
 
 	/**
 	 * Default constructor for the Cart class.
@@ -105,6 +115,15 @@ public class Cart {
 		return user;
 	}
 	
+	/**
+	 * Gets the version of this cart.
+	 * 
+	 * @return the version of the cart
+	 */
+	public long getVersion() {
+		return version;
+	}
+	
 	/**
 	 * Adds a product to the cart.
 	 * This method also sets the cart reference in the CartProduct instance.
@@ -11,9 +11,10 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 
 @Entity
-@Table(name = "currency_exchanges")
+@Table(name = "currency_exchanges", uniqueConstraints = @UniqueConstraint(columnNames = {"from_currency_code", "to_currency_code"}))
 public class CurrencyExchange {
 	
 	@Id
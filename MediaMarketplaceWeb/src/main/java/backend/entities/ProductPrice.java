@@ -0,0 +1,112 @@
+package backend.entities;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+
+/**
+ * The final buy and rent prices of a product in a currency, with the discount applied and converted with
+ * the current exchange rates.
+ * <p>
+ * The prices are in minor units of the currency (cents for USD), and are computed by the price book: written
+ * again for every currency when a product is saved and for every product when the rates are refreshed. The
+ * prices are removed with their product.
+ * </p>
+ */
+@Entity
+@Table(name = "product_prices", uniqueConstraints = @UniqueConstraint(columnNames = {"product_id", "currency_id"}), indexes = {
+		@Index(name = "idx_product_prices_buy_price", columnList = "currency_id, buy_price"),
+		@Index(name = "idx_product_prices_rent_price", columnList = "currency_id, rent_price")
+})
+public class ProductPrice {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@JoinColumn(name = "product_id")
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	private Product product;
+
+	@ManyToOne(fetch = FetchType.LAZY, optional = false)
+	@JoinColumn(name = "currency_id")
+	@OnDelete(action = OnDeleteAction.CASCADE)
+	private CurrencyKind currency;
+
+	/**
+	 * The final buy price in minor units, null if the product has no rate to the currency.
+	 */
+	@Column(name = "buy_price")
+	private Long buyPrice;
+
+	/**
+	 * The final rent price in minor units, null if the product has no rate to the currency.
+	 */
+	@Column(name = "rent_price")
+	private Long rentPrice;
+
+	@Column(nullable = false)
+	private LocalDateTime lastUpdated;
+
+	public Long getId() {
+		return id;
+	}
+
+	public Product getProduct() {
+		return product;
+	}
+
+	public CurrencyKind getCurrency() {
+		return currency;
+	}
+
+	public Long getBuyPrice() {
+		return buyPrice;
+	}
+
+	public Long getRentPrice() {
+		return rentPrice;
+	}
+
+	public LocalDateTime getLastUpdated() {
+		return lastUpdated;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public void setProduct(Product product) {
+		this.product = product;
+	}
+
+	public void setCurrency(CurrencyKind currency) {
+		this.currency = currency;
+	}
+
+	public void setBuyPrice(Long buyPrice) {
+		this.buyPrice = buyPrice;
+	}
+
+	public void setRentPrice(Long rentPrice) {
+		this.rentPrice = rentPrice;
+	}
+
+	public void setLastUpdated(LocalDateTime lastUpdated) {
+		this.lastUpdated = lastUpdated;
+	}
+}
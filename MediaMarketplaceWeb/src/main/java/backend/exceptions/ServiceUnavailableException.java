@@ -0,0 +1,22 @@
+package backend.exceptions;
+
+/**
+ * Thrown when a resource can not be served yet, for example while the index it is read from is loading.
+ * The response tells the client when to retry.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+
+	private final long retryAfterSeconds;
+
+	public ServiceUnavailableException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return the number of seconds after which the client can retry.
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
@@ -1,8 +1,12 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.Actor;
@@ -26,4 +30,48 @@ public interface ActorRepository extends JpaRepository<Actor, Long> {
      * @return an {@link Optional} containing the found {@link Actor}, or {@link Optional#empty()} if no actor is found
      */
     Optional<Actor> findByMovieIdAndPersonId(Long movieId, Long personId);
+    
+    /**
+     * Finds the ids, person ids and movie ids of the actors with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory movie relation index in batches without loading the {@link Actor} entities.
+     * </p>
+     *
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, personId, movieId]} rows
+     */
+    @Query("SELECT a.id, a.person.id, a.movie.id FROM Actor a WHERE a.id > :afterId ORDER BY a.id")
+    List<Object[]> findPersonAndMovieIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Finds the person ids, person names and role names of the actors of the movies with an id in the given range.
+     * <p>
+     * Used to load the in-memory movie token index in batches without loading the {@link Actor} entities.
+     * </p>
+     *
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, personId, personName, roleName]} rows
+     */
+    @Query("SELECT a.movie.id, p.id, p.name, a.roleName FROM Actor a JOIN a.person p WHERE a.movie.id BETWEEN :fromId AND :toId")
+    List<Object[]> findNamesByMovieIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the person ids of the actors of the movies with an id in the given range, the first added actors of a movie first.
+     *
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, personId]} rows
+     */
+    @Query("SELECT a.movie.id, a.person.id FROM Actor a WHERE a.movie.id BETWEEN :fromId AND :toId ORDER BY a.movie.id, a.id")
+    List<Object[]> findCastByMovieIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the popularity of the people as actors: the sum of the total page views and total ratings of their movies.
+     *
+     * @return a list of {@code [personId, popularity]} rows
+     */
+    @Query("SELECT a.person.id, SUM(m.totalPageViews + COALESCE(r.totalRatings, 0)) FROM Actor a JOIN a.movie m LEFT JOIN m.movieRating r GROUP BY a.person.id")
+    List<Object[]> findPopularityByPerson();
 }
\ No newline at end of file
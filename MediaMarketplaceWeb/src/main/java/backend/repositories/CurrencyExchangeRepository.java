@@ -1,8 +1,10 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.CurrencyExchange;
@@ -14,4 +16,12 @@ public interface CurrencyExchangeRepository extends JpaRepository<CurrencyExchan
 	public Optional<CurrencyExchange> findByFromCurrencyKindAndToCurrencyKind(CurrencyKind fromCurrencyKind, CurrencyKind toCurrencyKind);
 	
     Optional<CurrencyExchange> findTopByOrderByLastUpdatedDesc();
+    
+    /**
+     * Finds all the exchange rates with their currencies, in a single query.
+     * 
+     * @return all the exchange rates
+     */
+    @Query("SELECT e FROM CurrencyExchange e JOIN FETCH e.fromCurrencyKind JOIN FETCH e.toCurrencyKind")
+    List<CurrencyExchange> findAllWithCurrencyKinds();
 }
\ No newline at end of file
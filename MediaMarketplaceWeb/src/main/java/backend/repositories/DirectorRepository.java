@@ -1,8 +1,12 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.Director;
@@ -28,4 +32,48 @@ public interface DirectorRepository extends JpaRepository<Director, Long> {
      * @return an {@link Optional} containing the found {@link Director}, or {@link Optional#empty()} if no director is found
      */
     Optional<Director> findByMovieIdAndPersonId(Long movieId, Long personId);
+    
+    /**
+     * Finds the ids, person ids and movie ids of the directors with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory movie relation index in batches without loading the {@link Director} entities.
+     * </p>
+     *
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, personId, movieId]} rows
+     */
+    @Query("SELECT d.id, d.person.id, d.movie.id FROM Director d WHERE d.id > :afterId ORDER BY d.id")
+    List<Object[]> findPersonAndMovieIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Finds the person ids and person names of the directors of the movies with an id in the given range.
+     * <p>
+     * Used to load the in-memory movie token index in batches without loading the {@link Director} entities.
+     * </p>
+     *
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, personId, personName]} rows
+     */
+    @Query("SELECT d.movie.id, p.id, p.name FROM Director d JOIN d.person p WHERE d.movie.id BETWEEN :fromId AND :toId")
+    List<Object[]> findNamesByMovieIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the person ids of the directors of the movies with an id in the given range.
+     *
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, personId]} rows
+     */
+    @Query("SELECT d.movie.id, d.person.id FROM Director d WHERE d.movie.id BETWEEN :fromId AND :toId")
+    List<Object[]> findPersonIdsByMovieIdBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the popularity of the people as directors: the sum of the total page views and total ratings of their movies.
+     *
+     * @return a list of {@code [personId, popularity]} rows
+     */
+    @Query("SELECT d.person.id, SUM(m.totalPageViews + COALESCE(r.totalRatings, 0)) FROM Director d JOIN d.movie m LEFT JOIN m.movieRating r GROUP BY d.person.id")
+    List<Object[]> findPopularityByPerson();
 }
\ No newline at end of file
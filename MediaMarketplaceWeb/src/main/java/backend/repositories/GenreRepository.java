@@ -1,9 +1,13 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.Genre;
@@ -28,4 +32,17 @@ public interface GenreRepository extends JpaRepository<Genre, Long>, JpaSpecific
      * @return an {@link Optional} containing the found {@link Genre}, or {@link Optional#empty()} if no genre is found with the given name
      */
     Optional<Genre> findByName(String name);
-}
\ No newline at end of file
+    
+    /**
+     * Finds the ids and names of the genres with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory name index in batches without loading the {@link Genre} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, name]} rows
+     */
+    @Query("SELECT g.id, g.name FROM Genre g WHERE g.id > :afterId ORDER BY g.id")
+    List<Object[]> findIdAndNameAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
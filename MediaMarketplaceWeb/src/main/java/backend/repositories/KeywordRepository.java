@@ -1,9 +1,13 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.Keyword;
@@ -36,4 +40,17 @@ public interface KeywordRepository extends JpaRepository<Keyword, Long>, JpaSpec
 	 * @return an {@link Optional} containing the found {@link Keyword}, or {@link Optional#empty()} if no keyword is found with the given media ID
 	 */
 	Optional<Keyword> findByMediaID(String mediaID);
-}
\ No newline at end of file
+	
+	/**
+	 * Finds the ids and names of the keywords with an id above the given id, ordered by id.
+	 * <p>
+	 * Used to load the in-memory name index in batches without loading the {@link Keyword} entities.
+	 * </p>
+	 * 
+	 * @param afterId the id to start after (exclusive)
+	 * @param pageable the batch size
+	 * @return a list of {@code [id, name]} rows
+	 */
+	@Query("SELECT k.id, k.name FROM Keyword k WHERE k.id > :afterId ORDER BY k.id")
+	List<Object[]> findIdAndNameAfter(@Param("afterId") Long afterId, Pageable pageable);
+}
@@ -5,6 +5,7 @@ import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import backend.entities.Movie;
@@ -50,4 +51,12 @@ public interface MoviePurchasedRepository extends JpaRepository<MoviePurchased,
      *         or {@link Optional#empty()} if no entities are found
      */
     Optional<List<MoviePurchased>> findAllByOrderUserAndMovie(User user, Movie movie);
+
+    /**
+     * Finds the distinct movies purchased by every user, without loading the entities.
+     * 
+     * @return a list of {@code [userId, movieId]} rows
+     */
+    @Query("SELECT DISTINCT p.order.user.id, p.movie.id FROM MoviePurchased p")
+    List<Object[]> findUserMovieValues();
 }
\ No newline at end of file
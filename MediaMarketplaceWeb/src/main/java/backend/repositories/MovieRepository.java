@@ -1,10 +1,13 @@
 package backend.repositories;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -40,7 +43,151 @@ public interface MovieRepository extends JpaRepository<Movie, Long>, JpaSpecific
      */
     Optional<Movie> findByMediaID(@Param("media_id") String mediaID);
     
-    @Modifying
-    @Query("UPDATE Movie m SET m.totalPageViews = m.totalPageViews + :increment WHERE m.id = :movieId")
-    void incrementTotalPageViews(@Param("movieId") Long movieId, @Param("increment") double increment);
+    /**
+     * Finds a {@link Movie} with everything its page shows, its genres and rating, in a single query.
+     * 
+     * @param id the ID of the movie
+     * @return an {@link Optional} containing the found {@link Movie}, or {@link Optional#empty()} if no movie is found
+     */
+    @Query("SELECT DISTINCT m FROM Movie m LEFT JOIN FETCH m.genres LEFT JOIN FETCH m.movieRating WHERE m.id = :id")
+    Optional<Movie> findPageMovieById(@Param("id") Long id);
+    
+    /**
+     * Finds the ids and names of the movies with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory name index in batches without loading the {@link Movie} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, name]} rows
+     */
+    @Query("SELECT m.id, m.name FROM Movie m WHERE m.id > :afterId ORDER BY m.id")
+    List<Object[]> findIdAndNameAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Finds the ids, release dates and average ratings of the movies with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory facet index in batches without loading the {@link Movie} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, releaseDate, averageRating]} rows, the rating is null for movies without ratings,
+     * including the movies whose ratings were all removed
+     */
+    @Query("SELECT m.id, m.releaseDate, CASE WHEN r.totalRatings > 0 THEN r.averageRating END FROM Movie m LEFT JOIN m.movieRating r"
+    		+ " WHERE m.id > :afterId ORDER BY m.id")
+    List<Object[]> findFacetValuesAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Finds the highest movie id.
+     * 
+     * @return the highest movie id, or null if there are no movies
+     */
+    @Query("SELECT MAX(m.id) FROM Movie m")
+    Long findMaxId();
+    
+    /**
+     * Finds the genre ids of the movies with an id in the given range.
+     * 
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, genreId]} rows
+     */
+    @Query("SELECT m.id, g.id FROM Movie m JOIN m.genres g WHERE m.id BETWEEN :fromId AND :toId")
+    List<Object[]> findGenreIdsBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the keyword ids of the movies with an id in the given range.
+     * 
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, keywordId]} rows
+     */
+    @Query("SELECT m.id, k.id FROM Movie m JOIN m.keywords k WHERE m.id BETWEEN :fromId AND :toId")
+    List<Object[]> findKeywordIdsBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the ids, names and synopses of the movies with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory text index in batches without loading the {@link Movie} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, name, synopsis]} rows
+     */
+    @Query("SELECT m.id, m.name, m.synopsis FROM Movie m WHERE m.id > :afterId ORDER BY m.id")
+    List<Object[]> findTextValuesAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Finds the keyword names of the movies with an id in the given range.
+     * 
+     * @param fromId the first movie id (inclusive)
+     * @param toId the last movie id (inclusive)
+     * @return a list of {@code [movieId, keywordName]} rows
+     */
+    @Query("SELECT m.id, k.name FROM Movie m JOIN m.keywords k WHERE m.id BETWEEN :fromId AND :toId")
+    List<Object[]> findKeywordNamesBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+    
+    /**
+     * Finds the ids, names, total page views and total ratings of the movies with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory suggestion trie in batches without loading the {@link Movie} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, name, totalPageViews, totalRatings]} rows, the total ratings are null for movies without ratings
+     */
+    @Query("SELECT m.id, m.name, m.totalPageViews, r.totalRatings FROM Movie m LEFT JOIN m.movieRating r WHERE m.id > :afterId ORDER BY m.id")
+    List<Object[]> findSuggestionValuesAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /**
+     * Finds the popularity of the movies: their total page views plus their total ratings.
+     * 
+     * @return a list of {@code [id, popularity]} rows
+     */
+    @Query("SELECT m.id, m.totalPageViews + COALESCE(r.totalRatings, 0) FROM Movie m LEFT JOIN m.movieRating r")
+    List<Object[]> findPopularities();
+    
+    /**
+     * Finds the popularity of the keywords: the sum of the popularity of their movies.
+     * 
+     * @return a list of {@code [keywordId, popularity]} rows
+     */
+    @Query("SELECT k.id, SUM(m.totalPageViews + COALESCE(r.totalRatings, 0)) FROM Movie m JOIN m.keywords k LEFT JOIN m.movieRating r GROUP BY k.id")
+    List<Object[]> findPopularityByKeyword();
+    
+    /**
+     * Finds the ids, names and poster paths of the movies with the given ids, in no particular order.
+     * 
+     * @param ids the ids of the movies
+     * @return a list of {@code [id, name, posterPath]} rows
+     */
+    @Query("SELECT m.id, m.name, m.posterPath FROM Movie m WHERE m.id IN :ids")
+    List<Object[]> findReferenceValuesByIds(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Finds the ids, names and poster paths of the movies with the highest average rating, among the movies
+     * with at least the given number of ratings.
+     * 
+     * @param minRatings the minimum number of ratings of the movies
+     * @param pageable the number of movies
+     * @return a list of {@code [id, name, posterPath]} rows, the highest average rating first
+     */
+    @Query("SELECT m.id, m.name, m.posterPath FROM Movie m JOIN m.movieRating r WHERE r.totalRatings >= :minRatings "
+    		+ "ORDER BY r.averageRating DESC, r.totalRatings DESC, m.id")
+    List<Object[]> findTopRatedReferenceValues(@Param("minRatings") Long minRatings, Pageable pageable);
+    
+    /**
+     * Finds the ids, names and poster paths of the latest movies released until the given date.
+     * 
+     * @param until the latest release date (inclusive)
+     * @param pageable the number of movies
+     * @return a list of {@code [id, name, posterPath]} rows, the latest release first
+     */
+    @Query("SELECT m.id, m.name, m.posterPath FROM Movie m WHERE m.releaseDate <= :until ORDER BY m.releaseDate DESC, m.id DESC")
+    List<Object[]> findNewReleaseReferenceValues(@Param("until") LocalDate until, Pageable pageable);
 }
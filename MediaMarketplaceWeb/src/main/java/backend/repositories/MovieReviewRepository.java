@@ -68,4 +68,13 @@ public interface MovieReviewRepository extends JpaRepository<MovieReview, Long>
     
     @Query("SELECT COUNT(r) FROM MovieReview r WHERE r.movie = :movie")
     Long findCountByMovie(@Param("movie") Movie movie);
+    
+    /**
+     * Finds the ratings of the users that are at least the given rating, without loading the entities.
+     * 
+     * @param minRating the minimum rating (inclusive)
+     * @return a list of {@code [userId, movieId, rating]} rows
+     */
+    @Query("SELECT r.user.id, r.movie.id, r.rating FROM MovieReview r WHERE r.rating >= :minRating")
+    List<Object[]> findRatingValuesAtLeast(@Param("minRating") Integer minRating);
 }
\ No newline at end of file
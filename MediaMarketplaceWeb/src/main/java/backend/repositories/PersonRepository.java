@@ -1,9 +1,12 @@
 package backend.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -29,4 +32,17 @@ public interface PersonRepository extends JpaRepository<Person, Long>, JpaSpecif
      * @return an {@link Optional} containing the found {@link Person} entity, or {@link Optional#empty()} if no person is found
      */
     Optional<Person> findByMediaId(@Param("media_id") String mediaId);
+    
+    /**
+     * Finds the ids and names of the people with an id above the given id, ordered by id.
+     * <p>
+     * Used to load the in-memory name index in batches without loading the {@link Person} entities.
+     * </p>
+     * 
+     * @param afterId the id to start after (exclusive)
+     * @param pageable the batch size
+     * @return a list of {@code [id, name]} rows
+     */
+    @Query("SELECT p.id, p.name FROM Person p WHERE p.id > :afterId ORDER BY p.id")
+    List<Object[]> findIdAndNameAfter(@Param("afterId") Long afterId, Pageable pageable);
 }
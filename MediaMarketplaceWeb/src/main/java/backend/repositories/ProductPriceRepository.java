@@ -0,0 +1,30 @@
+package backend.repositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import backend.entities.Product;
+import backend.entities.ProductPrice;
+
+/**
+ * Repository interface for the {@link ProductPrice} entities written by the price book.
+ */
+@Repository
+public interface ProductPriceRepository extends JpaRepository<ProductPrice, Long> {
+
+	/**
+	 * Finds a page of the products with their prices in a currency, sorted by the properties of
+	 * {@link ProductPrice} ({@code buyPrice} or {@code rentPrice}).
+	 *
+	 * @param currencyId the id of the currency of the prices.
+	 * @param pageable the page and sort of the products.
+	 * @return the page of products.
+	 */
+	@Query(value = "SELECT pp.product FROM ProductPrice pp WHERE pp.currency.id = :currencyId",
+			countQuery = "SELECT COUNT(pp) FROM ProductPrice pp WHERE pp.currency.id = :currencyId")
+	Page<Product> findProductsByCurrencyId(@Param("currencyId") Long currencyId, Pageable pageable);
+}
@@ -1,8 +1,11 @@
 package backend.repositories;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -28,4 +31,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
      * @return an {@link Optional} containing the found {@link User} entity, or {@link Optional#empty()} if no user is found
      */
     Optional<User> findByEmail(@Param("email") String email);
+    
+    /**
+     * Finds the ids of the users with the given emails.
+     * 
+     * @param emails the emails of the users
+     * @return a list of {@code [email, id]} rows, without the emails of no user
+     */
+    @Query("SELECT u.email, u.id FROM User u WHERE u.email IN :emails")
+    List<Object[]> findIdsByEmails(@Param("emails") Collection<String> emails);
 }
\ No newline at end of file
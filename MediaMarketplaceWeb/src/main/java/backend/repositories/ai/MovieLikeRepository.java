@@ -1,18 +1,73 @@
 package backend.repositories.ai;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import backend.entities.Movie;
-import backend.entities.User;
 import backend.entities.ai.MovieLike;
 
 @Repository
 public interface MovieLikeRepository extends JpaRepository<MovieLike, Long> {
 	
-	boolean existsByMovieAndUser(Movie movie, User user);
+	long countByMovie(Movie movie);
 	
-	void deleteByMovieAndUser(Movie movie, User user);
+	/**
+	 * Deletes the like of a user on a movie, in a single statement.
+	 * 
+	 * @param movieId the id of the movie
+	 * @param userId the id of the user
+	 * @return the number of deleted likes, 0 if the user did not like the movie
+	 */
+	@Transactional
+	@Modifying
+	@Query("DELETE FROM MovieLike l WHERE l.movie.id = :movieId AND l.user.id = :userId")
+	int deleteByMovieIdAndUserId(@Param("movieId") Long movieId, @Param("userId") Long userId);
 	
-	long countByMovie(Movie movie);
-}
\ No newline at end of file
+	/**
+	 * Inserts the like of a user on a movie, in a single statement, without loading the movie.
+	 * <p>
+	 * The unique constraint on the movie and user rejects a like that already exists, and the foreign key a movie that does not exist.
+	 * </p>
+	 * 
+	 * @param movieId the id of the movie
+	 * @param userId the id of the user
+	 * @param createdAt the time of the like
+	 * @return the number of inserted likes
+	 */
+	@Transactional
+	@Modifying
+	@Query(value = "INSERT INTO movie_likes (movie_id, user_id, created_at) VALUES (:movieId, :userId, :createdAt)", nativeQuery = true)
+	int insertLike(@Param("movieId") Long movieId, @Param("userId") Long userId, @Param("createdAt") LocalDateTime createdAt);
+	
+	/**
+	 * Counts the likes of every liked movie.
+	 * 
+	 * @return a list of {@code [movieId, likes]} rows
+	 */
+	@Query("SELECT l.movie.id, COUNT(l) FROM MovieLike l GROUP BY l.movie.id")
+	List<Object[]> countLikesByMovie();
+	
+	/**
+	 * Finds the likes created after the given time, without loading the entities.
+	 * 
+	 * @param since the time to start after (exclusive)
+	 * @return a list of {@code [movieId, createdAt]} rows
+	 */
+	@Query("SELECT l.movie.id, l.createdAt FROM MovieLike l WHERE l.createdAt > :since")
+	List<Object[]> findMovieIdsCreatedAfter(@Param("since") LocalDateTime since);
+	
+	/**
+	 * Finds the liked movies of every user, without loading the entities.
+	 * 
+	 * @return a list of {@code [userId, movieId]} rows
+	 */
+	@Query("SELECT l.user.id, l.movie.id FROM MovieLike l")
+	List<Object[]> findUserMovieValues();
+}
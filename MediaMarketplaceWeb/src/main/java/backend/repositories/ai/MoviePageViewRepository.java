@@ -1,23 +1,48 @@
 package backend.repositories.ai;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import backend.entities.Movie;
-import backend.entities.User;
 import backend.entities.ai.MoviePageView;
 
 @Repository
 public interface MoviePageViewRepository extends JpaRepository<MoviePageView, Long> {
-	// Check if a logged-in user has viewed the movie within cooldown
-	boolean existsByMovieAndUserAndViewedAtAfter(Movie movie, User user, LocalDateTime cutoff);
-
-	// Check if an anonymous session has viewed the movie within cooldown
-	boolean existsByMovieAndSessionIdAndViewedAtAfter(Movie movie, String sessionId, LocalDateTime cutoff);
 	
-	Page<MoviePageView> findByViewedAtBefore(LocalDateTime cutoff, Pageable pageable);
+	/**
+	 * Finds the views viewed before the cutoff with an id above the given id, ordered by id, without loading the entities.
+	 * 
+	 * @param afterId the id to start after (exclusive)
+	 * @param cutoff the time the views were viewed before (exclusive)
+	 * @param pageable the chunk size
+	 * @return a list of {@code [id, movieId, userId]} rows, the user id is null for anonymous views
+	 */
+	@Query("SELECT v.id, v.movie.id, v.user.id FROM MoviePageView v WHERE v.id > :afterId AND v.viewedAt < :cutoff ORDER BY v.id")
+	List<Object[]> findAggregationValuesAfter(@Param("afterId") Long afterId, @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+	
+	/**
+	 * Deletes the views viewed before the cutoff with an id in the range.
+	 * 
+	 * @param afterId the start of the range (exclusive)
+	 * @param toId the end of the range (inclusive)
+	 * @param cutoff the time the views were viewed before (exclusive)
+	 * @return the number of deleted views
+	 */
+	@Modifying
+	@Query("DELETE FROM MoviePageView v WHERE v.id > :afterId AND v.id <= :toId AND v.viewedAt < :cutoff")
+	int deleteRange(@Param("afterId") Long afterId, @Param("toId") Long toId, @Param("cutoff") LocalDateTime cutoff);
+	
+	/**
+	 * Finds the views that are not aggregated yet, without loading the entities.
+	 * 
+	 * @return a list of {@code [movieId, userId, viewedAt]} rows, the user id is null for anonymous views
+	 */
+	@Query("SELECT v.movie.id, v.user.id, v.viewedAt FROM MoviePageView v")
+	List<Object[]> findTrendingValues();
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package backend.search;
+
+/**
+ * The cached result of a movie search: the ids of the movies of the page, and the total of the search.
+ *
+ * @param movieIds the ids of the movies of the page, in order.
+ * @param total the number of movies that match the search.
+ */
+public record CachedMovieSearch(long[] movieIds, long total) {
+
+	public boolean contains(long movieId) {
+		for(long id : movieIds) {
+			if(id == movieId)
+				return true;
+		}
+		return false;
+	}
+}
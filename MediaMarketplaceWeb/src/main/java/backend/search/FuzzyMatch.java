@@ -0,0 +1,126 @@
+package backend.search;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Java counterpart of the {@code levenshtein_ratio} MySQL stored function (mysql-levenshtein-ratio.sql).
+ * <p>
+ * The stored function compares the characters with the column collation, which is case and accent
+ * insensitive, so the strings are normalized with {@link #normalize(String)} before comparing them.
+ * The ratio is {@code levenshtein(s1, s2) / max(len(s1), len(s2)) * 100} rounded to an integer,
+ * so {@code 0} is an exact match and {@code 100} has nothing in common.
+ * </p>
+ */
+public class FuzzyMatch {
+
+	/**
+	 * The ratio threshold used by the searches, names with a ratio below it are a match.
+	 */
+	public static final int RATIO_THRESHOLD = 70;
+
+	/**
+	 * Normalizes a name for fuzzy comparison: lower case, without accents and with single spaces.
+	 *
+	 * @param name the name to normalize.
+	 * @return the normalized name as a char array, empty if the name is null.
+	 */
+	public static char[] normalize(String name) {
+		if(name == null)
+			return new char[0];
+		String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+		char[] result = new char[decomposed.length()];
+		int length = 0;
+		boolean lastSpace = true;
+		for(int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if(Character.getType(c) == Character.NON_SPACING_MARK)
+				continue;
+			if(Character.isWhitespace(c)) {
+				if(!lastSpace) {
+					result[length++] = ' ';
+					lastSpace = true;
+				}
+				continue;
+			}
+			result[length++] = Character.toLowerCase(c);
+			lastSpace = false;
+		}
+		if(length > 0 && result[length - 1] == ' ')
+			length--;
+		return length == result.length ? result : Arrays.copyOf(result, length);
+	}
+
+	/**
+	 * Calculates the Levenshtein ratio of two normalized names.
+	 *
+	 * @param a the first normalized name.
+	 * @param b the second normalized name.
+	 * @param row a scratch buffer of at least {@code b.length + 1} ints, it lets callers scoring
+	 * many names reuse one buffer instead of allocating per comparison.
+	 * @return the ratio between 0 (equal) and 100.
+	 */
+	public static int ratio(char[] a, char[] b, int[] row) {
+		int max = Math.max(a.length, b.length);
+		if(max == 0)
+			return 0;
+		int distance = distance(a, b, row);
+		return (int) Math.round(distance * 100.0 / max);
+	}
+
+	public static int ratio(char[] a, char[] b) {
+		return ratio(a, b, new int[b.length + 1]);
+	}
+
+	/**
+	 * Calculates the Levenshtein distance of two char arrays with a single row of the matrix.
+	 */
+	public static int distance(char[] a, char[] b, int[] row) {
+		return distance(a, b, row, Integer.MAX_VALUE - 1);
+	}
+
+	/**
+	 * Calculates the Levenshtein distance of two char arrays, and stops as soon as it is above a maximum.
+	 *
+	 * @param maxDistance the maximum distance of interest.
+	 * @return the distance, or {@code maxDistance + 1} if it is above the maximum.
+	 */
+	public static int distance(char[] a, char[] b, int[] row, int maxDistance) {
+		int aLength = a.length;
+		int bLength = b.length;
+		if(Math.abs(aLength - bLength) > maxDistance)
+			return maxDistance + 1;
+		if(aLength == 0)
+			return bLength;
+		if(bLength == 0)
+			return aLength;
+		for(int j = 0; j <= bLength; j++)
+			row[j] = j;
+		for(int i = 1; i <= aLength; i++) {
+			char ac = a[i - 1];
+			int diagonal = row[0];
+			row[0] = i;
+			int rowMin = i;
+			for(int j = 1; j <= bLength; j++) {
+				int above = row[j];
+				int cost = ac == b[j - 1] ? 0 : 1;
+				int value = Math.min(Math.min(above + 1, row[j - 1] + 1), diagonal + cost);
+				diagonal = above;
+				row[j] = value;
+				rowMin = Math.min(rowMin, value);
+			}
+			// the distance is at least the minimum of every row
+			if(rowMin > maxDistance)
+				return maxDistance + 1;
+		}
+		return Math.min(row[bLength], maxDistance + 1);
+	}
+
+	/**
+	 * @return the highest distance of two names that has at most the given ratio.
+	 */
+	public static int maxDistance(int ratio, int maxLength) {
+		// round(distance * 100 / maxLength) <= ratio, with the halves rounded up
+		return Math.max(-1, ((2 * ratio + 1) * maxLength - 1) / 200);
+	}
+}
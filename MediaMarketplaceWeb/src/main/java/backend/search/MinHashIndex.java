@@ -0,0 +1,204 @@
+package backend.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import backend.utils.collections.IntList;
+import backend.utils.collections.TopK;
+
+/**
+ * In-memory locality-sensitive hashing index of the movies by the MinHash signatures of their feature sets,
+ * like their genres, keywords and people.
+ * <p>
+ * The signature of a movie keeps, for each of {@code bands * rows} hash functions, the minimum hash of its features.
+ * Two movies have the same value at a position with a probability equal to the Jaccard similarity of their feature
+ * sets. The signature is cut into bands of {@code rows} values, and each band is hashed into a bucket, so two
+ * movies are candidates if they share the bucket of at least one band: likely for similar movies and unlikely
+ * for the others. A query only looks at the buckets of the movie instead of all the movies, and ranks the
+ * candidates by the fraction of equal signature values.
+ * </p>
+ * <p>
+ * The index is safe for concurrent use, queries share a read lock and updates take the write lock.
+ * </p>
+ */
+public class MinHashIndex {
+
+	private final int bands;
+
+	private final int rows;
+
+	/**
+	 * The multipliers and increments of the hash functions, {@code a * feature + b} mixed.
+	 */
+	private final long[] multipliers;
+	private final long[] increments;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<Long, int[]> signatures = new HashMap<>();
+
+	/**
+	 * The movies of every bucket of every band, by the hash of the band.
+	 */
+	private final List<Map<Long, IntList>> buckets;
+
+	/**
+	 * @param bands the number of bands, more bands find less similar movies.
+	 * @param rows the number of signature values of a band, more rows find only the more similar movies.
+	 * @param seed the seed of the hash functions.
+	 */
+	public MinHashIndex(int bands, int rows, long seed) {
+		if(bands <= 0 || rows <= 0)
+			throw new IllegalArgumentException("The bands and rows must be positive");
+		this.bands = bands;
+		this.rows = rows;
+		SplittableRandom random = new SplittableRandom(seed);
+		this.multipliers = new long[bands * rows];
+		this.increments = new long[bands * rows];
+		for(int i = 0; i < multipliers.length; i++) {
+			multipliers[i] = random.nextLong() | 1;
+			increments[i] = random.nextLong();
+		}
+		this.buckets = new ArrayList<>(bands);
+		for(int band = 0; band < bands; band++)
+			buckets.add(new HashMap<>());
+	}
+
+	/**
+	 * Adds a movie, or replaces the features of an indexed movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param features the features of the movie, a movie without features is removed.
+	 */
+	public void put(long movieId, long[] features) {
+		int[] signature = features.length == 0 ? null : signature(features);
+		lock.writeLock().lock();
+		try {
+			removeLocked(movieId);
+			if(signature == null)
+				return;
+			signatures.put(movieId, signature);
+			for(int band = 0; band < bands; band++)
+				buckets.get(band).computeIfAbsent(bandKey(signature, band), k -> new IntList(2)).add(toMovieValue(movieId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long movieId) {
+		lock.writeLock().lock();
+		try {
+			removeLocked(movieId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the movies with the most similar features to a movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param limit the maximum number of movies.
+	 * @param maxCandidates the maximum number of candidates compared, which bounds the cost of the movies
+	 * with very common features.
+	 * @return the ids of the similar movies, the most similar first, empty if the movie is not indexed.
+	 */
+	public long[] findSimilar(long movieId, int limit, int maxCandidates) {
+		lock.readLock().lock();
+		try {
+			int[] signature = signatures.get(movieId);
+			if(signature == null)
+				return new long[0];
+			int movieValue = toMovieValue(movieId);
+			IntList candidates = new IntList();
+			for(int band = 0; band < bands && candidates.size() < maxCandidates; band++) {
+				IntList bucket = buckets.get(band).get(bandKey(signature, band));
+				for(int i = 0; i < bucket.size() && candidates.size() < maxCandidates; i++) {
+					if(bucket.get(i) != movieValue)
+						candidates.add(bucket.get(i));
+				}
+			}
+			// a candidate found in several bands is compared once
+			candidates.sortDistinct();
+			TopK top = new TopK(Math.min(limit, candidates.size()));
+			for(int i = 0; i < candidates.size(); i++) {
+				long candidateId = candidates.get(i);
+				top.offer(candidateId, similarity(signature, signatures.get(candidateId)));
+			}
+			return top.ids();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of indexed movies.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return signatures.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the estimated Jaccard similarity of two signatures, the fraction of their equal values.
+	 */
+	static double similarity(int[] signature, int[] other) {
+		int equal = 0;
+		for(int i = 0; i < signature.length; i++) {
+			if(signature[i] == other[i])
+				equal++;
+		}
+		return (double) equal / signature.length;
+	}
+
+	int[] signature(long[] features) {
+		int[] signature = new int[multipliers.length];
+		for(int i = 0; i < signature.length; i++) {
+			int min = Integer.MAX_VALUE;
+			for(long feature : features) {
+				int hash = mix(feature * multipliers[i] + increments[i]);
+				if(hash < min)
+					min = hash;
+			}
+			signature[i] = min;
+		}
+		return signature;
+	}
+
+	private void removeLocked(long movieId) {
+		int[] signature = signatures.remove(movieId);
+		if(signature == null)
+			return;
+		for(int band = 0; band < bands; band++) {
+			long key = bandKey(signature, band);
+			IntList bucket = buckets.get(band).get(key);
+			if(bucket != null && bucket.removeUnordered(toMovieValue(movieId)) && bucket.isEmpty())
+				buckets.get(band).remove(key);
+		}
+	}
+
+	private long bandKey(int[] signature, int band) {
+		long key = band;
+		for(int i = band * rows; i < (band + 1) * rows; i++)
+			key = key * 0x9E3779B97F4A7C15L + signature[i];
+		return key;
+	}
+
+	private static int mix(long value) {
+		value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+		value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return (int) (value ^ (value >>> 33));
+	}
+
+	private static int toMovieValue(long movieId) {
+		return Math.toIntExact(movieId);
+	}
+}
@@ -0,0 +1,16 @@
+package backend.search;
+
+import java.util.Map;
+
+/**
+ * The facet counts of a set of movies, computed by {@link MovieFacetIndex#count(backend.utils.collections.CompressedBitmap, int)}.
+ *
+ * @param total the number of movies.
+ * @param genres the number of movies of every genre id, the most frequent first.
+ * @param keywords the number of movies of every keyword id, the most frequent first.
+ * @param years the number of movies of every release year bucket (the first year of the decade), in ascending order.
+ * @param ratings the number of movies of every rating bucket (the lowest rating of the bucket), in ascending order.
+ */
+public record MovieFacetCounts(int total, Map<Long, Integer> genres, Map<Long, Integer> keywords,
+		Map<Integer, Integer> years, Map<Integer, Integer> ratings) {
+}
@@ -0,0 +1,247 @@
+package backend.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import backend.utils.collections.CompressedBitmap;
+
+/**
+ * In-memory facet index of the movies, used to count the genres, keywords, release years and ratings
+ * of a movie search without loading the {@code Movie} entities.
+ * <p>
+ * Every facet value (a genre, a keyword, a year bucket or a rating bucket) keeps a {@link CompressedBitmap}
+ * of the ids of its movies. The counts of a search are the sizes of the intersections of these bitmaps
+ * with the bitmap of the movies matching the search.
+ * </p>
+ * <p>
+ * The index is safe for concurrent use, counting shares a read lock and updates take the write lock.
+ * </p>
+ */
+public class MovieFacetIndex {
+
+	/**
+	 * The size in years of a release year bucket, the buckets are decades.
+	 */
+	public static final int YEAR_BUCKET_SIZE = 10;
+
+	/**
+	 * The size of a rating bucket, the ratings are between 0 and 100.
+	 */
+	public static final int RATING_BUCKET_SIZE = 10;
+
+	private static final int MAX_RATING_BUCKET = 100 - RATING_BUCKET_SIZE;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private CompressedBitmap movies = new CompressedBitmap();
+
+	private final Map<Long, CompressedBitmap> genres = new HashMap<>();
+
+	private final Map<Long, CompressedBitmap> keywords = new HashMap<>();
+
+	private final Map<Integer, CompressedBitmap> yearBuckets = new HashMap<>();
+
+	private final Map<Integer, CompressedBitmap> ratingBuckets = new HashMap<>();
+
+	private final Map<Integer, MovieFacets> movieFacets = new HashMap<>();
+
+	/**
+	 * The facet values of a single movie, kept so an update can remove the movie from its old values.
+	 */
+	private record MovieFacets(long[] genreIds, long[] keywordIds, Integer yearBucket, Integer ratingBucket) {
+	}
+
+	/**
+	 * Adds or replaces the facet values of a movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param genreIds the ids of the genres of the movie.
+	 * @param keywordIds the ids of the keywords of the movie.
+	 * @param year the release year of the movie, or null.
+	 * @param averageRating the average rating of the movie (0 to 100), or null if it has no ratings.
+	 */
+	public void put(long movieId, long[] genreIds, long[] keywordIds, Integer year, Double averageRating) {
+		int movie = toBitmapValue(movieId);
+		MovieFacets facets = new MovieFacets(genreIds, keywordIds, yearBucket(year), ratingBucket(averageRating));
+		lock.writeLock().lock();
+		try {
+			removeFacets(movie);
+			movies.add(movie);
+			for(long genreId : genreIds)
+				genres.computeIfAbsent(genreId, key -> new CompressedBitmap()).add(movie);
+			for(long keywordId : keywordIds)
+				keywords.computeIfAbsent(keywordId, key -> new CompressedBitmap()).add(movie);
+			if(facets.yearBucket() != null)
+				yearBuckets.computeIfAbsent(facets.yearBucket(), key -> new CompressedBitmap()).add(movie);
+			if(facets.ratingBucket() != null)
+				ratingBuckets.computeIfAbsent(facets.ratingBucket(), key -> new CompressedBitmap()).add(movie);
+			movieFacets.put(movie, facets);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Updates the rating of an indexed movie, used when a review changes the average rating.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param averageRating the new average rating, or null if it has no ratings.
+	 */
+	public void updateRating(long movieId, Double averageRating) {
+		int movie = toBitmapValue(movieId);
+		Integer ratingBucket = ratingBucket(averageRating);
+		lock.writeLock().lock();
+		try {
+			MovieFacets facets = movieFacets.get(movie);
+			if(facets == null || Objects.equals(facets.ratingBucket(), ratingBucket))
+				return;
+			if(facets.ratingBucket() != null)
+				removeFromBitmap(ratingBuckets, facets.ratingBucket(), movie);
+			if(ratingBucket != null)
+				ratingBuckets.computeIfAbsent(ratingBucket, key -> new CompressedBitmap()).add(movie);
+			movieFacets.put(movie, new MovieFacets(facets.genreIds(), facets.keywordIds(), facets.yearBucket(), ratingBucket));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long movieId) {
+		lock.writeLock().lock();
+		try {
+			removeFacets(toBitmapValue(movieId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			movies = new CompressedBitmap();
+			genres.clear();
+			keywords.clear();
+			yearBuckets.clear();
+			ratingBuckets.clear();
+			movieFacets.clear();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of indexed movies.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return movieFacets.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts the facet values of a set of movies.
+	 *
+	 * @param movieIds the ids of the movies to count, or null to count all the movies.
+	 * @param maxKeywords the maximum number of keywords to return, the most frequent first.
+	 * @return the facet counts, only the values with at least one movie are included.
+	 */
+	public MovieFacetCounts count(CompressedBitmap movieIds, int maxKeywords) {
+		lock.readLock().lock();
+		try {
+			CompressedBitmap candidates = movieIds == null ? movies : movieIds;
+			int total = movieIds == null ? movies.cardinality() : movies.andCardinality(movieIds);
+			Map<Long, Integer> genreCounts = sortByCount(countValues(genres, candidates, movieIds == null), Integer.MAX_VALUE);
+			Map<Long, Integer> keywordCounts;
+			if(movieIds != null && movieIds.cardinality() < keywords.size()) {
+				// fewer movies than keywords, so walking the keywords of the movies is cheaper
+				// than intersecting every keyword bitmap
+				Map<Long, Integer> counts = new HashMap<>();
+				candidates.forEach(movie -> {
+					MovieFacets facets = movieFacets.get(movie);
+					if(facets != null) {
+						for(long keywordId : facets.keywordIds())
+							counts.merge(keywordId, 1, Integer::sum);
+					}
+				});
+				keywordCounts = sortByCount(counts, maxKeywords);
+			}
+			else {
+				keywordCounts = sortByCount(countValues(keywords, candidates, movieIds == null), maxKeywords);
+			}
+			Map<Integer, Integer> yearCounts = new TreeMap<>(countValues(yearBuckets, candidates, movieIds == null));
+			Map<Integer, Integer> ratingCounts = new TreeMap<>(countValues(ratingBuckets, candidates, movieIds == null));
+			return new MovieFacetCounts(total, genreCounts, keywordCounts, yearCounts, ratingCounts);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static <K> Map<K, Integer> countValues(Map<K, CompressedBitmap> bitmaps, CompressedBitmap candidates, boolean allMovies) {
+		Map<K, Integer> counts = new HashMap<>();
+		for(Map.Entry<K, CompressedBitmap> entry : bitmaps.entrySet()) {
+			int count = allMovies ? entry.getValue().cardinality() : entry.getValue().andCardinality(candidates);
+			if(count > 0)
+				counts.put(entry.getKey(), count);
+		}
+		return counts;
+	}
+
+	private static <K extends Comparable<K>> Map<K, Integer> sortByCount(Map<K, Integer> counts, int limit) {
+		List<Map.Entry<K, Integer>> entries = new ArrayList<>(counts.entrySet());
+		entries.sort(Map.Entry.<K, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+		Map<K, Integer> sorted = new LinkedHashMap<>();
+		for(Map.Entry<K, Integer> entry : entries) {
+			if(sorted.size() == limit)
+				break;
+			sorted.put(entry.getKey(), entry.getValue());
+		}
+		return sorted;
+	}
+
+	private void removeFacets(int movie) {
+		MovieFacets facets = movieFacets.remove(movie);
+		if(facets == null)
+			return;
+		movies.remove(movie);
+		for(long genreId : facets.genreIds())
+			removeFromBitmap(genres, genreId, movie);
+		for(long keywordId : facets.keywordIds())
+			removeFromBitmap(keywords, keywordId, movie);
+		if(facets.yearBucket() != null)
+			removeFromBitmap(yearBuckets, facets.yearBucket(), movie);
+		if(facets.ratingBucket() != null)
+			removeFromBitmap(ratingBuckets, facets.ratingBucket(), movie);
+	}
+
+	private static <K> void removeFromBitmap(Map<K, CompressedBitmap> bitmaps, K key, int movie) {
+		CompressedBitmap bitmap = bitmaps.get(key);
+		if(bitmap != null && bitmap.remove(movie) && bitmap.isEmpty())
+			bitmaps.remove(key);
+	}
+
+	private static Integer yearBucket(Integer year) {
+		return year == null ? null : Math.floorDiv(year, YEAR_BUCKET_SIZE) * YEAR_BUCKET_SIZE;
+	}
+
+	private static Integer ratingBucket(Double averageRating) {
+		if(averageRating == null)
+			return null;
+		int bucket = (int) Math.floor(averageRating / RATING_BUCKET_SIZE) * RATING_BUCKET_SIZE;
+		return Math.max(0, Math.min(bucket, MAX_RATING_BUCKET));
+	}
+
+	/**
+	 * Converts a movie id to a bitmap value, the bitmaps hold ints.
+	 */
+	public static int toBitmapValue(long movieId) {
+		return Math.toIntExact(movieId);
+	}
+}
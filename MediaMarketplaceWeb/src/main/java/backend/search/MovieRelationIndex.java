@@ -0,0 +1,189 @@
+package backend.search;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import backend.utils.collections.IntList;
+
+/**
+ * In-memory inverted index from the genres, actors and directors to their movies.
+ * <p>
+ * Every genre, and every person as an actor or as a director, keeps a posting list: the sorted ids of its
+ * movies. A search that requires several of them (all the genres, all the actors and all the directors)
+ * intersects the posting lists with {@link PostingLists#intersect(int[][], int[])} instead of joining and
+ * grouping the relation tables in the database.
+ * </p>
+ * <p>
+ * The index is safe for concurrent use, searches share a read lock and updates take the write lock.
+ * </p>
+ */
+public class MovieRelationIndex {
+
+	/**
+	 * The relations of a movie that are indexed.
+	 */
+	public enum Relation {
+
+		GENRE,
+
+		ACTOR,
+
+		DIRECTOR
+	}
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<Relation, Map<Long, IntList>> postings = new EnumMap<>(Relation.class);
+
+	public MovieRelationIndex() {
+		for(Relation relation : Relation.values())
+			postings.put(relation, new HashMap<>());
+	}
+
+	/**
+	 * Adds a movie to the posting list of a genre or person.
+	 *
+	 * @param relation the relation.
+	 * @param key the id of the genre or person.
+	 * @param movieId the id of the movie.
+	 */
+	public void add(Relation relation, long key, long movieId) {
+		lock.writeLock().lock();
+		try {
+			postings.get(relation).computeIfAbsent(key, k -> new IntList(4)).insertSorted(toMovieValue(movieId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes a movie from the posting list of a genre or person.
+	 *
+	 * @param relation the relation.
+	 * @param key the id of the genre or person.
+	 * @param movieId the id of the movie.
+	 */
+	public void remove(Relation relation, long key, long movieId) {
+		lock.writeLock().lock();
+		try {
+			Map<Long, IntList> relationPostings = postings.get(relation);
+			IntList posting = relationPostings.get(key);
+			if(posting != null && posting.removeSorted(toMovieValue(movieId)) && posting.isEmpty())
+				relationPostings.remove(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes the posting list of a genre or person, used when it is removed.
+	 */
+	public void removeKey(Relation relation, long key) {
+		lock.writeLock().lock();
+		try {
+			postings.get(relation).remove(key);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Replaces the genres or people of a movie.
+	 * <p>
+	 * The movie is removed from every posting list of the relation first, so this is meant for the genres,
+	 * that are few, and not for the people.
+	 * </p>
+	 *
+	 * @param relation the relation.
+	 * @param movieId the id of the movie.
+	 * @param keys the ids of the new genres or people of the movie.
+	 */
+	public void replaceMovie(Relation relation, long movieId, long[] keys) {
+		int movie = toMovieValue(movieId);
+		lock.writeLock().lock();
+		try {
+			Map<Long, IntList> relationPostings = postings.get(relation);
+			relationPostings.values().removeIf(posting -> posting.removeSorted(movie) && posting.isEmpty());
+			for(long key : keys)
+				relationPostings.computeIfAbsent(key, k -> new IntList(4)).insertSorted(movie);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Loads a batch of relations, without keeping the posting lists sorted.
+	 * <p>
+	 * Used while loading the index, {@link #finishLoad()} must be called after the last batch.
+	 * </p>
+	 *
+	 * @param relation the relation.
+	 * @param keys the ids of the genres or people.
+	 * @param movieIds the ids of the movies, at the same positions as their keys.
+	 */
+	public void load(Relation relation, long[] keys, long[] movieIds) {
+		lock.writeLock().lock();
+		try {
+			Map<Long, IntList> relationPostings = postings.get(relation);
+			for(int i = 0; i < keys.length; i++)
+				relationPostings.computeIfAbsent(keys[i], k -> new IntList(4)).add(toMovieValue(movieIds[i]));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sorts the posting lists after loading.
+	 */
+	public void finishLoad() {
+		lock.writeLock().lock();
+		try {
+			for(Map<Long, IntList> relationPostings : postings.values()) {
+				for(IntList posting : relationPostings.values()) {
+					posting.sortDistinct();
+					posting.trim();
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the movies that have all the given genres, actors and directors.
+	 *
+	 * @param criteria the required ids of every relation, a relation without ids is not required.
+	 * @return the ids of the matching movies in ascending order, empty if one of the ids has no movies.
+	 */
+	public int[] findMovies(Map<Relation, List<Long>> criteria) {
+		lock.readLock().lock();
+		try {
+			int count = 0;
+			for(List<Long> keys : criteria.values())
+				count += keys.size();
+			int[][] lists = new int[count][];
+			int[] sizes = new int[count];
+			int index = 0;
+			for(Map.Entry<Relation, List<Long>> entry : criteria.entrySet()) {
+				Map<Long, IntList> relationPostings = postings.get(entry.getKey());
+				for(Long key : entry.getValue()) {
+					IntList posting = relationPostings.get(key);
+					if(posting == null)
+						return new int[0];
+					lists[index] = posting.rawArray();
+					sizes[index++] = posting.size();
+				}
+			}
+			return PostingLists.intersect(lists, sizes);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private static int toMovieValue(long movieId) {
+		return Math.toIntExact(movieId);
+	}
+}
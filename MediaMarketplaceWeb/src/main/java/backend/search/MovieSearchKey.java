@@ -0,0 +1,114 @@
+package backend.search;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import backend.dtos.search.MovieFilter;
+import backend.sort.entities.MovieSort;
+
+/**
+ * The canonical key of a cached movie search: the filter and the requested page.
+ * <p>
+ * Filters that always give the same results get the same key: the name is normalized like the name index
+ * does, the text is normalized the same way, and the genre, actor and director ids are sorted without duplicates.
+ * </p>
+ *
+ * @param name the normalized name, or null.
+ * @param text the normalized searched text, or null.
+ * @param genres the sorted required genre ids.
+ * @param actors the sorted required actor ids.
+ * @param directors the sorted required director ids.
+ * @param yearAbove the minimum release year, or null.
+ * @param yearBelow the maximum release year, or null.
+ * @param ratingAbove the exclusive minimum rating, or null.
+ * @param ratingBelow the exclusive maximum rating, or null.
+ * @param page the page number.
+ * @param size the page size.
+ * @param sort the sort of the page.
+ */
+public record MovieSearchKey(String name, String text, List<Long> genres, List<Long> actors, List<Long> directors,
+		Integer yearAbove, Integer yearBelow, Double ratingAbove, Double ratingBelow, int page, int size, Sort sort) {
+
+	/**
+	 * Creates the key of a search.
+	 *
+	 * @param movieFilter the search filter, may be null.
+	 * @param pageable the requested page, must be paged.
+	 * @return the key.
+	 */
+	public static MovieSearchKey of(MovieFilter movieFilter, Pageable pageable) {
+		MovieFilter filter = movieFilter == null ? new MovieFilter() : movieFilter;
+		String name = filter.getName() == null ? null : new String(FuzzyMatch.normalize(filter.getName()));
+		String text = filter.getText() == null ? null : new String(FuzzyMatch.normalize(filter.getText()));
+		return new MovieSearchKey(name, text, canonicalIds(filter.getGenres()), canonicalIds(filter.getActors()),
+				canonicalIds(filter.getDirectors()), filter.getYearAbove(), filter.getYearBelow(),
+				filter.getRatingAbove(), filter.getRatingBelow(), pageable.getPageNumber(), pageable.getPageSize(),
+				pageable.getSort());
+	}
+
+	/**
+	 * A null genre list is not the same as an empty one: the search requires genres only if the list is not
+	 * null, and then an empty list matches no movie. The actor and director lists are ignored when empty.
+	 */
+	private static List<Long> canonicalIds(List<Long> ids) {
+		return ids == null ? null : ids.stream().distinct().sorted().toList();
+	}
+
+	/**
+	 * @return {@code true} if the results depend on the ratings of the movies, by a rating filter or sort.
+	 */
+	public boolean dependsOnRating() {
+		if(ratingAbove != null || ratingBelow != null)
+			return true;
+		return sort.stream().anyMatch(order -> MovieSort.fromValue(order.getProperty()) == MovieSort.RATING);
+	}
+
+	/**
+	 * Checks if a movie may match the filter of the search.
+	 * <p>
+	 * The genres, release year and rating are checked exactly, the name, text, actors and directors are not
+	 * known in memory, so they are assumed to match.
+	 * </p>
+	 *
+	 * @param values the search values of the movie.
+	 * @return {@code false} only if the movie certainly does not match.
+	 */
+	public boolean mayMatch(MovieSearchValues values) {
+		if(!mayMatchExceptRating(values))
+			return false;
+		if(ratingAbove != null && (values.averageRating() == null || values.averageRating() <= ratingAbove))
+			return false;
+		if(ratingBelow != null && (values.averageRating() == null || values.averageRating() >= ratingBelow))
+			return false;
+		return true;
+	}
+
+	/**
+	 * Checks if a movie may match the filter of the search, whatever its rating is.
+	 *
+	 * @param values the search values of the movie.
+	 * @return {@code false} only if the movie certainly does not match.
+	 */
+	public boolean mayMatchExceptRating(MovieSearchValues values) {
+		if(genres != null) {
+			for(Long genreId : genres) {
+				if(!values.hasGenre(genreId))
+					return false;
+			}
+		}
+		if(yearAbove != null && (values.year() == null || values.year() < yearAbove))
+			return false;
+		if(yearBelow != null && (values.year() == null || values.year() > yearBelow))
+			return false;
+		return true;
+	}
+
+	/**
+	 * @return {@code true} if the search requires the person as an actor or as a director.
+	 */
+	public boolean requiresPerson(long personId) {
+		return (actors != null && actors.contains(personId)) || (directors != null && directors.contains(personId));
+	}
+}
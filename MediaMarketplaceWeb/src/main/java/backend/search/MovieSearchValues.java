@@ -0,0 +1,23 @@
+package backend.search;
+
+import java.util.Arrays;
+
+/**
+ * The values of a movie that the cached searches are checked against when the movie changes.
+ *
+ * @param movieId the id of the movie.
+ * @param genreIds the sorted ids of the genres of the movie.
+ * @param year the release year, or null.
+ * @param averageRating the average rating, or null if the movie has no ratings.
+ */
+public record MovieSearchValues(long movieId, long[] genreIds, Integer year, Double averageRating) {
+
+	public MovieSearchValues {
+		genreIds = genreIds.clone();
+		Arrays.sort(genreIds);
+	}
+
+	public boolean hasGenre(long genreId) {
+		return Arrays.binarySearch(genreIds, genreId) >= 0;
+	}
+}
@@ -0,0 +1,422 @@
+package backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+import backend.search.MovieTokens.FieldKind;
+import backend.utils.collections.IntList;
+import backend.utils.collections.LongIntHashMap;
+
+/**
+ * In-memory index of the pre-tokenized names of the movies ({@link MovieTokens}), searched by any name:
+ * the title, an actor, a role or a director.
+ * <p>
+ * The names share a {@link TokenDictionary}. A search first matches every distinct token against the query,
+ * then collects the movies of the matching tokens from their posting lists, and scores only those movies by
+ * looking up the matches of their token ids, without creating any object. The token scan and the scoring
+ * are split into ranges that run in parallel on the pool given to the index.
+ * </p>
+ * <p>
+ * The index is safe for concurrent use. Every movie has a slot, and the posting list of a token holds the
+ * sorted slots of its movies. The changes are synchronized, and a changed posting list is replaced by a
+ * changed copy, so a search reads the lists without a lock and a change only copies the lists of the tokens
+ * it adds or removes. The slot of a removed movie is left empty and not reused.
+ * </p>
+ */
+public class MovieTokenIndex {
+
+	/**
+	 * The number of movies or tokens below which a range is scanned without splitting it.
+	 */
+	static final int SPLIT_THRESHOLD = 4096;
+
+	/**
+	 * The maximum number of ids returned by {@link #search(String)}.
+	 */
+	public static final int MAX_RESULTS = 1000;
+
+	/**
+	 * Score and id are packed in a single long, the id takes the low bits.
+	 */
+	private static final int ID_BITS = 40;
+
+	private static final long ID_MASK = (1L << ID_BITS) - 1;
+
+	private static final int MAX_SCORE = (1 << 62 - ID_BITS) - 1;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final TokenDictionary dictionary = new TokenDictionary();
+
+	private final ForkJoinPool pool;
+
+	private final Map<Long, MovieTokens> movies = new ConcurrentHashMap<>();
+
+	/**
+	 * The slot of every movie, guarded by this index.
+	 */
+	private final LongIntHashMap slotsById = new LongIntHashMap(-1);
+
+	/**
+	 * The number of slots taken so far, guarded by this index.
+	 */
+	private int slotCount;
+
+	/**
+	 * The movie of every slot, null once it is removed. Replaced by a larger copy when it is full.
+	 */
+	private volatile AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+	/**
+	 * The sorted slots of the movies of every token id, null if no movie has the token. Replaced by a larger
+	 * copy when the dictionary outgrows it.
+	 */
+	private volatile AtomicReferenceArray<int[]> postings = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+	private record Entry(long movieId, MovieTokens tokens) {
+	}
+
+	/**
+	 * @param pool the pool of the parallel scans of the searches.
+	 */
+	public MovieTokenIndex(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return a builder of the tokens of a movie of this index.
+	 */
+	public MovieTokens.Builder newTokens() {
+		return new MovieTokens.Builder(dictionary);
+	}
+
+	public void put(long movieId, MovieTokens tokens) {
+		putAll(new long[] { movieId }, new MovieTokens[] { tokens });
+	}
+
+	/**
+	 * Adds or replaces the tokens of a batch of movies, every posting list is copied once for the batch.
+	 *
+	 * @param movieIds the distinct ids of the movies.
+	 * @param tokens the tokens of the movies, in the order of the ids.
+	 */
+	public synchronized void putAll(long[] movieIds, MovieTokens[] tokens) {
+		Map<Integer, IntList> removedSlots = new HashMap<>();
+		Map<Integer, IntList> addedSlots = new HashMap<>();
+		for(int i = 0; i < movieIds.length; i++) {
+			int slot = slotsById.get(movieIds[i]);
+			int[] oldTokenIds = new int[0];
+			if(slot < 0) {
+				slot = newSlot();
+				slotsById.put(movieIds[i], slot);
+			} else {
+				oldTokenIds = entries.get(slot).tokens().distinctTokenIds();
+			}
+			addDifference(oldTokenIds, tokens[i].distinctTokenIds(), slot, removedSlots, addedSlots);
+			entries.set(slot, new Entry(movieIds[i], tokens[i]));
+			movies.put(movieIds[i], tokens[i]);
+		}
+		updatePostings(removedSlots, addedSlots);
+	}
+
+	public MovieTokens get(long movieId) {
+		return movies.get(movieId);
+	}
+
+	public synchronized void remove(long movieId) {
+		int slot = slotsById.remove(movieId);
+		if(slot < 0)
+			return;
+		Map<Integer, IntList> removedSlots = new HashMap<>();
+		addDifference(entries.get(slot).tokens().distinctTokenIds(), new int[0], slot, removedSlots, Map.of());
+		entries.set(slot, null);
+		movies.remove(movieId);
+		updatePostings(removedSlots, Map.of());
+	}
+
+	/**
+	 * Changes the tokens of a movie, if it is in the index.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param change the change of the tokens.
+	 */
+	public synchronized void update(long movieId, UnaryOperator<MovieTokens> change) {
+		MovieTokens tokens = movies.get(movieId);
+		if(tokens != null)
+			put(movieId, change.apply(tokens));
+	}
+
+	/**
+	 * Removes the names of a removed person from all the movies.
+	 */
+	public synchronized void removePerson(long personId) {
+		Set<FieldKind> personKinds = EnumSet.complementOf(EnumSet.of(FieldKind.TITLE));
+		List<Long> changedIds = new ArrayList<>();
+		List<MovieTokens> changedTokens = new ArrayList<>();
+		for(Map.Entry<Long, MovieTokens> entry : movies.entrySet()) {
+			if(entry.getValue().hasPerson(personId)) {
+				changedIds.add(entry.getKey());
+				changedTokens.add(entry.getValue().withoutPerson(personId, personKinds));
+			}
+		}
+		if(!changedIds.isEmpty())
+			putAll(changedIds.stream().mapToLong(Long::longValue).toArray(), changedTokens.toArray(new MovieTokens[0]));
+	}
+
+	public int size() {
+		return movies.size();
+	}
+
+	/**
+	 * Finds the best {@link #MAX_RESULTS} movies with a name that matches the query.
+	 *
+	 * @param query the query.
+	 * @return the ids of the matching movies, the best score first and then by id.
+	 */
+	public long[] search(String query) {
+		return search(query, MAX_RESULTS);
+	}
+
+	/**
+	 * Finds the movies with a name that matches the query.
+	 *
+	 * @param query the query.
+	 * @param maxResults the maximum number of ids, every range of the scoring keeps at most as many.
+	 * @return the ids of the best matching movies, the best score first and then by id.
+	 */
+	public long[] search(String query, int maxResults) {
+		TokenMatcher.Tokens queryTokens = TokenMatcher.tokenize(query);
+		if(queryTokens.size() == 0)
+			return new long[0];
+		TokenDictionary.View view = dictionary.view();
+		long[] tokenMatches = new long[view.size()];
+		pool.invoke(new MatchTask(view, queryTokens, 0, view.size(), tokenMatches));
+		int[] candidates = findCandidates(tokenMatches);
+		// read after the posting lists, so it has all their slots
+		AtomicReferenceArray<Entry> currentEntries = entries;
+		long[] matches = pool.invoke(new ScoreTask(currentEntries, candidates, 0, candidates.length, tokenMatches, maxResults));
+		Arrays.sort(matches);
+		if(matches.length > maxResults)
+			matches = Arrays.copyOf(matches, maxResults);
+		for(int i = 0; i < matches.length; i++)
+			matches[i] &= ID_MASK;
+		return matches;
+	}
+
+	/**
+	 * @return the distinct slots of the movies that have one of the matching tokens.
+	 */
+	private int[] findCandidates(long[] tokenMatches) {
+		AtomicReferenceArray<int[]> currentPostings = postings;
+		int tokens = Math.min(tokenMatches.length, currentPostings.length());
+		BitSet seen = new BitSet();
+		IntList candidates = new IntList();
+		for(int t = 0; t < tokens; t++) {
+			if(tokenMatches[t] == 0)
+				continue;
+			int[] slots = currentPostings.get(t);
+			if(slots == null)
+				continue;
+			for(int slot : slots) {
+				if(!seen.get(slot)) {
+					seen.set(slot);
+					candidates.add(slot);
+				}
+			}
+		}
+		return candidates.toArray();
+	}
+
+	private int newSlot() {
+		AtomicReferenceArray<Entry> currentEntries = entries;
+		if(slotCount == currentEntries.length())
+			entries = copyOf(currentEntries, currentEntries.length() * 2);
+		return slotCount++;
+	}
+
+	/**
+	 * Adds the slot to the removed slots of the tokens it loses, and to the added slots of the tokens it gains.
+	 */
+	private static void addDifference(int[] oldTokenIds, int[] newTokenIds, int slot, Map<Integer, IntList> removedSlots,
+			Map<Integer, IntList> addedSlots) {
+		int o = 0;
+		int n = 0;
+		while(o < oldTokenIds.length || n < newTokenIds.length) {
+			if(n == newTokenIds.length || (o < oldTokenIds.length && oldTokenIds[o] < newTokenIds[n])) {
+				removedSlots.computeIfAbsent(oldTokenIds[o++], key -> new IntList()).add(slot);
+			} else if(o == oldTokenIds.length || newTokenIds[n] < oldTokenIds[o]) {
+				addedSlots.computeIfAbsent(newTokenIds[n++], key -> new IntList()).add(slot);
+			} else {
+				o++;
+				n++;
+			}
+		}
+	}
+
+	/**
+	 * Replaces the posting lists of the changed tokens with changed copies.
+	 */
+	private void updatePostings(Map<Integer, IntList> removedSlots, Map<Integer, IntList> addedSlots) {
+		Set<Integer> tokenIds = new HashSet<>(removedSlots.keySet());
+		tokenIds.addAll(addedSlots.keySet());
+		for(int tokenId : tokenIds) {
+			AtomicReferenceArray<int[]> currentPostings = postings;
+			if(tokenId >= currentPostings.length())
+				postings = currentPostings = copyOf(currentPostings, Math.max(currentPostings.length() * 2, tokenId + 1));
+			IntList removed = removedSlots.getOrDefault(tokenId, new IntList(0));
+			IntList added = addedSlots.getOrDefault(tokenId, new IntList(0));
+			removed.sortDistinct();
+			added.sortDistinct();
+			int[] slots = merge(currentPostings.get(tokenId), removed, added);
+			currentPostings.set(tokenId, slots.length == 0 ? null : slots);
+		}
+	}
+
+	/**
+	 * @return a new sorted list of the slots, without the removed slots and with the added ones.
+	 */
+	static int[] merge(int[] slots, IntList removed, IntList added) {
+		if(slots == null)
+			slots = new int[0];
+		int[] merged = new int[slots.length + added.size()];
+		int size = 0;
+		int r = 0;
+		int a = 0;
+		for(int slot : slots) {
+			while(a < added.size() && added.get(a) < slot)
+				merged[size++] = added.get(a++);
+			if(a < added.size() && added.get(a) == slot)
+				a++;
+			while(r < removed.size() && removed.get(r) < slot)
+				r++;
+			if(r < removed.size() && removed.get(r) == slot)
+				continue;
+			merged[size++] = slot;
+		}
+		while(a < added.size())
+			merged[size++] = added.get(a++);
+		return size == merged.length ? merged : Arrays.copyOf(merged, size);
+	}
+
+	private static <T> AtomicReferenceArray<T> copyOf(AtomicReferenceArray<T> array, int length) {
+		AtomicReferenceArray<T> copy = new AtomicReferenceArray<>(length);
+		for(int i = 0; i < array.length(); i++)
+			copy.set(i, array.get(i));
+		return copy;
+	}
+
+	/**
+	 * Packs a score and an id so that sorting the packed values orders them by descending score and ascending id.
+	 */
+	private static long pack(int score, long movieId) {
+		return (long) (MAX_SCORE - Math.min(score, MAX_SCORE)) << ID_BITS | (movieId & ID_MASK);
+	}
+
+	/**
+	 * @return the best packed matches, at most {@code maxResults}.
+	 */
+	private static long[] keepBest(long[] matches, int size, int maxResults) {
+		if(size > maxResults) {
+			Arrays.sort(matches, 0, size);
+			size = maxResults;
+		}
+		return size == matches.length ? matches : Arrays.copyOf(matches, size);
+	}
+
+	private static class MatchTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient TokenDictionary.View view;
+		private final transient TokenMatcher.Tokens query;
+		private final int from;
+		private final int to;
+		private final long[] matches;
+
+		MatchTask(TokenDictionary.View view, TokenMatcher.Tokens query, int from, int to, long[] matches) {
+			this.view = view;
+			this.query = query;
+			this.from = from;
+			this.to = to;
+			this.matches = matches;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= SPLIT_THRESHOLD) {
+				TokenDictionary.matchQuery(view, query, from, to, matches);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new MatchTask(view, query, from, middle, matches), new MatchTask(view, query, middle, to, matches));
+		}
+	}
+
+	private static class ScoreTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient AtomicReferenceArray<Entry> entries;
+		private final int[] candidates;
+		private final int from;
+		private final int to;
+		private final long[] tokenMatches;
+		private final int maxResults;
+
+		ScoreTask(AtomicReferenceArray<Entry> entries, int[] candidates, int from, int to, long[] tokenMatches, int maxResults) {
+			this.entries = entries;
+			this.candidates = candidates;
+			this.from = from;
+			this.to = to;
+			this.tokenMatches = tokenMatches;
+			this.maxResults = maxResults;
+		}
+
+		@Override
+		protected long[] compute() {
+			if(to - from <= SPLIT_THRESHOLD)
+				return scoreRange();
+			int middle = (from + to) >>> 1;
+			ScoreTask left = new ScoreTask(entries, candidates, from, middle, tokenMatches, maxResults);
+			ScoreTask right = new ScoreTask(entries, candidates, middle, to, tokenMatches, maxResults);
+			left.fork();
+			long[] rightMatches = right.compute();
+			long[] leftMatches = left.join();
+			long[] matches = Arrays.copyOf(leftMatches, leftMatches.length + rightMatches.length);
+			System.arraycopy(rightMatches, 0, matches, leftMatches.length, rightMatches.length);
+			return keepBest(matches, matches.length, maxResults);
+		}
+
+		private long[] scoreRange() {
+			long[] matches = null;
+			int size = 0;
+			for(int i = from; i < to; i++) {
+				Entry entry = entries.get(candidates[i]);
+				if(entry == null)
+					continue;
+				int score = entry.tokens().score(tokenMatches);
+				if(score > 0) {
+					if(matches == null)
+						matches = new long[Math.min(to - from, 64)];
+					else if(size == matches.length)
+						matches = Arrays.copyOf(matches, Math.min(to - from, size * 2));
+					matches[size++] = pack(score, entry.movieId());
+				}
+			}
+			return matches == null ? new long[0] : keepBest(matches, size, maxResults);
+		}
+	}
+}
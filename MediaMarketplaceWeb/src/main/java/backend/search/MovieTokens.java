@@ -0,0 +1,219 @@
+package backend.search;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+/**
+ * The pre-tokenized names of a movie: its title, the names and role names of its actors and the names of
+ * its directors.
+ * <p>
+ * The tokens are kept as ids of a shared {@link TokenDictionary}, every name is a field, a range of token ids,
+ * with its {@link FieldKind} and the id of its person. Instances are immutable.
+ * </p>
+ */
+public class MovieTokens {
+
+	/**
+	 * The kinds of the names of a movie.
+	 */
+	public enum FieldKind {
+
+		TITLE(1),
+
+		ACTOR(2),
+
+		ROLE(2),
+
+		DIRECTOR(2);
+
+		private final int minScore;
+
+		FieldKind(int minScore) {
+			this.minScore = minScore;
+		}
+
+		/**
+		 * @return the minimum score of a name of this kind to match the query.
+		 */
+		public int getMinScore() {
+			return minScore;
+		}
+	}
+
+	private static final FieldKind[] KINDS = FieldKind.values();
+
+	private final TokenDictionary dictionary;
+
+	private final int[] tokenIds;
+
+	/**
+	 * The end token (exclusive) of every field.
+	 */
+	private final int[] fieldEnds;
+
+	private final byte[] fieldKinds;
+
+	private final long[] fieldPersonIds;
+
+	private MovieTokens(TokenDictionary dictionary, int[] tokenIds, int[] fieldEnds, byte[] fieldKinds, long[] fieldPersonIds) {
+		this.dictionary = dictionary;
+		this.tokenIds = tokenIds;
+		this.fieldEnds = fieldEnds;
+		this.fieldKinds = fieldKinds;
+		this.fieldPersonIds = fieldPersonIds;
+	}
+
+	/**
+	 * Scores the movie against a query.
+	 *
+	 * @param matches the matches of the dictionary tokens against the query, by token id.
+	 * @return the best score of the names that match (that reach the minimum score of their kind),
+	 * 0 if no name matches.
+	 */
+	public int score(long[] matches) {
+		int best = 0;
+		int fromToken = 0;
+		for(int f = 0; f < fieldEnds.length; f++) {
+			int toToken = fieldEnds[f];
+			int score = TokenMatcher.score(tokenIds, fromToken, toToken, matches);
+			if(score >= KINDS[fieldKinds[f]].getMinScore() && score > best)
+				best = score;
+			fromToken = toToken;
+		}
+		return best;
+	}
+
+	/**
+	 * @return the distinct token ids of the names, in ascending order.
+	 */
+	int[] distinctTokenIds() {
+		int[] distinct = tokenIds.clone();
+		Arrays.sort(distinct);
+		int size = 0;
+		for(int i = 0; i < distinct.length; i++) {
+			if(size == 0 || distinct[i] != distinct[size - 1])
+				distinct[size++] = distinct[i];
+		}
+		return Arrays.copyOf(distinct, size);
+	}
+
+	/**
+	 * @return {@code true} if one of the names belongs to the person.
+	 */
+	public boolean hasPerson(long personId) {
+		for(long fieldPersonId : fieldPersonIds) {
+			if(fieldPersonId == personId)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the tokens with another title.
+	 */
+	public MovieTokens withTitle(String title) {
+		Builder builder = new Builder(dictionary).title(title);
+		return copyFields(builder, (kind, personId) -> kind != FieldKind.TITLE).build();
+	}
+
+	/**
+	 * @return the tokens with the names of another actor.
+	 */
+	public MovieTokens withActor(long personId, String name, String roleName) {
+		return copyFields(new Builder(dictionary), (kind, id) -> true).actor(personId, name, roleName).build();
+	}
+
+	/**
+	 * @return the tokens with the name of another director.
+	 */
+	public MovieTokens withDirector(long personId, String name) {
+		return copyFields(new Builder(dictionary), (kind, id) -> true).director(personId, name).build();
+	}
+
+	/**
+	 * @param personId the id of the person.
+	 * @param kinds the kinds of the names to remove.
+	 * @return the tokens without the names of the given kinds of a person.
+	 */
+	public MovieTokens withoutPerson(long personId, Set<FieldKind> kinds) {
+		return copyFields(new Builder(dictionary), (kind, id) -> id != personId || !kinds.contains(kind)).build();
+	}
+
+	private Builder copyFields(Builder builder, BiPredicate<FieldKind, Long> keep) {
+		int fromToken = 0;
+		for(int f = 0; f < fieldEnds.length; f++) {
+			int toToken = fieldEnds[f];
+			FieldKind kind = KINDS[fieldKinds[f]];
+			if(keep.test(kind, fieldPersonIds[f]))
+				builder.add(kind, fieldPersonIds[f], tokenIds, fromToken, toToken);
+			fromToken = toToken;
+		}
+		return builder;
+	}
+
+	/**
+	 * Builds the {@link MovieTokens} of a movie.
+	 */
+	public static class Builder {
+
+		private final TokenDictionary dictionary;
+		private int[] tokenIds = new int[16];
+		private int tokens;
+		private int[] fieldEnds = new int[4];
+		private byte[] fieldKinds = new byte[4];
+		private long[] fieldPersonIds = new long[4];
+		private int fields;
+
+		/**
+		 * @param dictionary the dictionary of the tokens, new tokens are added to it.
+		 */
+		public Builder(TokenDictionary dictionary) {
+			this.dictionary = dictionary;
+		}
+
+		public Builder title(String title) {
+			return add(FieldKind.TITLE, 0, TokenMatcher.tokenize(title));
+		}
+
+		public Builder actor(long personId, String name, String roleName) {
+			add(FieldKind.ACTOR, personId, TokenMatcher.tokenize(name));
+			return add(FieldKind.ROLE, personId, TokenMatcher.tokenize(roleName));
+		}
+
+		public Builder director(long personId, String name) {
+			return add(FieldKind.DIRECTOR, personId, TokenMatcher.tokenize(name));
+		}
+
+		private Builder add(FieldKind kind, long personId, TokenMatcher.Tokens fieldTokens) {
+			int[] ids = new int[fieldTokens.size()];
+			for(int t = 0; t < ids.length; t++)
+				ids[t] = dictionary.getOrAdd(fieldTokens.chars(), t == 0 ? 0 : fieldTokens.tokenEnds()[t - 1], fieldTokens.tokenEnds()[t]);
+			return add(kind, personId, ids, 0, ids.length);
+		}
+
+		private Builder add(FieldKind kind, long personId, int[] ids, int from, int to) {
+			if(from == to)
+				return this;
+			if(tokens + to - from > tokenIds.length)
+				tokenIds = Arrays.copyOf(tokenIds, Math.max(tokenIds.length * 2, tokens + to - from));
+			if(fields == fieldEnds.length) {
+				fieldEnds = Arrays.copyOf(fieldEnds, fields * 2);
+				fieldKinds = Arrays.copyOf(fieldKinds, fields * 2);
+				fieldPersonIds = Arrays.copyOf(fieldPersonIds, fields * 2);
+			}
+			System.arraycopy(ids, from, tokenIds, tokens, to - from);
+			tokens += to - from;
+			fieldEnds[fields] = tokens;
+			fieldKinds[fields] = (byte) kind.ordinal();
+			fieldPersonIds[fields] = personId;
+			fields++;
+			return this;
+		}
+
+		public MovieTokens build() {
+			return new MovieTokens(dictionary, Arrays.copyOf(tokenIds, tokens),
+					Arrays.copyOf(fieldEnds, fields), Arrays.copyOf(fieldKinds, fields), Arrays.copyOf(fieldPersonIds, fields));
+		}
+	}
+}
@@ -0,0 +1,508 @@
+package backend.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import backend.utils.collections.IntList;
+import backend.utils.collections.LongIntHashMap;
+
+/**
+ * In-memory trigram index over entity names, used instead of scanning every row with the
+ * {@code levenshtein_ratio} stored function.
+ * <p>
+ * Every name is normalized ({@link FuzzyMatch#normalize(String)}), padded and split into trigrams.
+ * A search counts the trigrams that every name shares with the query, and scores the names with the
+ * exact Levenshtein ratio in the order of the lowest ratio their shared trigrams and length allow, until
+ * the best matches are known. So the results and their order are the same as the stored function gives
+ * over all the names, while the names far from the query are not scored.
+ * </p>
+ * <p>
+ * Entries are addressed by dense ordinals, removed or renamed entries leave a tombstone that is
+ * skipped by the searches, and the posting lists are compacted once too many tombstones pile up.
+ * The index is safe for concurrent use, searches share a read lock and updates take the write lock.
+ * </p>
+ */
+public class NameIndex {
+
+	/**
+	 * The maximum number of ids returned by a search.
+	 */
+	public static final int MAX_RESULTS = 1000;
+
+	private static final int MIN_COMPACT_SIZE = 1024;
+
+	private static final char PAD = ' ';
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * The ordinals of the names of every trigram, once per position of the trigram in the name.
+	 */
+	private final Map<Long, IntList> postings = new HashMap<>();
+
+	/**
+	 * The ordinals of the names of every normalized length, for the names that share no trigram with a query.
+	 */
+	private IntList[] lengthOrdinals = new IntList[0];
+
+	private final LongIntHashMap idToOrdinal = new LongIntHashMap(-1);
+
+	private long[] ordinalIds = new long[16];
+
+	private char[][] ordinalNames = new char[16][];
+
+	private int size;
+
+	private int deleted;
+
+	private final ThreadLocal<SearchBuffers> buffers = ThreadLocal.withInitial(SearchBuffers::new);
+
+	/**
+	 * Adds or replaces the name of the entity with the given id.
+	 *
+	 * @param id the id of the entity.
+	 * @param name the name of the entity, a null name removes the entity from the index.
+	 */
+	public void put(long id, String name) {
+		if(name == null) {
+			remove(id);
+			return;
+		}
+		char[] normalized = FuzzyMatch.normalize(name);
+		lock.writeLock().lock();
+		try {
+			int ordinal = idToOrdinal.get(id);
+			if(ordinal >= 0) {
+				if(Arrays.equals(ordinalNames[ordinal], normalized))
+					return;
+				markDeleted(ordinal);
+			}
+			insert(id, normalized);
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long id) {
+		lock.writeLock().lock();
+		try {
+			int ordinal = idToOrdinal.remove(id);
+			if(ordinal >= 0) {
+				markDeleted(ordinal);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			lengthOrdinals = new IntList[0];
+			idToOrdinal.clear();
+			ordinalIds = new long[16];
+			ordinalNames = new char[16][];
+			size = 0;
+			deleted = 0;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of live names in the index.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size - deleted;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the names that match the query.
+	 *
+	 * @param query the searched name.
+	 * @return the ids of the matching entities, ordered by the closest match first (then by name and id),
+	 * at most {@link #MAX_RESULTS} ids.
+	 */
+	public long[] search(String query) {
+		return search(query, FuzzyMatch.RATIO_THRESHOLD, MAX_RESULTS, null);
+	}
+
+	/**
+	 * Searches the names that match the query.
+	 * <p>
+	 * The result is the same as scoring every name with the exact ratio: the names are scored in the order of
+	 * a lower bound of their ratio, and the search stops once enough names have a ratio below the bound of
+	 * all the names left. Every edit of a name changes at most 3 of its trigrams, so a name of {@code p}
+	 * trigrams found in the query is at a distance of at least {@code (max(length) + 1 - p) / 3}, and at least
+	 * the difference of the lengths. The names without any trigram of the query are grouped by length.
+	 * </p>
+	 *
+	 * @param query the searched name.
+	 * @param ratioThreshold names with a Levenshtein ratio below the threshold are a match.
+	 * @param maxResults the maximum number of ids to return.
+	 * @param filter the ids that can match, null for all of them.
+	 * @return the ids of the matching entities, ordered by the closest match first (then by name and id).
+	 */
+	public long[] search(String query, int ratioThreshold, int maxResults, LongPredicate filter) {
+		char[] normalizedQuery = FuzzyMatch.normalize(query);
+		long[] queryGrams = grams(normalizedQuery);
+		int queryLength = normalizedQuery.length;
+		int maxRatio = Math.min(ratioThreshold, 101);
+		SearchBuffers searchBuffers = buffers.get();
+		lock.readLock().lock();
+		try {
+			int[] counts = searchBuffers.counts(size);
+			IntList touched = searchBuffers.touched;
+			touched.clear();
+			// count the trigram positions of every name that are trigrams of the query
+			for(long gram : queryGrams) {
+				IntList posting = postings.get(gram);
+				if(posting == null)
+					continue;
+				int[] ordinals = posting.rawArray();
+				for(int i = 0, n = posting.size(); i < n; i++) {
+					int ordinal = ordinals[i];
+					if(counts[ordinal]++ == 0)
+						touched.add(ordinal);
+				}
+			}
+			int touchedSize = touched.size();
+			int[] touchedOrdinals = touched.rawArray();
+			// bucket the names that share trigrams by the lower bound of their ratio
+			int[] bucketStarts = new int[maxRatio + 1];
+			int[] bounds = searchBuffers.bounds(touchedSize);
+			for(int i = 0; i < touchedSize; i++) {
+				int ordinal = touchedOrdinals[i];
+				char[] name = ordinalNames[ordinal];
+				int bound = name == null || (filter != null && !filter.test(ordinalIds[ordinal])) ? maxRatio
+						: lowerBoundRatio(queryLength, name.length, counts[ordinal]);
+				bounds[i] = bound;
+				if(bound < maxRatio)
+					bucketStarts[bound + 1]++;
+			}
+			for(int ratio = 0; ratio < maxRatio; ratio++)
+				bucketStarts[ratio + 1] += bucketStarts[ratio];
+			int[] bucketed = searchBuffers.bucketed(bucketStarts[maxRatio]);
+			int[] next = Arrays.copyOf(bucketStarts, maxRatio);
+			for(int i = 0; i < touchedSize; i++) {
+				if(bounds[i] < maxRatio)
+					bucketed[next[bounds[i]]++] = touchedOrdinals[i];
+			}
+			// score the names by increasing lower bound, until the best results cannot change
+			Scoring scoring = new Scoring(normalizedQuery, maxRatio, maxResults, searchBuffers);
+			IntList lengths = new IntList();
+			int found = 0;
+			for(int bound = 0; bound <= scoring.cutoff && found < maxResults; bound++) {
+				IntList deferred = scoring.deferred[bound];
+				for(int i = 0; deferred != null && i < deferred.size(); i++)
+					scoring.score(deferred.get(i), bound, false);
+				for(int i = bucketStarts[bound]; i < bucketStarts[bound + 1]; i++)
+					scoring.score(bucketed[i], bound, true);
+				lengths.clear();
+				for(int length = 0; length < lengthOrdinals.length; length++) {
+					if(lengthOrdinals[length] != null && lowerBoundRatio(queryLength, length, 0) == bound)
+						lengths.add(length);
+				}
+				for(int l = 0; l < lengths.size(); l++) {
+					IntList ordinals = lengthOrdinals[lengths.get(l)];
+					int[] rawOrdinals = ordinals.rawArray();
+					for(int i = 0, n = ordinals.size(); i < n; i++) {
+						int ordinal = rawOrdinals[i];
+						// the names that share trigrams are in the buckets
+						if(counts[ordinal] > 0 || ordinalNames[ordinal] == null || (filter != null && !filter.test(ordinalIds[ordinal])))
+							continue;
+						scoring.score(ordinal, bound, true);
+					}
+				}
+				// the names left have a ratio above the bound, after the matches found up to it
+				found += scoring.ratioCounts[bound];
+			}
+			scoring.clear();
+			long[] matches = scoring.matches;
+			int matchesSize = scoring.matchesSize;
+			for(int i = 0; i < touchedSize; i++)
+				counts[touchedOrdinals[i]] = 0;
+			Long[] ordered = new Long[matchesSize];
+			for(int i = 0; i < matchesSize; i++)
+				ordered[i] = matches[i];
+			Arrays.sort(ordered, (first, second) -> {
+				int byRatio = Integer.compare((int) (first >>> 32), (int) (second >>> 32));
+				if(byRatio != 0)
+					return byRatio;
+				int byName = Arrays.compare(ordinalNames[first.intValue()], ordinalNames[second.intValue()]);
+				return byName != 0 ? byName : Long.compare(ordinalIds[first.intValue()], ordinalIds[second.intValue()]);
+			});
+			int resultSize = Math.min(matchesSize, maxResults);
+			long[] result = new long[resultSize];
+			for(int i = 0; i < resultSize; i++)
+				result[i] = ordinalIds[ordered[i].intValue()];
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the lowest ratio a name can have, from its length and its trigram positions that are trigrams of
+	 * the query, since an edit changes at most 3 trigrams.
+	 */
+	static int lowerBoundRatio(int queryLength, int nameLength, int sharedPositions) {
+		int max = Math.max(queryLength, nameLength);
+		if(max == 0)
+			return 0;
+		int distance = Math.max(Math.abs(queryLength - nameLength), Math.floorDiv(max + 1 - sharedPositions + 2, 3));
+		return (int) Math.round(distance * 100.0 / max);
+	}
+
+	private void insert(long id, char[] normalized) {
+		if(size == ordinalIds.length) {
+			int capacity = size + (size >> 1);
+			ordinalIds = Arrays.copyOf(ordinalIds, capacity);
+			ordinalNames = Arrays.copyOf(ordinalNames, capacity);
+		}
+		int ordinal = size++;
+		ordinalIds[ordinal] = id;
+		ordinalNames[ordinal] = normalized;
+		idToOrdinal.put(id, ordinal);
+		for(long gram : positionGrams(normalized)) {
+			postings.computeIfAbsent(gram, key -> new IntList(2)).add(ordinal);
+		}
+		if(normalized.length >= lengthOrdinals.length)
+			lengthOrdinals = Arrays.copyOf(lengthOrdinals, normalized.length + 1);
+		if(lengthOrdinals[normalized.length] == null)
+			lengthOrdinals[normalized.length] = new IntList(2);
+		lengthOrdinals[normalized.length].add(ordinal);
+	}
+
+	private void markDeleted(int ordinal) {
+		ordinalIds[ordinal] = -1;
+		ordinalNames[ordinal] = null;
+		deleted++;
+	}
+
+	/**
+	 * Rebuilds the ordinals and posting lists without the tombstones,
+	 * once they are more than half of the index.
+	 */
+	private void compactIfNeeded() {
+		if(size < MIN_COMPACT_SIZE || deleted * 2 < size)
+			return;
+		long[] oldIds = ordinalIds;
+		char[][] oldNames = ordinalNames;
+		int oldSize = size;
+		int liveSize = size - deleted;
+		postings.clear();
+		lengthOrdinals = new IntList[0];
+		idToOrdinal.clear();
+		ordinalIds = new long[Math.max(16, liveSize)];
+		ordinalNames = new char[Math.max(16, liveSize)][];
+		size = 0;
+		deleted = 0;
+		for(int ordinal = 0; ordinal < oldSize; ordinal++) {
+			if(oldNames[ordinal] != null)
+				insert(oldIds[ordinal], oldNames[ordinal]);
+		}
+		postings.values().forEach(IntList::trim);
+	}
+
+	private static int gramCount(int length) {
+		// two leading pads and one trailing pad
+		return length + 1;
+	}
+
+	/**
+	 * Splits a normalized name into the trigrams of its positions, packed as 3 chars of 16 bits.
+	 */
+	static long[] positionGrams(char[] normalized) {
+		int length = normalized.length;
+		if(length == 0)
+			return new long[0];
+		long[] grams = new long[gramCount(length)];
+		for(int i = 0; i < grams.length; i++) {
+			char c1 = charAt(normalized, i - 2);
+			char c2 = charAt(normalized, i - 1);
+			char c3 = charAt(normalized, i);
+			grams[i] = ((long) c1 << 32) | ((long) c2 << 16) | c3;
+		}
+		return grams;
+	}
+
+	/**
+	 * Splits a normalized name into its distinct trigrams, packed as 3 chars of 16 bits.
+	 */
+	static long[] grams(char[] normalized) {
+		long[] grams = positionGrams(normalized);
+		Arrays.sort(grams);
+		int distinct = 0;
+		for(int i = 0; i < grams.length; i++) {
+			if(i == 0 || grams[i] != grams[i - 1])
+				grams[distinct++] = grams[i];
+		}
+		return distinct == grams.length ? grams : Arrays.copyOf(grams, distinct);
+	}
+
+	private static char charAt(char[] normalized, int index) {
+		return index < 0 || index >= normalized.length ? PAD : normalized[index];
+	}
+
+	/**
+	 * The scoring of the names of a search, by increasing lower bound of their ratio.
+	 * <p>
+	 * Before a name is scored with the Levenshtein ratio, the characters it shares with the query give a
+	 * tighter lower bound (every edit removes at most one of them), and a name whose bound is higher than the
+	 * processed one is deferred to the bucket of its bound. Once enough names are found, the names that cannot
+	 * be better than the worst of the results are not scored anymore.
+	 * </p>
+	 */
+	private class Scoring {
+
+		private final char[] query;
+
+		private final int maxRatio;
+
+		private final SearchBuffers buffers;
+
+		private final IntList[] deferred;
+
+		private final int[] ratioCounts;
+
+		private final int maxResults;
+
+		/**
+		 * The highest ratio of interest, the ratio of the worst result once enough names are found.
+		 */
+		private int cutoff;
+
+		/**
+		 * The number of matches with a ratio of at most the cutoff.
+		 */
+		private int cutoffCount;
+
+		private long[] matches = new long[16];
+
+		private int matchesSize;
+
+		private Scoring(char[] query, int maxRatio, int maxResults, SearchBuffers buffers) {
+			this.query = query;
+			this.maxRatio = maxRatio;
+			this.maxResults = maxResults;
+			this.buffers = buffers;
+			this.deferred = new IntList[maxRatio];
+			this.ratioCounts = new int[maxRatio];
+			this.cutoff = maxRatio - 1;
+			for(char c : query)
+				buffers.queryChars[c]++;
+		}
+
+		/**
+		 * Scores a name, or defers it if the characters it shares with the query bound its ratio above the
+		 * processed bound.
+		 */
+		private void score(int ordinal, int bound, boolean checkCharacters) {
+			char[] name = ordinalNames[ordinal];
+			if(checkCharacters) {
+				int charactersBound = charactersBoundRatio(name);
+				if(charactersBound > bound) {
+					if(charactersBound <= cutoff) {
+						if(deferred[charactersBound] == null)
+							deferred[charactersBound] = new IntList();
+						deferred[charactersBound].add(ordinal);
+					}
+					return;
+				}
+			}
+			int maxLength = Math.max(name.length, query.length);
+			int maxDistance = FuzzyMatch.maxDistance(cutoff, maxLength);
+			int distance = FuzzyMatch.distance(name, query, buffers.row(query.length + 1), maxDistance);
+			if(distance > maxDistance)
+				return;
+			int ratio = maxLength == 0 ? 0 : (int) Math.round(distance * 100.0 / maxLength);
+			if(matchesSize == matches.length)
+				matches = Arrays.copyOf(matches, matchesSize * 2);
+			matches[matchesSize++] = ((long) ratio << 32) | ordinal;
+			ratioCounts[ratio]++;
+			cutoffCount++;
+			// lower the cutoff while enough names are below it
+			while(cutoff > 0 && cutoffCount - ratioCounts[cutoff] >= maxResults)
+				cutoffCount -= ratioCounts[cutoff--];
+		}
+
+		/**
+		 * @return the lowest ratio of a name from the characters it shares with the query, counted with
+		 * their repetitions.
+		 */
+		private int charactersBoundRatio(char[] name) {
+			int[] queryChars = buffers.queryChars;
+			int shared = 0;
+			for(char c : name) {
+				if(queryChars[c]-- > 0)
+					shared++;
+			}
+			for(char c : name)
+				queryChars[c]++;
+			int max = Math.max(name.length, query.length);
+			return max == 0 ? 0 : (int) Math.round((max - shared) * 100.0 / max);
+		}
+
+		private void clear() {
+			for(char c : query)
+				buffers.queryChars[c] = 0;
+		}
+	}
+
+	/**
+	 * Per thread scratch buffers, so a search does not allocate an array the size of the index.
+	 */
+	private static class SearchBuffers {
+
+		private int[] counts = new int[0];
+
+		private int[] row = new int[0];
+
+		private int[] bounds = new int[0];
+
+		private int[] bucketed = new int[0];
+
+		/**
+		 * The count of every character in the query, all zero between two searches.
+		 */
+		private final int[] queryChars = new int[Character.MAX_VALUE + 1];
+
+		private final IntList touched = new IntList(256);
+
+		private int[] counts(int size) {
+			if(counts.length < size)
+				counts = new int[size + (size >> 2)];
+			return counts;
+		}
+
+		private int[] bounds(int size) {
+			if(bounds.length < size)
+				bounds = new int[size + (size >> 2)];
+			return bounds;
+		}
+
+		private int[] bucketed(int size) {
+			if(bucketed.length < size)
+				bucketed = new int[size + (size >> 2)];
+			return bucketed;
+		}
+
+		private int[] row(int size) {
+			if(row.length < size)
+				row = new int[size];
+			return row;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package backend.search;
+
+/**
+ * The entity types that have an in-memory {@link NameIndex} of their names.
+ */
+public enum NameIndexType {
+
+	MOVIE,
+
+	PERSON,
+
+	GENRE,
+
+	KEYWORD
+}
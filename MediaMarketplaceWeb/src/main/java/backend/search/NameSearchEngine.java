@@ -0,0 +1,23 @@
+package backend.search;
+
+/**
+ * The engines of the name searches, selected with the {@code search.name.engine} property.
+ */
+public enum NameSearchEngine {
+
+	/**
+	 * The {@code levenshtein_ratio} stored function (mysql-levenshtein-ratio.sql), evaluated on every row.
+	 */
+	UDF,
+
+	/**
+	 * The in-memory {@link NameIndex}, the stored function is used while the index is loading.
+	 */
+	MEMORY,
+
+	/**
+	 * The MySQL {@code FULLTEXT} indexes with the ngram parser (mysql-fulltext-ngram.sql), ordered by the
+	 * {@code MATCH ... AGAINST} relevance. Nothing is held in memory.
+	 */
+	FULLTEXT
+}
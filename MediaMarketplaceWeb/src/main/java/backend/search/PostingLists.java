@@ -0,0 +1,72 @@
+package backend.search;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Operations on posting lists, sorted arrays of distinct ids.
+ */
+public class PostingLists {
+
+	private PostingLists() {
+	}
+
+	/**
+	 * Intersects sorted posting lists.
+	 * <p>
+	 * The lists are intersected from the smallest to the largest, and every candidate is looked up in the
+	 * larger list with a galloping (exponential) search from the position of the previous candidate, so the
+	 * cost depends on the size of the smallest list rather than on the sizes of the larger ones.
+	 * </p>
+	 *
+	 * @param lists the posting lists, every list is sorted in ascending order without duplicates.
+	 * @param sizes the number of valid values at the start of every list.
+	 * @return the values that are in every list, in ascending order.
+	 */
+	public static int[] intersect(int[][] lists, int[] sizes) {
+		if(lists.length == 0)
+			return new int[0];
+		Integer[] order = new Integer[lists.length];
+		for(int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, Comparator.comparingInt(i -> sizes[i]));
+		int[] result = Arrays.copyOf(lists[order[0]], sizes[order[0]]);
+		int resultSize = result.length;
+		for(int k = 1; k < order.length && resultSize > 0; k++) {
+			int[] list = lists[order[k]];
+			int listSize = sizes[order[k]];
+			int position = 0;
+			int matches = 0;
+			for(int i = 0; i < resultSize && position < listSize; i++) {
+				int value = result[i];
+				position = gallop(list, position, listSize, value);
+				if(position < listSize && list[position] == value)
+					result[matches++] = value;
+			}
+			resultSize = matches;
+		}
+		return resultSize == result.length ? result : Arrays.copyOf(result, resultSize);
+	}
+
+	/**
+	 * Finds the position of the first value that is not below the target, starting at the given position.
+	 *
+	 * @return the position of the first value {@code >= target}, or {@code size} if there is none.
+	 */
+	static int gallop(int[] list, int from, int size, int target) {
+		if(from >= size || list[from] >= target)
+			return from;
+		// probe at growing distances until the target is passed, then binary search the last step
+		int low = from;
+		int step = 1;
+		int high = from + step;
+		while(high < size && list[high] < target) {
+			low = high;
+			step <<= 1;
+			high = from + step;
+		}
+		high = Math.min(high, size);
+		int index = Arrays.binarySearch(list, low + 1, high, target);
+		return index >= 0 ? index : -index - 1;
+	}
+}
@@ -0,0 +1,461 @@
+package backend.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory compressed prefix trie (radix tree) of entity names, used for the typeahead suggestions.
+ * <p>
+ * Every name is normalized ({@link FuzzyMatch#normalize(String)}) and added under the full name and under
+ * every word suffix of it, so {@code "dark"} suggests {@code "The Dark Knight"}. A node keeps the
+ * {@link #MAX_SUGGESTIONS} entries with the highest weight of its subtree, so a lookup only walks the
+ * prefix and copies the entries of the node it ends in.
+ * </p>
+ * <p>
+ * Changes mark the nodes of the changed keys as dirty, and only the dirty nodes recompute their top entries,
+ * bottom-up, once the change is done. The trie is safe for concurrent use, lookups share a read lock and
+ * changes take the write lock.
+ * </p>
+ */
+public class SuggestionTrie {
+
+	/**
+	 * The maximum number of entries kept by a node, and returned by a lookup.
+	 */
+	public static final int MAX_SUGGESTIONS = 10;
+
+	/**
+	 * A suggested entity.
+	 *
+	 * @param id the id of the entity.
+	 * @param name the name of the entity.
+	 * @param weight the popularity of the entity, the highest weight first.
+	 */
+	public record Suggestion(long id, String name, double weight) {
+	}
+
+	private static final Entry[] NO_ENTRIES = new Entry[0];
+
+	private static final Node[] NO_CHILDREN = new Node[0];
+
+	/**
+	 * The highest weight first, then by name and id.
+	 */
+	private static final Comparator<Entry> BY_WEIGHT = (a, b) -> {
+		int result = Double.compare(b.weight, a.weight);
+		if(result == 0)
+			result = a.name.compareTo(b.name);
+		return result != 0 ? result : Long.compare(a.id, b.id);
+	};
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Node root = new Node(new char[0]);
+
+	private final Map<Long, Entry> entries = new HashMap<>();
+
+	private static class Entry {
+
+		private final long id;
+		private final String name;
+		private final char[] normalized;
+		private double weight;
+
+		Entry(long id, String name, double weight) {
+			this.id = id;
+			this.name = name;
+			this.normalized = FuzzyMatch.normalize(name);
+			this.weight = weight;
+		}
+	}
+
+	private static class Node {
+
+		private char[] label;
+		private Node[] children = NO_CHILDREN;
+		/**
+		 * The entries with a key that ends at this node.
+		 */
+		private Entry[] entries = NO_ENTRIES;
+		/**
+		 * The entries of the subtree with the highest weight.
+		 */
+		private Entry[] top = NO_ENTRIES;
+		private boolean dirty;
+
+		Node(char[] label) {
+			this.label = label;
+		}
+	}
+
+	/**
+	 * Adds or renames an entity, keeping the weight of an existing entity.
+	 *
+	 * @param id the id of the entity.
+	 * @param name the name of the entity, a null name removes the entity.
+	 */
+	public void put(long id, String name) {
+		lock.writeLock().lock();
+		try {
+			Entry entry = entries.get(id);
+			putEntry(id, name, entry == null ? 0 : entry.weight);
+			refreshTop(root);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds, renames or changes the weight of entities, and recomputes the top entries once.
+	 *
+	 * @param suggestions the entities.
+	 */
+	public void putAll(Collection<Suggestion> suggestions) {
+		lock.writeLock().lock();
+		try {
+			for(Suggestion suggestion : suggestions) {
+				putEntry(suggestion.id(), suggestion.name(), suggestion.weight());
+			}
+			refreshTop(root);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void putEntry(long id, String name, double weight) {
+		Entry entry = entries.get(id);
+		if(entry != null && name != null && entry.name.equals(name)) {
+			if(entry.weight != weight) {
+				entry.weight = weight;
+				markKeysDirty(entry);
+			}
+			return;
+		}
+		if(entry != null)
+			removeEntry(entry);
+		if(name == null)
+			return;
+		entry = new Entry(id, name, weight);
+		if(entry.normalized.length == 0)
+			return;
+		entries.put(id, entry);
+		for(int start : keyStarts(entry.normalized))
+			insert(entry, start);
+	}
+
+	public void remove(long id) {
+		lock.writeLock().lock();
+		try {
+			Entry entry = entries.get(id);
+			if(entry != null) {
+				removeEntry(entry);
+				refreshTop(root);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds to the weight of an entity, if it is in the trie.
+	 */
+	public void addWeight(long id, double delta) {
+		lock.writeLock().lock();
+		try {
+			Entry entry = entries.get(id);
+			if(entry != null && delta != 0) {
+				entry.weight += delta;
+				markKeysDirty(entry);
+				refreshTop(root);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Sets the weights of the entities, the entities missing from the map get a weight of 0.
+	 *
+	 * @param weights the weights by entity id.
+	 */
+	public void setWeights(Map<Long, Double> weights) {
+		lock.writeLock().lock();
+		try {
+			for(Entry entry : entries.values()) {
+				double weight = weights.getOrDefault(entry.id, 0d);
+				if(entry.weight != weight) {
+					entry.weight = weight;
+					markKeysDirty(entry);
+				}
+			}
+			refreshTop(root);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the entities with a name, or a word of the name, that starts with the prefix.
+	 *
+	 * @param prefix the typed prefix.
+	 * @param limit the maximum number of suggestions, at most {@link #MAX_SUGGESTIONS}.
+	 * @return the suggestions, the highest weight first.
+	 */
+	public List<Suggestion> suggest(String prefix, int limit) {
+		char[] key = FuzzyMatch.normalize(prefix);
+		if(key.length == 0 || limit <= 0)
+			return List.of();
+		lock.readLock().lock();
+		try {
+			Node node = findPrefixNode(key);
+			if(node == null)
+				return List.of();
+			int size = Math.min(limit, node.top.length);
+			List<Suggestion> suggestions = new ArrayList<>(size);
+			for(int i = 0; i < size; i++) {
+				Entry entry = node.top[i];
+				suggestions.add(new Suggestion(entry.id, entry.name, entry.weight));
+			}
+			return suggestions;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the node of the subtree of all the keys that start with the prefix, null if there is none.
+	 */
+	private Node findPrefixNode(char[] key) {
+		Node node = root;
+		int i = 0;
+		while(i < key.length) {
+			int c = findChild(node, key[i]);
+			if(c < 0)
+				return null;
+			Node child = node.children[c];
+			int common = commonPrefix(child.label, key, i);
+			if(i + common == key.length)
+				return child;
+			if(common < child.label.length)
+				return null;
+			node = child;
+			i += common;
+		}
+		return node;
+	}
+
+	/**
+	 * @return the start of the full name and of every word suffix of it.
+	 */
+	private static int[] keyStarts(char[] normalized) {
+		int[] starts = new int[normalized.length];
+		int size = 0;
+		starts[size++] = 0;
+		for(int i = 1; i < normalized.length; i++) {
+			if(normalized[i - 1] == ' ')
+				starts[size++] = i;
+		}
+		return Arrays.copyOf(starts, size);
+	}
+
+	private void insert(Entry entry, int start) {
+		char[] key = entry.normalized;
+		Node node = root;
+		int i = start;
+		while(true) {
+			node.dirty = true;
+			if(i == key.length) {
+				node.entries = append(node.entries, entry);
+				return;
+			}
+			int c = findChild(node, key[i]);
+			if(c < 0) {
+				Node leaf = new Node(Arrays.copyOfRange(key, i, key.length));
+				leaf.entries = new Entry[] { entry };
+				leaf.dirty = true;
+				insertChild(node, leaf);
+				return;
+			}
+			Node child = node.children[c];
+			int common = commonPrefix(child.label, key, i);
+			if(common < child.label.length) {
+				// split the child at the end of the common prefix
+				Node middle = new Node(Arrays.copyOf(child.label, common));
+				child.label = Arrays.copyOfRange(child.label, common, child.label.length);
+				middle.children = new Node[] { child };
+				node.children[c] = middle;
+				child = middle;
+			}
+			node = child;
+			i += common;
+		}
+	}
+
+	private void removeEntry(Entry entry) {
+		entries.remove(entry.id);
+		for(int start : keyStarts(entry.normalized))
+			remove(root, entry, start);
+	}
+
+	/**
+	 * Removes the entry from the node of its key under the given node.
+	 *
+	 * @return {@code true} if the node has no entries and no children left, and can be removed.
+	 */
+	private static boolean remove(Node node, Entry entry, int i) {
+		node.dirty = true;
+		char[] key = entry.normalized;
+		if(i == key.length) {
+			node.entries = without(node.entries, entry);
+		} else {
+			int c = findChild(node, key[i]);
+			if(c >= 0) {
+				Node child = node.children[c];
+				if(commonPrefix(child.label, key, i) == child.label.length && remove(child, entry, i + child.label.length))
+					node.children = without(node.children, c);
+			}
+		}
+		return node.entries.length == 0 && node.children.length == 0;
+	}
+
+	private void markKeysDirty(Entry entry) {
+		char[] key = entry.normalized;
+		for(int start : keyStarts(key)) {
+			Node node = root;
+			int i = start;
+			while(node != null) {
+				node.dirty = true;
+				if(i == key.length)
+					break;
+				int c = findChild(node, key[i]);
+				node = c < 0 ? null : node.children[c];
+				if(node != null)
+					i += node.label.length;
+			}
+		}
+	}
+
+	/**
+	 * Recomputes the top entries of the dirty nodes of a subtree, children first.
+	 */
+	private static void refreshTop(Node node) {
+		if(!node.dirty)
+			return;
+		for(Node child : node.children)
+			refreshTop(child);
+		Entry[] own = node.entries;
+		if(own.length > 1) {
+			own = own.clone();
+			Arrays.sort(own, BY_WEIGHT);
+		}
+		// merge the sorted entries of the node and the sorted tops of the children, list 0 is the node
+		int lists = node.children.length + 1;
+		int[] heads = new int[lists];
+		Entry[] result = new Entry[MAX_SUGGESTIONS];
+		int size = 0;
+		while(size < MAX_SUGGESTIONS) {
+			int best = -1;
+			Entry bestEntry = null;
+			for(int l = 0; l < lists; l++) {
+				Entry[] list = l == 0 ? own : node.children[l - 1].top;
+				if(heads[l] < list.length && (bestEntry == null || BY_WEIGHT.compare(list[heads[l]], bestEntry) < 0)) {
+					best = l;
+					bestEntry = list[heads[l]];
+				}
+			}
+			if(best < 0)
+				break;
+			heads[best]++;
+			// an entry can reach a node through more than one of its keys
+			if(!contains(result, size, bestEntry))
+				result[size++] = bestEntry;
+		}
+		node.top = size == result.length ? result : Arrays.copyOf(result, size);
+		node.dirty = false;
+	}
+
+	private static boolean contains(Entry[] entries, int size, Entry entry) {
+		for(int i = 0; i < size; i++) {
+			if(entries[i] == entry)
+				return true;
+		}
+		return false;
+	}
+
+	private static int findChild(Node node, char c) {
+		int low = 0;
+		int high = node.children.length - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			char label = node.children[middle].label[0];
+			if(label < c)
+				low = middle + 1;
+			else if(label > c)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -(low + 1);
+	}
+
+	private static void insertChild(Node node, Node child) {
+		int position = -(findChild(node, child.label[0]) + 1);
+		Node[] children = new Node[node.children.length + 1];
+		System.arraycopy(node.children, 0, children, 0, position);
+		children[position] = child;
+		System.arraycopy(node.children, position, children, position + 1, node.children.length - position);
+		node.children = children;
+	}
+
+	private static int commonPrefix(char[] label, char[] key, int from) {
+		int length = Math.min(label.length, key.length - from);
+		int i = 0;
+		while(i < length && label[i] == key[from + i])
+			i++;
+		return i;
+	}
+
+	private static Entry[] append(Entry[] entries, Entry entry) {
+		for(Entry existing : entries) {
+			if(existing == entry)
+				return entries;
+		}
+		Entry[] result = Arrays.copyOf(entries, entries.length + 1);
+		result[entries.length] = entry;
+		return result;
+	}
+
+	private static Entry[] without(Entry[] entries, Entry entry) {
+		for(int i = 0; i < entries.length; i++) {
+			if(entries[i] == entry) {
+				Entry[] result = new Entry[entries.length - 1];
+				System.arraycopy(entries, 0, result, 0, i);
+				System.arraycopy(entries, i + 1, result, i, result.length - i);
+				return result;
+			}
+		}
+		return entries;
+	}
+
+	private static Node[] without(Node[] children, int index) {
+		Node[] result = new Node[children.length - 1];
+		System.arraycopy(children, 0, result, 0, index);
+		System.arraycopy(children, index + 1, result, index, result.length - index);
+		return result;
+	}
+}
@@ -0,0 +1,365 @@
+package backend.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+import backend.utils.collections.IntList;
+import backend.utils.collections.LongIntHashMap;
+import backend.utils.collections.VarIntList;
+
+/**
+ * In-memory inverted index of the movie texts (title, synopsis and keyword names), ranked with BM25.
+ * <p>
+ * The texts are normalized ({@link FuzzyMatch#normalize(String)}) and split into words, without the most
+ * common English words. The fields are weighted by repeating their words, a title word counts
+ * {@link #TITLE_WEIGHT} times and a keyword word {@link #KEYWORD_WEIGHT} times, so a single BM25 score
+ * covers the three fields.
+ * </p>
+ * <p>
+ * Documents are addressed by dense ordinals, given in the order they are added. Every word has a posting
+ * list of {@code [ordinal gap, term frequency]} pairs encoded as varints ({@link VarIntList}), so most
+ * postings take two bytes. Removed or replaced documents leave a tombstone that is skipped by the searches
+ * and still counted by the statistics of the ranking, the posting lists are compacted once the tombstones
+ * reach a quarter of the index. The index is safe for concurrent use, searches share a read lock and updates
+ * take the write lock.
+ * </p>
+ */
+public class TextIndex {
+
+	/**
+	 * The maximum number of ids returned by a search.
+	 */
+	public static final int MAX_RESULTS = 1000;
+
+	static final int TITLE_WEIGHT = 3;
+
+	static final int KEYWORD_WEIGHT = 2;
+
+	/**
+	 * The term frequency saturation of BM25.
+	 */
+	private static final double K1 = 1.2;
+
+	/**
+	 * The document length normalization of BM25.
+	 */
+	private static final double B = 0.75;
+
+	private static final int MIN_COMPACT_SIZE = 1024;
+
+	private static final Set<String> STOP_WORDS = Set.of(
+			"a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "from", "has", "he", "her", "his",
+			"in", "into", "is", "it", "its", "of", "on", "or", "she", "that", "the", "their", "they", "this",
+			"to", "was", "were", "who", "will", "with");
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final Map<String, Postings> postings = new HashMap<>();
+
+	private final LongIntHashMap idToOrdinal = new LongIntHashMap(-1);
+
+	private long[] ordinalIds = new long[16];
+
+	/**
+	 * The weighted number of words of every document.
+	 */
+	private int[] ordinalLengths = new int[16];
+
+	private int size;
+
+	private int deleted;
+
+	/**
+	 * The sum of the lengths of all the documents, including the tombstones.
+	 */
+	private long totalLength;
+
+	private final ThreadLocal<SearchBuffers> buffers = ThreadLocal.withInitial(SearchBuffers::new);
+
+	private static class Postings {
+
+		private final VarIntList data = new VarIntList(4);
+
+		private int lastOrdinal = -1;
+
+		/**
+		 * The number of documents of the posting list, including the tombstones.
+		 */
+		private int documentFrequency;
+
+		private void add(int ordinal, int termFrequency) {
+			data.add(ordinal - lastOrdinal);
+			data.add(termFrequency);
+			lastOrdinal = ordinal;
+			documentFrequency++;
+		}
+	}
+
+	/**
+	 * Adds or replaces the texts of a document.
+	 *
+	 * @param id the id of the document.
+	 * @param title the title, may be null.
+	 * @param synopsis the synopsis, may be null.
+	 * @param keywords the keyword names, may be null.
+	 */
+	public void put(long id, String title, String synopsis, List<String> keywords) {
+		Map<String, Integer> termFrequencies = new LinkedHashMap<>();
+		addTerms(termFrequencies, title, TITLE_WEIGHT);
+		addTerms(termFrequencies, synopsis, 1);
+		if(keywords != null) {
+			for(String keyword : keywords)
+				addTerms(termFrequencies, keyword, KEYWORD_WEIGHT);
+		}
+		lock.writeLock().lock();
+		try {
+			int ordinal = idToOrdinal.get(id);
+			if(ordinal >= 0)
+				markDeleted(ordinal);
+			if(!termFrequencies.isEmpty())
+				insert(id, termFrequencies);
+			else if(ordinal >= 0)
+				idToOrdinal.remove(id);
+			compactIfNeeded();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long id) {
+		lock.writeLock().lock();
+		try {
+			int ordinal = idToOrdinal.remove(id);
+			if(ordinal >= 0) {
+				markDeleted(ordinal);
+				compactIfNeeded();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of live documents in the index.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size - deleted;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Searches the documents that contain any of the words of the query.
+	 *
+	 * @param query the searched text.
+	 * @return the ids of the matching documents, the highest BM25 score first (then in the order they were
+	 * added), at most {@link #MAX_RESULTS} ids.
+	 */
+	public long[] search(String query) {
+		return search(query, MAX_RESULTS, null);
+	}
+
+	/**
+	 * Searches the documents that contain any of the words of the query and are allowed by a filter.
+	 * <p>
+	 * The filter is applied to every matching document before the best ones are kept, so no allowed
+	 * document is lost to the documents it rejects.
+	 * </p>
+	 *
+	 * @param query the searched text.
+	 * @param maxResults the maximum number of ids.
+	 * @param filter the ids of the allowed documents, or null to allow all of them.
+	 * @return the ids of the matching documents, the highest BM25 score first (then in the order they were
+	 * added).
+	 */
+	public long[] search(String query, int maxResults, LongPredicate filter) {
+		Map<String, Integer> queryTerms = new LinkedHashMap<>();
+		addTerms(queryTerms, query, 1);
+		if(queryTerms.isEmpty())
+			return new long[0];
+		SearchBuffers searchBuffers = buffers.get();
+		lock.readLock().lock();
+		try {
+			if(size == 0)
+				return new long[0];
+			float[] scores = searchBuffers.scores(size);
+			IntList touched = searchBuffers.touched;
+			touched.clear();
+			double averageLength = (double) totalLength / size;
+			for(String term : queryTerms.keySet()) {
+				Postings posting = postings.get(term);
+				if(posting == null)
+					continue;
+				double idf = Math.log(1 + (size - posting.documentFrequency + 0.5) / (posting.documentFrequency + 0.5));
+				byte[] bytes = posting.data.rawArray();
+				int end = posting.data.byteLength();
+				int position = 0;
+				int ordinal = -1;
+				while(position < end) {
+					long gap = VarIntList.read(bytes, position);
+					long termFrequency = VarIntList.read(bytes, (int) gap);
+					position = (int) termFrequency;
+					ordinal += (int) (gap >>> 32);
+					if(ordinalIds[ordinal] < 0)
+						continue;
+					int frequency = (int) (termFrequency >>> 32);
+					double norm = K1 * (1 - B + B * ordinalLengths[ordinal] / averageLength);
+					if(scores[ordinal] == 0)
+						touched.add(ordinal);
+					scores[ordinal] += (float) (idf * frequency * (K1 + 1) / (frequency + norm));
+				}
+			}
+			// the scores are positive, so the bits of the floats sort like the floats
+			int touchedSize = touched.size();
+			int[] touchedOrdinals = touched.rawArray();
+			long[] ranked = new long[touchedSize];
+			int rankedSize = 0;
+			for(int i = 0; i < touchedSize; i++) {
+				int ordinal = touchedOrdinals[i];
+				if(filter == null || filter.test(ordinalIds[ordinal]))
+					ranked[rankedSize++] = (long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[ordinal])) << 32 | ordinal;
+				scores[ordinal] = 0;
+			}
+			Arrays.sort(ranked, 0, rankedSize);
+			long[] result = new long[Math.min(rankedSize, maxResults)];
+			for(int i = 0; i < result.length; i++)
+				result[i] = ordinalIds[(int) ranked[i]];
+			return result;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Splits a text in the words indexed by {@link #search(String)}, the same way the documents are split.
+	 *
+	 * @param text the text.
+	 * @return the distinct words of the text, in their order.
+	 */
+	public static Set<String> terms(String text) {
+		Map<String, Integer> terms = new LinkedHashMap<>();
+		addTerms(terms, text, 1);
+		return terms.keySet();
+	}
+
+	/**
+	 * Adds the words of a text to the term frequencies, a single letter or digit is a word too.
+	 */
+	static void addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+		char[] normalized = FuzzyMatch.normalize(text);
+		int start = 0;
+		for(int i = 0; i <= normalized.length; i++) {
+			if(i < normalized.length && Character.isLetterOrDigit(normalized[i]))
+				continue;
+			if(i > start) {
+				String term = new String(normalized, start, i - start);
+				if(!STOP_WORDS.contains(term))
+					termFrequencies.merge(term, weight, Integer::sum);
+			}
+			start = i + 1;
+		}
+	}
+
+	private void insert(long id, Map<String, Integer> termFrequencies) {
+		if(size == ordinalIds.length) {
+			int capacity = size + (size >> 1);
+			ordinalIds = Arrays.copyOf(ordinalIds, capacity);
+			ordinalLengths = Arrays.copyOf(ordinalLengths, capacity);
+		}
+		int ordinal = size++;
+		int length = 0;
+		for(Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+			postings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(ordinal, entry.getValue());
+			length += entry.getValue();
+		}
+		ordinalIds[ordinal] = id;
+		ordinalLengths[ordinal] = length;
+		totalLength += length;
+		idToOrdinal.put(id, ordinal);
+	}
+
+	private void markDeleted(int ordinal) {
+		ordinalIds[ordinal] = -1;
+		deleted++;
+	}
+
+	/**
+	 * Rebuilds the ordinals and posting lists without the tombstones,
+	 * once they are a quarter of the index.
+	 */
+	private void compactIfNeeded() {
+		if(size < MIN_COMPACT_SIZE || deleted * 4 < size)
+			return;
+		int[] newOrdinals = new int[size];
+		int liveSize = 0;
+		for(int ordinal = 0; ordinal < size; ordinal++) {
+			newOrdinals[ordinal] = ordinalIds[ordinal] < 0 ? -1 : liveSize++;
+		}
+		Iterator<Map.Entry<String, Postings>> iterator = postings.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Map.Entry<String, Postings> entry = iterator.next();
+			Postings posting = entry.getValue();
+			Postings compacted = new Postings();
+			byte[] bytes = posting.data.rawArray();
+			int position = 0;
+			int ordinal = -1;
+			while(position < posting.data.byteLength()) {
+				long gap = VarIntList.read(bytes, position);
+				long termFrequency = VarIntList.read(bytes, (int) gap);
+				position = (int) termFrequency;
+				ordinal += (int) (gap >>> 32);
+				if(newOrdinals[ordinal] >= 0)
+					compacted.add(newOrdinals[ordinal], (int) (termFrequency >>> 32));
+			}
+			if(compacted.documentFrequency == 0) {
+				iterator.remove();
+			} else {
+				compacted.data.trim();
+				entry.setValue(compacted);
+			}
+		}
+		long[] liveIds = new long[Math.max(16, liveSize)];
+		int[] liveLengths = new int[Math.max(16, liveSize)];
+		idToOrdinal.clear();
+		totalLength = 0;
+		for(int ordinal = 0; ordinal < size; ordinal++) {
+			int newOrdinal = newOrdinals[ordinal];
+			if(newOrdinal < 0)
+				continue;
+			liveIds[newOrdinal] = ordinalIds[ordinal];
+			liveLengths[newOrdinal] = ordinalLengths[ordinal];
+			totalLength += ordinalLengths[ordinal];
+			idToOrdinal.put(ordinalIds[ordinal], newOrdinal);
+		}
+		ordinalIds = liveIds;
+		ordinalLengths = liveLengths;
+		size = liveSize;
+		deleted = 0;
+	}
+
+	/**
+	 * Per thread scratch buffers, so a search does not allocate an array the size of the index.
+	 */
+	private static class SearchBuffers {
+
+		private float[] scores = new float[0];
+
+		private final IntList touched = new IntList(256);
+
+		private float[] scores(int size) {
+			if(scores.length < size)
+				scores = new float[size + (size >> 2)];
+			return scores;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package backend.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The distinct tokens of the indexed names, every token is stored once and identified by an int.
+ * <p>
+ * Names share most of their words, so a search matches every distinct token against the query once
+ * ({@link #matchQuery(View, TokenMatcher.Tokens, int, int, long[])}), and then scores the names by looking up
+ * the match of every token id.
+ * </p>
+ * <p>
+ * Tokens are only added, never removed. Adding is synchronized, and the readers use a {@link View} of the
+ * tokens added so far, the arrays of a view are never changed below its size.
+ * </p>
+ */
+public class TokenDictionary {
+
+	/**
+	 * The tokens added so far.
+	 *
+	 * @param chars the characters of the tokens, one after the other.
+	 * @param tokenEnds the end offset (exclusive) of every token in the characters.
+	 * @param charMasks the {@link TokenMatcher#charMask(char[], int, int) character mask} of every token.
+	 * @param size the number of tokens.
+	 */
+	public record View(char[] chars, int[] tokenEnds, long[] charMasks, int size) {
+	}
+
+	private final Map<String, Integer> ids = new HashMap<>();
+
+	private char[] chars = new char[1024];
+	private int length;
+	private int[] tokenEnds = new int[256];
+	private long[] charMasks = new long[256];
+	private int size;
+
+	/**
+	 * @return the id of a token, added if it is new.
+	 */
+	public synchronized int getOrAdd(char[] tokenChars, int start, int end) {
+		String token = new String(tokenChars, start, end - start);
+		Integer id = ids.get(token);
+		if(id != null)
+			return id;
+		if(length + token.length() > chars.length)
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + token.length()));
+		if(size == tokenEnds.length) {
+			tokenEnds = Arrays.copyOf(tokenEnds, size * 2);
+			charMasks = Arrays.copyOf(charMasks, size * 2);
+		}
+		System.arraycopy(tokenChars, start, chars, length, end - start);
+		length += end - start;
+		tokenEnds[size] = length;
+		charMasks[size] = TokenMatcher.charMask(tokenChars, start, end);
+		ids.put(token, size);
+		return size++;
+	}
+
+	public synchronized View view() {
+		return new View(chars, tokenEnds, charMasks, size);
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Matches a range of the tokens against the query tokens.
+	 * <p>
+	 * For every token, bit {@code q} of the low half of its match is set if the token contains the query token
+	 * {@code q} ({@link TokenMatcher#contains(char[], int, int, char[], int, int)}), and bit {@code q} of the
+	 * high half if it also starts with it.
+	 * </p>
+	 *
+	 * @param view the tokens.
+	 * @param query the query tokens, at most {@link TokenMatcher#MAX_QUERY_TOKENS} are matched.
+	 * @param from the first token of the range.
+	 * @param to the end (exclusive) of the range.
+	 * @param matches the matches of the tokens, by token id.
+	 */
+	public static void matchQuery(View view, TokenMatcher.Tokens query, int from, int to, long[] matches) {
+		int queryTokens = Math.min(query.size(), TokenMatcher.MAX_QUERY_TOKENS);
+		char[] queryChars = query.chars();
+		int[] queryEnds = query.tokenEnds();
+		long[] queryMasks = new long[queryTokens];
+		for(int q = 0; q < queryTokens; q++)
+			queryMasks[q] = TokenMatcher.charMask(queryChars, q == 0 ? 0 : queryEnds[q - 1], queryEnds[q]);
+		for(int t = from; t < to; t++) {
+			int start = t == 0 ? 0 : view.tokenEnds()[t - 1];
+			int end = view.tokenEnds()[t];
+			long mask = view.charMasks()[t];
+			long match = 0;
+			for(int q = 0; q < queryTokens; q++) {
+				// a token can only contain a query token that has no character missing from the token
+				if((queryMasks[q] & ~mask) != 0)
+					continue;
+				int queryStart = q == 0 ? 0 : queryEnds[q - 1];
+				int queryEnd = queryEnds[q];
+				if(TokenMatcher.contains(view.chars(), start, end, queryChars, queryStart, queryEnd)) {
+					match |= 1L << q;
+					if(TokenMatcher.startsWith(view.chars(), start, end, queryChars, queryStart, queryEnd))
+						match |= 1L << (q + TokenMatcher.MAX_QUERY_TOKENS);
+				}
+			}
+			matches[t] = match;
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package backend.search;
+
+import java.util.Arrays;
+
+/**
+ * Word matching of a search query against pre-tokenized names.
+ * <p>
+ * The names are tokenized once into token ids of a {@link TokenDictionary}. A search matches the distinct
+ * tokens against the query once ({@link TokenDictionary#matchQuery(TokenDictionary.View, Tokens, int, int, long[])}),
+ * and {@link #score(int[], int, int, long[])} scores a name from the matches of its token ids without
+ * creating any object, so it can run over the whole catalog.
+ * </p>
+ * <p>
+ * The score is the one of the original word comparison of the movie search: every word of the name is
+ * matched with the first remaining query word that it contains, in the order of the query words, counting
+ * 1 point, and 1 more point if the name word starts with the query word. A query word is matched at most once.
+ * </p>
+ */
+public class TokenMatcher {
+
+	/**
+	 * The maximum number of query tokens that are matched, the extra tokens are ignored.
+	 * The matches of a token hold a bit per query token in each half of a long.
+	 */
+	public static final int MAX_QUERY_TOKENS = 32;
+
+	private static final long CONTAINS_MASK = (1L << MAX_QUERY_TOKENS) - 1;
+
+	private TokenMatcher() {
+	}
+
+	/**
+	 * A tokenized text.
+	 *
+	 * @param chars the characters of the tokens, one after the other.
+	 * @param tokenEnds the end offset (exclusive) of every token in the characters.
+	 */
+	public record Tokens(char[] chars, int[] tokenEnds) {
+
+		public int size() {
+			return tokenEnds.length;
+		}
+	}
+
+	/**
+	 * Tokenizes a text: lower case words separated by white space and the punctuation {@code , / : - . !}.
+	 *
+	 * @param text the text, may be null.
+	 * @return the tokens, empty if the text has no words.
+	 */
+	public static Tokens tokenize(String text) {
+		if(text == null)
+			return new Tokens(new char[0], new int[0]);
+		char[] chars = new char[text.length()];
+		int[] tokenEnds = new int[(text.length() + 1) / 2];
+		int length = 0;
+		int tokens = 0;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(isSeparator(c)) {
+				if(length > 0 && (tokens == 0 || tokenEnds[tokens - 1] != length))
+					tokenEnds[tokens++] = length;
+				continue;
+			}
+			chars[length++] = Character.toLowerCase(c);
+		}
+		if(length > 0 && (tokens == 0 || tokenEnds[tokens - 1] != length))
+			tokenEnds[tokens++] = length;
+		return new Tokens(Arrays.copyOf(chars, length), Arrays.copyOf(tokenEnds, tokens));
+	}
+
+	private static boolean isSeparator(char c) {
+		return Character.isWhitespace(c) || c == ',' || c == '/' || c == ':' || c == '-' || c == '.' || c == '!';
+	}
+
+	/**
+	 * Scores a range of token ids against the query.
+	 *
+	 * @param tokenIds the token ids of the name.
+	 * @param from the first token of the range.
+	 * @param to the end (exclusive) of the range.
+	 * @param matches the matches of the dictionary tokens against the query, by token id. The tokens added
+	 * to the dictionary after the matches were computed do not match.
+	 * @return the score, 0 if no query word matches.
+	 */
+	public static int score(int[] tokenIds, int from, int to, long[] matches) {
+		long matchedQueryTokens = 0;
+		int score = 0;
+		for(int t = from; t < to; t++) {
+			if(tokenIds[t] >= matches.length)
+				continue;
+			long match = matches[tokenIds[t]];
+			// the first query token that the token contains and that is not matched yet
+			long available = match & CONTAINS_MASK & ~matchedQueryTokens;
+			if(available == 0)
+				continue;
+			long queryToken = Long.lowestOneBit(available);
+			score++;
+			if((match >>> MAX_QUERY_TOKENS & queryToken) != 0)
+				score++;
+			matchedQueryTokens |= queryToken;
+		}
+		return score;
+	}
+
+	/**
+	 * @return a mask with the bit {@code c % 64} set for every character {@code c} of the token.
+	 */
+	static long charMask(char[] chars, int start, int end) {
+		long mask = 0;
+		for(int i = start; i < end; i++)
+			mask |= 1L << chars[i];
+		return mask;
+	}
+
+	/**
+	 * Checks if a word contains a query word: going through the characters of the word, and taking every
+	 * character that still has an unused occurrence in the query word, gives exactly the query word.
+	 */
+	static boolean contains(char[] word, int start, int end, char[] query, int queryStart, int queryEnd) {
+		// the taken characters must spell the query word, so the unused occurrences are the ones after
+		// the characters already taken
+		int next = queryStart;
+		for(int i = start; i < end && next < queryEnd; i++) {
+			char c = word[i];
+			if(!occurs(query, next, queryEnd, c))
+				continue;
+			if(query[next] != c)
+				return false;
+			next++;
+		}
+		return next == queryEnd;
+	}
+
+	private static boolean occurs(char[] chars, int from, int to, char c) {
+		for(int i = from; i < to; i++) {
+			if(chars[i] == c)
+				return true;
+		}
+		return false;
+	}
+
+	static boolean startsWith(char[] word, int start, int end, char[] query, int queryStart, int queryEnd) {
+		int length = queryEnd - queryStart;
+		if(end - start < length)
+			return false;
+		for(int i = 0; i < length; i++) {
+			if(word[start + i] != query[queryStart + i])
+				return false;
+		}
+		return true;
+	}
+}
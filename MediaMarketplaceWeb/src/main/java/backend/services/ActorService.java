@@ -1,11 +1,13 @@
 package backend.services;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,14 +17,22 @@ import backend.dtos.ActorDto;
 import backend.dtos.admin.ActorAdminReference;
 import backend.dtos.references.ActorReference;
 import backend.dtos.references.PersonReference;
+import backend.dtos.search.CursorPageDto;
 import backend.dtos.search.PersonFilter;
 import backend.entities.Actor;
 import backend.entities.Movie;
 import backend.entities.Person;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
 import backend.repositories.ActorRepository;
-import jakarta.persistence.criteria.Expression;
+import backend.search.MovieRelationIndex.Relation;
+import backend.search.NameIndexType;
+import backend.services.search.MovieContentIndexService;
+import backend.services.search.MovieRelationService;
+import backend.services.search.MovieSearchCacheService;
+import backend.services.search.MovieTokenIndexService;
+import backend.services.search.NameIndexService;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Subquery;
@@ -50,6 +60,21 @@ public class ActorService {
     
     @Autowired
     private MovieService movieService;
+
+    @Autowired
+    private NameIndexService nameIndexService;
+
+    @Autowired
+    private MovieRelationService movieRelationService;
+
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+
+    @Autowired
+    private MovieTokenIndexService movieTokenIndexService;
+    
+    @Autowired
+    private MovieContentIndexService movieContentIndexService;
     
     public Page<PersonReference> searchActors(PersonFilter personFilter, Pageable pageable) {
     	Specification<Person> specification = createActorSearchSpecification(personFilter);
@@ -62,6 +87,23 @@ public class ActorService {
         return actorReferencesPage;
     }
     
+    /**
+     * Searches the actors with the keyset (cursor) pagination, without counting the total.
+     * 
+     * @param personFilter the search filter.
+     * @param sort the sort of the actors.
+     * @param cursor the cursor returned with the previous page, or null for the first page.
+     * @param size the size of the page.
+     * @return the page of actors, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    public CursorPageDto<PersonReference> searchActorsByCursor(PersonFilter personFilter, Sort sort, String cursor, int size) throws BadRequestException {
+    	Specification<Person> specification = createActorSearchSpecification(personFilter);
+    	CursorPageDto<Person> actorPage = personService.searchPeopleByCursor(specification,
+    			Collections.singletonList(personFilter == null ? null : personFilter.getName()), sort, cursor, size);
+    	return actorPage.map(person -> personService.convertPersonToReference(person));
+    }
+    
 	public Specification<Person> createActorSearchSpecification(PersonFilter params) {
 	    Specification<Person> spec = (root, query, cb) -> {
 	        List<Predicate> predicates = new ArrayList<>();
@@ -77,14 +119,9 @@ public class ActorService {
             query.groupBy(root.get("id"));
             having.add(cb.greaterThan(cb.count(actors), (long) 0));
             */
-	        if(params.getName() != null) {
-	            Expression<Integer> differenceName = cb.function("levenshtein_ratio", Integer.class, root.get("name"), cb.literal(params.getName()));
-	            // You can compare if the difference is greater than a threshold value, e.g., 3
-	            predicates.add(cb.lessThan(differenceName, 70)); // Adjust the threshold as needed
-	            
-	            // order by closest matching
-	            query.orderBy(cb.asc(differenceName), cb.asc(root.get("name")));
-	        }
+	        Predicate filterByName = nameIndexService.filterByName(NameIndexType.PERSON, cb, query, root, params.getName());
+	        if(filterByName != null)
+	        	predicates.add(filterByName);
             if(having.size() > 0) {
             	query.having(cb.and(having.toArray(new Predicate[0])));
 			}
@@ -155,6 +192,10 @@ public class ActorService {
             actor = actorRepository.save(actor);
             List<Actor> actors = movie.getActorsRoles();
             actors.add(actor);
+            movieRelationService.addPerson(Relation.ACTOR, person.getId(), movie.getId());
+            movieSearchCacheService.invalidatePerson(person.getId());
+            movieTokenIndexService.addActor(movie.getId(), person.getId(), person.getName(), actor.getRoleName());
+            movieContentIndexService.reindexMovie(movie.getId());
         }
     }
     
@@ -226,5 +267,9 @@ public class ActorService {
      */
     private void removeActor(Actor actor) {
         actorRepository.delete(actor);
+        movieRelationService.removePerson(Relation.ACTOR, actor.getPerson().getId(), actor.getMovie().getId());
+        movieSearchCacheService.invalidatePerson(actor.getPerson().getId());
+        movieTokenIndexService.removeActor(actor.getMovie().getId(), actor.getPerson().getId());
+        movieContentIndexService.reindexMovie(actor.getMovie().getId());
     }
 }
\ No newline at end of file
@@ -33,8 +33,14 @@ import backend.exceptions.UserNotLoggedInException;
 import backend.repositories.CartProductRepository;
 import backend.repositories.CartRepository;
 import backend.sort.entities.CartProductSort;
+import backend.utils.CurrencySnapshot;
 import backend.utils.I18nUtils;
+import backend.utils.MinorUnitPricing;
+import backend.utils.PricedCart;
 import backend.utils.PurchaseType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
@@ -52,6 +58,11 @@ import jakarta.servlet.http.HttpSession;
  * It acts as an intermediary between the data access layer (repositories) and
  * the presentation layer (controllers), managing the business logic for cart operations.
  * </p>
+ * <p>
+ * The prices of a cart are computed once per version of the cart, in a {@link PricedCart} that is cached and
+ * shared by the cart page, the updates of the cart products and the order placement. A change of the cart
+ * increments its version and derives the new priced cart from the previous one, with the changed line only.
+ * </p>
  */
 @Service
 public class CartService {
@@ -74,6 +85,15 @@ public class CartService {
     @Autowired
     private GeolocationService geolocationService;
     
+    @Autowired
+    private ProductPriceBookService productPriceBookService;
+    
+    @Autowired
+    private PricedCartCacheService pricedCartCacheService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     /**
      * Retrieves the current user's shopping cart as a DTO.
      * <p>
@@ -92,6 +112,8 @@ public class CartService {
         Page<CartProduct> cartProductsPage = searchCartProductsResult(cart, pageable);
         // then load the current currency of the session or user
 		CurrencyKind currentCurrency = currencyService.getCurrencyFromSessionOrUser(session);
+        // the prices of the cart lines, the total and the items, computed once per version of the cart
+        PricedCart pricedCart = getPricedCart(cart, currentCurrency);
         // And then we convert it to a cart DTO
         CartDto cartDto = new CartDto();
         Page<CartProductDto> cartProductsDtoPage;
@@ -100,7 +122,7 @@ public class CartService {
         try {
         	cartProductsDtoPage = cartProductsPage.map(cartProduct -> {
 	        	try {
-					return convertCartProductToDto(cartProduct, currentCurrency);
+					return convertCartProductToDto(cartProduct, currentCurrency, pricedCart);
 				} catch (EntityNotFoundException e) {
 					throw new RuntimeException(e);
 				}
@@ -115,9 +137,9 @@ public class CartService {
         	}
 		}
         cartDto.setCartProducts(cartProductsDtoPage);
-        Money totalPrice = calculateCartTotalPrice(cart, currentCurrency);
+        Money totalPrice = pricedCart.getSelectedTotalMoney();
         cartDto.setTotalPrice(I18nUtils.convertMoneyToDto(totalPrice, currentCurrency));
-        cartDto.setTotalItems(calculateCartProductTotalItems(cart));
+        cartDto.setTotalItems(pricedCart.getSelectedItems());
         String countryCode = geolocationService.getCountryOfSession(request);
         cartDto.setCountry(I18nUtils.convertCountryToDto(countryCode));
         return cartDto;
@@ -205,6 +227,7 @@ public class CartService {
         Product product = productService.getProductByID(cartProductReference.getProductId());
     	// load the cart of the current session
         Cart cart = getCartOfSession(session);
+        PricedCart pricedCart = getCachedPricedCart(cart, currencyService.getSnapshot());
         // First check if the product is already inside the cart with the same purchase type
         CartProduct productInCart = getProductInCart(cart, product);
         if (productInCart != null) {
@@ -221,6 +244,14 @@ public class CartService {
         cartProduct.setPurchaseType(cartProductReference.getPurchaseType());
         cartProduct.setSelected(true);
         addProductToCart(cart, cartProduct);
+        // the priced cart is derived with the new line, adding a product does not fail on a missing rate
+        try {
+        	pricedCart = pricedCart == null ? null : withChangedLine(pricedCart, cartProduct, true);
+        }
+        catch(EntityNotFoundException e) {
+        	pricedCart = null;
+        }
+        markCartChanged(cart, pricedCart);
     }
     
     /**
@@ -238,8 +269,10 @@ public class CartService {
     	// first we load the cart of the current session
         Cart cart = getCartOfSession(session);
         Product product = productService.getProductByID(productId);
+        PricedCart pricedCart = getCachedPricedCart(cart, currencyService.getSnapshot());
         // Now remove the product from the cart.
         removeProductFromCart(cart, product);
+        markCartChanged(cart, pricedCart == null ? null : pricedCart.withoutLine(product.getId()));
     }
     
     @Transactional
@@ -253,6 +286,13 @@ public class CartService {
         Product product = productService.getProductByID(productId);
         CartProduct cartProduct = getProductInCart(cart, product);
         if (cartProduct != null) {
+			CurrencyKind currentCurrency = currencyService.getCurrencyFromSessionOrUser(session);
+			// the priced cart before the change, only the changed line is priced again
+			PricedCart pricedCart = getCachedPricedCart(cart, currencyService.getSnapshot());
+			if(pricedCart != null && !pricedCart.getCurrencyUnit().getCode().equals(currentCurrency.getCode()))
+				pricedCart = null;
+			boolean isPurchaseTypeChanged = newPurchaseType != null
+					&& PurchaseType.fromString(newPurchaseType) != PurchaseType.fromString(cartProduct.getPurchaseType());
 			// Update the cart product as needed
 			// For example, you can change the buying type or other properties
         	if(newPurchaseType != null)
@@ -261,11 +301,15 @@ public class CartService {
         	if(isSelected != null)
         		cartProduct.setSelected(isSelected);
 			CartProduct updatedCartProduct = cartProductRepository.save(cartProduct);
-			CurrencyKind currentCurrency = currencyService.getCurrencyFromSessionOrUser(session);
+			if(pricedCart != null)
+				pricedCart = withChangedLine(pricedCart, updatedCartProduct, isPurchaseTypeChanged);
+			if(pricedCart == null)
+				pricedCart = priceCart(cart, currentCurrency);
+			markCartChanged(cart, pricedCart);
 			UpdatedCartProductDto dto = new UpdatedCartProductDto();
-			dto.setCartProduct(convertCartProductToDto(updatedCartProduct, currentCurrency));
-			dto.setTotalItems(calculateCartProductTotalItems(cart));
-			Money totalPrice = calculateCartTotalPrice(cart, currentCurrency);
+			dto.setCartProduct(convertCartProductToDto(updatedCartProduct, currentCurrency, pricedCart));
+			dto.setTotalItems(pricedCart.getSelectedItems());
+			Money totalPrice = pricedCart.getSelectedTotalMoney();
 			dto.setTotalPrice(I18nUtils.convertMoneyToDto(totalPrice, currentCurrency));
 	        String countryCode = geolocationService.getCountryOfSession(request);
 	        dto.setCountry(I18nUtils.convertCountryToDto(countryCode));
@@ -374,6 +418,8 @@ public class CartService {
 						for (CartProduct cartProduct : removeCartProducts) {
 							removeProductFromCart(sessionCart, cartProduct);
 						}
+						// the priced user cart does not have the merged products
+						pricedCartCacheService.invalidate(userCart.getId());
 						sessionCart.setCartProducts(null);
 						sessionCart.setUser(null);
 						// now remove the session cart
@@ -506,13 +552,14 @@ public class CartService {
     @Transactional
     public void removeCartFromUser(Cart cart) {
 		cartRepository.delete(cart);
+		pricedCartCacheService.invalidate(cart.getId());
     }
     
     private Page<CartProduct> getCartProductOfCart(Pageable pageable, Specification<CartProduct> spec) {
     	return cartProductRepository.findAll(spec, pageable);
     }
     
-    public CartProductDto convertCartProductToDto(CartProduct cartProduct, CurrencyKind currentCurrency) throws EntityNotFoundException {
+    public CartProductDto convertCartProductToDto(CartProduct cartProduct, CurrencyKind currentCurrency, PricedCart pricedCart) throws EntityNotFoundException {
 		CartProductDto cartProductDto = new CartProductDto();
 		Product product = cartProduct.getProduct();
 		ProductDto productDto = productService.convertProductToDto(product, currentCurrency);
@@ -521,7 +568,11 @@ public class CartService {
 		cartProductDto.setPurchaseType(purchaseType);
 		boolean isSelected = cartProduct.isSelected();
 		cartProductDto.setSelected(isSelected);
-		Money price = calculateCartProductTypePriceInCurrency(cartProduct, currentCurrency);
+		// the price of the line from the priced cart, an unselected line may have no rate and fails like before
+		long linePrice = pricedCart.getPrice(product.getId());
+		Money price = linePrice == PricedCart.NO_PRICE
+				? calculateCartProductTypePriceInCurrency(cartProduct, currentCurrency)
+				: Money.ofMinor(pricedCart.getCurrencyUnit(), linePrice);
 		cartProductDto.setPrice(I18nUtils.convertMoneyToDto(price, currentCurrency));
 		return cartProductDto;
 	}
@@ -540,28 +591,147 @@ public class CartService {
 	}
     
     public Money calculateCartTotalPrice(Cart cart, CurrencyKind currentCurrency) throws EntityNotFoundException {
-        Money totalPrice = Money.zero(CurrencyService.getCurrencyUnit(currentCurrency));
-        List<CartProduct> cartProducts = cart.getCartProducts();
-        if (cartProducts != null) {
-            for (CartProduct cartProduct : cartProducts) {
-                // we calculate the price of the selected products only
-            	if (cartProduct != null && cartProduct.isSelected()) {
-                    // get the calculated price of the product in the current currency
-                	Money price = calculateCartProductTypePriceInCurrency(cartProduct, currentCurrency);
-                	totalPrice = totalPrice.plus(price);
-                }
-            }
-        }
-        return totalPrice;
+        return getPricedCart(cart, currentCurrency).getSelectedTotalMoney();
+    }
+    
+    /**
+     * Gets the priced cart of a cart in a currency.
+     * <p>
+     * The cached priced cart is used if it was priced for the version of the cart, in the currency, with the
+     * current rates and product prices. Otherwise the cart is priced, and cached once the current transaction
+     * commits if the cart is not changed by it.
+     * </p>
+     *
+     * @param cart The cart.
+     * @param currentCurrency The currency of the prices.
+     * @return The priced cart.
+     * @throws EntityNotFoundException if the currency is not supported, or a selected product has no rate to it.
+     */
+    public PricedCart getPricedCart(Cart cart, CurrencyKind currentCurrency) throws EntityNotFoundException {
+    	PricedCart pricedCart = getCachedPricedCart(cart, currencyService.getSnapshot());
+    	if (pricedCart != null && pricedCart.getCurrencyUnit().getCode().equals(currentCurrency.getCode()))
+    		return pricedCart;
+    	long generation = pricedCartCacheService.generation();
+    	pricedCart = priceCart(cart, currentCurrency);
+    	pricedCartCacheService.put(cart, pricedCart, generation);
+    	return pricedCart;
+    }
+    
+    /**
+     * Marks a cart as changed in the current transaction: its version is incremented when the transaction
+     * commits, and the priced cart with the change is cached for the new version.
+     * <p>
+     * A concurrent change of the same cart fails the transaction, so a cached priced cart always has the lines
+     * of its version.
+     * </p>
+     *
+     * @param cart The changed cart.
+     * @param pricedCart The priced cart with the change, or null if it is not known.
+     */
+    public void markCartChanged(Cart cart, PricedCart pricedCart) {
+    	entityManager.lock(cart, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    	pricedCartCacheService.putChanged(cart, pricedCart);
+    }
+    
+    /**
+     * Gets the cached priced cart of the cart as it was loaded, in any currency.
+     *
+     * @return The priced cart, or null if it is not cached or not priced with the current rates and product prices.
+     */
+    private PricedCart getCachedPricedCart(Cart cart, CurrencySnapshot snapshot) {
+    	PricedCart pricedCart = pricedCartCacheService.get(cart.getId());
+    	List<CartProduct> cartProducts = cart.getCartProducts();
+    	if (pricedCart == null || pricedCart.getCartVersion() != cart.getVersion()
+    			|| pricedCart.getRatesVersion() != snapshot.getVersion()
+    			|| pricedCart.getCatalogVersion() != productPriceBookService.getCatalogVersion()
+    			// the products merged into the cart by this request are not in its version yet
+    			|| pricedCart.getLineCount() != (cartProducts == null ? 0 : cartProducts.size()))
+    		return null;
+    	return pricedCart;
+    }
+    
+    /**
+     * Prices all the lines of a cart.
+     * <p>
+     * The total only needs the selected lines, so an unselected line with no rate to the currency does not
+     * fail, it has no price.
+     * </p>
+     */
+    private PricedCart priceCart(Cart cart, CurrencyKind currentCurrency) throws EntityNotFoundException {
+    	long catalogVersion = productPriceBookService.getCatalogVersion();
+    	CurrencySnapshot snapshot = currencyService.getSnapshot();
+    	int currentOrdinal = CurrencyService.getCurrencyOrdinal(snapshot, currentCurrency);
+    	List<CartProduct> cartProducts = cart.getCartProducts() == null ? List.of() : cart.getCartProducts();
+    	long[] productIds = new long[cartProducts.size()];
+    	long[] prices = new long[cartProducts.size()];
+    	boolean[] selected = new boolean[cartProducts.size()];
+    	for (int i = 0; i < cartProducts.size(); i++) {
+    		CartProduct cartProduct = cartProducts.get(i);
+    		productIds[i] = cartProduct.getProduct().getId();
+    		selected[i] = cartProduct.isSelected();
+    		try {
+    			prices[i] = calculateCartProductTypePriceInMinorUnits(cartProduct, snapshot, currentOrdinal);
+    		}
+    		catch (EntityNotFoundException e) {
+    			if (selected[i])
+    				throw e;
+    			prices[i] = PricedCart.NO_PRICE;
+    		}
+    	}
+    	return new PricedCart(cart.getVersion(), currentOrdinal, snapshot.getCurrencyUnit(currentOrdinal), snapshot.getVersion(),
+    			catalogVersion, productIds, prices, selected);
+    }
+    
+    /**
+     * Derives a priced cart with a changed line, without pricing the other lines.
+     *
+     * @param pricedCart The priced cart before the change.
+     * @param cartProduct The changed cart product.
+     * @param isRepriced Whether the price of the line changed, a new line or another purchase type.
+     * @return The priced cart with the line, or null if the rates changed since the cart was priced.
+     * @throws EntityNotFoundException if the line is selected and has no rate to the currency.
+     */
+    private PricedCart withChangedLine(PricedCart pricedCart, CartProduct cartProduct, boolean isRepriced) throws EntityNotFoundException {
+    	Long productId = cartProduct.getProduct().getId();
+    	long price = pricedCart.getPrice(productId);
+    	if (isRepriced || price == PricedCart.NO_PRICE) {
+    		CurrencySnapshot snapshot = currencyService.getSnapshot();
+    		if (snapshot.getVersion() != pricedCart.getRatesVersion())
+    			return null;
+    		try {
+    			price = calculateCartProductTypePriceInMinorUnits(cartProduct, snapshot, pricedCart.getCurrencyOrdinal());
+    		}
+    		catch (EntityNotFoundException e) {
+    			if (cartProduct.isSelected())
+    				throw e;
+    			price = PricedCart.NO_PRICE;
+    		}
+    	}
+    	return pricedCart.withLine(productId, price, cartProduct.isSelected());
     }
     
     public Money calculateCartProductTypePriceInCurrency(CartProduct cartProduct, CurrencyKind targetCurrency) throws EntityNotFoundException {
+    	CurrencySnapshot snapshot = currencyService.getSnapshot();
+    	int targetOrdinal = CurrencyService.getCurrencyOrdinal(snapshot, targetCurrency);
+    	long convertedPrice = calculateCartProductTypePriceInMinorUnits(cartProduct, snapshot, targetOrdinal);
+		return Money.ofMinor(snapshot.getCurrencyUnit(targetOrdinal), convertedPrice);
+    }
+    
+    /**
+     * Calculates the price of a CartProduct in minor units of a currency.
+     *
+     * @param cartProduct The cart product.
+     * @param snapshot The snapshot of the currencies and rates.
+     * @param targetOrdinal The ordinal of the currency in the snapshot.
+     * @return The price of the product based on the purchase type, converted to the currency.
+     * @throws EntityNotFoundException if the product currency is not supported or has no rate to the currency.
+     */
+    public static long calculateCartProductTypePriceInMinorUnits(CartProduct cartProduct, CurrencySnapshot snapshot, int targetOrdinal) throws EntityNotFoundException {
     	Product product = cartProduct.getProduct();
-		String purchaseType = cartProduct.getPurchaseType();
-    	BigDecimal typePrice = getCartProductTypePrice(product, purchaseType);
-		CurrencyKind productCurrency = product.getCurrency();
-		Money convertedPrice = currencyService.exchangeCurrencyAmount(productCurrency, targetCurrency, typePrice);
-		return convertedPrice;
+    	BigDecimal typePrice = getCartProductTypePrice(product, cartProduct.getPurchaseType());
+    	int productOrdinal = CurrencyService.getCurrencyOrdinal(snapshot, product.getCurrency());
+    	long price = MinorUnitPricing.toMinorUnits(typePrice, snapshot.getDecimalPlaces(productOrdinal));
+    	return CurrencyService.exchangeMinorUnits(snapshot, productOrdinal, targetOrdinal, price);
     }
     
     /**
@@ -2,22 +2,31 @@ package backend.services;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Currency;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -32,8 +41,11 @@ import backend.exceptions.UserNotLoggedInException;
 import backend.repositories.CurrencyExchangeRepository;
 import backend.repositories.CurrencyKindRepository;
 import backend.repositories.UserRepository;
+import backend.utils.CurrencySnapshot;
 import backend.utils.I18nUtils;
+import backend.utils.MinorUnitPricing;
 import backend.utils.RequestUtils;
+import backend.utils.RestClientUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import jakarta.transaction.Transactional;
@@ -56,9 +68,51 @@ public class CurrencyService {
 	@Autowired
 	private GeolocationService geolocationService;
 	
+	/**
+	 * The currencies and exchange rates, replaced as a whole when they are updated.
+	 */
+	private volatile CurrencySnapshot snapshot;
+	
+	/**
+	 * The version of the last snapshot, a new snapshot has a higher version so the prices computed with the
+	 * previous rates can be told apart.
+	 */
+	private final AtomicLong snapshotVersion = new AtomicLong();
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+	
 	private static final String CURRENCY_API_URL_TEMPLATE =
 		    "https://cdn.jsdelivr.net/npm/@fawazahmed0/currency-api@latest/v1/currencies/%s.json";
 	
+	/**
+	 * The url of the rates of a currency, by its lower case code, which can point to a local stub.
+	 */
+	@Value("${currency.api.url-template:" + CURRENCY_API_URL_TEMPLATE + "}")
+	private String currencyApiUrlTemplate;
+	
+	private static final Duration CURRENCY_API_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+	private static final Duration CURRENCY_API_READ_TIMEOUT = Duration.ofSeconds(30);
+	
+	/**
+	 * The currency whose rates are fetched, the other rates are cross rates.
+	 */
+	public static final String BASE_CURRENCY = "USD";
+	
+	/**
+	 * The scale of the stored rates.
+	 */
+	public static final int RATE_SCALE = 6;
+	
+	private static final String UPSERT_CURRENCY_EXCHANGE_SQL =
+			"INSERT INTO currency_exchanges (from_currency_code, to_currency_code, rate, last_updated) VALUES (?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE rate = VALUES(rate), last_updated = VALUES(last_updated)";
+	
 	/**
 	 * created using chatgpt, if you need to add more currencies, please ask chatgpt to make the new map with: currency, most prominent country code that uses it
 	 */
@@ -83,9 +137,37 @@ public class CurrencyService {
 	 */
 	public static final List<String> supportedCurrencies = List.of("USD", "EUR", "GBP", "JPY", "CHF", "CAD", "AUD", "NZD", "CNY", "SEK", "NOK", "DKK", "ILS");
 	
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadSnapshot() {
+		getSnapshot();
+	}
+	
+	/**
+	 * Loads the currencies and all the exchange rates, and publishes them as the new snapshot.
+	 */
+	public synchronized void reloadSnapshot() {
+		snapshot = new CurrencySnapshot(snapshotVersion.incrementAndGet(), currencyKindRepository.findAll(),
+				currencyExchangeRepository.findAllWithCurrencyKinds());
+	}
+	
+	/**
+	 * @return the current snapshot of the currencies and exchange rates, loaded on first use.
+	 */
+	public CurrencySnapshot getSnapshot() {
+		CurrencySnapshot currentSnapshot = snapshot;
+		if(currentSnapshot == null) {
+			synchronized(this) {
+				if(snapshot == null)
+					reloadSnapshot();
+				currentSnapshot = snapshot;
+			}
+		}
+		return currentSnapshot;
+	}
+	
 	public List<CurrencyKindDto> getAllCurrencyKinds() {
 		// Load the currencies
-		List<CurrencyKind> currencyKinds = currencyKindRepository.findAll();
+		List<CurrencyKind> currencyKinds = getSnapshot().getCurrencyKinds();
 		// Convert them to DTOs
 		List<CurrencyKindDto> currencyDtos = new ArrayList<>();
 		for (CurrencyKind currencyKind : currencyKinds) {
@@ -114,8 +196,7 @@ public class CurrencyService {
 
 		// 2. User has no saved currency, but session has one → save to DB
 		if (user != null && sessionCurrencyCode != null) {
-			CurrencyKind currencyKind = currencyKindRepository.findByCode(sessionCurrencyCode)
-				.orElse(null);
+			CurrencyKind currencyKind = getSnapshot().getCurrencyKind(sessionCurrencyCode);
 			if (currencyKind != null) {
 				user.setPreferredCurrency(currencyKind);
 				userRepository.save(user);
@@ -135,8 +216,8 @@ public class CurrencyService {
 	
 	@Transactional
 	public void saveCurrencyToSession(String currencyCode, HttpSession session) throws BadRequestException {
-		Optional<CurrencyKind> currencyKindOpt = currencyKindRepository.findByCode(currencyCode);
-		if (currencyKindOpt.isEmpty()) {
+		CurrencyKind currencyKind = getSnapshot().getCurrencyKind(currencyCode);
+		if (currencyKind == null) {
 			throw new BadRequestException("Currency not supported");
 		}
 
@@ -146,7 +227,6 @@ public class CurrencyService {
 		// Try to set for logged-in user
 		try {
 			User user = tokenService.getCurretUser();
-			CurrencyKind currencyKind = currencyKindOpt.get();
 
 			user.setPreferredCurrency(currencyKind);
 			userRepository.save(user);
@@ -168,50 +248,95 @@ public class CurrencyService {
 				updateOrCreateCurrencyKind(code, name, symbol);
 			}
 		}
+		reloadSnapshot();
 	}
 	
+	/**
+	 * Refreshes the exchange rates of all the currencies.
+	 * <p>
+	 * Only the rates of the base currency are fetched, the rates between every other pair of currencies are
+	 * cross rates computed from them. All the pairs are written with one batched upsert in one short transaction,
+	 * and then published as a new snapshot with a new version.
+	 * </p>
+	 */
 	@Scheduled(cron = "0 0 2 * * *") // daily at 2AM
 	public void updateAllCurrencyExchanges() {
 		List<CurrencyKind> currencyKinds = currencyKindRepository.findAll();
-		for(CurrencyKind fromCurrency : currencyKinds) {
-			String fromCode = fromCurrency.getCode().toLowerCase();
-			if(fromCode.equalsIgnoreCase("USD")) {
-				String url = String.format(CURRENCY_API_URL_TEMPLATE, fromCode);
-				RestClient restClient = RestClient.create();
-				ResponseEntity<JsonNode> response = restClient.get()
-						.uri(url)
-						.retrieve()
-						.toEntity(JsonNode.class);
-				JsonNode json = response.getBody();
-				
-				if(json == null || json.isEmpty()) {
-					System.err.printf("Empty response for %s%n", fromCode);
-					continue;
-				}
-				
-				// Extract Date
-				String dateText = json.has("date") ? json.get("date").asText() : null;
-				LocalDateTime date = LocalDateTime.parse(dateText + "T00:00:00");
-				
-				// lets use current date for now (because sometimes the api date does not update every date)
-				date = LocalDateTime.now();
-				
-				// Extract rates
-				JsonNode ratesNode = json.get(fromCode);
-				if(ratesNode == null || ratesNode.isEmpty()) {
-					System.err.printf("No rates found for %s%n", fromCode);
+		Map<String, BigDecimal> baseRates = fetchBaseRates(BASE_CURRENCY);
+		if(baseRates.isEmpty()) {
+			LOGGER.warn("No exchange rates found for {}", BASE_CURRENCY);
+			return;
+		}
+		
+		// lets use current date (because sometimes the api date does not update every date)
+		Timestamp date = Timestamp.valueOf(LocalDateTime.now());
+		
+		BigDecimal[] ratesFromBase = new BigDecimal[currencyKinds.size()];
+		for(int i = 0; i < ratesFromBase.length; i++)
+			ratesFromBase[i] = baseRates.get(currencyKinds.get(i).getCode().toLowerCase());
+		BigDecimal[][] crossRates = computeCrossRates(ratesFromBase);
+		
+		List<Object[]> rows = new ArrayList<>();
+		for(int from = 0; from < crossRates.length; from++) {
+			for(int to = 0; to < crossRates.length; to++) {
+				if(crossRates[from][to] != null)
+					rows.add(new Object[] { currencyKinds.get(from).getId(), currencyKinds.get(to).getId(), crossRates[from][to], date });
+			}
+		}
+		transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_CURRENCY_EXCHANGE_SQL, rows));
+		
+		// publish the new rates at once
+		reloadSnapshot();
+		LOGGER.info("Updated {} exchange rates, rates version {}", rows.size(), getSnapshot().getVersion());
+	}
+	
+	/**
+	 * Fetches the rates from a currency to all the other currencies.
+	 * 
+	 * @param baseCode the code of the currency.
+	 * @return the rates by the lower case code of the currencies, empty if the response has no rates.
+	 */
+	public Map<String, BigDecimal> fetchBaseRates(String baseCode) {
+		String code = baseCode.toLowerCase();
+		JsonNode json = RestClientUtils.createRestClientVersion1(CURRENCY_API_CONNECT_TIMEOUT, CURRENCY_API_READ_TIMEOUT).get()
+				.uri(String.format(currencyApiUrlTemplate, code))
+				.retrieve()
+				.body(JsonNode.class);
+		Map<String, BigDecimal> rates = new HashMap<>();
+		JsonNode ratesNode = json == null ? null : json.get(code);
+		if(ratesNode == null || ratesNode.isEmpty())
+			return rates;
+		for(Map.Entry<String, JsonNode> rate : ratesNode.properties()) {
+			if(rate.getValue().isNumber())
+				rates.put(rate.getKey(), rate.getValue().decimalValue());
+		}
+		return rates;
+	}
+	
+	/**
+	 * Computes the rates between every pair of currencies from their rates from a single base currency, the rate
+	 * from A to B is {@code rate(base, B) / rate(base, A)}. Every rate is rounded once, with bankers rounding to the
+	 * scale of the stored rates, so the rates do not depend on the order they are computed in.
+	 * 
+	 * @param ratesFromBase the rate from the base currency to every currency, null if the currency has no rate.
+	 * @return the rate from every currency to every other currency, null on the diagonal and for the currencies
+	 * without a rate.
+	 */
+	public static BigDecimal[][] computeCrossRates(BigDecimal[] ratesFromBase) {
+		int count = ratesFromBase.length;
+		BigDecimal[][] crossRates = new BigDecimal[count][count];
+		for(int from = 0; from < count; from++) {
+			BigDecimal fromRate = ratesFromBase[from];
+			if(fromRate == null || fromRate.signum() <= 0)
+				continue;
+			for(int to = 0; to < count; to++) {
+				BigDecimal toRate = ratesFromBase[to];
+				if(to == from || toRate == null || toRate.signum() <= 0)
 					continue;
-				}
-				
-				for(CurrencyKind toCurrency : currencyKinds) {
-					String toCode = toCurrency.getCode().toLowerCase();
-					if(ratesNode.has(toCode)) {
-						BigDecimal rate = ratesNode.get(toCode).decimalValue();
-						updateOrCreateCurrencyExchange(fromCurrency, toCurrency, rate, date);
-					}
-				}
+				crossRates[from][to] = toRate.divide(fromRate, RATE_SCALE, RoundingMode.HALF_EVEN);
 			}
 		}
+		return crossRates;
 	}
 	
 	@Transactional
@@ -227,48 +352,68 @@ public class CurrencyService {
 		currencyKindRepository.save(currencyKind);
 	}
 	
-	@Transactional
-	private void updateOrCreateCurrencyExchange(CurrencyKind fromCurrency, CurrencyKind toCurrency, BigDecimal rate, LocalDateTime date) {
-		Optional<CurrencyExchange> currencyExchangeOpt = getCurrencyExchange(fromCurrency, toCurrency);
-		CurrencyExchange currencyExchange = currencyExchangeOpt.orElse(null);
-		if(currencyExchange == null) {
-			currencyExchange = new CurrencyExchange();
-			currencyExchange.setFromCurrencyKind(fromCurrency);
-			currencyExchange.setToCurrencyKind(toCurrency);
-		}
-		currencyExchange.setRate(rate);
-		currencyExchange.setLastUpdated(date);
-		currencyExchangeRepository.save(currencyExchange);
-	}
-	
 	public Money exchangeCurrencyAmount(CurrencyKind fromCurrency, CurrencyKind toCurrency, double amount) throws EntityNotFoundException {
 		return exchangeCurrencyAmount(fromCurrency, toCurrency, BigDecimal.valueOf(amount));
 	}
 	
 	public Money exchangeCurrencyAmount(CurrencyKind fromCurrency, CurrencyKind toCurrency, BigDecimal amount) throws EntityNotFoundException {
-		// Wrap in Joda-Money just for styling, optional
-		Money amountFromCurrency = Money.of(getCurrencyUnit(fromCurrency), amount);
-		return exchangeCurrencyAmount(fromCurrency, toCurrency, amountFromCurrency);
+		// convert in minor units, with the same rounding as the conversion of Money
+		CurrencySnapshot currentSnapshot = getSnapshot();
+		int fromOrdinal = getCurrencyOrdinal(currentSnapshot, fromCurrency);
+		int toOrdinal = getCurrencyOrdinal(currentSnapshot, toCurrency);
+		long amountFromCurrency = MinorUnitPricing.toMinorUnits(amount, currentSnapshot.getDecimalPlaces(fromOrdinal));
+		long amountToCurrency = exchangeMinorUnits(currentSnapshot, fromOrdinal, toOrdinal, amountFromCurrency);
+		return Money.ofMinor(currentSnapshot.getCurrencyUnit(toOrdinal), amountToCurrency);
 	}
 	
 	public Money exchangeCurrencyAmount(CurrencyKind fromCurrency, CurrencyKind toCurrency, Money amountFromCurrency) throws EntityNotFoundException {
-		// If same currency, return unchanged
-		if (fromCurrency.equals(toCurrency)) {
-			return amountFromCurrency;
-		}
-
-		// Look up exchange rate
-		CurrencyExchange exchange = getCurrencyExchange(fromCurrency, toCurrency)
-			.orElseThrow(() -> new EntityNotFoundException("Exchange rate not found."));
-		BigDecimal exchangeRate = exchange.getRate();
+		// Look up the ordinals of the currencies in the snapshot, a single read of the volatile field
+		CurrencySnapshot currentSnapshot = getSnapshot();
+		int fromOrdinal = getCurrencyOrdinal(currentSnapshot, fromCurrency);
+		int toOrdinal = getCurrencyOrdinal(currentSnapshot, toCurrency);
 		
-		// convert the amount from the source currency to the target currency (using bankers rounding)
-		Money amountToCurrency = amountFromCurrency.convertedTo(getCurrencyUnit(toCurrency), exchangeRate, RoundingMode.HALF_EVEN);
+		// convert the amount from the source currency to the target currency (using bankers rounding),
+		// the same currency returns unchanged
+		Money amountToCurrency = currentSnapshot.convert(amountFromCurrency, fromOrdinal, toOrdinal);
+		if (amountToCurrency == null) {
+			throw new EntityNotFoundException("Exchange rate not found.");
+		}
 		return amountToCurrency;
 	}
 	
+	/**
+	 * Exchanges an amount in minor units with the rates of a snapshot, with the same result as
+	 * {@link #exchangeCurrencyAmount(CurrencyKind, CurrencyKind, Money)}.
+	 * 
+	 * @param snapshot the snapshot of the rates.
+	 * @param fromOrdinal the ordinal of the source currency in the snapshot.
+	 * @param toOrdinal the ordinal of the target currency in the snapshot.
+	 * @param amount the amount in minor units of the source currency.
+	 * @return the amount in minor units of the target currency.
+	 * @throws EntityNotFoundException if there is no rate between the currencies.
+	 */
+	public static long exchangeMinorUnits(CurrencySnapshot snapshot, int fromOrdinal, int toOrdinal, long amount) throws EntityNotFoundException {
+		long exchangedAmount = snapshot.convertMinorUnits(amount, fromOrdinal, toOrdinal);
+		if (exchangedAmount == CurrencySnapshot.NO_RATE) {
+			throw new EntityNotFoundException("Exchange rate not found.");
+		}
+		return exchangedAmount;
+	}
+	
+	/**
+	 * @return the ordinal of the currency in the snapshot.
+	 * @throws EntityNotFoundException if the currency is not in the snapshot.
+	 */
+	public static int getCurrencyOrdinal(CurrencySnapshot snapshot, CurrencyKind currencyKind) throws EntityNotFoundException {
+		int ordinal = snapshot.ordinal(currencyKind);
+		if (ordinal < 0) {
+			throw new EntityNotFoundException("Currency not found");
+		}
+		return ordinal;
+	}
+	
     public CurrencyExchange getLatestExchange() {
-        return currencyExchangeRepository.findTopByOrderByLastUpdatedDesc().orElse(null);
+        return getSnapshot().getLatestExchange();
     }
     
     public CurrencyKind getCurrentUserPreferredCurrency() throws EntityNotFoundException {
@@ -287,8 +432,11 @@ public class CurrencyService {
     }
     
     public CurrencyKind getCurrencyFromCode(String code) throws EntityNotFoundException {
-		return currencyKindRepository.findByCode(code)
-			.orElseThrow(() -> new EntityNotFoundException("Currency not found"));
+		CurrencyKind currencyKind = getSnapshot().getCurrencyKind(code);
+		if (currencyKind == null) {
+			throw new EntityNotFoundException("Currency not found");
+		}
+		return currencyKind;
 	}
     
     public Optional<CurrencyExchange> getCurrencyExchange(CurrencyKind fromCurrency, CurrencyKind toCurrency) {
@@ -1,11 +1,13 @@
 package backend.services;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,14 +17,22 @@ import backend.dtos.DirectorDto;
 import backend.dtos.admin.DirectorAdminReference;
 import backend.dtos.references.DirectorReference;
 import backend.dtos.references.PersonReference;
+import backend.dtos.search.CursorPageDto;
 import backend.dtos.search.PersonFilter;
 import backend.entities.Director;
 import backend.entities.Movie;
 import backend.entities.Person;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
 import backend.repositories.DirectorRepository;
-import jakarta.persistence.criteria.Expression;
+import backend.search.MovieRelationIndex.Relation;
+import backend.search.NameIndexType;
+import backend.services.search.MovieContentIndexService;
+import backend.services.search.MovieRelationService;
+import backend.services.search.MovieSearchCacheService;
+import backend.services.search.MovieTokenIndexService;
+import backend.services.search.NameIndexService;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Subquery;
@@ -49,6 +59,21 @@ public class DirectorService {
     
     @Autowired
     private MovieService movieService;
+
+    @Autowired
+    private NameIndexService nameIndexService;
+
+    @Autowired
+    private MovieRelationService movieRelationService;
+
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+
+    @Autowired
+    private MovieTokenIndexService movieTokenIndexService;
+    
+    @Autowired
+    private MovieContentIndexService movieContentIndexService;
     
     public Page<PersonReference> searchDirectors(PersonFilter personFilter, Pageable pageable) {
     	Specification<Person> specification = createDirectorSearchSpecification(personFilter);
@@ -61,6 +86,23 @@ public class DirectorService {
         return directorReferencesPage;
     }
     
+    /**
+     * Searches the directors with the keyset (cursor) pagination, without counting the total.
+     * 
+     * @param personFilter the search filter.
+     * @param sort the sort of the directors.
+     * @param cursor the cursor returned with the previous page, or null for the first page.
+     * @param size the size of the page.
+     * @return the page of directors, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    public CursorPageDto<PersonReference> searchDirectorsByCursor(PersonFilter personFilter, Sort sort, String cursor, int size) throws BadRequestException {
+    	Specification<Person> specification = createDirectorSearchSpecification(personFilter);
+    	CursorPageDto<Person> directorPage = personService.searchPeopleByCursor(specification,
+    			Collections.singletonList(personFilter == null ? null : personFilter.getName()), sort, cursor, size);
+    	return directorPage.map(person -> personService.convertPersonToReference(person));
+    }
+    
 	public Specification<Person> createDirectorSearchSpecification(PersonFilter params) {
 	    Specification<Person> spec = (root, query, cb) -> {
 	        List<Predicate> predicates = new ArrayList<>();
@@ -72,14 +114,9 @@ public class DirectorService {
 	        subquery.where(cb.equal(subqueryRoot.get("person").get("id"), root.get("id")));
 	        predicates.add(cb.exists(subquery));
 	        
-	        if(params.getName() != null) {
-	            Expression<Integer> differenceName = cb.function("levenshtein_ratio", Integer.class, root.get("name"), cb.literal(params.getName()));
-	            // You can compare if the difference is greater than a threshold value, e.g., 3
-	            predicates.add(cb.lessThan(differenceName, 70)); // Adjust the threshold as needed
-	            
-	            // order by closest matching
-	            query.orderBy(cb.asc(differenceName), cb.asc(root.get("name")));
-	        }
+	        Predicate filterByName = nameIndexService.filterByName(NameIndexType.PERSON, cb, query, root, params.getName());
+	        if(filterByName != null)
+	        	predicates.add(filterByName);
             if(having.size() > 0) {
             	query.having(cb.and(having.toArray(new Predicate[0])));
 			}
@@ -146,6 +183,10 @@ public class DirectorService {
     	// And now we add him to the movie
     	List<Director> directors = movie.getDirectors();
     	directors.add(director);
+    	movieRelationService.addPerson(Relation.DIRECTOR, person.getId(), movie.getId());
+    	movieSearchCacheService.invalidatePerson(person.getId());
+    	movieTokenIndexService.addDirector(movie.getId(), person.getId(), person.getName());
+    	movieContentIndexService.reindexMovie(movie.getId());
     }
     
     /**
@@ -215,5 +256,9 @@ public class DirectorService {
      */
     private void removeDirector(Director director) {
 		directorRepository.delete(director);
+		movieRelationService.removePerson(Relation.DIRECTOR, director.getPerson().getId(), director.getMovie().getId());
+		movieSearchCacheService.invalidatePerson(director.getPerson().getId());
+		movieTokenIndexService.removeDirector(director.getMovie().getId(), director.getPerson().getId());
+		movieContentIndexService.reindexMovie(director.getMovie().getId());
     }
 }
\ No newline at end of file
@@ -18,7 +18,8 @@ import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
 import backend.exceptions.EntityRemovalException;
 import backend.repositories.GenreRepository;
-import backend.utils.SpecificationUtils;
+import backend.search.NameIndexType;
+import backend.services.search.NameIndexService;
 import jakarta.persistence.criteria.Predicate;
 
 /**
@@ -39,6 +40,9 @@ public class GenreService {
 
     @Autowired
     private GenreRepository genreRepository;
+
+    @Autowired
+    private NameIndexService nameIndexService;
     
     public List<GenreReference> getGenres(List<Long> ids) {
     	List<Genre> genreList = genreRepository.findAllById(ids);
@@ -64,7 +68,7 @@ public class GenreService {
 	public Specification<Genre> createGenreSearchSpecification(GenreFilter params) {
 	    Specification<Genre> spec = (root, query, cb) -> {
 	        List<Predicate> predicates = new ArrayList<>();
-	        Predicate filterByName = SpecificationUtils.filterByName(cb, query, params.getName(), root.get("name"));
+	        Predicate filterByName = nameIndexService.filterByName(NameIndexType.GENRE, cb, query, root, params.getName());
 	        if(filterByName != null)
 	        	predicates.add(filterByName);
 	        return cb.and(predicates.toArray(new Predicate[predicates.size()]));
@@ -94,6 +98,7 @@ public class GenreService {
         // If the genre does not exist, then save it to the database.
         Genre genre = new Genre(genreName);
         genreRepository.save(genre);
+        nameIndexService.index(NameIndexType.GENRE, genre.getId(), genre.getName());
     }
 
     /**
@@ -114,6 +119,7 @@ public class GenreService {
         if (genre.getMovies() == null) {
             try {
                 genreRepository.delete(genre);
+                nameIndexService.remove(NameIndexType.GENRE, genre.getId());
                 return;
             } catch (Throwable e) {
                 // Handle any exception during removal.
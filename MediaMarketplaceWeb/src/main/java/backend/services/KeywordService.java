@@ -18,7 +18,9 @@ import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
 import backend.exceptions.EntityRemovalException;
 import backend.repositories.KeywordRepository;
-import backend.utils.SpecificationUtils;
+import backend.search.NameIndexType;
+import backend.services.search.NameIndexService;
+import backend.services.search.SuggestionService;
 import jakarta.persistence.criteria.Predicate;
 
 /**
@@ -40,6 +42,12 @@ public class KeywordService {
 	@Autowired
 	private KeywordRepository keywordRepository;
 
+	@Autowired
+	private NameIndexService nameIndexService;
+
+	@Autowired
+	private SuggestionService suggestionService;
+
 	public List<KeywordReference> getKeywords(List<Long> ids) {
 		List<Keyword> keywordList = keywordRepository.findAllById(ids);
 
@@ -57,7 +65,7 @@ public class KeywordService {
 	public Specification<Keyword> createKeywordSearchSpecification(KeywordFilter params) {
 		return (root, query, cb) -> {
 			List<Predicate> predicates = new ArrayList<>();
-			Predicate filterByName = SpecificationUtils.filterByName(cb, query, params.getName(), root.get("name"));
+			Predicate filterByName = nameIndexService.filterByName(NameIndexType.KEYWORD, cb, query, root, params.getName());
 			if (filterByName != null)
 				predicates.add(filterByName);
 			return cb.and(predicates.toArray(new Predicate[0]));
@@ -84,6 +92,8 @@ public class KeywordService {
 
 		Keyword keyword = new Keyword(keywordName, mediaID);
 		keywordRepository.save(keyword);
+		nameIndexService.index(NameIndexType.KEYWORD, keyword.getId(), keyword.getName());
+		suggestionService.indexKeyword(keyword.getId(), keyword.getName());
 	}
 
 	/**
@@ -101,6 +111,8 @@ public class KeywordService {
 		if (keyword.getMovies() == null || keyword.getMovies().isEmpty()) {
 			try {
 				keywordRepository.delete(keyword);
+				nameIndexService.remove(NameIndexType.KEYWORD, keyword.getId());
+				suggestionService.removeKeyword(keyword.getId());
 				return;
 			} catch (Throwable e) {
 				// Log exception if needed
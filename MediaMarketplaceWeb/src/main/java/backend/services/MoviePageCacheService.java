@@ -0,0 +1,109 @@
+package backend.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import backend.auth.AuthenticateAdmin;
+import backend.dtos.MovieDto;
+import backend.dtos.MoviePageDto;
+import backend.dtos.search.CacheStatsDto;
+import backend.entities.MovieRating;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.BoundedCache;
+
+/**
+ * Service that caches the built {@link MoviePageDto} of the movie pages, keyed by the movie id.
+ * <p>
+ * The cached pages are shared by all the requests and are never modified: a rating change replaces the page
+ * with a copy that shares the same {@link MovieDto} and has the new rating, and a movie update evicts the page.
+ * Both happen once the current transaction commits, and change the generation of the cache, so a page built
+ * from the old data is not cached over them.
+ * </p>
+ */
+@Service
+public class MoviePageCacheService {
+
+	private final BoundedCache<Long, MoviePageDto> cache;
+
+	public MoviePageCacheService(@Value("${movie.page.cache.max-entries:10000}") int maxEntries,
+			@Value("${movie.page.cache.ttl-seconds:3600}") long ttlSeconds) {
+		this.cache = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+	}
+
+	/**
+	 * @return the cached page of the movie, or null if it is not cached.
+	 */
+	public MoviePageDto get(Long movieId) {
+		return cache.get(movieId);
+	}
+
+	/**
+	 * @return the generation to read before building a page, and to pass to {@link #put(Long, MoviePageDto, long)}.
+	 */
+	public long generation() {
+		return cache.generation();
+	}
+
+	/**
+	 * Caches the page of a movie, unless the cache changed since the page started to be built.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param moviePage the built page, must not be modified afterwards.
+	 * @param generation the {@link #generation()} read before the page was built.
+	 */
+	public void put(Long movieId, MoviePageDto moviePage, long generation) {
+		cache.put(movieId, moviePage, generation);
+	}
+
+	/**
+	 * Refreshes the rating of the cached page of a movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param movieRating the new rating of the movie, or null if it has no ratings anymore.
+	 */
+	public void updateRating(Long movieId, MovieRating movieRating) {
+		Integer averageRating = getAverageRating(movieRating);
+		Long totalRatings = averageRating == null ? null : movieRating.getTotalRatings();
+		TransactionUtils.afterCommit(() -> cache.update(movieId,
+				moviePage -> new MoviePageDto(moviePage.getMovie(), averageRating, totalRatings)));
+	}
+
+	/**
+	 * Evicts the cached page of a changed movie.
+	 */
+	public void invalidate(Long movieId) {
+		TransactionUtils.afterCommit(() -> cache.invalidate(movieId));
+	}
+
+	/**
+	 * @return the hit and miss counters of the cache.
+	 */
+	@AuthenticateAdmin
+	public CacheStatsDto getStats() {
+		return new CacheStatsDto(cache.stats());
+	}
+
+	/**
+	 * Creates the page of a movie.
+	 *
+	 * @param movieDto the movie.
+	 * @param movieRating the rating of the movie, may be null.
+	 * @return the page, with the rounded average rating and the total ratings if the movie has ratings.
+	 */
+	public static MoviePageDto createMoviePage(MovieDto movieDto, MovieRating movieRating) {
+		Integer averageRating = getAverageRating(movieRating);
+		return new MoviePageDto(movieDto, averageRating, averageRating == null ? null : movieRating.getTotalRatings());
+	}
+
+	private static Integer getAverageRating(MovieRating movieRating) {
+		if(movieRating == null)
+			return null;
+		Long totalRatings = movieRating.getTotalRatings();
+		// only movies with ratings show a rating
+		if(totalRatings == null || totalRatings <= 0 || movieRating.getAverageRating() == null)
+			return null;
+		return (int) Math.round(movieRating.getAverageRating());
+	}
+}
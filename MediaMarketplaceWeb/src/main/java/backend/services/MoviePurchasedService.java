@@ -5,6 +5,7 @@ import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,6 +53,9 @@ public class MoviePurchasedService {
 
     @Autowired
     private MovieService movieService;
+    
+    @Autowired
+    private MovieReferenceCacheService movieReferenceCacheService;
 
     @Autowired
     private TokenService tokenService;
@@ -73,11 +77,13 @@ public class MoviePurchasedService {
         User user = tokenService.getCurretUser();
         Specification<MoviePurchased> specification = createActiveMoviePurchasedSearchSpecification(user);
         Page<MoviePurchased> moviePurchasedPage = getMoviePurchasedOfUser(specification, pageable);
-        // Then convert the active ones to movie references.
-        Page<MovieReference> movieReferencesPage = moviePurchasedPage.map(purchased -> {
-			Movie movie = purchased.getMovie();
-			return movieService.convertMovieToReference(movie);
-		});
+        // Then convert the active ones to movie references, all the movies of the page with a single lookup.
+        List<Long> movieIds = new ArrayList<>();
+        for(MoviePurchased purchased : moviePurchasedPage) {
+        	movieIds.add(purchased.getMovie().getId());
+        }
+        Map<Long, MovieReference> references = movieReferenceCacheService.getReferences(movieIds);
+        Page<MovieReference> movieReferencesPage = moviePurchasedPage.map(purchased -> references.get(purchased.getMovie().getId()));
         return movieReferencesPage;
     }
     
@@ -206,7 +212,10 @@ public class MoviePurchasedService {
     public MoviePurchasedDto convertMoviePurchasedtoDto(MoviePurchased moviePurchased) {
         MoviePurchasedDto moviePurchasedDto = new MoviePurchasedDto();
         moviePurchasedDto.setId(moviePurchased.getId());
-        moviePurchasedDto.setMovie(movieService.convertMovieToReference(moviePurchased.getMovie()));
+        Long movieId = moviePurchased.getMovie().getId();
+        MovieReference movieReference = movieReferenceCacheService.getReferences(List.of(movieId)).get(movieId);
+        // a movie missing from the reference cache is converted from the purchase itself
+        moviePurchasedDto.setMovie(movieReference != null ? movieReference : movieService.convertMovieToReference(moviePurchased.getMovie()));
         BigDecimal priceAmount = moviePurchased.getPurchasePrice();
         CurrencyKind priceCurrency = moviePurchased.getPurchasedCurrency();
         moviePurchasedDto.setPurchasePrice(I18nUtils.convertMoneyToDto(priceAmount, priceCurrency));
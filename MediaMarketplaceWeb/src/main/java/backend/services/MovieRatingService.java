@@ -12,6 +12,8 @@ import backend.entities.Movie;
 import backend.entities.MovieRating;
 import backend.repositories.MovieRatingRepository;
 import backend.repositories.MovieReviewRepository;
+import backend.services.search.MovieFacetService;
+import backend.services.search.MovieSearchCacheService;
 
 @Service
 public class MovieRatingService {
@@ -27,6 +29,15 @@ public class MovieRatingService {
 	@Autowired
 	private MovieService movieService;
 	
+	@Autowired
+	private MovieFacetService movieFacetService;
+	
+	@Autowired
+	private MovieSearchCacheService movieSearchCacheService;
+	
+	@Autowired
+	private MoviePageCacheService moviePageCacheService;
+	
 	public void updateAllMoviesRatings() {
 		PageRequest pageRequest = PageRequest.of(0, 100);
 		Page<Movie> movies = movieService.searchMoviesResult(null, pageRequest);
@@ -68,6 +79,9 @@ public class MovieRatingService {
 				UPDATE_ENTITY_LOGGER.info("MovieRatingService: Created new movie rating: {}", movieRating);
 			}
 		}
+		movieFacetService.updateRating(movie.getId(), totalRatings > 0 ? averageRating : null);
+		movieSearchCacheService.invalidateRating(movie);
+		moviePageCacheService.updateRating(movie.getId(), movie.getMovieRating());
 		UPDATE_ENTITY_LOGGER.info("MovieRatingService: Updated movie rating: {}", movieRating);
 	}
 
@@ -0,0 +1,162 @@
+package backend.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import backend.auth.AuthenticateAdmin;
+import backend.dtos.references.MovieReference;
+import backend.dtos.search.CacheStatsDto;
+import backend.exceptions.BadRequestException;
+import backend.exceptions.EntityNotFoundException;
+import backend.repositories.MovieRepository;
+import backend.services.ai.MovieLikeCountService;
+import backend.utils.TransactionUtils;
+import backend.utils.UrlUtils;
+import backend.utils.collections.BoundedCache;
+
+/**
+ * Service that caches the values of the {@link MovieReference} of the movies: their id, name and poster path.
+ * <p>
+ * The references are shown by the recommendations, the purchased movies, the products and the carts, which
+ * used to load a whole {@link backend.entities.Movie} for each of them. The misses of a lookup of several
+ * movies are loaded together with a single {@code WHERE id IN (...)} projection query. The cached values are
+ * immutable and the returned references are new objects, with the poster URL of the current request and the
+ * current like count. {@link MovieService} evicts a movie when it is updated.
+ * </p>
+ */
+@Service
+public class MovieReferenceCacheService {
+
+	/**
+	 * The cached values of a movie reference, the poster path is relative to the images folder.
+	 */
+	private record CachedReference(Long id, String name, String posterPath) {
+	}
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private UrlUtils urlUtils;
+
+	@Autowired
+	private MovieLikeCountService movieLikeCountService;
+
+	@Value("${movie.reference.batch.max-ids:100}")
+	private int maxBatchIds;
+
+	private final BoundedCache<Long, CachedReference> cache;
+
+	public MovieReferenceCacheService(@Value("${movie.reference.cache.max-entries:50000}") int maxEntries,
+			@Value("${movie.reference.cache.ttl-seconds:3600}") long ttlSeconds) {
+		this.cache = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+	}
+
+	/**
+	 * Finds the reference of a movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @return the reference of the movie.
+	 * @throws EntityNotFoundException if the movie does not exist.
+	 */
+	public MovieReference getReference(Long movieId) throws EntityNotFoundException {
+		MovieReference reference = getReferences(List.of(movieId)).get(movieId);
+		if(reference == null)
+			throw new EntityNotFoundException("The Movie with ID: (" + movieId + ") does not exist");
+		return reference;
+	}
+
+	/**
+	 * Finds the references of a batch of movies requested by a client.
+	 *
+	 * @param movieIds the ids of the movies.
+	 * @return the references of the movies that exist, in the order of the ids, without duplicates.
+	 * @throws BadRequestException if there are more ids than {@code movie.reference.batch.max-ids}.
+	 */
+	public List<MovieReference> getMovies(List<Long> movieIds) throws BadRequestException {
+		if(movieIds.size() > maxBatchIds)
+			throw new BadRequestException("At most " + maxBatchIds + " movies can be requested at once");
+		return getReferencesInOrder(movieIds);
+	}
+
+	/**
+	 * Finds the references of movies, in the order of the ids.
+	 *
+	 * @param movieIds the ids of the movies.
+	 * @return the references of the movies that exist, in the order of their first id, without duplicates.
+	 */
+	public List<MovieReference> getReferencesInOrder(Collection<Long> movieIds) {
+		return new ArrayList<>(getReferences(movieIds).values());
+	}
+
+	/**
+	 * Finds the references of movies, the cached ones from memory and the others with a single query.
+	 *
+	 * @param movieIds the ids of the movies.
+	 * @return the references of the movies that exist by id, in the order of the ids.
+	 */
+	public Map<Long, MovieReference> getReferences(Collection<Long> movieIds) {
+		Set<Long> uniqueIds = new LinkedHashSet<>(movieIds);
+		uniqueIds.remove(null);
+		Map<Long, CachedReference> found = new HashMap<>();
+		List<Long> missingIds = new ArrayList<>();
+		for(Long movieId : uniqueIds) {
+			CachedReference cached = cache.get(movieId);
+			if(cached != null)
+				found.put(movieId, cached);
+			else
+				missingIds.add(movieId);
+		}
+		if(!missingIds.isEmpty()) {
+			long generation = cache.generation();
+			// the rows are [id, name, posterPath]
+			for(Object[] row : movieRepository.findReferenceValuesByIds(missingIds)) {
+				CachedReference cached = new CachedReference((Long) row[0], (String) row[1], (String) row[2]);
+				cache.put(cached.id(), cached, generation);
+				found.put(cached.id(), cached);
+			}
+		}
+		Map<Long, MovieReference> references = new LinkedHashMap<>();
+		for(Long movieId : uniqueIds) {
+			CachedReference cached = found.get(movieId);
+			if(cached != null)
+				references.put(movieId, toReference(cached));
+		}
+		return references;
+	}
+
+	/**
+	 * Evicts the reference of a changed movie once the current transaction commits.
+	 */
+	public void invalidate(Long movieId) {
+		TransactionUtils.afterCommit(() -> cache.invalidate(movieId));
+	}
+
+	/**
+	 * @return the hit and miss counters of the cache.
+	 */
+	@AuthenticateAdmin
+	public CacheStatsDto getStats() {
+		return new CacheStatsDto(cache.stats());
+	}
+
+	private MovieReference toReference(CachedReference cached) {
+		MovieReference reference = new MovieReference();
+		reference.setId(cached.id());
+		reference.setName(cached.name());
+		reference.setPosterPath(urlUtils.getFullImageURL(cached.posterPath()));
+		reference.setLikes(movieLikeCountService.getLikes(cached.id()));
+		return reference;
+	}
+}
@@ -1,11 +1,14 @@
 package backend.services;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,14 +16,21 @@ import backend.DataUtils;
 import backend.dtos.MovieReviewDto;
 import backend.dtos.references.MovieRatingReference;
 import backend.dtos.references.MovieReviewReference;
+import backend.dtos.search.CursorPageDto;
 import backend.entities.Movie;
 import backend.entities.MovieRating;
 import backend.entities.MovieReview;
 import backend.entities.User;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.MovieReviewValuesAreIncorrectException;
 import backend.exceptions.EntityNotFoundException;
 import backend.exceptions.enums.MovieReviewTypes;
 import backend.repositories.MovieReviewRepository;
+import backend.services.ai.MovieRecommendationService;
+import backend.services.ai.SimilarMovieService;
+import backend.services.search.MovieFacetService;
+import backend.services.search.MovieSearchCacheService;
+import backend.utils.KeysetPagination;
 import backend.utils.TimezoneUtils;
 
 /**
@@ -46,6 +56,24 @@ public class MovieReviewService {
     @Autowired
     private TokenService tokenService;
 
+    @Autowired
+    private MovieFacetService movieFacetService;
+
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private MoviePageCacheService moviePageCacheService;
+
+    @Autowired
+    private MovieRecommendationService movieRecommendationService;
+
+    @Autowired
+    private SimilarMovieService similarMovieService;
+
     /**
      * Retrieves all reviews for a specific movie.
      * <p>
@@ -69,6 +97,29 @@ public class MovieReviewService {
         return movieReviewsDtoPage;
     }
 
+    /**
+     * Retrieves the reviews of a specific movie with the keyset (cursor) pagination.
+     * <p>
+     * Every page continues after the last review of the previous page, so the total is not counted
+     * and deep pages are as fast as the first one.
+     * </p>
+     *
+     * @param movieId The ID of the movie for which reviews are to be retrieved.
+     * @param sort The sort of the reviews.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param size The size of the page.
+     * @return The page of {@link MovieReviewDto} objects, with the cursor of the next page.
+     * @throws EntityNotFoundException if the movie with the given ID does not exist.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    public CursorPageDto<MovieReviewDto> getReviewsOfMovieByCursor(Long movieId, Sort sort, String cursor, int size) throws EntityNotFoundException, BadRequestException {
+        Movie movie = movieService.getMovieByID(movieId);
+        Specification<MovieReview> specification = (root, query, cb) -> cb.equal(root.get("movie"), movie);
+        CursorPageDto<MovieReview> movieReviewsPage = keysetPagination.findPage(MovieReview.class, specification, List.of(movieId),
+        		sort, cursor, size);
+        return movieReviewsPage.map(movieReview -> convertMovieReviewToDto(movieReview));
+    }
+
     /**
      * Retrieves the review made by the current user for a specific movie.
      * <p>
@@ -127,6 +178,8 @@ public class MovieReviewService {
         movieReviewRepository.save(movieReview);
         // Update the movie rating based on the new or updated review.
         updateMovieRating(movie, oldRating, movieReview, isNewReview);
+        similarMovieService.setRating(user.getId(), movie.getId(), movieReview.getRating());
+        movieRecommendationService.invalidate(user.getId());
     }
 
     /**
@@ -168,6 +221,8 @@ public class MovieReviewService {
         movieReviewRepository.save(movieReview);
         // Update the movie rating based on the new or updated review.
         updateMovieRating(movie, oldRating, movieReview, isNewReview);
+        similarMovieService.setRating(user.getId(), movie.getId(), movieReview.getRating());
+        movieRecommendationService.invalidate(user.getId());
     }
     
     @Transactional
@@ -196,6 +251,9 @@ public class MovieReviewService {
             double newAvg = (currentAvg * count - userOldRating + newRating) / count;
             movieRating.setAverageRating(newAvg);
         }
+        movieFacetService.updateRating(movie.getId(), movieRating.getAverageRating());
+        movieSearchCacheService.invalidateRating(movie);
+        moviePageCacheService.updateRating(movie.getId(), movieRating);
 	}
 
     /**
@@ -3,17 +3,26 @@ package backend.services;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Order;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +32,12 @@ import backend.dtos.MovieDto;
 import backend.dtos.MoviePageDto;
 import backend.dtos.movies.KeywordCreateRequest;
 import backend.dtos.movies.RuntimeDto;
+import backend.dtos.references.GenreReference;
+import backend.dtos.references.KeywordReference;
 import backend.dtos.references.MovieReference;
+import backend.dtos.search.CursorPageDto;
+import backend.dtos.search.FacetCountDto;
+import backend.dtos.search.MovieFacetsDto;
 import backend.dtos.search.MovieFilter;
 import backend.entities.Actor;
 import backend.entities.Director;
@@ -31,16 +45,40 @@ import backend.entities.Genre;
 import backend.entities.Keyword;
 import backend.entities.Movie;
 import backend.entities.MovieRating;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
+import backend.exceptions.ServiceUnavailableException;
 import backend.repositories.MovieRepository;
+import backend.search.CachedMovieSearch;
+import backend.search.MovieFacetCounts;
+import backend.search.MovieFacetIndex;
+import backend.search.MovieSearchKey;
+import backend.search.MovieSearchValues;
+import backend.search.NameIndexType;
+import backend.services.ai.MovieLikeCountService;
+import backend.services.search.MovieContentIndexService;
+import backend.services.search.MovieFacetService;
+import backend.services.search.MovieRelationService;
+import backend.services.search.MovieSearchCacheService;
+import backend.services.search.MovieTextIndexService;
+import backend.services.search.MovieTokenIndexService;
+import backend.services.search.NameIndexService;
+import backend.services.search.SuggestionService;
 import backend.sort.entities.MovieSort;
+import backend.utils.KeysetPagination;
 import backend.utils.UrlUtils;
+import backend.utils.collections.CompressedBitmap;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
 
 /**
  * Service class for managing movies.
@@ -69,6 +107,56 @@ public class MovieService {
     
     @Autowired
     private UrlUtils urlUtils;
+    
+    @Autowired
+    private NameIndexService nameIndexService;
+    
+    @Autowired
+    private MovieFacetService movieFacetService;
+    
+    @Autowired
+    private MovieRelationService movieRelationService;
+    
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+    
+    @Autowired
+    private MovieTokenIndexService movieTokenIndexService;
+    
+    @Autowired
+    private MovieContentIndexService movieContentIndexService;
+    
+    @Autowired
+    private SuggestionService suggestionService;
+    
+    @Autowired
+    private MovieTextIndexService movieTextIndexService;
+    
+    @Autowired
+    private KeysetPagination keysetPagination;
+    
+    @Autowired
+    private MoviePageCacheService moviePageCacheService;
+    
+    @Autowired
+    private MovieLikeCountService movieLikeCountService;
+    
+    @Autowired
+    private MovieReferenceCacheService movieReferenceCacheService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * The maximum number of movie ids (found by the relation index) that are filtered with an IN list,
+     * more ids are kept in memory from the ids of the movies that match the other criteria.
+     */
+    private static final int MAX_RELATED_IDS_FILTER_SIZE = 10000;
+    
+    /**
+     * The seconds after which a facet search can be retried while the facet index is loading.
+     */
+    private static final long FACET_INDEX_RETRY_AFTER_SECONDS = 10;
 
     /**
      * Retrieves a list of all movies.
@@ -80,7 +168,7 @@ public class MovieService {
      * @return A list of {@link MovieReference} objects representing all movies.
      */
     public Page<MovieReference> searchMovies(MovieFilter movieFilter, Pageable pageable) {
-		Page<Movie> moviePage = searchMoviesResult(movieFilter, pageable);
+		Page<Movie> moviePage = searchMoviesCached(movieFilter, pageable);
 		
         // Then convert them to DTOs.
         Page<MovieReference> movieReferencesPage = moviePage.map(movie -> {
@@ -89,31 +177,234 @@ public class MovieService {
         return movieReferencesPage;
     }
     
+    /**
+     * Retrieves the names of the genres of the movies that match the search filter.
+     * <p>
+     * The genres are counted by the in-memory facet index, so only the ids of the matching movies are queried.
+     * While the index is loading, the genres are collected from the matching movies instead.
+     * </p>
+     * 
+     * @param movieFilter the search filter.
+     * @return the names of the genres of the matching movies, the most frequent first.
+     */
     public List<String> getMoviesSearchCategories(MovieFilter movieFilter) {
+    	if(!movieFacetService.isReady())
+    		return getMoviesSearchCategoriesFromMovies(movieFilter);
+    	MovieFacetCounts facetCounts = movieFacetService.countFacets(findMovieIds(movieFilter));
+    	Map<Long, String> genreNames = genreService.getGenres(new ArrayList<>(facetCounts.genres().keySet())).stream()
+    			.collect(Collectors.toMap(GenreReference::getId, GenreReference::getName));
+    	return facetCounts.genres().keySet().stream()
+    			.map(genreNames::get)
+    			.filter(Objects::nonNull)
+    			.toList();
+    }
+    
+    private List<String> getMoviesSearchCategoriesFromMovies(MovieFilter movieFilter) {
     	Set<String> genres = new HashSet<>();
         Pageable pageable = PageRequest.of(0, 5000);
-        Page<MovieDto> page = getSearchMoviesDto(movieFilter, pageable);
-        boolean hasNext = true;
-        while(hasNext) {
-			pageable = page.nextPageable();
-			page = getSearchMoviesDto(movieFilter, pageable);
-			hasNext = page.hasNext();
-			genres.addAll(page.getContent().stream().map(MovieDto::getGenres).flatMap(List::stream).toList());
-        }
+        Page<Movie> page;
+        do {
+        	page = searchMoviesResult(movieFilter, pageable);
+        	for(Movie movie : page.getContent()) {
+        		for(Genre genre : movie.getGenres())
+        			genres.add(genre.getName());
+        	}
+        	pageable = page.nextPageable();
+        } while(page.hasNext());
         return new ArrayList<>(genres);
     }
     
-    private Page<MovieDto> getSearchMoviesDto(MovieFilter movieFilter, Pageable pageable) {
-		Page<Movie> moviePage = searchMoviesResult(movieFilter, pageable);
-		// Then convert them to DTOs.
-		Page<MovieDto> movieDtosPage = moviePage.map(movie -> {
-			return convertMovieToDto(movie);
-		});
-		return movieDtosPage;
-	}
+    /**
+     * Counts the genres, keywords, release decades and ratings of the movies that match the search filter.
+     * 
+     * @param movieFilter the search filter.
+     * @return the facet counts of the matching movies.
+     * @throws ServiceUnavailableException if the facet index is still loading, the client can retry later.
+     */
+    public MovieFacetsDto getMoviesSearchFacets(MovieFilter movieFilter) {
+    	if(!movieFacetService.isReady())
+    		throw new ServiceUnavailableException("The movie facets are not available yet, the facet index is loading",
+    				FACET_INDEX_RETRY_AFTER_SECONDS);
+    	MovieFacetCounts facetCounts = movieFacetService.countFacets(findMovieIds(movieFilter));
+    	Map<Long, String> genreNames = genreService.getGenres(new ArrayList<>(facetCounts.genres().keySet())).stream()
+    			.collect(Collectors.toMap(GenreReference::getId, GenreReference::getName));
+    	Map<Long, String> keywordNames = keywordService.getKeywords(new ArrayList<>(facetCounts.keywords().keySet())).stream()
+    			.collect(Collectors.toMap(KeywordReference::getId, KeywordReference::getName));
+    	MovieFacetsDto movieFacetsDto = new MovieFacetsDto();
+    	movieFacetsDto.setTotal(facetCounts.total());
+    	movieFacetsDto.setGenres(convertFacetCounts(facetCounts.genres(), genreNames));
+    	movieFacetsDto.setKeywords(convertFacetCounts(facetCounts.keywords(), keywordNames));
+    	movieFacetsDto.setDecades(convertFacetCounts(facetCounts.years(), Map.of()));
+    	movieFacetsDto.setRatings(convertFacetCounts(facetCounts.ratings(), Map.of()));
+    	return movieFacetsDto;
+    }
+    
+    private static List<FacetCountDto> convertFacetCounts(Map<? extends Number, Integer> counts, Map<Long, String> names) {
+    	List<FacetCountDto> facetCountDtos = new ArrayList<>(counts.size());
+    	counts.forEach((value, count) -> {
+    		Long key = value.longValue();
+    		facetCountDtos.add(new FacetCountDto(key, names.get(key), count));
+    	});
+    	return facetCountDtos;
+    }
+    
+    /**
+     * Finds the ids of the movies that match the search filter, without loading the {@link Movie} entities.
+     * 
+     * @param movieFilter the search filter.
+     * @return the ids of the matching movies, or null if the filter has no criteria (every movie matches).
+     */
+    private CompressedBitmap findMovieIds(MovieFilter movieFilter) {
+    	if(movieFilter == null || !movieFilter.hasCriteria())
+    		return null;
+    	int[] relatedMovieIds = movieRelationService.findMovieIds(movieFilter);
+    	if(relatedMovieIds != null && hasOnlyRelationCriteria(movieFilter))
+    		return CompressedBitmap.of(relatedMovieIds);
+    	Specification<Movie> specification = createMovieSearchSpecification(movieFilter, null, relatedMovieIds);
+    	LongPredicate relatedIdsFilter = getRelatedIdsFilter(relatedMovieIds);
+    	CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    	CriteriaQuery<Long> query = cb.createQuery(Long.class);
+    	Root<Movie> root = query.from(Movie.class);
+    	Predicate predicate = specification.toPredicate(root, query, cb);
+    	query.select(root.get("id"));
+    	if(predicate != null)
+    		query.where(predicate);
+    	// the order of the name filter is not needed to count
+    	query.orderBy(List.of());
+    	CompressedBitmap movieIds = new CompressedBitmap();
+    	try(Stream<Long> matchingIds = entityManager.createQuery(query).getResultStream()) {
+    		matchingIds.filter(movieId -> relatedIdsFilter == null || relatedIdsFilter.test(movieId))
+    			.forEach(movieId -> movieIds.add(MovieFacetIndex.toBitmapValue(movieId)));
+    	}
+    	return movieIds;
+    }
+    
+    /**
+     * Searches the movies through the search result cache.
+     * <p>
+     * The cache holds the ids of the movies of the page and the total, so a hit only loads the movies of
+     * the page by their ids instead of running the search query.
+     * </p>
+     * 
+     * @param movieFilter the search filter.
+     * @param pageable the requested page.
+     * @return the page of movies.
+     */
+    private Page<Movie> searchMoviesCached(MovieFilter movieFilter, Pageable pageable) {
+    	// the stored function ranks the names differently than the name index, so do not cache it
+    	boolean nameIndexLoading = movieFilter != null && movieFilter.getName() != null && nameIndexService.isLoading(NameIndexType.MOVIE);
+    	// the same for the text filter, that matches the words with a LIKE while the text index is loading
+    	boolean textIndexLoading = movieFilter != null && movieFilter.getText() != null && !movieTextIndexService.isReady();
+    	if(pageable.isUnpaged() || nameIndexLoading || textIndexLoading)
+    		return searchMoviesResult(movieFilter, pageable);
+    	MovieSearchKey key = MovieSearchKey.of(movieFilter, pageable);
+    	CachedMovieSearch cachedSearch = movieSearchCacheService.get(key);
+    	if(cachedSearch != null) {
+    		List<Long> movieIds = Arrays.stream(cachedSearch.movieIds()).boxed().toList();
+    		return new PageImpl<>(findMoviesInOrder(movieIds), pageable, cachedSearch.total());
+    	}
+    	long generation = movieSearchCacheService.generation();
+    	Page<Movie> moviePage = searchMoviesResult(movieFilter, pageable);
+    	long[] movieIds = moviePage.getContent().stream().mapToLong(Movie::getId).toArray();
+    	movieSearchCacheService.put(key, new CachedMovieSearch(movieIds, moviePage.getTotalElements()), generation);
+    	return moviePage;
+    }
     
     public Page<Movie> searchMoviesResult(MovieFilter movieFilter, Pageable pageable) {
+    	int[] relatedMovieIds = movieRelationService.findMovieIds(movieFilter);
+    	if(relatedMovieIds != null && hasOnlyRelationCriteria(movieFilter) && pageable.getSort().isUnsorted()) {
+    		// the relation index already gives the matching ids in order, so page over them without a search query
+    		return getMoviesPage(relatedMovieIds, pageable);
+    	}
     	Sort sort = pageable.getSort();
+    	List<Order> customSortOrders = getCustomSortOrders(sort);
+    	if(customSortOrders.size() > 0) {
+			// If there are custom sort orders, we apply them.
+			pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), getDefaultSort(sort, customSortOrders));
+		}
+    	//PageRequest pageable = PageRequestUtils.getPageRequest(pageableDto);
+    	Specification<Movie> specification = createMovieSearchSpecification(movieFilter, Sort.by(customSortOrders), relatedMovieIds);
+    	LongPredicate relatedIdsFilter = getRelatedIdsFilter(relatedMovieIds);
+    	if(relatedIdsFilter != null)
+    		return findMoviesPage(specification, relatedIdsFilter, pageable);
+		Page<Movie> moviePage = movieRepository.findAll(specification, pageable);
+		return moviePage;
+    }
+    
+    /**
+     * Finds a page of the movies that match a search specification and a filter of their ids.
+     * <p>
+     * The ids of the movies that match the specification are streamed in the order of the page and filtered
+     * in memory, then only the movies of the page are loaded.
+     * </p>
+     * 
+     * @param specification the search specification.
+     * @param idFilter the ids of the allowed movies.
+     * @param pageable the requested page, its sort replaces the orders of the specification like the repository does.
+     * @return the page of movies.
+     */
+    private Page<Movie> findMoviesPage(Specification<Movie> specification, LongPredicate idFilter, Pageable pageable) {
+    	CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+    	CriteriaQuery<Long> query = cb.createQuery(Long.class);
+    	Root<Movie> root = query.from(Movie.class);
+    	Predicate predicate = specification.toPredicate(root, query, cb);
+    	query.select(root.get("id"));
+    	if(predicate != null)
+    		query.where(predicate);
+    	if(pageable.getSort().isSorted())
+    		query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, cb));
+    	long from = pageable.isPaged() ? pageable.getOffset() : 0;
+    	long to = pageable.isPaged() ? from + pageable.getPageSize() : Long.MAX_VALUE;
+    	List<Long> pageIds = new ArrayList<>();
+    	long total = 0;
+    	try(Stream<Long> movieIds = entityManager.createQuery(query).getResultStream()) {
+    		for(Iterator<Long> iterator = movieIds.iterator(); iterator.hasNext();) {
+    			Long movieId = iterator.next();
+    			if(!idFilter.test(movieId))
+    				continue;
+    			if(total >= from && total < to)
+    				pageIds.add(movieId);
+    			total++;
+    		}
+    	}
+    	return new PageImpl<>(findMoviesInOrder(pageIds), pageable, total);
+    }
+    
+    /**
+     * Searches the movies with the keyset (cursor) pagination.
+     * <p>
+     * Every page continues after the last movie of the previous page instead of skipping the previous pages,
+     * so deep pages are as fast as the first one, and the total is not counted.
+     * </p>
+     * 
+     * @param movieFilter the search filter.
+     * @param sort the sort, may include the custom sort orders ({@link MovieSort}).
+     * @param cursor the cursor returned with the previous page, or null for the first page.
+     * @param size the size of the page.
+     * @return the page of movies, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    public CursorPageDto<MovieReference> searchMoviesByCursor(MovieFilter movieFilter, Sort sort, String cursor, int size) throws BadRequestException {
+    	List<Order> customSortOrders = getCustomSortOrders(sort);
+    	int[] relatedMovieIds = movieRelationService.findMovieIds(movieFilter);
+    	Specification<Movie> specification = createMovieSearchSpecification(movieFilter, Sort.by(customSortOrders), relatedMovieIds);
+    	CursorPageDto<Movie> moviePage = keysetPagination.findPage(Movie.class, specification, getRelatedIdsFilter(relatedMovieIds),
+    			getFilterValues(movieFilter), getDefaultSort(sort, customSortOrders), cursor, size);
+    	return moviePage.map(movie -> convertMovieToReference(movie));
+    }
+    
+    /**
+     * @return the values of the search filter, that identify the search of a cursor.
+     */
+    private static List<Object> getFilterValues(MovieFilter movieFilter) {
+    	if(movieFilter == null)
+    		return List.of();
+    	return Arrays.asList(movieFilter.getName(), movieFilter.getText(), movieFilter.getGenres(), movieFilter.getActors(),
+    			movieFilter.getDirectors(), movieFilter.getYearAbove(), movieFilter.getYearBelow(),
+    			movieFilter.getRatingAbove(), movieFilter.getRatingBelow());
+    }
+    
+    private static List<Order> getCustomSortOrders(Sort sort) {
     	List<Order> customSortOrders = new ArrayList<>();
     	for(Order order : sort) {
     		String property = order.getProperty();
@@ -122,20 +413,86 @@ public class MovieService {
     			customSortOrders.add(order);
     		}
 		}
-    	if(customSortOrders.size() > 0) {
-			// If there are custom sort orders, we apply them.
-    		Sort defaultSort = Sort.by(sort.stream()
-					    				.filter(order -> !customSortOrders.contains(order))
-					    				.toList());
-			pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), defaultSort);
-		}
-    	//PageRequest pageable = PageRequestUtils.getPageRequest(pageableDto);
-    	Specification<Movie> specification = createMovieSearchSpecification(movieFilter, Sort.by(customSortOrders));
-		Page<Movie> moviePage = movieRepository.findAll(specification, pageable);
-		return moviePage;
+    	return customSortOrders;
+    }
+    
+    private static Sort getDefaultSort(Sort sort, List<Order> customSortOrders) {
+    	return Sort.by(sort.stream()
+    			.filter(order -> !customSortOrders.contains(order))
+    			.toList());
+    }
+    
+    private static boolean hasRelationCriteria(MovieFilter movieFilter) {
+    	return (movieFilter.getGenres() != null && !movieFilter.getGenres().isEmpty())
+    			|| (movieFilter.getActors() != null && !movieFilter.getActors().isEmpty())
+    			|| (movieFilter.getDirectors() != null && !movieFilter.getDirectors().isEmpty());
+    }
+    
+    private static boolean hasOnlyRelationCriteria(MovieFilter movieFilter) {
+    	return movieFilter.getName() == null && movieFilter.getText() == null && movieFilter.getYearAbove() == null && movieFilter.getYearBelow() == null
+    			&& movieFilter.getRatingAbove() == null && movieFilter.getRatingBelow() == null;
+    }
+    
+    /**
+     * Loads a page of movies from a list of movie ids.
+     * 
+     * @param movieIds the ids of all the matching movies, in the order of the pages.
+     * @param pageable the requested page.
+     * @return the page of movies.
+     */
+    private Page<Movie> getMoviesPage(int[] movieIds, Pageable pageable) {
+    	int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), movieIds.length) : 0;
+    	int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), movieIds.length) : movieIds.length;
+    	List<Long> pageIds = new ArrayList<>(to - from);
+    	for(int i = from; i < to; i++)
+    		pageIds.add((long) movieIds[i]);
+    	return new PageImpl<>(findMoviesInOrder(pageIds), pageable, movieIds.length);
+    }
+    
+    /**
+     * Loads movies by their ids, in the order of the ids. Movies that no longer exist are skipped.
+     */
+    public List<Movie> findMoviesInOrder(List<Long> movieIds) {
+    	Map<Long, Movie> moviesById = movieRepository.findAllById(movieIds).stream()
+    			.collect(Collectors.toMap(Movie::getId, movie -> movie));
+    	return movieIds.stream()
+    			.map(moviesById::get)
+    			.filter(Objects::nonNull)
+    			.toList();
     }
     
 	public Specification<Movie> createMovieSearchSpecification(MovieFilter params, Sort sort) {
+		int[] relatedMovieIds = movieRelationService.findMovieIds(params);
+		// the callers of this variant do not filter the ids in memory, so large id sets are left to the joins
+		if(getRelatedIdsFilter(relatedMovieIds) != null)
+			relatedMovieIds = null;
+		return createMovieSearchSpecification(params, sort, relatedMovieIds);
+	}
+    
+    /**
+     * @return the filter of the related movie ids that the search specification leaves to its caller,
+     * or null if the specification filters them.
+     */
+    private static LongPredicate getRelatedIdsFilter(int[] relatedMovieIds) {
+    	if(relatedMovieIds == null || relatedMovieIds.length <= MAX_RELATED_IDS_FILTER_SIZE)
+    		return null;
+    	return movieId -> Arrays.binarySearch(relatedMovieIds, (int) movieId) >= 0;
+    }
+    
+    /**
+     * Creates the search specification of the movies.
+     * 
+     * @param params the search filter.
+     * @param sort the custom sort orders ({@link MovieSort}).
+     * @param relatedMovieIds the ids of the movies that have all the genres, actors and directors of the filter,
+     * found by the relation index, or null to filter them with joins. At most {@link #MAX_RELATED_IDS_FILTER_SIZE}
+     * ids are filtered by the specification, more are not and the caller keeps the movies allowed by
+     * {@link #getRelatedIdsFilter(int[])}.
+     * @return the search specification.
+     */
+	private Specification<Movie> createMovieSearchSpecification(MovieFilter params, Sort sort, int[] relatedMovieIds) {
+		// small id sets are filtered by id, large ones by the caller instead of a huge IN list
+		boolean filterRelatedIds = relatedMovieIds != null && relatedMovieIds.length <= MAX_RELATED_IDS_FILTER_SIZE;
 	    Specification<Movie> spec = (root, query, cb) -> {
 	        List<Predicate> predicates = new ArrayList<>();
 	        List<Predicate> having = new ArrayList<>();
@@ -153,14 +510,20 @@ public class MovieService {
 	                predicates.add(cb.lessThan(ratings.get("averageRating"), params.getRatingBelow()));
 	            }
 	        }
+	        // the name and text indexes apply the related ids themselves before they keep the best matches
+	        LongPredicate relatedFilter = relatedMovieIds == null ? null
+	        		: movieId -> Arrays.binarySearch(relatedMovieIds, (int) movieId) >= 0;
+	        boolean hasDatabaseFilters = params.getYearAbove() != null || params.getYearBelow() != null
+	        		|| params.getRatingAbove() != null || params.getRatingBelow() != null
+	        		|| (relatedMovieIds == null && hasRelationCriteria(params));
 	        if(params.getName() != null) {
-	            Expression<Integer> differenceName = cb.function("levenshtein_ratio", Integer.class, root.get("name"), cb.literal(params.getName()));
-	            // You can compare if the difference is greater than a threshold value, e.g., 3
-	            predicates.add(cb.lessThan(differenceName, 70)); // Adjust the threshold as needed
-	            
-	            // order by closest matching
-	            orderBy.add(cb.asc(differenceName));
-	            orderBy.add(cb.asc(root.get("name"))); // Ascending order by name
+	        	// the configured name search engine orders the matching movies by the closest matching
+	        	predicates.add(nameIndexService.filterByName(NameIndexType.MOVIE, cb, root, params.getName(), relatedFilter, orderBy));
+	        }
+	        if(params.getText() != null) {
+	        	// the best BM25 scores first, after the closest names if both are searched
+	        	predicates.add(movieTextIndexService.filterByText(cb, query, root, params.getText(), relatedFilter,
+	        			hasDatabaseFilters || params.getName() != null, orderBy));
 	        }
             if (params.getYearAbove() != null) {
             	LocalDate year = LocalDate.of(params.getYearAbove(), 1, 1);
@@ -173,7 +536,15 @@ public class MovieService {
             	predicates.add(cb.lessThanOrEqualTo(releaseDate, year));
             }
             
-            if(params.getGenres() != null) {
+            if(filterRelatedIds) {
+            	// the genres, actors and directors were already intersected by the relation index
+            	if(relatedMovieIds.length == 0)
+            		predicates.add(cb.disjunction());
+            	else
+            		predicates.add(root.get("id").in(Arrays.stream(relatedMovieIds).mapToObj(Long::valueOf).toList()));
+            }
+            
+            if(relatedMovieIds == null && params.getGenres() != null) {
 				Join<Movie, Genre> genres = root.join("genres", JoinType.LEFT);
 				List<Long> requestedGenres = params.getGenres();
 				
@@ -202,7 +573,7 @@ public class MovieService {
 			    */
 			}
             
-            if(params.getActors() != null) {
+            if(relatedMovieIds == null && params.getActors() != null) {
             	List<Long> requestedActors = params.getActors();
             	if(requestedActors.size() > 0) {
             		
@@ -235,7 +606,7 @@ public class MovieService {
 				}
             }
             
-            if(params.getDirectors() != null) {
+            if(relatedMovieIds == null && params.getDirectors() != null) {
             	List<Long> requestedDirectors = params.getDirectors();
             	if(requestedDirectors.size() > 0) {
             		
@@ -283,29 +654,27 @@ public class MovieService {
     /**
      * Retrieves details of a specific movie.
      * <p>
-     * This method retrieves a {@link Movie} entity by its ID and converts it into a
-     * {@link MovieDto} object containing detailed information about the movie.
+     * This method returns the cached page of the movie, or loads the {@link Movie} entity with its genres
+     * and rating in a single query, converts it into a {@link MoviePageDto} and caches it. The like count
+     * is added from memory to a copy of the cached page.
      * </p>
      * 
      * @param movieId The ID of the movie to retrieve.
-     * @return A {@link MovieDto} object containing details of the specified movie.
+     * @return A {@link MoviePageDto} object containing details of the specified movie.
      * @throws EntityNotFoundException if the movie with the specified ID does not exist.
      */
     public MoviePageDto getMovie(Long movieId) throws EntityNotFoundException {
-        Movie movie = getMovieByID(movieId);
-        MovieDto movieDto = convertMovieToDto(movie);
-        MoviePageDto moviePageDto = new MoviePageDto();
-        moviePageDto.setMovie(movieDto);
-        MovieRating movieRating = movie.getMovieRating();
-        if (movieRating != null) {
-        	Long totalRatings = movieRating.getTotalRatings();
-        	if(totalRatings != null && totalRatings > 0) {
-				// If there are ratings, then we set the average rating and total ratings.
-				moviePageDto.setAverageRating((int) Math.round(movieRating.getAverageRating()));
-				moviePageDto.setTotalRatings(movieRating.getTotalRatings());
-			}
-		}
-        return moviePageDto;
+    	MoviePageDto moviePageDto = moviePageCacheService.get(movieId);
+    	if(moviePageDto == null) {
+    		long generation = moviePageCacheService.generation();
+    		Movie movie = movieRepository.findPageMovieById(movieId)
+    				.orElseThrow(() -> new EntityNotFoundException("The Movie with ID: (" + movieId + ") does not exist"));
+    		moviePageDto = MoviePageCacheService.createMoviePage(convertMovieToDto(movie), movie.getMovieRating());
+    		moviePageCacheService.put(movieId, moviePageDto, generation);
+    	}
+    	// the likes change too often to be cached, the cached page is copied with the current count
+    	return new MoviePageDto(moviePageDto.getMovie(), moviePageDto.getAverageRating(), moviePageDto.getTotalRatings(),
+    			movieLikeCountService.getLikes(movieId));
     }
 
     /**
@@ -353,6 +722,14 @@ public class MovieService {
         movie.setKeywords(keywords);
         updateMovieByDto(movie, movieDto);
         movieRepository.save(movie);
+        nameIndexService.index(NameIndexType.MOVIE, movie.getId(), movie.getName());
+        movieFacetService.indexMovie(movie);
+        movieRelationService.indexMovieGenres(movie);
+        movieTokenIndexService.indexMovie(movie);
+        movieContentIndexService.reindexMovie(movie.getId());
+        suggestionService.indexMovie(movie);
+        movieTextIndexService.indexMovie(movie);
+        movieSearchCacheService.invalidateMovie(null, movieSearchCacheService.getSearchValues(movie));
     }
 
     /**
@@ -374,6 +751,7 @@ public class MovieService {
         String mediaID = createMovieDto.getMediaID();
         MovieDto movieDto = createMovieDto.getMovieDto();
         Movie movie = getMovieByNameID(mediaID);
+        MovieSearchValues searchValuesBefore = movieSearchCacheService.getSearchValues(movie);
         // Update the movie's genres only if there are new genres provided.
         List<String> genresNames = movieDto.getGenres();
         if (genresNames != null) {
@@ -397,6 +775,16 @@ public class MovieService {
         // Update the movie and save it
         updateMovieByDto(movie, movieDto);
         Movie updatedMovie = movieRepository.save(movie);
+        nameIndexService.index(NameIndexType.MOVIE, updatedMovie.getId(), updatedMovie.getName());
+        movieFacetService.indexMovie(updatedMovie);
+        movieRelationService.indexMovieGenres(updatedMovie);
+        movieTokenIndexService.indexMovie(updatedMovie);
+        movieContentIndexService.reindexMovie(updatedMovie.getId());
+        suggestionService.indexMovie(updatedMovie);
+        movieTextIndexService.indexMovie(updatedMovie);
+        movieSearchCacheService.invalidateMovie(searchValuesBefore, movieSearchCacheService.getSearchValues(updatedMovie));
+        moviePageCacheService.invalidate(updatedMovie.getId());
+        movieReferenceCacheService.invalidate(updatedMovie.getId());
         return updatedMovie.getId();
     }
 
@@ -456,6 +844,7 @@ public class MovieService {
         movieReference.setId(movie.getId());
         movieReference.setName(movie.getName());
         movieReference.setPosterPath(urlUtils.getFullImageURL(movie.getPosterPath()));
+        movieReference.setLikes(movieLikeCountService.getLikes(movie.getId()));
         return movieReference;
     }
 
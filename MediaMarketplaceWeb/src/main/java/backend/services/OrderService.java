@@ -25,7 +25,10 @@ import backend.entities.User;
 import backend.exceptions.EntityNotFoundException;
 import backend.exceptions.PurchaseOrderException;
 import backend.repositories.OrderRepository;
+import backend.services.ai.MovieRecommendationService;
+import backend.services.ai.SimilarMovieService;
 import backend.utils.I18nUtils;
+import backend.utils.PricedCart;
 import backend.utils.PurchaseType;
 import backend.utils.TimezoneUtils;
 
@@ -58,6 +61,12 @@ public class OrderService {
     
     @Autowired
     private CurrencyService currencyService;
+    
+    @Autowired
+    private MovieRecommendationService movieRecommendationService;
+    
+    @Autowired
+    private SimilarMovieService similarMovieService;
 
     /**
      * Retrieves a list of orders made by the current user.
@@ -116,7 +125,9 @@ public class OrderService {
         
         // get the current currency of the user and total price of the cart
         CurrencyKind purchaseCurrency = currencyService.getCurrentUserPreferredCurrency(user);
-        Money totalPrice =  cartService.calculateCartTotalPrice(cart, purchaseCurrency);
+        // the priced cart of the cart page is reused while the cart and the rates did not change since
+        PricedCart pricedCart = cartService.getPricedCart(cart, purchaseCurrency);
+        Money totalPrice = pricedCart.getSelectedTotalMoney();
         
         // Convert CartProducts to MoviePurchased items
         for (CartProduct cartProduct : cartProducts) {
@@ -124,7 +135,7 @@ public class OrderService {
         	if(cartProduct.isSelected()) {
 	            Product product = cartProduct.getProduct();
 	            String purchaseType = cartProduct.getPurchaseType();
-	            Money price = cartService.calculateCartProductTypePriceInCurrency(cartProduct, purchaseCurrency);
+	            Money price = Money.ofMinor(pricedCart.getCurrencyUnit(), pricedCart.getPrice(product.getId()));
 	            Movie movie = product.getMovie();
 	
 	            // Create the movie purchased item from the cart product.
@@ -164,7 +175,14 @@ public class OrderService {
         if(cartProducts.isEmpty()) {
 			cartService.removeCartFromUser(cart);
 		}
+        else {
+        	cartService.markCartChanged(cart, pricedCart.withoutSelectedLines());
+        }
         Order createdOrder = orderRepository.save(order);
+        for (MoviePurchased purchasedItem : purchasedItems) {
+        	similarMovieService.addPurchase(user.getId(), purchasedItem.getMovie().getId());
+        }
+        movieRecommendationService.invalidate(user.getId());
         return createdOrder.getId();
     }
 
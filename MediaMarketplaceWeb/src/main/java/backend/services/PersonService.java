@@ -1,10 +1,13 @@
 package backend.services;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -13,14 +16,24 @@ import backend.auth.AuthenticateAdmin;
 import backend.dtos.PersonDto;
 import backend.dtos.admin.PersonAdminDto;
 import backend.dtos.references.PersonReference;
+import backend.dtos.search.CursorPageDto;
 import backend.entities.Actor;
 import backend.entities.Director;
 import backend.entities.Person;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityAlreadyExistsException;
 import backend.exceptions.EntityNotFoundException;
 import backend.repositories.ActorRepository;
 import backend.repositories.DirectorRepository;
 import backend.repositories.PersonRepository;
+import backend.search.NameIndexType;
+import backend.services.search.MovieContentIndexService;
+import backend.services.search.MovieRelationService;
+import backend.services.search.MovieSearchCacheService;
+import backend.services.search.MovieTokenIndexService;
+import backend.services.search.NameIndexService;
+import backend.services.search.SuggestionService;
+import backend.utils.KeysetPagination;
 import backend.utils.UrlUtils;
 
 /**
@@ -50,6 +63,27 @@ public class PersonService {
     @Autowired
     private UrlUtils urlUtils;
     
+    @Autowired
+    private KeysetPagination keysetPagination;
+
+    @Autowired
+    private NameIndexService nameIndexService;
+
+    @Autowired
+    private MovieRelationService movieRelationService;
+
+    @Autowired
+    private MovieSearchCacheService movieSearchCacheService;
+
+    @Autowired
+    private MovieTokenIndexService movieTokenIndexService;
+    
+    @Autowired
+    private MovieContentIndexService movieContentIndexService;
+    
+    @Autowired
+    private SuggestionService suggestionService;
+    
     public PersonDto getPerson(Long id) throws EntityNotFoundException {
 		// Retrieve the person by ID and convert it to a DTO.
 		Person person = getPersonByID(id);
@@ -90,6 +124,8 @@ public class PersonService {
         // Convert the DTO to a Person entity and save it to the database.
         Person person = getPersonFromAdminDto(personAdminDto);
         Person resultPerson = personRepository.save(person);
+        nameIndexService.index(NameIndexType.PERSON, resultPerson.getId(), resultPerson.getName());
+        suggestionService.indexPerson(resultPerson.getId(), resultPerson.getName());
         return resultPerson.getId();
     }
 
@@ -110,14 +146,25 @@ public class PersonService {
         // Retrieve the person by ID.
         Person person = getPersonByID(id);
         // First, delete all associated actor roles and directed media (if exists).
+        Set<Long> changedMovieIds = new HashSet<>();
         List<Actor> actorRoles = person.getActorRoles();
-        if(actorRoles != null)
+        if(actorRoles != null) {
+        	actorRoles.forEach(actor -> changedMovieIds.add(actor.getMovie().getId()));
         	actorRepository.deleteAllInBatch(actorRoles);
+        }
         List<Director> directedMedia = person.getDirectedMedia();
-        if(directedMedia != null)
+        if(directedMedia != null) {
+        	directedMedia.forEach(director -> changedMovieIds.add(director.getMovie().getId()));
         	directorRepository.deleteAllInBatch(person.getDirectedMedia());
+        }
         // Then, delete the person from the database.
         personRepository.delete(person);
+        nameIndexService.remove(NameIndexType.PERSON, id);
+        movieRelationService.removePerson(id);
+        movieSearchCacheService.invalidatePerson(id);
+        movieTokenIndexService.removePerson(id);
+        movieContentIndexService.reindexMovies(changedMovieIds);
+        suggestionService.removePerson(id);
     }
     
     /**
@@ -147,6 +194,22 @@ public class PersonService {
     public Page<Person> searchPeople(Specification<Person> specification, Pageable pageable) {
 		return personRepository.findAll(specification, pageable);
 	}
+    
+    /**
+     * Searches the people with the keyset (cursor) pagination, without counting the total.
+     * 
+     * @param specification the search specification.
+     * @param filterValues the values the specification was created from.
+     * @param sort the sort of the people.
+     * @param cursor the cursor returned with the previous page, or null for the first page.
+     * @param size the size of the page.
+     * @return the page of people, with the cursor of the next page.
+     * @throws BadRequestException if the cursor is not valid for this sort.
+     */
+    public CursorPageDto<Person> searchPeopleByCursor(Specification<Person> specification, List<?> filterValues, Sort sort,
+    		String cursor, int size) throws BadRequestException {
+    	return keysetPagination.findPage(Person.class, specification, filterValues, sort, cursor, size);
+    }
 
     /**
      * Converts a {@link PersonDto} to a {@link Person} entity.
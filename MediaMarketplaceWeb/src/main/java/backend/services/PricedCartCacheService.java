@@ -0,0 +1,82 @@
+package backend.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import backend.entities.Cart;
+import backend.utils.PricedCart;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.BoundedCache;
+
+/**
+ * Service that caches the {@link PricedCart} of the carts, keyed by the cart id.
+ * <p>
+ * A priced cart is cached for the version of the cart it was computed from, so it is only used while the
+ * cart has that version. A change of the cart increments its version, and caches the priced cart derived with
+ * the change for the new version, once the transaction commits and the new version is known.
+ * </p>
+ */
+@Service
+public class PricedCartCacheService {
+
+	private final BoundedCache<Long, PricedCart> cache;
+
+	public PricedCartCacheService(@Value("${cart.priced.cache.max-entries:10000}") int maxEntries,
+			@Value("${cart.priced.cache.ttl-seconds:600}") long ttlSeconds) {
+		this.cache = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+	}
+
+	/**
+	 * @return the cached priced cart of the cart, or null if it is not cached.
+	 */
+	public PricedCart get(Long cartId) {
+		return cache.get(cartId);
+	}
+
+	/**
+	 * @return the generation to read before pricing a cart, and to pass to {@link #put(Cart, PricedCart, long)}.
+	 */
+	public long generation() {
+		return cache.generation();
+	}
+
+	/**
+	 * Caches the priced cart of an unchanged cart once the current transaction commits, unless the cart was
+	 * changed by then or the cache changed since the cart started to be priced.
+	 *
+	 * @param cart the cart.
+	 * @param pricedCart the priced cart, of the version of the cart.
+	 * @param generation the {@link #generation()} read before the cart was priced.
+	 */
+	public void put(Cart cart, PricedCart pricedCart, long generation) {
+		TransactionUtils.afterCommit(() -> {
+			if(cart.getVersion() == pricedCart.getCartVersion())
+				cache.put(cart.getId(), pricedCart, generation);
+		});
+	}
+
+	/**
+	 * Caches the priced cart of a changed cart once the current transaction commits, for the version the cart
+	 * has then.
+	 *
+	 * @param cart the changed cart.
+	 * @param pricedCart the priced cart with the changes, or null to evict the priced cart of the cart.
+	 */
+	public void putChanged(Cart cart, PricedCart pricedCart) {
+		TransactionUtils.afterCommit(() -> {
+			if(pricedCart == null)
+				cache.invalidate(cart.getId());
+			else
+				cache.put(cart.getId(), pricedCart.withCartVersion(cart.getVersion()), cache.generation());
+		});
+	}
+
+	/**
+	 * Evicts the priced cart of a removed or merged cart.
+	 */
+	public void invalidate(Long cartId) {
+		TransactionUtils.afterCommit(() -> cache.invalidate(cartId));
+	}
+}
@@ -0,0 +1,358 @@
+package backend.services;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import backend.entities.CurrencyKind;
+import backend.entities.Product;
+import backend.repositories.ProductPriceRepository;
+import backend.repositories.ProductRepository;
+import backend.utils.CurrencySnapshot;
+import backend.utils.MinorUnitPricing;
+import backend.utils.ProductPriceBook;
+import backend.utils.PurchaseType;
+import backend.utils.TransactionUtils;
+
+/**
+ * Service that keeps the price book: the final buy and rent prices of every product in every supported currency.
+ * <p>
+ * The prices only change when a product is saved or when the exchange rates are refreshed, so they are computed
+ * then instead of on every read: the discount is applied and the price converted once per product and currency.
+ * The book is kept in memory for the reads, in a {@link ProductPriceBook}, and written to the
+ * {@code product_prices} table, where the products can be sorted by price in a currency.
+ * </p>
+ * <p>
+ * A saved product is repriced once its transaction commits. The whole book is rebuilt when the application
+ * is ready, and by a scheduled check once the rates snapshot has a new version. Until then, the book is older
+ * than the rates and the reads fall back to computing the prices.
+ * </p>
+ */
+@Service
+public class ProductPriceBookService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final String UPSERT_PRODUCT_PRICE_SQL =
+			"INSERT INTO product_prices (product_id, currency_id, buy_price, rent_price, last_updated) VALUES (?, ?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE buy_price = VALUES(buy_price), rent_price = VALUES(rent_price), last_updated = VALUES(last_updated)";
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private CurrencyService currencyService;
+
+	@Autowired
+	private ProductPriceRepository productPriceRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private volatile ProductPriceBook priceBook;
+
+	/**
+	 * The version of the product prices, incremented when a product is saved or removed and when the book is
+	 * rebuilt, for the prices computed from the products outside the book.
+	 */
+	private final AtomicLong catalogVersion = new AtomicLong();
+
+	/**
+	 * Held while the {@code product_prices} table is written, apart from the lock of the book.
+	 */
+	private final ReentrantLock tableLock = new ReentrantLock();
+
+	/**
+	 * The products repriced in the book and not yet written to the table.
+	 */
+	private final Set<Long> dirtyProductIds = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The rates version of the last book written entirely to the table, the table sorts the products only
+	 * while it is the current version.
+	 */
+	private volatile long tableRatesVersion = -1;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadPriceBook() {
+		rebuild();
+	}
+
+	/**
+	 * Rebuilds the price book if the rates changed since it was built.
+	 */
+	@Scheduled(fixedDelayString = "${pricebook.check-interval-ms:60000}", initialDelayString = "${pricebook.check-interval-ms:60000}")
+	public void rebuildIfStale() {
+		ProductPriceBook currentBook = priceBook;
+		if(currentBook == null || currentBook.getRatesVersion() != currencyService.getSnapshot().getVersion())
+			rebuild();
+	}
+
+	/**
+	 * Computes the prices of all the products with the current rates, replaces the price book, then writes
+	 * it to the table.
+	 */
+	public void rebuild() {
+		long startTime = System.currentTimeMillis();
+		ProductPriceBook book;
+		CurrencySnapshot snapshot;
+		synchronized(this) {
+			snapshot = currencyService.getSnapshot();
+			List<Product> products = productRepository.findAll();
+			book = new ProductPriceBook(snapshot.getVersion(), snapshot.getCurrencyCount(), products.size());
+			for(Product product : products)
+				putProduct(book, snapshot, product);
+			priceBook = book;
+			catalogVersion.incrementAndGet();
+		}
+		LOGGER.info("Built the price book of {} products in {} currencies in {} ms", book.size(), snapshot.getCurrencyCount(),
+				System.currentTimeMillis() - startTime);
+		// written outside the lock of the book, the products saved meanwhile are repriced in the book and
+		// written after it
+		saveBook(book, snapshot);
+	}
+
+	/**
+	 * Reprices a saved product once the current transaction commits, or now if there is no transaction.
+	 *
+	 * @param productId the id of the saved product.
+	 */
+	public void updateProduct(Long productId) {
+		TransactionUtils.afterCommit(() -> {
+			catalogVersion.incrementAndGet();
+			boolean stale;
+			synchronized(this) {
+				ProductPriceBook book = priceBook;
+				CurrencySnapshot snapshot = currencyService.getSnapshot();
+				stale = book == null || book.getRatesVersion() != snapshot.getVersion();
+				if(!stale) {
+					// reloaded, the product may have been saved again by a transaction that committed first
+					Product product = newTransaction(true).execute(status -> productRepository.findById(productId).orElse(null));
+					if(product == null)
+						return;
+					putProduct(book, snapshot, product);
+				}
+			}
+			if(stale) {
+				// the whole book is older than the rates
+				rebuild();
+				return;
+			}
+			dirtyProductIds.add(productId);
+			saveDirtyProducts();
+		});
+	}
+
+	/**
+	 * Removes a product from the price book once the current transaction commits, its stored prices are removed
+	 * with it by the database.
+	 *
+	 * @param productId the id of the removed product.
+	 */
+	public void removeProduct(Long productId) {
+		TransactionUtils.afterCommit(() -> {
+			catalogVersion.incrementAndGet();
+			synchronized(this) {
+				ProductPriceBook book = priceBook;
+				if(book != null)
+					book.remove(productId);
+			}
+		});
+	}
+
+	/**
+	 * Gets the final price of a product in a currency from the price book.
+	 *
+	 * @param productId the id of the product.
+	 * @param purchaseType buy or rent.
+	 * @param currency the currency.
+	 * @return the final price, or null if it is not in the price book or the price book is older than the rates.
+	 */
+	public BigDecimal getPrice(Long productId, PurchaseType purchaseType, CurrencyKind currency) {
+		ProductPriceBook book = priceBook;
+		CurrencySnapshot snapshot = currencyService.getSnapshot();
+		if(book == null || book.getRatesVersion() != snapshot.getVersion())
+			return null;
+		int ordinal = snapshot.ordinal(currency);
+		if(ordinal < 0)
+			return null;
+		long price = book.getPrice(productId, purchaseType, ordinal);
+		if(price == ProductPriceBook.MISSING)
+			return null;
+		return BigDecimal.valueOf(price, snapshot.getCurrencyUnit(ordinal).getDecimalPlaces());
+	}
+
+	/**
+	 * @return the version of the product prices, that changes whenever a product price may have changed.
+	 */
+	public long getCatalogVersion() {
+		return catalogVersion.get();
+	}
+
+	/**
+	 * Finds a page of the products sorted by their final price in a currency, with the prices of the
+	 * {@code product_prices} table.
+	 *
+	 * @param currency the currency of the prices.
+	 * @param purchaseType sorts by the buy or the rent price.
+	 * @param direction the direction of the sort.
+	 * @param pageable the page, its sort is ignored.
+	 * @return the page of products, or null if the table is older than the rates, the products are then sorted
+	 * by the caller.
+	 */
+	public Page<Product> findProductsByPrice(CurrencyKind currency, PurchaseType purchaseType, Sort.Direction direction,
+			Pageable pageable) {
+		if(tableRatesVersion != currencyService.getSnapshot().getVersion())
+			return null;
+		String priceProperty = purchaseType == PurchaseType.BUY ? "buyPrice" : "rentPrice";
+		Sort sort = Sort.by(direction, priceProperty).and(Sort.by("product.id"));
+		return productPriceRepository.findProductsByCurrencyId(currency.getId(),
+				PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort));
+	}
+
+	/**
+	 * Computes the prices of a product in every currency and puts them in the book.
+	 */
+	private void putProduct(ProductPriceBook book, CurrencySnapshot snapshot, Product product) {
+		int currencyCount = snapshot.getCurrencyCount();
+		long[] buyPrices = new long[currencyCount];
+		long[] rentPrices = new long[currencyCount];
+		int productOrdinal = snapshot.ordinal(product.getCurrency());
+		long finalBuyPrice = ProductPriceBook.MISSING;
+		long finalRentPrice = ProductPriceBook.MISSING;
+		try {
+			if(productOrdinal >= 0) {
+				int decimalPlaces = snapshot.getDecimalPlaces(productOrdinal);
+				finalBuyPrice = MinorUnitPricing.applyDiscount(MinorUnitPricing.toMinorUnits(product.getBuyPrice(), decimalPlaces),
+						product.getBuyDiscount());
+				finalRentPrice = MinorUnitPricing.applyDiscount(MinorUnitPricing.toMinorUnits(product.getRentPrice(), decimalPlaces),
+						product.getRentDiscount());
+			}
+		} catch (ArithmeticException e) {
+			// a price with more decimals than its currency, the reads fall back to computing it
+			LOGGER.warn("Can not price the product {}: {}", product.getId(), e.getMessage());
+		}
+		for(int ordinal = 0; ordinal < currencyCount; ordinal++) {
+			buyPrices[ordinal] = toMinorUnits(snapshot, finalBuyPrice, productOrdinal, ordinal);
+			rentPrices[ordinal] = toMinorUnits(snapshot, finalRentPrice, productOrdinal, ordinal);
+		}
+		book.put(product.getId(), buyPrices, rentPrices);
+	}
+
+	/**
+	 * Writes every product of a book to the table, unless a newer book replaced it.
+	 */
+	private void saveBook(ProductPriceBook book, CurrencySnapshot snapshot) {
+		tableLock.lock();
+		try {
+			if(book != priceBook)
+				return;
+			long startTime = System.currentTimeMillis();
+			Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+			List<Object[]> rows = new ArrayList<>(book.size() * snapshot.getCurrencyCount());
+			// the rows are read from the book now, with the products saved since it was built
+			for(long productId : book.getProductIds())
+				addRows(book, snapshot, productId, now, rows);
+			saveRows(rows);
+			tableRatesVersion = book.getRatesVersion();
+			LOGGER.info("Wrote the price book to the product prices in {} ms", System.currentTimeMillis() - startTime);
+		} finally {
+			tableLock.unlock();
+		}
+		saveDirtyProducts();
+	}
+
+	/**
+	 * Writes the repriced products to the table. If the table is being written, the products are left to the
+	 * writer, which saves them once it is done, so a product update never waits for a whole book write.
+	 */
+	private void saveDirtyProducts() {
+		while(!dirtyProductIds.isEmpty() && tableLock.tryLock()) {
+			try {
+				ProductPriceBook book = priceBook;
+				CurrencySnapshot snapshot = currencyService.getSnapshot();
+				if(book == null || book.getRatesVersion() != snapshot.getVersion())
+					return;
+				Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+				List<Object[]> rows = new ArrayList<>();
+				for(Iterator<Long> iterator = dirtyProductIds.iterator(); iterator.hasNext();) {
+					long productId = iterator.next();
+					iterator.remove();
+					// a product removed since is not written, its rows are removed with it
+					if(book.contains(productId))
+						addRows(book, snapshot, productId, now, rows);
+				}
+				saveRows(rows);
+			} finally {
+				tableLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Adds the rows of a product of the book, one per currency.
+	 */
+	private static void addRows(ProductPriceBook book, CurrencySnapshot snapshot, long productId, Timestamp now, List<Object[]> rows) {
+		for(int ordinal = 0; ordinal < snapshot.getCurrencyCount(); ordinal++) {
+			rows.add(new Object[] { productId, snapshot.getCurrencyKinds().get(ordinal).getId(),
+					toColumnValue(book.getPrice(productId, PurchaseType.BUY, ordinal)),
+					toColumnValue(book.getPrice(productId, PurchaseType.RENT, ordinal)), now });
+		}
+	}
+
+	private static long toMinorUnits(CurrencySnapshot snapshot, long price, int fromOrdinal, int toOrdinal) {
+		if(price == ProductPriceBook.MISSING)
+			return ProductPriceBook.MISSING;
+		long converted = snapshot.convertMinorUnits(price, fromOrdinal, toOrdinal);
+		return converted == CurrencySnapshot.NO_RATE ? ProductPriceBook.MISSING : converted;
+	}
+
+	private static Long toColumnValue(long price) {
+		return price == ProductPriceBook.MISSING ? null : price;
+	}
+
+	/**
+	 * Writes the rows in one batch, in a new transaction since it can run after the commit of another one.
+	 */
+	private void saveRows(List<Object[]> rows) {
+		if(rows.isEmpty())
+			return;
+		newTransaction(false).executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_PRODUCT_PRICE_SQL, rows));
+	}
+
+	/**
+	 * @return a template of new transactions, since they can run after the commit of another one.
+	 */
+	private TransactionTemplate newTransaction(boolean readOnly) {
+		TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		transactionTemplate.setReadOnly(readOnly);
+		return transactionTemplate;
+	}
+}
@@ -1,12 +1,17 @@
 package backend.services;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
+import org.joda.money.CurrencyUnit;
 import org.joda.money.Money;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,9 +21,12 @@ import backend.dtos.references.ProductReference;
 import backend.entities.CurrencyKind;
 import backend.entities.Movie;
 import backend.entities.Product;
+import backend.exceptions.BadRequestException;
 import backend.exceptions.EntityNotFoundException;
 import backend.repositories.ProductRepository;
 import backend.utils.I18nUtils;
+import backend.utils.MinorUnitPricing;
+import backend.utils.PurchaseType;
 import jakarta.servlet.http.HttpSession;
 
 /**
@@ -41,8 +49,14 @@ public class ProductService {
     @Autowired
     private MovieService movieService;
     
+    @Autowired
+    private MovieReferenceCacheService movieReferenceCacheService;
+    
     @Autowired
     private CurrencyService currencyService;
+    
+    @Autowired
+    private ProductPriceBookService productPriceBookService;
 
     /**
      * Retrieves a list of all products in the database.
@@ -67,6 +81,63 @@ public class ProductService {
         return productDtos;
     }
 
+    /**
+     * Retrieves a page of the products sorted by their final price.
+     * <p>
+     * This method returns a page of ProductDto objects sorted by their final buy or rent price in the
+     * session/user currency. The pages are read from the prices of the price book table, and only while the
+     * table is older than the exchange rates are all the products sorted here.
+     * </p>
+     * 
+     * @param pageable The page of the products, sorted by {@code finalBuyPrice} or {@code finalRentPrice}.
+     * @return A page of {@link ProductDto} objects.
+     * @throws EntityNotFoundException 
+     * @throws BadRequestException if the products are not sorted by {@code finalBuyPrice} or {@code finalRentPrice}.
+     */
+    public Page<ProductDto> getProductsByPrice(HttpSession session, Pageable pageable) throws EntityNotFoundException, BadRequestException {
+        if (pageable.getSort().isUnsorted()) {
+            throw new BadRequestException("The products must be sorted by finalBuyPrice or finalRentPrice");
+        }
+        Sort.Order order = pageable.getSort().iterator().next();
+        PurchaseType purchaseType = switch (order.getProperty()) {
+            case "finalBuyPrice" -> PurchaseType.BUY;
+            case "finalRentPrice" -> PurchaseType.RENT;
+            default -> throw new BadRequestException("The products can only be sorted by finalBuyPrice or finalRentPrice");
+        };
+        // Load the current session/user currency
+        CurrencyKind currentCurrency = currencyService.getCurrencyFromSessionOrUser(session);
+        // Load the products
+        Page<Product> products = productPriceBookService.findProductsByPrice(currentCurrency, purchaseType, order.getDirection(), pageable);
+        if (products == null) {
+            return sortAllProducts(currentCurrency, purchaseType, order.isAscending(), pageable);
+        }
+        // Convert them to DTOs
+        List<ProductDto> productDtos = new ArrayList<>();
+        for (Product product : products) {
+            productDtos.add(convertProductToDto(product, currentCurrency));
+        }
+        return new PageImpl<>(productDtos, products.getPageable(), products.getTotalElements());
+    }
+
+    /**
+     * Sorts all the products by their final price, while the price book table can not sort them.
+     */
+    private Page<ProductDto> sortAllProducts(CurrencyKind currentCurrency, PurchaseType purchaseType, boolean ascending,
+            Pageable pageable) throws EntityNotFoundException {
+        List<ProductDto> productDtos = new ArrayList<>();
+        for (Product product : productRepository.findAll()) {
+            productDtos.add(convertProductToDto(product, currentCurrency));
+        }
+        // the prices are all in the same currency, so their amounts can be compared
+        Comparator<ProductDto> comparator = purchaseType == PurchaseType.BUY
+                ? Comparator.comparing(productDto -> productDto.getFinalBuyPrice().getAmount())
+                : Comparator.comparing(productDto -> productDto.getFinalRentPrice().getAmount());
+        productDtos.sort(ascending ? comparator : comparator.reversed());
+        int fromIndex = (int) Math.min(pageable.getOffset(), productDtos.size());
+        int toIndex = Math.min(fromIndex + pageable.getPageSize(), productDtos.size());
+        return new PageImpl<>(productDtos.subList(fromIndex, toIndex), pageable, productDtos.size());
+    }
+
     /**
      * Adds a new product to the database.
      * <p>
@@ -89,6 +160,7 @@ public class ProductService {
         product.setCurrency(userCurrency);
         
         Product resultProduct = productRepository.save(product);
+        productPriceBookService.updateProduct(resultProduct.getId());
         return resultProduct.getId();
     }
 
@@ -113,6 +185,7 @@ public class ProductService {
         product.setCurrency(userCurrency);
         
         productRepository.save(product);
+        productPriceBookService.updateProduct(product.getId());
     }
     
     /**
@@ -132,6 +205,7 @@ public class ProductService {
         Product product = getProductByID(productId);
         // Delete the product entity from the database.
         productRepository.delete(product);
+        productPriceBookService.removeProduct(productId);
     }
     
     /**
@@ -252,14 +326,19 @@ public class ProductService {
     public ProductDto convertProductToDto(Product product, CurrencyKind currentCurrency) throws EntityNotFoundException {
         ProductDto productDto = new ProductDto();
         productDto.setId(product.getId());
-        productDto.setMovie(movieService.convertMovieToReference(product.getMovie()));
-        // first we calculate the final prices (with discount) with the product currency
-        CurrencyKind productCurrency = product.getCurrency();
-        Money finalBuyPrice = calculateBuyPrice(product);
-        Money finalRentPrice = calculateRentPrice(product);
-        // we will return the session/user currency for the user
-        Money exchangedBuyPrice = currencyService.exchangeCurrencyAmount(productCurrency, currentCurrency, finalBuyPrice);
-        Money exchangedRentPrice = currencyService.exchangeCurrencyAmount(productCurrency, currentCurrency, finalRentPrice);
+        productDto.setMovie(movieReferenceCacheService.getReference(product.getMovie().getId()));
+        // the final prices in the session/user currency are precomputed in the price book
+        BigDecimal exchangedBuyPrice = productPriceBookService.getPrice(product.getId(), PurchaseType.BUY, currentCurrency);
+        BigDecimal exchangedRentPrice = productPriceBookService.getPrice(product.getId(), PurchaseType.RENT, currentCurrency);
+        if (exchangedBuyPrice == null || exchangedRentPrice == null) {
+            // the price book is older than the rates, we calculate the final prices (with discount) with the product currency
+            CurrencyKind productCurrency = product.getCurrency();
+            Money finalBuyPrice = calculateBuyPrice(product);
+            Money finalRentPrice = calculateRentPrice(product);
+            // we will return the session/user currency for the user
+            exchangedBuyPrice = currencyService.exchangeCurrencyAmount(productCurrency, currentCurrency, finalBuyPrice).getAmount();
+            exchangedRentPrice = currencyService.exchangeCurrencyAmount(productCurrency, currentCurrency, finalRentPrice).getAmount();
+        }
         productDto.setFinalBuyPrice(I18nUtils.convertMoneyToDto(exchangedBuyPrice, currentCurrency));
         productDto.setFinalRentPrice(I18nUtils.convertMoneyToDto(exchangedRentPrice, currentCurrency));
         return productDto;
@@ -284,8 +363,6 @@ public class ProductService {
     public static Money calculateRentPrice(Product product) {
         return calculatePrice(product.getRentPrice(), product.getRentDiscount(), product.getCurrency());
     }
-    
-    private static final BigDecimal ONE_HUNDRED = new BigDecimal(100);
 
     /**
      * Calculates the final price after applying the discount.
@@ -295,12 +372,9 @@ public class ProductService {
      * @return The final price after applying the discount.
      */
     private static Money calculatePrice(BigDecimal amount, BigDecimal discount, CurrencyKind currency) {
-        Money price = Money.of(CurrencyService.getCurrencyUnit(currency), amount);
-    	if (discount == null || discount.compareTo(BigDecimal.ZERO) == 0) {
-            return price;
-        }
-    	BigDecimal discountMultiplier = BigDecimal.ONE.subtract(discount.divide(ONE_HUNDRED));
-    	Money priceWithDiscount = price.multipliedBy(discountMultiplier, RoundingMode.HALF_EVEN);
-    	return priceWithDiscount;
+        CurrencyUnit currencyUnit = CurrencyService.getCurrencyUnit(currency);
+        // the discount is applied in minor units, with bankers rounding
+        long price = MinorUnitPricing.toMinorUnits(amount, currencyUnit.getDecimalPlaces());
+        return Money.ofMinor(currencyUnit, MinorUnitPricing.applyDiscount(price, discount));
     }
 }
\ No newline at end of file
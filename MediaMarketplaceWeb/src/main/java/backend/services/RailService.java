@@ -0,0 +1,207 @@
+package backend.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import backend.dtos.rails.RailsDto;
+import backend.dtos.references.MovieReference;
+import backend.repositories.MovieRepository;
+import backend.repositories.ai.MovieLikeRepository;
+import backend.repositories.ai.MoviePageViewRepository;
+import backend.services.ai.MovieLikeCountService;
+import backend.services.ai.MoviePageViewService;
+import backend.utils.UrlUtils;
+import backend.utils.collections.DecayedScores;
+
+/**
+ * Service that builds the movie rails of the home page: trending, top rated and new releases.
+ * <p>
+ * The rails are rebuilt every {@code rails.refresh-interval-ms} and swapped atomically, so the requests are
+ * answered from memory without any database access. The trending score is a {@link DecayedScores} of the page
+ * views and likes, fed by {@link MoviePageViewService} and {@link backend.services.ai.MovieLikeService} as they
+ * happen, and seeded at startup with the views that are not aggregated yet and the recent likes.
+ * The scores are kept per instance, so an instance only counts the page views it recorded itself.
+ * </p>
+ */
+@Service
+public class RailService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	/**
+	 * The trending weight of a like, a page view of a logged user weighs 1.
+	 */
+	private static final double LIKE_WEIGHT = 5.0;
+
+	/**
+	 * The number of half-lives of likes loaded at startup, older likes weigh less than 1% of a new one.
+	 */
+	private static final int SEED_HALF_LIVES = 7;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private MoviePageViewRepository pageViewRepository;
+
+	@Autowired
+	private MovieLikeRepository movieLikeRepository;
+
+	@Autowired
+	private UrlUtils urlUtils;
+
+	@Autowired
+	private MovieLikeCountService movieLikeCountService;
+
+	@Value("${rails.size:20}")
+	private int railSize;
+
+	@Value("${rails.top-rated.min-ratings:10}")
+	private long minRatings;
+
+	private final long halfLifeMillis;
+
+	private final DecayedScores trendingScores;
+
+	/**
+	 * The last built rails, with the poster paths relative to the images folder and without the likes.
+	 */
+	private volatile RailsDto rails;
+
+	public RailService(@Value("${rails.trending.half-life-hours:24}") long halfLifeHours) {
+		this.halfLifeMillis = TimeUnit.HOURS.toMillis(halfLifeHours);
+		this.trendingScores = new DecayedScores(halfLifeMillis, System.currentTimeMillis());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadRails() {
+		long startTime = System.currentTimeMillis();
+		// the rows are [movieId, userId, viewedAt]
+		for(Object[] row : pageViewRepository.findTrendingValues()) {
+			addPageView((Long) row[0], row[1] != null, (LocalDateTime) row[2]);
+		}
+		LocalDateTime since = LocalDateTime.now().minus(Duration.ofMillis(halfLifeMillis * SEED_HALF_LIVES));
+		// the rows are [movieId, createdAt]
+		for(Object[] row : movieLikeRepository.findMovieIdsCreatedAfter(since)) {
+			trendingScores.add((Long) row[0], LIKE_WEIGHT, toMillis((LocalDateTime) row[1]));
+		}
+		buildRails();
+		LOGGER.info("Loaded the home page rails with {} trending movies in {} ms", trendingScores.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Adds a recorded page view to the trending score of the movie.
+	 *
+	 * @param movieId the id of the viewed movie.
+	 * @param loggedIn {@code true} if the viewer was logged in.
+	 * @param viewedAt the time of the view.
+	 */
+	public void addPageView(Long movieId, boolean loggedIn, LocalDateTime viewedAt) {
+		trendingScores.add(movieId, MoviePageViewService.getViewWeight(loggedIn), toMillis(viewedAt));
+	}
+
+	/**
+	 * Adds a new like to the trending score of the movie.
+	 */
+	public void addLike(Long movieId) {
+		trendingScores.add(movieId, LIKE_WEIGHT, System.currentTimeMillis());
+	}
+
+	/**
+	 * Rebuilds the rails, and swaps them with the previous ones.
+	 */
+	@Scheduled(fixedDelayString = "${rails.refresh-interval-ms:300000}", initialDelayString = "${rails.refresh-interval-ms:300000}")
+	public void buildRails() {
+		// a few more trending movies than needed, in case some were deleted
+		long[] trendingIds = trendingScores.top(railSize * 2);
+		List<MovieReference> trending = new ArrayList<>(railSize);
+		if(trendingIds.length > 0) {
+			List<Long> ids = new ArrayList<>(trendingIds.length);
+			for(long id : trendingIds)
+				ids.add(id);
+			Map<Long, MovieReference> references = new HashMap<>();
+			for(Object[] row : movieRepository.findReferenceValuesByIds(ids)) {
+				MovieReference reference = toReference(row);
+				references.put(reference.getId(), reference);
+			}
+			for(int i = 0; i < trendingIds.length && trending.size() < railSize; i++) {
+				MovieReference reference = references.get(trendingIds[i]);
+				if(reference != null)
+					trending.add(reference);
+			}
+		}
+		List<MovieReference> topRated = toReferences(movieRepository.findTopRatedReferenceValues(minRatings, PageRequest.of(0, railSize)));
+		List<MovieReference> newReleases = toReferences(movieRepository.findNewReleaseReferenceValues(LocalDate.now(), PageRequest.of(0, railSize)));
+		rails = new RailsDto(trending, topRated, newReleases, LocalDateTime.now());
+	}
+
+	/**
+	 * Returns the last built rails, without any database access.
+	 * <p>
+	 * The movies of the rails are built per request, with the poster URLs of the server URL of the request
+	 * and the current likes, like the other movie references.
+	 * </p>
+	 *
+	 * @return the rails, empty until they are built for the first time.
+	 */
+	public RailsDto getRails() {
+		RailsDto currentRails = rails;
+		if(currentRails == null)
+			return new RailsDto(List.of(), List.of(), List.of(), null);
+		String serverUrl = urlUtils.getServerURL();
+		return new RailsDto(resolve(currentRails.getTrending(), serverUrl), resolve(currentRails.getTopRated(), serverUrl),
+				resolve(currentRails.getNewReleases(), serverUrl), currentRails.getBuiltAt());
+	}
+
+	private List<MovieReference> resolve(List<MovieReference> references, String serverUrl) {
+		List<MovieReference> resolved = new ArrayList<>(references.size());
+		for(MovieReference reference : references) {
+			MovieReference movieReference = new MovieReference();
+			movieReference.setId(reference.getId());
+			movieReference.setName(reference.getName());
+			movieReference.setPosterPath(urlUtils.getFullImageURL(serverUrl, reference.getPosterPath()));
+			movieReference.setLikes(movieLikeCountService.getLikes(reference.getId()));
+			resolved.add(movieReference);
+		}
+		return resolved;
+	}
+
+	/**
+	 * @param rows the {@code [id, name, posterPath]} rows of the movies.
+	 */
+	private static List<MovieReference> toReferences(List<Object[]> rows) {
+		List<MovieReference> references = new ArrayList<>(rows.size());
+		for(Object[] row : rows)
+			references.add(toReference(row));
+		return references;
+	}
+
+	private static MovieReference toReference(Object[] row) {
+		MovieReference reference = new MovieReference();
+		reference.setId((Long) row[0]);
+		reference.setName((String) row[1]);
+		reference.setPosterPath((String) row[2]);
+		return reference;
+	}
+
+	private static long toMillis(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+}
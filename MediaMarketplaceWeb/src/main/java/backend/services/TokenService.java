@@ -150,4 +150,21 @@ public class TokenService {
     		return (User) principal;
     	throw new UserNotLoggedInException();
     }
+    
+    /**
+     * Retrieves the email of the currently authenticated user, without loading the {@link User}.
+     * 
+     * @return The email of the currently authenticated user, or null if no user is logged in.
+     */
+    public String getCurrentUserEmail() {
+    	Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+    	if(auth == null)
+    		return null;
+    	Object principal = auth.getPrincipal();
+    	if(principal instanceof Jwt)
+    		return ((Jwt) principal).getSubject();
+    	if(principal instanceof User)
+    		return ((User) principal).getEmail();
+    	return null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,115 @@
+package backend.services.ai;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import backend.repositories.ai.MovieLikeRepository;
+import backend.utils.TransactionUtils;
+
+/**
+ * Service that keeps the number of likes of every movie in memory, so the movie payloads can show it
+ * without a count query per movie.
+ * <p>
+ * Every movie has a {@link LongAdder}, striped so concurrent likes of a popular movie do not contend on a
+ * single counter. The counters are seeded once the application is ready with a grouped count of the likes,
+ * and {@link MovieLikeService} updates them as the likes are toggled, once their transaction commits.
+ * </p>
+ * <p>
+ * The counts are seeded into a fresh map while the toggles keep updating the current one. The toggles of the
+ * seeding are also buffered as deltas, added to the seeded counts when the fresh map is swapped in, so the
+ * likes toggled before the seed are not counted twice and the likes toggled during it are not lost. Only a
+ * toggle committed between the start of the buffer and the count query is in both, an off by one that the
+ * next startup corrects.
+ * </p>
+ */
+@Service
+public class MovieLikeCountService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	@Autowired
+	private MovieLikeRepository movieLikeRepository;
+
+	private volatile ConcurrentHashMap<Long, LongAdder> likes = new ConcurrentHashMap<>();
+
+	/**
+	 * The likes toggled while the counts are seeded, or null when they are not.
+	 */
+	private ConcurrentHashMap<Long, LongAdder> pendingDeltas;
+
+	/**
+	 * Shared by the toggles, and held exclusively to start the seeding and to swap in the seeded counts.
+	 */
+	private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadCounts() {
+		long startTime = System.currentTimeMillis();
+		ConcurrentHashMap<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+		swapLock.writeLock().lock();
+		try {
+			pendingDeltas = deltas;
+		} finally {
+			swapLock.writeLock().unlock();
+		}
+		ConcurrentHashMap<Long, LongAdder> seeded = new ConcurrentHashMap<>();
+		// the rows are [movieId, likes]
+		for(Object[] row : movieLikeRepository.countLikesByMovie()) {
+			counter(seeded, (Long) row[0]).add((Long) row[1]);
+		}
+		swapLock.writeLock().lock();
+		try {
+			deltas.forEach((movieId, delta) -> counter(seeded, movieId).add(delta.sum()));
+			likes = seeded;
+			pendingDeltas = null;
+		} finally {
+			swapLock.writeLock().unlock();
+		}
+		LOGGER.info("Loaded the like counts of {} movies in {} ms", seeded.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * @return the number of likes of the movie.
+	 */
+	public long getLikes(Long movieId) {
+		LongAdder counter = likes.get(movieId);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Counts a like of the movie once the current transaction commits.
+	 */
+	public void increment(Long movieId) {
+		TransactionUtils.afterCommit(() -> add(movieId, 1));
+	}
+
+	/**
+	 * Uncounts a like of the movie once the current transaction commits.
+	 */
+	public void decrement(Long movieId) {
+		TransactionUtils.afterCommit(() -> add(movieId, -1));
+	}
+
+	private void add(Long movieId, long delta) {
+		swapLock.readLock().lock();
+		try {
+			counter(likes, movieId).add(delta);
+			if(pendingDeltas != null)
+				counter(pendingDeltas, movieId).add(delta);
+		} finally {
+			swapLock.readLock().unlock();
+		}
+	}
+
+	private static LongAdder counter(ConcurrentHashMap<Long, LongAdder> counters, Long movieId) {
+		return counters.computeIfAbsent(movieId, key -> new LongAdder());
+	}
+}
@@ -1,14 +1,16 @@
 package backend.services.ai;
 
+import java.time.LocalDateTime;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import backend.entities.Movie;
 import backend.entities.User;
-import backend.entities.ai.MovieLike;
 import backend.exceptions.EntityNotFoundException;
+import backend.repositories.MovieRepository;
 import backend.repositories.ai.MovieLikeRepository;
-import backend.services.MovieService;
+import backend.services.RailService;
 import backend.services.TokenService;
 
 @Service
@@ -17,24 +19,54 @@ public class MovieLikeService {
 	@Autowired
 	private MovieLikeRepository movieLikeRepository;
 	
+	@Autowired
+	private MovieRepository movieRepository;
+	
 	@Autowired
 	private TokenService tokenService;
 	
 	@Autowired
-	private MovieService movieService;
+	private MovieLikeCountService movieLikeCountService;
 	
+	@Autowired
+	private RailService railService;
+	
+	@Autowired
+	private MovieRecommendationService movieRecommendationService;
+	
+	@Autowired
+	private SimilarMovieService similarMovieService;
+	
+	/**
+	 * Likes the movie for the current user, or removes the like if the user already liked it.
+	 * <p>
+	 * Instead of checking the like first, the like is deleted, and inserted only if there was nothing to
+	 * delete. Both are single statements guarded by the unique constraint on the movie and user, so two
+	 * concurrent toggles cannot insert the like twice.
+	 * </p>
+	 *
+	 * @param movieId the id of the movie.
+	 * @throws EntityNotFoundException if the movie does not exist.
+	 */
 	public void userToggleLikeMovie(Long movieId) throws EntityNotFoundException {
 		User user = tokenService.getCurretUser(); // throws if not logged in
-		Movie movie = movieService.getMovieByID(movieId);
-
-		boolean alreadyLiked = movieLikeRepository.existsByMovieAndUser(movie, user);
-		if (alreadyLiked) {
-			movieLikeRepository.deleteByMovieAndUser(movie, user);
-		} else {
-			MovieLike like = new MovieLike();
-			like.setMovie(movie);
-			like.setUser(user);
-			movieLikeRepository.save(like);
+		if (movieLikeRepository.deleteByMovieIdAndUserId(movieId, user.getId()) > 0) {
+			movieLikeCountService.decrement(movieId);
+			similarMovieService.removeLike(user.getId(), movieId);
+			movieRecommendationService.invalidate(user.getId());
+			return;
+		}
+		try {
+			movieLikeRepository.insertLike(movieId, user.getId(), LocalDateTime.now());
+		} catch (DataIntegrityViolationException e) {
+			// either the movie does not exist, or a concurrent toggle of the same user liked it first
+			if (!movieRepository.existsById(movieId))
+				throw new EntityNotFoundException("The Movie with ID: (" + movieId + ") does not exist");
+			return;
 		}
+		movieLikeCountService.increment(movieId);
+		railService.addLike(movieId);
+		similarMovieService.addLike(user.getId(), movieId);
+		movieRecommendationService.invalidate(user.getId());
 	}
-}
\ No newline at end of file
+}
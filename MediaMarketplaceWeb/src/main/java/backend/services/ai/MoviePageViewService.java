@@ -1,28 +1,71 @@
 package backend.services.ai;
 
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import backend.entities.Movie;
-import backend.entities.User;
-import backend.entities.ai.MoviePageView;
-import backend.exceptions.UserNotLoggedInException;
-import backend.repositories.MovieRepository;
+import backend.auth.AuthenticateAdmin;
+import backend.dtos.ai.PageViewStatsDto;
+import backend.repositories.UserRepository;
 import backend.repositories.ai.MoviePageViewRepository;
+import backend.services.RailService;
 import backend.services.TokenService;
+import backend.services.search.SuggestionService;
+import backend.utils.collections.CooldownFilter;
+import backend.utils.collections.LongDoubleHashMap;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 
+/**
+ * Service that records the movie page views and aggregates them into the popularity of the movies.
+ * <p>
+ * The movie page does not wait on the page views: {@link #addMoviePageView(Long, HttpServletRequest)}
+ * deduplicates the view in memory with a {@link CooldownFilter} keyed by the movie and the user (or session),
+ * and hands it to a bounded lock-free queue. A writer thread inserts the queued views with JDBC batches,
+ * every {@code pageviews.flush-interval-ms} or as soon as {@code pageviews.batch-size} views are queued.
+ * When the queue is full the views are dropped and counted, instead of slowing down the requests.
+ * </p>
+ * <p>
+ * A batch that fails because the database is unavailable is queued again for the next flush interval, up to
+ * {@code pageviews.max-attempts} writes, and a batch rejected by a constraint (a removed movie) is written view by view, so only the rejected
+ * views are lost. A view that is dropped or lost releases its cooldown, so the next view of the viewer counts.
+ * </p>
+ */
 @Service
 public class MoviePageViewService {
 	
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+	
+	private static final String INSERT_PAGE_VIEW_SQL =
+			"INSERT INTO movie_page_views (movie_id, user_id, session_id, ip, viewed_at) VALUES (?, ?, ?, ?, ?)";
+	
+	private static final String INCREMENT_PAGE_VIEWS_SQL =
+			"UPDATE movies SET total_page_views = total_page_views + ? WHERE id = ?";
+	
 	@Autowired
 	private MoviePageViewRepository pageViewRepository;
 	
@@ -30,90 +73,340 @@ public class MoviePageViewService {
 	private TokenService tokenService;
 	
 	@Autowired
-	private MovieRepository movieRepository;
+	private UserRepository userRepository;
+	
+	@Autowired
+	private SuggestionService suggestionService;
+	
+	@Autowired
+	private RailService railService;
+	
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+	
+	@Value("${pageviews.queue.capacity:100000}")
+	private int queueCapacity;
+	
+	@Value("${pageviews.batch-size:500}")
+	private int batchSize;
+	
+	@Value("${pageviews.flush-interval-ms:1000}")
+	private long flushIntervalMs;
+	
+	@Value("${pageviews.max-attempts:3}")
+	private int maxAttempts;
 	
 	public static final Integer PAGE_VIEW_COOLDOWN_MINUTES = 2;
 	
 	// Weight constants
 	private static final double LOGGED_IN_WEIGHT = 1.0;
 	private static final double ANONYMOUS_WEIGHT = 0.2; // adjust based on your AI model
-	private static final int PAGE_SIZE = 5000; // number of rows per page
+	private static final int PAGE_SIZE = 5000; // number of rows per chunk
 	
-	@Transactional
-	public void addMoviePageView(Movie movie, HttpServletRequest request) {
-		User user = null;
-		String ip = null;
-		String sessionId = request.getSession().getId();
-		try {
-			user = tokenService.getCurretUser();
-		} catch (UserNotLoggedInException ignored) {}
+	/**
+	 * @return the weight of a page view in the popularity of the movies.
+	 */
+	public static double getViewWeight(boolean loggedIn) {
+		return loggedIn ? LOGGED_IN_WEIGHT : ANONYMOUS_WEIGHT;
+	}
+	
+	/**
+	 * A page view waiting to be written, the user is resolved from the email by the writer.
+	 *
+	 * @param acquiredAt the time the view was accepted by the cooldown filter, to release it.
+	 * @param attempts the number of failed writes of the view.
+	 */
+	private record PageView(long movieId, String userEmail, String sessionId, LocalDateTime viewedAt, long acquiredAt,
+			int attempts) {
 		
-		// Check min cooldown (query recent views)
-		LocalDateTime cutoff = LocalDateTime.now().minusMinutes(PAGE_VIEW_COOLDOWN_MINUTES);
-		boolean recentExists;
-		if(user != null) {
-			recentExists = pageViewRepository.existsByMovieAndUserAndViewedAtAfter(movie, user, cutoff);
-		} else {
-			// maybe in the futurre handle ips
-			/*ip = RequestUtils.getClientIpForCloudflare(request);
-			if(!RequestUtils.isIpReal(ip)) {
-				// we ignore localhost or invalid ip views
-				return;
-			}*/
-	        // Check if this anonymous session already viewed this movie within cooldown
-	        recentExists = pageViewRepository.existsByMovieAndSessionIdAndViewedAtAfter(movie, sessionId, cutoff);
+		ViewerKey viewerKey() {
+			return userEmail != null ? new ViewerKey(movieId, userEmail, true) : new ViewerKey(movieId, sessionId, false);
 		}
-		
-		if (recentExists) return;
-
-		MoviePageView view = new MoviePageView();
-		view.setMovie(movie);
-		view.setUser(user);
-		view.setIp(ip); // handle ip logging in the future (maybe not good because 2 devices behind same ip == same ip but different sessions, so ip is irrelevant for now)
-		view.setSessionId(sessionId);
-		view.setViewedAt(LocalDateTime.now());
-		pageViewRepository.save(view);
 	}
 	
+	/**
+	 * The key of the cooldown: a movie and either a logged user or an anonymous session.
+	 */
+	private record ViewerKey(long movieId, String viewer, boolean loggedIn) {
+	}
+	
+	private final CooldownFilter<ViewerKey> cooldownFilter =
+			new CooldownFilter<>(TimeUnit.MINUTES.toNanos(PAGE_VIEW_COOLDOWN_MINUTES));
+	
+	private final ConcurrentLinkedQueue<PageView> queue = new ConcurrentLinkedQueue<>();
+	
+	/**
+	 * The size of the queue, {@link ConcurrentLinkedQueue#size()} walks the whole queue.
+	 */
+	private final AtomicInteger queueSize = new AtomicInteger();
+	
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong deduplicated = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	
+	private volatile boolean running;
+	
+	private Thread writer;
+	
+	@EventListener(ApplicationReadyEvent.class)
+	public void startWriter() {
+		running = true;
+		writer = new Thread(this::runWriter, "page-view-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	@PreDestroy
+	public void stopWriter() throws InterruptedException {
+		running = false;
+		if(writer != null) {
+			LockSupport.unpark(writer);
+			// the writer flushes the remaining views before it stops
+			writer.join(TimeUnit.SECONDS.toMillis(10));
+		}
+	}
+	
+	/**
+	 * Records a view of a movie page, unless the viewer already viewed the movie during the cooldown.
+	 * <p>
+	 * The view is only queued, it is written later by the writer thread.
+	 * </p>
+	 *
+	 * @param movieId the id of the viewed movie.
+	 * @param request the request of the page, for the session of anonymous viewers.
+	 */
+	public void addMoviePageView(Long movieId, HttpServletRequest request) {
+		String userEmail = tokenService.getCurrentUserEmail();
+		String sessionId = request.getSession().getId();
+		// maybe in the futurre handle ips
+		/*ip = RequestUtils.getClientIpForCloudflare(request);
+		if(!RequestUtils.isIpReal(ip)) {
+			// we ignore localhost or invalid ip views
+			return;
+		}*/
+		long now = System.nanoTime();
+		PageView view = new PageView(movieId, userEmail, sessionId, LocalDateTime.now(), now, 0);
+		if(!cooldownFilter.tryAcquire(view.viewerKey(), now)) {
+			deduplicated.incrementAndGet();
+			return;
+		}
+		if(!enqueue(view)) {
+			// backpressure: the writer is behind, drop the view rather than slow down the page
+			dropped.incrementAndGet();
+			return;
+		}
+		accepted.incrementAndGet();
+		int size = queueSize.get();
+		Thread currentWriter = writer;
+		if(size == batchSize && currentWriter != null)
+			LockSupport.unpark(currentWriter);
+	}
+	
+	/**
+	 * Queues a view, or releases its cooldown if the queue is full.
+	 *
+	 * @return {@code true} if the view is queued.
+	 */
+	private boolean enqueue(PageView view) {
+		if(queueSize.incrementAndGet() > queueCapacity) {
+			queueSize.decrementAndGet();
+			cooldownFilter.release(view.viewerKey(), view.acquiredAt());
+			return false;
+		}
+		queue.offer(view);
+		return true;
+	}
+	
+	/**
+	 * @return the counters of the page view ingestion.
+	 */
+	@AuthenticateAdmin
+	public PageViewStatsDto getStats() {
+		return new PageViewStatsDto(queueSize.get(), accepted.get(), deduplicated.get(), dropped.get(), written.get(), failed.get());
+	}
+	
+	private void runWriter() {
+		long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+		boolean retrying = false;
+		while(running) {
+			// the views of a failed write wait for the next interval, even when a batch of them is queued
+			if(retrying || queueSize.get() < batchSize)
+				LockSupport.parkNanos(this, flushIntervalNanos);
+			retrying = flush();
+		}
+		flush();
+	}
+	
+	/**
+	 * Writes all the queued views, in batches of {@code pageviews.batch-size}, until the database fails.
+	 * The views of the failed writes are queued again once the flush is done, for the next flush.
+	 *
+	 * @return {@code true} if views were queued again.
+	 */
+	private boolean flush() {
+		List<PageView> retries = new ArrayList<>();
+		List<PageView> batch = new ArrayList<>(batchSize);
+		while(true) {
+			PageView view;
+			while(batch.size() < batchSize && (view = queue.poll()) != null) {
+				batch.add(view);
+			}
+			if(batch.isEmpty())
+				break;
+			queueSize.addAndGet(-batch.size());
+			try {
+				write(batch);
+			} catch (DataIntegrityViolationException e) {
+				// a view of the batch is rejected, the others can be written
+				LOGGER.warn("A batch of {} page views was rejected, writing them one by one", batch.size(), e);
+				writeOneByOne(batch, retries);
+			} catch (RuntimeException e) {
+				LOGGER.warn("Failed to write {} page views, they are retried later", batch.size(), e);
+				for(PageView failedView : batch)
+					retry(failedView, retries);
+				// the database is likely unavailable, the next flush tries again
+				break;
+			}
+			batch.clear();
+		}
+		for(PageView retried : retries) {
+			if(!enqueue(retried))
+				lose(retried);
+		}
+		return !retries.isEmpty();
+	}
 	
+	private void writeOneByOne(List<PageView> batch, List<PageView> retries) {
+		for(PageView view : batch) {
+			try {
+				write(List.of(view));
+			} catch (DataIntegrityViolationException e) {
+				lose(view);
+			} catch (RuntimeException e) {
+				retry(view, retries);
+			}
+		}
+	}
+	
+	/**
+	 * Keeps a view of a failed write for the next flush, or loses it once it reached the maximum number of
+	 * attempts.
+	 */
+	private void retry(PageView view, List<PageView> retries) {
+		if(view.attempts() + 1 >= maxAttempts) {
+			lose(view);
+			return;
+		}
+		retries.add(new PageView(view.movieId(), view.userEmail(), view.sessionId(), view.viewedAt(),
+				view.acquiredAt(), view.attempts() + 1));
+	}
+	
+	private void lose(PageView view) {
+		failed.incrementAndGet();
+		cooldownFilter.release(view.viewerKey(), view.acquiredAt());
+	}
+	
+	/**
+	 * Writes a batch of views in one transaction, so a failed batch writes none of its views.
+	 */
+	private void write(List<PageView> batch) {
+		transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+		written.addAndGet(batch.size());
+		for(PageView writtenView : batch)
+			railService.addPageView(writtenView.movieId(), writtenView.userEmail() != null, writtenView.viewedAt());
+	}
+	
+	private void writeBatch(List<PageView> batch) {
+		Set<String> emails = new HashSet<>();
+		for(PageView view : batch) {
+			if(view.userEmail() != null)
+				emails.add(view.userEmail());
+		}
+		// the rows are [email, id]
+		Map<String, Long> userIds = new HashMap<>();
+		if(!emails.isEmpty()) {
+			for(Object[] row : userRepository.findIdsByEmails(emails))
+				userIds.put((String) row[0], (Long) row[1]);
+		}
+		jdbcTemplate.batchUpdate(INSERT_PAGE_VIEW_SQL, batch, batch.size(), (statement, view) -> {
+			statement.setLong(1, view.movieId());
+			Long userId = view.userEmail() == null ? null : userIds.get(view.userEmail());
+			if(userId != null)
+				statement.setLong(2, userId);
+			else
+				statement.setNull(2, Types.BIGINT);
+			statement.setString(3, view.sessionId());
+			// handle ip logging in the future (maybe not good because 2 devices behind same ip == same ip but different sessions, so ip is irrelevant for now)
+			statement.setNull(4, Types.VARCHAR);
+			statement.setTimestamp(5, Timestamp.valueOf(view.viewedAt()));
+		});
+	}
+	
+	
+	/**
+	 * Adds the page views older than the cooldown to the total page views of their movies, and deletes them.
+	 * <p>
+	 * The views are scanned by id (keyset) in chunks of {@value #PAGE_SIZE}, as {@code [id, movieId, userId]}
+	 * projections. Every chunk is summed per movie, applied with one batched {@code UPDATE}, and deleted by
+	 * its id range, in its own transaction: a crash loses no views and counts none twice, and the next run
+	 * resumes with the views that are left.
+	 * </p>
+	 */
 	@Scheduled(fixedRate = 60 * 60 * 1000) // every hour
-	@Transactional
 	public void aggregatePageViews() {
 		LocalDateTime cutoff = LocalDateTime.now().minusMinutes(PAGE_VIEW_COOLDOWN_MINUTES);
-		int pageNumber = 0;
-
-		Page<MoviePageView> page = null;
-		while (page == null || page.hasNext()) {
-			page = pageViewRepository.findByViewedAtBefore(
-				cutoff, PageRequest.of(pageNumber, PAGE_SIZE)
-			);
-
-			if (!page.hasContent()) break;
-
-			// Aggregate counts per movie in this page
-			Map<Long, double[]> movieCounts = new HashMap<>();
-			for (MoviePageView view : page.getContent()) {
-				Long movieId = view.getMovie().getId();
-				double[] counts = movieCounts.computeIfAbsent(movieId, _ -> new double[2]);
-
-				if (view.getUser() != null) counts[0]++; // logged-in
-				else counts[1]++;                         // anonymous
-			}
-
-			// Batch update total page views per movie
-			for (Map.Entry<Long, double[]> entry : movieCounts.entrySet()) {
-				Long movieId = entry.getKey();
-				double[] counts = entry.getValue();
-				double weightedViews = counts[0] * LOGGED_IN_WEIGHT + counts[1] * ANONYMOUS_WEIGHT;
-
-				// Efficient batch update query
-				movieRepository.incrementTotalPageViews(movieId, weightedViews);
-			}
-
-			// Delete processed page
-			pageViewRepository.deleteAll(page.getContent());
-
-			pageNumber++;
+		long startTime = System.currentTimeMillis();
+		long totalViews = 0;
+		LongDoubleHashMap weightedViews = new LongDoubleHashMap(1024);
+		AggregatedChunk chunk = new AggregatedChunk(0, 0L);
+		do {
+			long afterId = chunk.lastId();
+			weightedViews.clear();
+			chunk = transactionTemplate.execute(status -> aggregateChunk(afterId, cutoff, weightedViews));
+			// the chunk is committed, the in-memory popularity can follow
+			weightedViews.forEach((movieId, views) -> suggestionService.addPageViews(movieId, views));
+			totalViews += chunk.views();
+		} while (chunk.views() == PAGE_SIZE);
+		if (totalViews > 0)
+			LOGGER.info("Aggregated {} page views in {} ms", totalViews, System.currentTimeMillis() - startTime);
+	}
+	
+	/**
+	 * An aggregated chunk of page views.
+	 *
+	 * @param views the number of views of the chunk.
+	 * @param lastId the id of the last view of the chunk, to scan the next chunk from.
+	 */
+	private record AggregatedChunk(int views, long lastId) {
+	}
+	
+	/**
+	 * Aggregates the next chunk of page views into the total page views of the movies, in the transaction of the caller.
+	 *
+	 * @param afterId the id to start after (exclusive).
+	 * @param cutoff the views viewed before the cutoff are aggregated.
+	 * @param weightedViews the weighted views of the chunk per movie, filled by this method.
+	 * @return the aggregated chunk.
+	 */
+	private AggregatedChunk aggregateChunk(long afterId, LocalDateTime cutoff, LongDoubleHashMap weightedViews) {
+		// the rows are [id, movieId, userId], the user id is null for anonymous views
+		List<Object[]> rows = pageViewRepository.findAggregationValuesAfter(afterId, cutoff, PageRequest.of(0, PAGE_SIZE));
+		if (rows.isEmpty()) return new AggregatedChunk(0, afterId);
+		for (Object[] row : rows) {
+			double weight = getViewWeight(row[2] != null);
+			weightedViews.addTo((Long) row[1], weight);
 		}
+		long lastId = (Long) rows.get(rows.size() - 1)[0];
+		List<Object[]> increments = new ArrayList<>(weightedViews.size());
+		weightedViews.forEach((movieId, views) -> increments.add(new Object[] { views, movieId }));
+		jdbcTemplate.batchUpdate(INCREMENT_PAGE_VIEWS_SQL, increments);
+		// the range holds exactly the views read, the newer views have higher ids or a later time
+		pageViewRepository.deleteRange(afterId, lastId, cutoff);
+		return new AggregatedChunk(rows.size(), lastId);
 	}
 }
\ No newline at end of file
@@ -1,7 +1,17 @@
 package backend.services.ai;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,57 +23,216 @@ import org.springframework.web.client.RestClient;
 
 import backend.dtos.ai.RecommendResponse;
 import backend.dtos.ai.RecommendResponse.Recommendation;
+import backend.dtos.rails.RailsDto;
 import backend.dtos.references.MovieReference;
-import backend.entities.Movie;
 import backend.entities.User;
 import backend.exceptions.EntityNotFoundException;
-import backend.exceptions.GeneralServerException;
-import backend.services.MovieService;
+import backend.services.MovieReferenceCacheService;
+import backend.services.RailService;
 import backend.services.TokenService;
+import backend.utils.CircuitBreaker;
 import backend.utils.RestClientUtils;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.BoundedCache;
+import jakarta.annotation.PreDestroy;
 
+/**
+ * Service that fetches the movie recommendations of the current user from the FastAPI recommendation service.
+ * <p>
+ * A single HTTP/1.1 client is kept for the application, so the connections to FastAPI are reused, with a connect
+ * timeout and a read timeout that bound the time a request waits for FastAPI. The failed calls feed a
+ * {@link CircuitBreaker}: while FastAPI is down the requests do not call it at all. In both cases the
+ * recommendations fall back to the movies similar to the movies of the user, found by {@link SimilarMovieService},
+ * and then to the popular movies of the home page rails, which are already in memory.
+ * </p>
+ * <p>
+ * The recommended movie ids of every user are cached, since the model only changes when the user interacts.
+ * Once an entry is older than {@code recommendations.cache.soft-ttl-seconds}, it is still returned at once while
+ * a background refresh fetches the new recommendations. The entry of a user is invalidated when the user likes,
+ * rates, reviews or purchases a movie.
+ * </p>
+ */
 @Service
 public class MovieRecommendationService {
-	
+
 	private static final Logger LOGGER = LoggerFactory.getLogger("logging.level.myapp.logging.fastapi");
-	
+
+	/**
+	 * The cached recommendations of a user.
+	 *
+	 * @param movieIds the recommended movie ids, the best first.
+	 * @param topN the number of recommendations requested from FastAPI, there may be less ids.
+	 * @param fetchedAtNanos the time the recommendations were fetched.
+	 */
+	private record CachedRecommendations(long[] movieIds, int topN, long fetchedAtNanos) {
+	}
+
 	@Value("${fastapi.url}")
 	private String fastApiUrl;
-	
+
 	@Autowired
 	private TokenService tokenService;
-	
+
+	@Autowired
+	private MovieReferenceCacheService movieReferenceCacheService;
+
+	@Autowired
+	private RailService railService;
+
 	@Autowired
-	private MovieService movieService;
-	
+	private SimilarMovieService similarMovieService;
+
+	/**
+	 * The client of FastAPI, we force http 1.1 because fastapi sometimes have issues with http 2.0.
+	 */
+	private final RestClient restClient;
+
+	private final CircuitBreaker circuitBreaker;
+
+	private final BoundedCache<Long, CachedRecommendations> cache;
+
+	private final long softTtlNanos;
+
+	private final ThreadPoolExecutor refreshExecutor;
+
+	/**
+	 * The users whose recommendations are being refreshed, so a user is refreshed once at a time.
+	 */
+	private final Set<Long> refreshingUsers = ConcurrentHashMap.newKeySet();
+
+	public MovieRecommendationService(@Value("${fastapi.timeout.connect-ms:500}") long connectTimeoutMs,
+			@Value("${fastapi.timeout.read-ms:2000}") long readTimeoutMs,
+			@Value("${fastapi.circuit.failure-threshold:5}") int failureThreshold,
+			@Value("${fastapi.circuit.open-seconds:30}") long openSeconds,
+			@Value("${recommendations.cache.max-entries:10000}") int maxEntries,
+			@Value("${recommendations.cache.soft-ttl-seconds:300}") long softTtlSeconds,
+			@Value("${recommendations.cache.ttl-seconds:3600}") long ttlSeconds,
+			@Value("${recommendations.refresh.threads:2}") int refreshThreads,
+			@Value("${recommendations.refresh.queue-capacity:1000}") int refreshQueueCapacity) {
+		this.restClient = RestClientUtils.createRestClientVersion1(Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(readTimeoutMs));
+		this.circuitBreaker = new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toNanos(openSeconds));
+		this.cache = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+		this.softTtlNanos = TimeUnit.SECONDS.toNanos(softTtlSeconds);
+		AtomicInteger threadCount = new AtomicInteger();
+		// the refreshes that do not fit in the queue are dropped, the stale recommendations are served meanwhile
+		this.refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(refreshQueueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, "recommendation-refresh-" + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	@PreDestroy
+	public void stopRefresh() {
+		refreshExecutor.shutdownNow();
+	}
+
 	public List<MovieReference> getRecommendations(int topN) throws EntityNotFoundException {
-		User user = tokenService.getCurretUser(); 
-		String url = String.format("/recommend/%s?top_n=%s", user.getId(), topN);
-		RecommendResponse response = null;
+		User user = tokenService.getCurretUser();
+		Long userId = user.getId();
+		CachedRecommendations cached = cache.get(userId);
+		if(cached != null && cached.topN() >= topN) {
+			if(System.nanoTime() - cached.fetchedAtNanos() > softTtlNanos)
+				scheduleRefresh(userId, cached.topN());
+			return toReferences(cached.movieIds(), topN);
+		}
+		long generation = cache.generation();
+		long[] movieIds = fetchRecommendations(userId, topN);
+		if(movieIds == null) {
+			// the stale recommendations of the user are better than the similar movies, and the popular movies
+			if(cached != null)
+				return toReferences(cached.movieIds(), topN);
+			long[] similarIds = similarMovieService.recommend(userId, topN);
+			return similarIds.length > 0 ? toReferences(similarIds, topN) : getFallbackRecommendations(topN);
+		}
+		cache.put(userId, new CachedRecommendations(movieIds, topN, System.nanoTime()), generation);
+		return toReferences(movieIds, topN);
+	}
+
+	/**
+	 * Evicts the cached recommendations of a user that interacted with a movie, once the current transaction
+	 * commits.
+	 *
+	 * @param userId the id of the user.
+	 */
+	public void invalidate(Long userId) {
+		TransactionUtils.afterCommit(() -> cache.invalidate(userId));
+	}
+
+	private void scheduleRefresh(Long userId, int topN) {
+		if(!refreshingUsers.add(userId))
+			return;
+		try {
+			refreshExecutor.execute(() -> {
+				try {
+					long generation = cache.generation();
+					long[] movieIds = fetchRecommendations(userId, topN);
+					if(movieIds != null)
+						cache.put(userId, new CachedRecommendations(movieIds, topN, System.nanoTime()), generation);
+				} finally {
+					refreshingUsers.remove(userId);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshingUsers.remove(userId);
+		}
+	}
+
+	/**
+	 * Fetches the recommended movie ids of a user from FastAPI.
+	 *
+	 * @return the movie ids, the best first, or null if FastAPI failed or the circuit breaker is open.
+	 */
+	private long[] fetchRecommendations(Long userId, int topN) {
+		if(!circuitBreaker.tryAcquire(System.nanoTime()))
+			return null;
+		String url = fastApiUrl + String.format("/recommend/%s?top_n=%s", userId, topN);
+		RecommendResponse response;
 		try {
-			url = fastApiUrl + url;
-			// we use custom rest client to force http 1.1
-			// becuase fastapi sometimes have issues with http 2.0
-			// this is a workaround (maybe temporary) to fix the issue
-			RestClient restClient = RestClientUtils.createRestClientVersion1();
 			response = restClient.get()
 					.uri(url)
 					.accept(MediaType.APPLICATION_JSON)
 					.retrieve()
-					.body(RecommendResponse.class); // Convert the response to List<Map<String, Object>>
+					.body(RecommendResponse.class);
+			if(response == null || response.getRecommendations() == null)
+				throw new IllegalStateException("Empty response body");
 		} catch (Exception e) {
-			// Handle errors (e.g., logging), return null or default response as fallback
+			circuitBreaker.recordFailure(System.nanoTime());
 			LOGGER.error("Error fetching recommendations from FastAPI: {}", e.getMessage());
-			throw new GeneralServerException("Failed to fetch recommendations", e);
+			return null;
 		}
-		List<MovieReference> recommendations = new ArrayList<>();
+		circuitBreaker.recordSuccess();
 		List<Recommendation> list = response.getRecommendations();
-		for(Recommendation rec : list) {
-			Long movieId = Long.valueOf(rec.getMovieId());
-			Movie movieDto = movieService.getMovieByID(movieId);
-			MovieReference reference = movieService.convertMovieToReference(movieDto);
-			recommendations.add(reference);
+		long[] movieIds = new long[list.size()];
+		for(int i = 0; i < movieIds.length; i++) {
+			movieIds[i] = list.get(i).getMovieId();
+		}
+		return movieIds;
+	}
+
+	private List<MovieReference> toReferences(long[] movieIds, int topN) {
+		int size = Math.min(topN, movieIds.length);
+		List<Long> ids = new ArrayList<>(size);
+		for(int i = 0; i < size; i++)
+			ids.add(movieIds[i]);
+		// all the references in one lookup, the movies that no longer exist are skipped
+		return movieReferenceCacheService.getReferencesInOrder(ids);
+	}
+
+	/**
+	 * The recommendations used when FastAPI is not available: the trending movies, then the top rated ones.
+	 */
+	private List<MovieReference> getFallbackRecommendations(int topN) {
+		RailsDto rails = railService.getRails();
+		Map<Long, MovieReference> fallback = new LinkedHashMap<>();
+		for(List<MovieReference> rail : List.of(rails.getTrending(), rails.getTopRated())) {
+			for(MovieReference reference : rail) {
+				if(fallback.size() >= topN)
+					break;
+				fallback.putIfAbsent(reference.getId(), reference);
+			}
 		}
-		return recommendations;
+		return new ArrayList<>(fallback.values());
 	}
-}
\ No newline at end of file
+}
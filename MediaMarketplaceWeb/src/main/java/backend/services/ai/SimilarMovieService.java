@@ -0,0 +1,343 @@
+package backend.services.ai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import backend.dtos.references.MovieReference;
+import backend.repositories.MoviePurchasedRepository;
+import backend.repositories.MovieReviewRepository;
+import backend.repositories.ai.MovieLikeRepository;
+import backend.services.MovieReferenceCacheService;
+import backend.services.search.MovieContentIndexService;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.IntList;
+import backend.utils.collections.ItemSimilarityMatrix;
+import backend.utils.collections.ItemSimilarityMatrix.Neighbours;
+import backend.utils.collections.LongDoubleHashMap;
+import backend.utils.collections.TopK;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service that finds the similar movies of a movie with item-to-item collaborative filtering, without FastAPI.
+ * <p>
+ * The likes, the good ratings and the purchases of every user are kept in memory, loaded once the application is
+ * ready and then updated by {@link MovieLikeService}, {@link backend.services.MovieReviewService} and
+ * {@link backend.services.OrderService} as they happen. Two movies are similar when the same users interacted with
+ * both, by the cosine of their {@link ItemSimilarityMatrix} columns, and the {@code similar.neighbours} most similar
+ * movies of every movie are kept. The movies with too few interactions are completed by the movies with the most
+ * similar content, from {@link MovieContentIndexService}.
+ * </p>
+ * <p>
+ * Every {@code similar.refresh-interval-ms} the neighbours of the movies of the users that interacted since the last
+ * refresh are computed again, from a matrix built outside the lock of the interactions so the interactions and the
+ * recommendations are not blocked while it is built. A change of a movie also changes its similarity in the lists
+ * of its neighbours, which are only computed again by the full rebuild every
+ * {@code similar.full-rebuild-interval-ms}, that also reloads the interactions recorded by the other instances.
+ * </p>
+ */
+@Service
+public class SimilarMovieService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	/**
+	 * The minimum rating of a movie (out of 100) that counts as an interaction with it.
+	 */
+	private static final int MIN_RATING = 60;
+
+	private static final double LIKE_WEIGHT = 1.0;
+
+	private static final double PURCHASE_WEIGHT = 1.0;
+
+	/**
+	 * The kinds of interactions, a user has one weight per kind and movie.
+	 */
+	private static final int LIKE = 0, RATING = 1, PURCHASE = 2, SIGNAL_COUNT = 3;
+
+	@Autowired
+	private MovieLikeRepository movieLikeRepository;
+
+	@Autowired
+	private MovieReviewRepository movieReviewRepository;
+
+	@Autowired
+	private MoviePurchasedRepository moviePurchasedRepository;
+
+	@Autowired
+	private MovieReferenceCacheService movieReferenceCacheService;
+
+	@Autowired
+	private MovieContentIndexService movieContentIndexService;
+
+	@Value("${similar.neighbours:20}")
+	private int neighbourCount;
+
+	@Value("${similar.min-common-users:1}")
+	private int minCommonUsers;
+
+	@Value("${similar.max-items-per-user:1000}")
+	private int maxItemsPerUser;
+
+	@Value("${similar.full-rebuild-interval-ms:21600000}")
+	private long fullRebuildIntervalMs;
+
+	private final ForkJoinPool pool;
+
+	/**
+	 * The interactions of every user, by kind, guarded by the lock.
+	 */
+	private Map<Long, LongDoubleHashMap[]> interactions = new HashMap<>();
+
+	/**
+	 * The weight of every movie of every user, the sum of the weights of its kinds. A user's weights are replaced
+	 * with a new map on every interaction, guarded by the lock, so they can be read without it.
+	 */
+	private volatile Map<Long, LongDoubleHashMap> userMovies = new ConcurrentHashMap<>();
+
+	/**
+	 * The users that interacted since the last refresh, guarded by the lock.
+	 */
+	private Set<Long> changedUsers = new HashSet<>();
+
+	private final Object lock = new Object();
+
+	/**
+	 * The neighbours of the movies by id, replaced as a whole by every refresh.
+	 */
+	private volatile Map<Long, Neighbours> neighbours = Map.of();
+
+	private long lastFullRebuildMillis;
+
+	public SimilarMovieService(@Value("${similar.threads:2}") int threads) {
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	@PreDestroy
+	public void stopPool() {
+		pool.shutdownNow();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void loadNeighbours() {
+		rebuildAll();
+	}
+
+	/**
+	 * Computes the neighbours of the movies changed since the last refresh, or of all the movies when the full
+	 * rebuild is due.
+	 */
+	@Scheduled(fixedDelayString = "${similar.refresh-interval-ms:60000}", initialDelayString = "${similar.refresh-interval-ms:60000}")
+	public synchronized void refreshNeighbours() {
+		if(System.currentTimeMillis() - lastFullRebuildMillis >= fullRebuildIntervalMs) {
+			rebuildAll();
+			return;
+		}
+		Set<Long> changedMovieIds = new HashSet<>();
+		synchronized(lock) {
+			if(changedUsers.isEmpty())
+				return;
+			for(Long userId : changedUsers) {
+				LongDoubleHashMap[] signals = interactions.get(userId);
+				if(signals != null)
+					for(LongDoubleHashMap signal : signals)
+						signal.forEach((movieId, weight) -> changedMovieIds.add(movieId));
+			}
+			changedUsers = new HashSet<>();
+		}
+		long startTime = System.currentTimeMillis();
+		// the users that interact while the matrix is built are changed users of the next refresh
+		ItemSimilarityMatrix matrix = buildMatrix(userMovies);
+		Map<Long, Neighbours> updated = new HashMap<>(neighbours);
+		IntList ordinals = new IntList();
+		for(Long movieId : changedMovieIds) {
+			int ordinal = matrix.ordinal(movieId);
+			if(ordinal < 0)
+				updated.remove(movieId); // nobody interacts with the movie anymore
+			else
+				ordinals.add(ordinal);
+		}
+		computeNeighbours(matrix, ordinals.toArray(), updated);
+		neighbours = updated;
+		LOGGER.debug("Refreshed the similar movies of {} movies in {} ms", ordinals.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Reloads all the interactions from the database, and computes the neighbours of all the movies.
+	 */
+	private void rebuildAll() {
+		long startTime = System.currentTimeMillis();
+		Map<Long, LongDoubleHashMap[]> loaded = new HashMap<>();
+		// the rows are [userId, movieId]
+		for(Object[] row : movieLikeRepository.findUserMovieValues())
+			signals(loaded, (Long) row[0])[LIKE].put((Long) row[1], LIKE_WEIGHT);
+		// the rows are [userId, movieId, rating]
+		for(Object[] row : movieReviewRepository.findRatingValuesAtLeast(MIN_RATING))
+			signals(loaded, (Long) row[0])[RATING].put((Long) row[1], getRatingWeight((Integer) row[2]));
+		// the rows are [userId, movieId]
+		for(Object[] row : moviePurchasedRepository.findUserMovieValues())
+			signals(loaded, (Long) row[0])[PURCHASE].put((Long) row[1], PURCHASE_WEIGHT);
+		Map<Long, LongDoubleHashMap> loadedUserMovies = new ConcurrentHashMap<>(loaded.size() * 2);
+		loaded.forEach((userId, signals) -> loadedUserMovies.put(userId, combine(signals)));
+		synchronized(lock) {
+			// the interactions recorded while loading may be missing, until the next full rebuild
+			interactions = loaded;
+			userMovies = loadedUserMovies;
+			changedUsers = new HashSet<>();
+		}
+		ItemSimilarityMatrix matrix = buildMatrix(loadedUserMovies);
+		int[] ordinals = new int[matrix.itemCount()];
+		for(int i = 0; i < ordinals.length; i++)
+			ordinals[i] = i;
+		Map<Long, Neighbours> rebuilt = new HashMap<>(ordinals.length * 2);
+		computeNeighbours(matrix, ordinals, rebuilt);
+		neighbours = rebuilt;
+		lastFullRebuildMillis = System.currentTimeMillis();
+		LOGGER.info("Built the similar movies of {} movies from {} users in {} ms", ordinals.length, loaded.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Finds the movies that the users who interacted with the movie also interacted with, completed by the movies
+	 * with the most similar content, so the movies without enough interactions have similar movies too.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param limit the maximum number of movies, at most {@code similar.neighbours}.
+	 * @return the references of the similar movies, the most similar first.
+	 */
+	public List<MovieReference> getSimilarMovies(Long movieId, int limit) {
+		int size = Math.min(limit, neighbourCount);
+		Set<Long> movieIds = new LinkedHashSet<>();
+		Neighbours movieNeighbours = neighbours.get(movieId);
+		if(movieNeighbours != null) {
+			for(int i = 0; i < movieNeighbours.ids().length && movieIds.size() < size; i++)
+				movieIds.add(movieNeighbours.ids()[i]);
+		}
+		if(movieIds.size() < size) {
+			for(long similarId : movieContentIndexService.findSimilar(movieId, size)) {
+				if(movieIds.size() >= size)
+					break;
+				movieIds.add(similarId);
+			}
+		}
+		return movieReferenceCacheService.getReferencesInOrder(movieIds);
+	}
+
+	/**
+	 * Recommends the movies most similar to the movies the user interacted with, that the user did not interact with.
+	 *
+	 * @param userId the id of the user.
+	 * @param topN the maximum number of movies.
+	 * @return the ids of the recommended movies, the best first, empty if the user has no interactions.
+	 */
+	public long[] recommend(Long userId, int topN) {
+		LongDoubleHashMap movies = userMovies.get(userId);
+		if(movies == null)
+			return new long[0];
+		Map<Long, Neighbours> currentNeighbours = neighbours;
+		LongDoubleHashMap scores = new LongDoubleHashMap();
+		movies.forEach((movieId, weight) -> {
+			Neighbours movieNeighbours = currentNeighbours.get(movieId);
+			if(weight <= 0 || movieNeighbours == null)
+				return;
+			for(int i = 0; i < movieNeighbours.ids().length; i++) {
+				long similarId = movieNeighbours.ids()[i];
+				if(movies.get(similarId) <= 0)
+					scores.addTo(similarId, weight * movieNeighbours.scores()[i]);
+			}
+		});
+		TopK top = new TopK(Math.max(0, Math.min(topN, scores.size())));
+		scores.forEach(top::offer);
+		return top.ids();
+	}
+
+	public void addLike(Long userId, Long movieId) {
+		setInteraction(userId, movieId, LIKE, LIKE_WEIGHT);
+	}
+
+	public void removeLike(Long userId, Long movieId) {
+		setInteraction(userId, movieId, LIKE, 0);
+	}
+
+	/**
+	 * @param rating the new rating of the user, out of 100.
+	 */
+	public void setRating(Long userId, Long movieId, Integer rating) {
+		setInteraction(userId, movieId, RATING, rating == null || rating < MIN_RATING ? 0 : getRatingWeight(rating));
+	}
+
+	public void addPurchase(Long userId, Long movieId) {
+		setInteraction(userId, movieId, PURCHASE, PURCHASE_WEIGHT);
+	}
+
+	/**
+	 * Records an interaction once the current transaction commits.
+	 */
+	private void setInteraction(Long userId, Long movieId, int kind, double weight) {
+		TransactionUtils.afterCommit(() -> {
+			synchronized(lock) {
+				LongDoubleHashMap[] signals = signals(interactions, userId);
+				signals[kind].put(movieId, weight);
+				userMovies.put(userId, combine(signals));
+				changedUsers.add(userId);
+			}
+		});
+	}
+
+	/**
+	 * Builds the matrix of the weights of the users, without the lock since the weights of a user are never
+	 * changed once published.
+	 */
+	private ItemSimilarityMatrix buildMatrix(Map<Long, LongDoubleHashMap> weights) {
+		ItemSimilarityMatrix.Builder builder = new ItemSimilarityMatrix.Builder(maxItemsPerUser);
+		for(LongDoubleHashMap movies : weights.values())
+			builder.addUser(movies);
+		return builder.build();
+	}
+
+	private void computeNeighbours(ItemSimilarityMatrix matrix, int[] ordinals, Map<Long, Neighbours> target) {
+		Neighbours[] computed = matrix.neighbours(ordinals, neighbourCount, minCommonUsers, pool);
+		for(int i = 0; i < ordinals.length; i++)
+			target.put(matrix.itemId(ordinals[i]), computed[i]);
+	}
+
+	/**
+	 * @return the weight of every movie of a user, the sum of the weights of its kinds.
+	 */
+	private static LongDoubleHashMap combine(LongDoubleHashMap[] signals) {
+		LongDoubleHashMap combined = new LongDoubleHashMap(signals[LIKE].size() + signals[RATING].size() + signals[PURCHASE].size());
+		for(LongDoubleHashMap signal : signals)
+			signal.forEach(combined::addTo);
+		return combined;
+	}
+
+	private static LongDoubleHashMap[] signals(Map<Long, LongDoubleHashMap[]> interactions, Long userId) {
+		return interactions.computeIfAbsent(userId, key -> {
+			LongDoubleHashMap[] signals = new LongDoubleHashMap[SIGNAL_COUNT];
+			for(int i = 0; i < SIGNAL_COUNT; i++)
+				signals[i] = new LongDoubleHashMap();
+			return signals;
+		});
+	}
+
+	/**
+	 * @return the weight of a good rating, a rating of 100 weighs like a like.
+	 */
+	private static double getRatingWeight(int rating) {
+		return rating / 100.0;
+	}
+}
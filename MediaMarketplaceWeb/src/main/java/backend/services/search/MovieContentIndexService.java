@@ -0,0 +1,149 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import backend.repositories.ActorRepository;
+import backend.repositories.DirectorRepository;
+import backend.repositories.MovieRepository;
+import backend.search.MinHashIndex;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.LongIntHashMap;
+
+/**
+ * Service that keeps the in-memory {@link MinHashIndex} of the content of the movies: their genres, keywords,
+ * top cast and directors.
+ * <p>
+ * The index finds the movies with similar content without any interaction with them, so it recommends the new
+ * movies too. It is loaded in batches of movies once the application is ready, with projection queries that do
+ * not load the entities. After that, the services that change the movies, actors, directors and people reindex
+ * the changed movies once their transaction commits.
+ * </p>
+ */
+@Service
+public class MovieContentIndexService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	/**
+	 * The number of actors of a movie that are features, the first added ones.
+	 */
+	private static final int TOP_CAST_SIZE = 5;
+
+	/**
+	 * The kinds of features, in the highest byte of the feature so the ids of different kinds do not collide.
+	 */
+	private static final long GENRE = 1L << 56, KEYWORD = 2L << 56, ACTOR = 3L << 56, DIRECTOR = 4L << 56;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	@Value("${content.similar.max-candidates:2000}")
+	private int maxCandidates;
+
+	private final MinHashIndex minHashIndex;
+
+	public MovieContentIndexService(@Value("${content.similar.bands:16}") int bands,
+			@Value("${content.similar.rows:4}") int rows) {
+		this.minHashIndex = new MinHashIndex(bands, rows, 0x5DEECE66DL);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		long startTime = System.currentTimeMillis();
+		Long maxMovieId = movieRepository.findMaxId();
+		if(maxMovieId != null) {
+			for(long fromId = 1; fromId <= maxMovieId; fromId += LOAD_BATCH_SIZE) {
+				indexMovies(fromId, fromId + LOAD_BATCH_SIZE - 1);
+			}
+		}
+		LOGGER.info("Loaded the movie content index of {} movies in {} ms", minHashIndex.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * Finds the movies with the most similar genres, keywords, top cast and directors to a movie.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param limit the maximum number of movies.
+	 * @return the ids of the similar movies, the most similar first.
+	 */
+	public long[] findSimilar(Long movieId, int limit) {
+		return minHashIndex.findSimilar(movieId, limit, maxCandidates);
+	}
+
+	/**
+	 * Reindexes a changed movie once the current transaction commits, or now if there is no transaction.
+	 *
+	 * @param movieId the id of the movie.
+	 */
+	public void reindexMovie(Long movieId) {
+		reindexMovies(List.of(movieId));
+	}
+
+	/**
+	 * Reindexes changed movies once the current transaction commits, or now if there is no transaction.
+	 *
+	 * @param movieIds the ids of the movies.
+	 */
+	public void reindexMovies(Collection<Long> movieIds) {
+		List<Long> ids = new ArrayList<>(movieIds);
+		TransactionUtils.afterCommit(() -> {
+			for(Long movieId : ids)
+				indexMovies(movieId, movieId);
+		});
+	}
+
+	/**
+	 * Loads the features of the movies with an id in the range, and indexes them.
+	 */
+	private void indexMovies(long fromId, long toId) {
+		Map<Long, List<Long>> features = new HashMap<>();
+		// the rows are [movieId, genreId]
+		for(Object[] row : movieRepository.findGenreIdsBetween(fromId, toId))
+			features.computeIfAbsent((Long) row[0], key -> new ArrayList<>()).add(GENRE | (Long) row[1]);
+		// the rows are [movieId, keywordId]
+		for(Object[] row : movieRepository.findKeywordIdsBetween(fromId, toId))
+			features.computeIfAbsent((Long) row[0], key -> new ArrayList<>()).add(KEYWORD | (Long) row[1]);
+		// the rows are [movieId, personId], the first added actors of a movie first
+		LongIntHashMap castSizes = new LongIntHashMap(0);
+		for(Object[] row : actorRepository.findCastByMovieIdBetween(fromId, toId)) {
+			long movieId = (Long) row[0];
+			if(castSizes.addTo(movieId, 1) <= TOP_CAST_SIZE)
+				features.computeIfAbsent(movieId, key -> new ArrayList<>()).add(ACTOR | (Long) row[1]);
+		}
+		// the rows are [movieId, personId]
+		for(Object[] row : directorRepository.findPersonIdsByMovieIdBetween(fromId, toId))
+			features.computeIfAbsent((Long) row[0], key -> new ArrayList<>()).add(DIRECTOR | (Long) row[1]);
+		if(fromId == toId && !features.containsKey(fromId)) {
+			// a changed movie that lost all its features, or was removed
+			minHashIndex.remove(fromId);
+			return;
+		}
+		for(Map.Entry<Long, List<Long>> entry : features.entrySet()) {
+			List<Long> movieFeatures = entry.getValue();
+			long[] values = new long[movieFeatures.size()];
+			for(int i = 0; i < values.length; i++)
+				values[i] = movieFeatures.get(i);
+			minHashIndex.put(entry.getKey(), values);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package backend.services.search;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import backend.entities.Genre;
+import backend.entities.Keyword;
+import backend.entities.Movie;
+import backend.entities.MovieRating;
+import backend.repositories.MovieRepository;
+import backend.search.MovieFacetCounts;
+import backend.search.MovieFacetIndex;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.CompressedBitmap;
+
+/**
+ * Service that keeps the in-memory {@link MovieFacetIndex} of the movies.
+ * <p>
+ * The index is loaded in id batches once the application is ready, with projection queries that do not
+ * load the {@link Movie} entities. After that, adding or updating a movie and changing its rating keep
+ * the index up to date.
+ * </p>
+ */
+@Service
+public class MovieFacetService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	/**
+	 * The maximum number of keywords returned in the facet counts.
+	 */
+	public static final int MAX_KEYWORDS = 20;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	private final MovieFacetIndex movieFacetIndex = new MovieFacetIndex();
+
+	private volatile boolean ready;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		long startTime = System.currentTimeMillis();
+		Long lastId = 0L;
+		while(true) {
+			List<Object[]> rows = movieRepository.findFacetValuesAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+			if(rows.isEmpty())
+				break;
+			Long firstId = (Long) rows.get(0)[0];
+			lastId = (Long) rows.get(rows.size() - 1)[0];
+			Map<Long, List<Long>> genreIds = groupByMovie(movieRepository.findGenreIdsBetween(firstId, lastId));
+			Map<Long, List<Long>> keywordIds = groupByMovie(movieRepository.findKeywordIdsBetween(firstId, lastId));
+			for(Object[] row : rows) {
+				Long movieId = (Long) row[0];
+				LocalDate releaseDate = (LocalDate) row[1];
+				movieFacetIndex.put(movieId, toArray(genreIds.get(movieId)), toArray(keywordIds.get(movieId)),
+						releaseDate == null ? null : releaseDate.getYear(), (Double) row[2]);
+			}
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+		ready = true;
+		LOGGER.info("Loaded the movie facet index with {} movies in {} ms", movieFacetIndex.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * @return {@code true} if the index is loaded and can be used to count the facets.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Adds or updates the facet values of a saved movie, once the current transaction commits.
+	 *
+	 * @param movie the saved movie.
+	 */
+	public void indexMovie(Movie movie) {
+		if(movie.getId() == null)
+			return;
+		List<Genre> genres = movie.getGenres();
+		long[] genreIds = genres == null ? new long[0] : genres.stream().mapToLong(Genre::getId).toArray();
+		List<Keyword> keywords = movie.getKeywords();
+		long[] keywordIds = keywords == null ? new long[0] : keywords.stream().mapToLong(Keyword::getId).toArray();
+		LocalDate releaseDate = movie.getReleaseDate();
+		MovieRating movieRating = movie.getMovieRating();
+		Double averageRating = movieRating == null || movieRating.getTotalRatings() == null || movieRating.getTotalRatings() == 0
+				? null : movieRating.getAverageRating();
+		Long movieId = movie.getId();
+		Integer year = releaseDate == null ? null : releaseDate.getYear();
+		TransactionUtils.afterCommit(() -> movieFacetIndex.put(movieId, genreIds, keywordIds, year, averageRating));
+	}
+
+	/**
+	 * Updates the rating of a movie in the index, once the current transaction commits.
+	 *
+	 * @param movieId the id of the movie.
+	 * @param averageRating the new average rating, or null if the movie has no ratings.
+	 */
+	public void updateRating(Long movieId, Double averageRating) {
+		if(movieId != null)
+			TransactionUtils.afterCommit(() -> movieFacetIndex.updateRating(movieId, averageRating));
+	}
+
+	/**
+	 * Counts the facet values of a set of movies.
+	 *
+	 * @param movieIds the ids of the movies, or null for all the movies.
+	 * @return the facet counts.
+	 */
+	public MovieFacetCounts countFacets(CompressedBitmap movieIds) {
+		return movieFacetIndex.count(movieIds, MAX_KEYWORDS);
+	}
+
+	private static Map<Long, List<Long>> groupByMovie(List<Object[]> rows) {
+		Map<Long, List<Long>> valuesByMovie = new HashMap<>();
+		for(Object[] row : rows) {
+			valuesByMovie.computeIfAbsent((Long) row[0], key -> new ArrayList<>(4)).add((Long) row[1]);
+		}
+		return valuesByMovie;
+	}
+
+	private static long[] toArray(List<Long> values) {
+		return values == null ? new long[0] : values.stream().mapToLong(Long::longValue).toArray();
+	}
+}
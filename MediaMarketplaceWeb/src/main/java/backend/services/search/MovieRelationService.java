@@ -0,0 +1,177 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import backend.dtos.search.MovieFilter;
+import backend.entities.Genre;
+import backend.entities.Movie;
+import backend.repositories.ActorRepository;
+import backend.repositories.DirectorRepository;
+import backend.repositories.MovieRepository;
+import backend.search.MovieRelationIndex;
+import backend.search.MovieRelationIndex.Relation;
+import backend.utils.TransactionUtils;
+
+/**
+ * Service that keeps the in-memory {@link MovieRelationIndex} of the movie genres, actors and directors.
+ * <p>
+ * The index is loaded in batches once the application is ready. After that, the services that add or
+ * remove genres, actors and directors of movies keep it up to date.
+ * </p>
+ */
+@Service
+public class MovieRelationService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	private final MovieRelationIndex movieRelationIndex = new MovieRelationIndex();
+
+	private volatile boolean ready;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		long startTime = System.currentTimeMillis();
+		Long maxMovieId = movieRepository.findMaxId();
+		if(maxMovieId != null) {
+			for(long fromId = 1; fromId <= maxMovieId; fromId += LOAD_BATCH_SIZE) {
+				List<Object[]> rows = movieRepository.findGenreIdsBetween(fromId, fromId + LOAD_BATCH_SIZE - 1);
+				// the rows are [movieId, genreId]
+				loadRows(Relation.GENRE, rows, 1, 0);
+			}
+		}
+		loadPeople(Relation.ACTOR);
+		loadPeople(Relation.DIRECTOR);
+		movieRelationIndex.finishLoad();
+		ready = true;
+		LOGGER.info("Loaded the movie relation index in {} ms", System.currentTimeMillis() - startTime);
+	}
+
+	private void loadPeople(Relation relation) {
+		Long lastId = 0L;
+		while(true) {
+			PageRequest batch = PageRequest.of(0, LOAD_BATCH_SIZE);
+			List<Object[]> rows = relation == Relation.ACTOR
+					? actorRepository.findPersonAndMovieIdsAfter(lastId, batch)
+					: directorRepository.findPersonAndMovieIdsAfter(lastId, batch);
+			if(rows.isEmpty())
+				break;
+			// the rows are [id, personId, movieId]
+			loadRows(relation, rows, 1, 2);
+			lastId = (Long) rows.get(rows.size() - 1)[0];
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+	}
+
+	private void loadRows(Relation relation, List<Object[]> rows, int keyColumn, int movieColumn) {
+		long[] keys = new long[rows.size()];
+		long[] movieIds = new long[rows.size()];
+		for(int i = 0; i < rows.size(); i++) {
+			keys[i] = (Long) rows.get(i)[keyColumn];
+			movieIds[i] = (Long) rows.get(i)[movieColumn];
+		}
+		movieRelationIndex.load(relation, keys, movieIds);
+	}
+
+	/**
+	 * @return {@code true} if the index is loaded and can be used by the searches.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Finds the movies that have all the genres, actors and directors of the filter.
+	 *
+	 * @param movieFilter the search filter.
+	 * @return the ids of the matching movies in ascending order, or null if the filter does not require any
+	 * genre, actor or director or if the index is still loading.
+	 */
+	public int[] findMovieIds(MovieFilter movieFilter) {
+		if(!ready || movieFilter == null)
+			return null;
+		Map<Relation, List<Long>> criteria = new EnumMap<>(Relation.class);
+		addCriteria(criteria, Relation.GENRE, movieFilter.getGenres());
+		addCriteria(criteria, Relation.ACTOR, movieFilter.getActors());
+		addCriteria(criteria, Relation.DIRECTOR, movieFilter.getDirectors());
+		if(criteria.isEmpty())
+			return null;
+		return movieRelationIndex.findMovies(criteria);
+	}
+
+	private static void addCriteria(Map<Relation, List<Long>> criteria, Relation relation, List<Long> ids) {
+		if(ids == null || ids.isEmpty())
+			return;
+		criteria.put(relation, ids.stream().distinct().toList());
+	}
+
+	/**
+	 * Updates the genres of a saved movie, once the current transaction commits.
+	 *
+	 * @param movie the saved movie.
+	 */
+	public void indexMovieGenres(Movie movie) {
+		if(movie.getId() == null)
+			return;
+		List<Genre> genres = movie.getGenres() == null ? new ArrayList<>() : movie.getGenres();
+		Long movieId = movie.getId();
+		long[] genreIds = genres.stream().mapToLong(Genre::getId).toArray();
+		TransactionUtils.afterCommit(() -> movieRelationIndex.replaceMovie(Relation.GENRE, movieId, genreIds));
+	}
+
+	/**
+	 * Adds an actor or director of a movie, once the current transaction commits.
+	 *
+	 * @param relation {@link Relation#ACTOR} or {@link Relation#DIRECTOR}.
+	 * @param personId the id of the person.
+	 * @param movieId the id of the movie.
+	 */
+	public void addPerson(Relation relation, Long personId, Long movieId) {
+		TransactionUtils.afterCommit(() -> movieRelationIndex.add(relation, personId, movieId));
+	}
+
+	/**
+	 * Removes an actor or director of a movie, once the current transaction commits.
+	 *
+	 * @param relation {@link Relation#ACTOR} or {@link Relation#DIRECTOR}.
+	 * @param personId the id of the person.
+	 * @param movieId the id of the movie.
+	 */
+	public void removePerson(Relation relation, Long personId, Long movieId) {
+		TransactionUtils.afterCommit(() -> movieRelationIndex.remove(relation, personId, movieId));
+	}
+
+	/**
+	 * Removes all the roles of a removed person, once the current transaction commits.
+	 *
+	 * @param personId the id of the removed person.
+	 */
+	public void removePerson(Long personId) {
+		TransactionUtils.afterCommit(() -> {
+			movieRelationIndex.removeKey(Relation.ACTOR, personId);
+			movieRelationIndex.removeKey(Relation.DIRECTOR, personId);
+		});
+	}
+}
@@ -0,0 +1,126 @@
+package backend.services.search;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import backend.auth.AuthenticateAdmin;
+import backend.dtos.search.CacheStatsDto;
+import backend.entities.Genre;
+import backend.entities.Movie;
+import backend.entities.MovieRating;
+import backend.search.CachedMovieSearch;
+import backend.search.MovieSearchKey;
+import backend.search.MovieSearchValues;
+import backend.utils.TransactionUtils;
+import backend.utils.collections.BoundedCache;
+
+/**
+ * Service that caches the results of the movie searches.
+ * <p>
+ * Only the ids of the movies of the page and the total are cached, keyed by the canonical
+ * {@link MovieSearchKey} of the filter and page. The entries expire after a time to live, and the services
+ * that change the movies, their ratings, genres, actors and directors invalidate the entries that the
+ * change may affect.
+ * </p>
+ */
+@Service
+public class MovieSearchCacheService {
+
+	private final BoundedCache<MovieSearchKey, CachedMovieSearch> cache;
+
+	public MovieSearchCacheService(@Value("${search.cache.max-entries:2000}") int maxEntries,
+			@Value("${search.cache.ttl-seconds:300}") long ttlSeconds) {
+		this.cache = new BoundedCache<>(maxEntries, Duration.ofSeconds(ttlSeconds));
+	}
+
+	/**
+	 * @return the cached result of the search, or null if it is not cached.
+	 */
+	public CachedMovieSearch get(MovieSearchKey key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * @return the generation to read before a search, and to pass to {@link #put(MovieSearchKey, CachedMovieSearch, long)}.
+	 */
+	public long generation() {
+		return cache.generation();
+	}
+
+	/**
+	 * Caches the result of a search, unless the cache was invalidated since the search started.
+	 *
+	 * @param key the key of the search.
+	 * @param result the result of the search.
+	 * @param generation the {@link #generation()} read before the search.
+	 */
+	public void put(MovieSearchKey key, CachedMovieSearch result, long generation) {
+		cache.put(key, result, generation);
+	}
+
+	/**
+	 * @return the values of a movie that the cached searches depend on.
+	 */
+	public MovieSearchValues getSearchValues(Movie movie) {
+		List<Genre> genres = movie.getGenres();
+		long[] genreIds = genres == null ? new long[0] : genres.stream().mapToLong(Genre::getId).toArray();
+		LocalDate releaseDate = movie.getReleaseDate();
+		MovieRating movieRating = movie.getMovieRating();
+		Double averageRating = movieRating == null || movieRating.getTotalRatings() == null || movieRating.getTotalRatings() == 0
+				? null : movieRating.getAverageRating();
+		return new MovieSearchValues(movie.getId() == null ? 0 : movie.getId(), genreIds,
+				releaseDate == null ? null : releaseDate.getYear(), averageRating);
+	}
+
+	/**
+	 * Invalidates the searches that a new or changed movie may affect: the searches that the movie matched
+	 * before or matches after the change, and the pages that show it.
+	 *
+	 * @param before the values of the movie before the change, or null for a new movie.
+	 * @param after the values of the movie after the change.
+	 */
+	public void invalidateMovie(MovieSearchValues before, MovieSearchValues after) {
+		invalidateIf((key, result) -> result.contains(after.movieId())
+				|| key.mayMatch(after) || (before != null && key.mayMatch(before)));
+	}
+
+	/**
+	 * Invalidates the searches that the new rating of a movie may affect: the searches that filter or
+	 * sort by rating and that the movie may match with any rating.
+	 *
+	 * @param movie the movie whose rating changed.
+	 */
+	public void invalidateRating(Movie movie) {
+		MovieSearchValues values = getSearchValues(movie);
+		invalidateIf((key, result) -> key.dependsOnRating() && key.mayMatchExceptRating(values));
+	}
+
+	/**
+	 * Invalidates the searches that require a person, when the movies of the person as an actor or as a
+	 * director change.
+	 */
+	public void invalidatePerson(Long personId) {
+		invalidateIf((key, result) -> key.requiresPerson(personId));
+	}
+
+	/**
+	 * Invalidates the entries that match a condition once the current transaction commits. A search that
+	 * read the old data before is not cached over the invalidation, see {@link BoundedCache}.
+	 */
+	private void invalidateIf(BiPredicate<MovieSearchKey, CachedMovieSearch> condition) {
+		TransactionUtils.afterCommit(() -> cache.invalidateIf(condition));
+	}
+
+	/**
+	 * @return the hit and miss counters of the cache.
+	 */
+	@AuthenticateAdmin
+	public CacheStatsDto getStats() {
+		return new CacheStatsDto(cache.stats());
+	}
+}
@@ -0,0 +1,183 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import backend.entities.Keyword;
+import backend.entities.Movie;
+import backend.repositories.MovieRepository;
+import backend.search.TextIndex;
+import backend.utils.SpecificationUtils;
+import backend.utils.TransactionUtils;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+
+/**
+ * Service that keeps the in-memory {@link TextIndex} of the movie titles, synopses and keyword names.
+ * <p>
+ * The index is loaded in batches of movies once the application is ready, with projection queries that do
+ * not load the entities. After that, {@link backend.services.MovieService} indexes the added and updated movies.
+ * Until the index is loaded, the text filter falls back to a {@code LIKE} of the words on the title, synopsis
+ * and keyword names.
+ * </p>
+ */
+@Service
+public class MovieTextIndexService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	private final TextIndex textIndex = new TextIndex();
+
+	private volatile boolean ready;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		long startTime = System.currentTimeMillis();
+		Long lastId = 0L;
+		while(true) {
+			List<Object[]> rows = movieRepository.findTextValuesAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+			if(rows.isEmpty())
+				break;
+			Long firstId = (Long) rows.get(0)[0];
+			lastId = (Long) rows.get(rows.size() - 1)[0];
+			Map<Long, List<String>> keywords = new HashMap<>();
+			for(Object[] row : movieRepository.findKeywordNamesBetween(firstId, lastId))
+				keywords.computeIfAbsent((Long) row[0], key -> new ArrayList<>(4)).add((String) row[1]);
+			// the movie rows are [id, name, synopsis]
+			for(Object[] row : rows) {
+				Long movieId = (Long) row[0];
+				textIndex.put(movieId, (String) row[1], (String) row[2], keywords.get(movieId));
+			}
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+		ready = true;
+		LOGGER.info("Loaded the movie text index with {} movies in {} ms", textIndex.size(), System.currentTimeMillis() - startTime);
+	}
+
+	/**
+	 * @return {@code true} if the index is loaded and can be searched.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Finds the movies with a title, synopsis or keyword that contains words of the text.
+	 *
+	 * @param text the searched text.
+	 * @return the ids of the matching movies, the best BM25 score first, at most {@link TextIndex#MAX_RESULTS}.
+	 */
+	public long[] search(String text) {
+		return textIndex.search(text);
+	}
+
+	/**
+	 * Adds a new movie, or updates the texts of a changed movie, once the current transaction commits.
+	 *
+	 * @param movie the saved movie.
+	 */
+	public void indexMovie(Movie movie) {
+		if(movie.getId() == null)
+			return;
+		List<String> keywords = movie.getKeywords() == null ? null
+				: movie.getKeywords().stream().map(Keyword::getName).toList();
+		Long movieId = movie.getId();
+		String name = movie.getName();
+		String synopsis = movie.getSynopsis();
+		TransactionUtils.afterCommit(() -> textIndex.put(movieId, name, synopsis, keywords));
+	}
+
+	/**
+	 * Creates the text filter of a movie search specification, and orders the query by the best score.
+	 * <p>
+	 * Uses the index when it is loaded, otherwise matches any word of the text in the title, synopsis or
+	 * keyword names with a {@code LIKE}, without ordering.
+	 * </p>
+	 * <p>
+	 * The index gives at most {@link TextIndex#MAX_RESULTS} ids, the best scores. The filters of the query
+	 * are applied to those ids only, so when more movies match and the query has other filters, the
+	 * {@code LIKE} filter is used as well, not to drop the matches beyond the first ids. The first ids still
+	 * come first, in the order of their scores. The filters known in memory are applied by the index
+	 * before it keeps the first ids.
+	 * </p>
+	 *
+	 * @param cb the criteria builder.
+	 * @param query the criteria query.
+	 * @param root the root of the movie.
+	 * @param text the searched text.
+	 * @param filter the movie ids allowed by the other filters of the search that are known in memory, or null.
+	 * @param hasOtherFilters whether the query has other filters than the text and the filter.
+	 * @param orderBy the order list of the query, the score order is added to it.
+	 * @return the predicate of the filter, or null if there is no text to filter by.
+	 */
+	public Predicate filterByText(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Movie> root, String text,
+			LongPredicate filter, boolean hasOtherFilters, List<Order> orderBy) {
+		if(text == null)
+			return null;
+		if(!isReady())
+			return filterByWords(cb, query, root, text);
+		long[] movieIds = textIndex.search(text, TextIndex.MAX_RESULTS + 1, filter);
+		if(movieIds.length <= TextIndex.MAX_RESULTS)
+			return SpecificationUtils.filterByRankedIds(cb, root.get("id"), movieIds, orderBy);
+		movieIds = Arrays.copyOf(movieIds, TextIndex.MAX_RESULTS);
+		if(!hasOtherFilters)
+			return SpecificationUtils.filterByRankedIds(cb, root.get("id"), movieIds, orderBy);
+		// FIELD gives 0 to the ids that are not listed, so the listed ids are reversed and sorted last first
+		List<Order> rankedOrder = new ArrayList<>(1);
+		long[] reversedIds = new long[movieIds.length];
+		for(int i = 0; i < movieIds.length; i++)
+			reversedIds[i] = movieIds[movieIds.length - 1 - i];
+		Predicate ranked = SpecificationUtils.filterByRankedIds(cb, root.get("id"), reversedIds, rankedOrder);
+		orderBy.add(cb.desc(rankedOrder.get(0).getExpression()));
+		return cb.or(ranked, filterByWords(cb, query, root, text));
+	}
+
+	/**
+	 * Matches any word of the text in the title, synopsis or keyword names of the movies with a {@code LIKE}.
+	 */
+	private static Predicate filterByWords(CriteriaBuilder cb, CriteriaQuery<?> query, Root<Movie> root, String text) {
+		Set<String> terms = TextIndex.terms(text);
+		if(terms.isEmpty())
+			return cb.disjunction();
+		Subquery<Long> keywordQuery = query.subquery(Long.class);
+		Root<Movie> keywordMovie = keywordQuery.from(Movie.class);
+		Join<Movie, Keyword> keywords = keywordMovie.join("keywords");
+		List<Predicate> matches = new ArrayList<>(terms.size() * 2 + 1);
+		List<Predicate> keywordMatches = new ArrayList<>(terms.size());
+		for(String term : terms) {
+			Expression<String> pattern = cb.literal("%" + SpecificationUtils.escapeLike(term) + "%");
+			matches.add(cb.like(cb.lower(root.get("name")), pattern, SpecificationUtils.LIKE_ESCAPE));
+			matches.add(cb.like(cb.lower(root.get("synopsis")), pattern, SpecificationUtils.LIKE_ESCAPE));
+			keywordMatches.add(cb.like(cb.lower(keywords.get("name")), pattern, SpecificationUtils.LIKE_ESCAPE));
+		}
+		keywordQuery.select(keywordMovie.get("id"))
+				.where(cb.equal(keywordMovie, root), cb.or(keywordMatches.toArray(new Predicate[0])));
+		matches.add(cb.exists(keywordQuery));
+		return cb.or(matches.toArray(new Predicate[0]));
+	}
+}
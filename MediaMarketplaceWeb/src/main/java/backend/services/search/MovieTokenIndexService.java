@@ -0,0 +1,191 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import backend.entities.Movie;
+import backend.repositories.ActorRepository;
+import backend.repositories.DirectorRepository;
+import backend.repositories.MovieRepository;
+import backend.search.MovieTokenIndex;
+import backend.search.MovieTokens;
+import backend.search.MovieTokens.FieldKind;
+import backend.utils.TransactionUtils;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Service that keeps the in-memory {@link MovieTokenIndex} of the movie titles, actor names, role names
+ * and director names.
+ * <p>
+ * The index is loaded in batches of movies once the application is ready, with projection queries that
+ * do not load the entities. After that, the services that add or change the movies, actors, directors and
+ * people keep it up to date.
+ * </p>
+ * <p>
+ * The parallel scans of the searches run on a pool of their own ({@code search.any-name.threads}), so a burst
+ * of searches does not starve the other users of the common pool.
+ * </p>
+ */
+@Service
+public class MovieTokenIndexService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	private final ForkJoinPool pool;
+
+	private final MovieTokenIndex movieTokenIndex;
+
+	private volatile boolean ready;
+
+	public MovieTokenIndexService(@Value("${search.any-name.threads:2}") int threads) {
+		this.pool = new ForkJoinPool(threads);
+		this.movieTokenIndex = new MovieTokenIndex(pool);
+	}
+
+	@PreDestroy
+	public void stopPool() {
+		pool.shutdownNow();
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndex() {
+		long startTime = System.currentTimeMillis();
+		Long lastId = 0L;
+		while(true) {
+			List<Object[]> rows = movieRepository.findIdAndNameAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+			if(rows.isEmpty())
+				break;
+			Long firstId = (Long) rows.get(0)[0];
+			lastId = (Long) rows.get(rows.size() - 1)[0];
+			Map<Long, List<Object[]>> actors = groupByMovie(actorRepository.findNamesByMovieIdBetween(firstId, lastId));
+			Map<Long, List<Object[]>> directors = groupByMovie(directorRepository.findNamesByMovieIdBetween(firstId, lastId));
+			long[] movieIds = new long[rows.size()];
+			MovieTokens[] tokens = new MovieTokens[rows.size()];
+			for(int i = 0; i < rows.size(); i++) {
+				Object[] row = rows.get(i);
+				Long movieId = (Long) row[0];
+				MovieTokens.Builder builder = movieTokenIndex.newTokens().title((String) row[1]);
+				// the actor rows are [movieId, personId, personName, roleName]
+				for(Object[] actor : actors.getOrDefault(movieId, List.of()))
+					builder.actor((Long) actor[1], (String) actor[2], (String) actor[3]);
+				// the director rows are [movieId, personId, personName]
+				for(Object[] director : directors.getOrDefault(movieId, List.of()))
+					builder.director((Long) director[1], (String) director[2]);
+				movieIds[i] = movieId;
+				tokens[i] = builder.build();
+			}
+			// the posting lists are copied once per batch
+			movieTokenIndex.putAll(movieIds, tokens);
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+		ready = true;
+		LOGGER.info("Loaded the movie token index with {} movies in {} ms", movieTokenIndex.size(), System.currentTimeMillis() - startTime);
+	}
+
+	private static Map<Long, List<Object[]>> groupByMovie(List<Object[]> rows) {
+		Map<Long, List<Object[]>> rowsByMovie = new HashMap<>();
+		for(Object[] row : rows) {
+			rowsByMovie.computeIfAbsent((Long) row[0], key -> new ArrayList<>(4)).add(row);
+		}
+		return rowsByMovie;
+	}
+
+	/**
+	 * @return {@code true} if the index is loaded and can be searched.
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Finds the movies with a title, actor name, role name or director name that matches the query.
+	 *
+	 * @param query the query.
+	 * @return the ids of the best {@link MovieTokenIndex#MAX_RESULTS} matching movies, the best matching first.
+	 */
+	public long[] search(String query) {
+		return movieTokenIndex.search(query);
+	}
+
+	/**
+	 * Adds a new movie, or updates the title of a changed movie, once the current transaction commits.
+	 *
+	 * @param movie the saved movie.
+	 */
+	public void indexMovie(Movie movie) {
+		if(movie.getId() == null)
+			return;
+		Long movieId = movie.getId();
+		String name = movie.getName();
+		TransactionUtils.afterCommit(() -> {
+			if(movieTokenIndex.get(movieId) == null)
+				movieTokenIndex.put(movieId, movieTokenIndex.newTokens().title(name).build());
+			else
+				movieTokenIndex.update(movieId, tokens -> tokens.withTitle(name));
+		});
+	}
+
+	/**
+	 * Adds the names of an actor of a movie, once the current transaction commits.
+	 */
+	public void addActor(Long movieId, Long personId, String name, String roleName) {
+		TransactionUtils.afterCommit(() -> movieTokenIndex.update(movieId, tokens -> tokens.withActor(personId, name, roleName)));
+	}
+
+	/**
+	 * Removes the names of an actor of a movie, once the current transaction commits.
+	 */
+	public void removeActor(Long movieId, Long personId) {
+		TransactionUtils.afterCommit(() -> movieTokenIndex.update(movieId,
+				tokens -> tokens.withoutPerson(personId, EnumSet.of(FieldKind.ACTOR, FieldKind.ROLE))));
+	}
+
+	/**
+	 * Adds the name of a director of a movie, once the current transaction commits.
+	 */
+	public void addDirector(Long movieId, Long personId, String name) {
+		TransactionUtils.afterCommit(() -> movieTokenIndex.update(movieId, tokens -> tokens.withDirector(personId, name)));
+	}
+
+	/**
+	 * Removes the name of a director of a movie, once the current transaction commits.
+	 */
+	public void removeDirector(Long movieId, Long personId) {
+		TransactionUtils.afterCommit(() -> movieTokenIndex.update(movieId,
+				tokens -> tokens.withoutPerson(personId, EnumSet.of(FieldKind.DIRECTOR))));
+	}
+
+	/**
+	 * Removes the names of a removed person from all the movies, once the current transaction commits.
+	 *
+	 * @param personId the id of the removed person.
+	 */
+	public void removePerson(Long personId) {
+		TransactionUtils.afterCommit(() -> movieTokenIndex.removePerson(personId));
+	}
+}
@@ -0,0 +1,244 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import backend.repositories.GenreRepository;
+import backend.repositories.KeywordRepository;
+import backend.repositories.MovieRepository;
+import backend.repositories.PersonRepository;
+import backend.search.FuzzyMatch;
+import backend.search.NameIndex;
+import backend.search.NameIndexType;
+import backend.search.NameSearchEngine;
+import backend.utils.SpecificationUtils;
+import backend.utils.TransactionUtils;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/**
+ * Service that keeps an in-memory {@link NameIndex} for every {@link NameIndexType}.
+ * <p>
+ * The name searches of the movies, people, genres and keywords consult the indexes instead of running
+ * the {@code levenshtein_ratio} stored function on every row. The indexes are loaded once the
+ * application is ready, and until an index is loaded its searches keep using the stored function.
+ * After that, the services that create, update or remove the entities keep the indexes up to date.
+ * </p>
+ * <p>
+ * The engine of the name filters is selected with the {@code search.name.engine} property ({@link NameSearchEngine}).
+ * The indexes are only loaded and kept with the {@link NameSearchEngine#MEMORY} engine, the other engines
+ * hold nothing in memory.
+ * </p>
+ */
+@Service
+public class NameIndexService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	/**
+	 * The types with a {@code FULLTEXT} index of their names (mysql-fulltext-ngram.sql), the genres are
+	 * few and keep the stored function.
+	 */
+	private static final Set<NameIndexType> FULLTEXT_TYPES = EnumSet.of(NameIndexType.MOVIE, NameIndexType.PERSON, NameIndexType.KEYWORD);
+
+	@Value("${search.name.engine:MEMORY}")
+	private NameSearchEngine engine;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private PersonRepository personRepository;
+
+	@Autowired
+	private GenreRepository genreRepository;
+
+	@Autowired
+	private KeywordRepository keywordRepository;
+
+	private final Map<NameIndexType, NameIndex> nameIndexes = new EnumMap<>(NameIndexType.class);
+
+	private final Map<NameIndexType, Boolean> readyIndexes = new EnumMap<>(NameIndexType.class);
+
+	public NameIndexService() {
+		for(NameIndexType type : NameIndexType.values()) {
+			nameIndexes.put(type, new NameIndex());
+			readyIndexes.put(type, false);
+		}
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadIndexes() {
+		if(engine != NameSearchEngine.MEMORY) {
+			LOGGER.info("The name indexes are not loaded, the name search engine is {}", engine);
+			return;
+		}
+		for(NameIndexType type : NameIndexType.values()) {
+			loadIndex(type);
+		}
+	}
+
+	private void loadIndex(NameIndexType type) {
+		long startTime = System.currentTimeMillis();
+		NameIndex nameIndex = nameIndexes.get(type);
+		Long lastId = 0L;
+		while(true) {
+			List<Object[]> rows = findIdAndNameAfter(type, lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+			for(Object[] row : rows) {
+				lastId = (Long) row[0];
+				nameIndex.put(lastId, (String) row[1]);
+			}
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+		synchronized (readyIndexes) {
+			readyIndexes.put(type, true);
+		}
+		LOGGER.info("Loaded the {} name index with {} names in {} ms", type, nameIndex.size(), System.currentTimeMillis() - startTime);
+	}
+
+	private List<Object[]> findIdAndNameAfter(NameIndexType type, Long afterId, Pageable pageable) {
+		return switch(type) {
+			case MOVIE -> movieRepository.findIdAndNameAfter(afterId, pageable);
+			case PERSON -> personRepository.findIdAndNameAfter(afterId, pageable);
+			case GENRE -> genreRepository.findIdAndNameAfter(afterId, pageable);
+			case KEYWORD -> keywordRepository.findIdAndNameAfter(afterId, pageable);
+		};
+	}
+
+	/**
+	 * @return the engine of the name filters.
+	 */
+	public NameSearchEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @param type the type of the entities.
+	 * @return {@code true} if the searches of the type wait for the index to load, and use the stored function
+	 * meanwhile.
+	 */
+	public boolean isLoading(NameIndexType type) {
+		return engine == NameSearchEngine.MEMORY && !isReady(type);
+	}
+
+	/**
+	 * @param type the type of the index.
+	 * @return {@code true} if the index is loaded and can be used by the searches.
+	 */
+	public boolean isReady(NameIndexType type) {
+		synchronized (readyIndexes) {
+			return readyIndexes.get(type);
+		}
+	}
+
+	/**
+	 * Adds or updates the name of an entity in its index, once the current transaction commits.
+	 *
+	 * @param type the type of the entity.
+	 * @param id the id of the saved entity.
+	 * @param name the name of the entity.
+	 */
+	public void index(NameIndexType type, Long id, String name) {
+		if(id != null && engine == NameSearchEngine.MEMORY)
+			TransactionUtils.afterCommit(() -> nameIndexes.get(type).put(id, name));
+	}
+
+	/**
+	 * Removes an entity from its index, once the current transaction commits.
+	 *
+	 * @param type the type of the entity.
+	 * @param id the id of the removed entity.
+	 */
+	public void remove(NameIndexType type, Long id) {
+		if(id != null && engine == NameSearchEngine.MEMORY)
+			TransactionUtils.afterCommit(() -> nameIndexes.get(type).remove(id));
+	}
+
+	/**
+	 * Searches the entities with a name similar to the given name.
+	 *
+	 * @param type the type of the entities.
+	 * @param name the searched name.
+	 * @return the ids of the matching entities, the closest match first.
+	 */
+	public long[] search(NameIndexType type, String name) {
+		return nameIndexes.get(type).search(name);
+	}
+
+	/**
+	 * Creates the name filter of a search specification, and orders the query by the closest matching.
+	 *
+	 * @param type the type of the searched entities.
+	 * @param cb the criteria builder.
+	 * @param query the criteria query.
+	 * @param root the root of the searched entity, with {@code id} and {@code name} attributes.
+	 * @param name the searched name.
+	 * @return the predicate of the filter, or null if there is no name to filter by.
+	 */
+	public Predicate filterByName(NameIndexType type, CriteriaBuilder cb, CriteriaQuery<?> query, Root<?> root, String name) {
+		List<Order> orderBy = new ArrayList<>();
+		Predicate predicate = filterByName(type, cb, root, name, null, orderBy);
+		if(predicate != null)
+			query.orderBy(orderBy);
+		return predicate;
+	}
+
+	/**
+	 * Creates the name filter of a search specification with the configured engine.
+	 * <p>
+	 * The {@link NameSearchEngine#MEMORY} engine uses the index of the type when it is loaded, otherwise the
+	 * {@code levenshtein_ratio} stored function
+	 * ({@link SpecificationUtils#filterByName(CriteriaBuilder, String, jakarta.persistence.criteria.Path, List)}).
+	 * The {@link NameSearchEngine#FULLTEXT} engine uses the {@code FULLTEXT} index of the name column
+	 * ({@link SpecificationUtils#filterByFullText(CriteriaBuilder, String, jakarta.persistence.criteria.Path, List)}).
+	 * </p>
+	 * <p>
+	 * The index gives at most {@link NameIndex#MAX_RESULTS} ids, the closest names. When more names match,
+	 * the stored function is used instead, so the pages beyond the first ids and the total number of matches
+	 * stay the same as without the index. The filters known in memory are applied by the index before it
+	 * counts the matches.
+	 * </p>
+	 *
+	 * @param type the type of the searched entities.
+	 * @param cb the criteria builder.
+	 * @param root the root of the searched entity, with {@code id} and {@code name} attributes.
+	 * @param name the searched name.
+	 * @param filter the ids allowed by the other filters of the search that are known in memory, or null.
+	 * @param orderBy the order list of the query, the closest matching order is added to it.
+	 * @return the predicate of the filter, or null if there is no name to filter by.
+	 */
+	public Predicate filterByName(NameIndexType type, CriteriaBuilder cb, Root<?> root, String name, LongPredicate filter,
+			List<Order> orderBy) {
+		if(name == null)
+			return null;
+		if(engine == NameSearchEngine.FULLTEXT && FULLTEXT_TYPES.contains(type))
+			return SpecificationUtils.filterByFullText(cb, name, root.get("name"), orderBy);
+		if(!isReady(type))
+			return SpecificationUtils.filterByName(cb, name, root.get("name"), orderBy);
+		long[] ids = nameIndexes.get(type).search(name, FuzzyMatch.RATIO_THRESHOLD, NameIndex.MAX_RESULTS + 1, filter);
+		if(ids.length > NameIndex.MAX_RESULTS)
+			return SpecificationUtils.filterByName(cb, name, root.get("name"), orderBy);
+		return SpecificationUtils.filterByRankedIds(cb, root.get("id"), ids, orderBy);
+	}
+}
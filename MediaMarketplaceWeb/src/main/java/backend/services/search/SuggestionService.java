@@ -0,0 +1,197 @@
+package backend.services.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import backend.dtos.search.SuggestionDto;
+import backend.dtos.search.SuggestionsDto;
+import backend.entities.Movie;
+import backend.repositories.ActorRepository;
+import backend.repositories.DirectorRepository;
+import backend.repositories.KeywordRepository;
+import backend.repositories.MovieRepository;
+import backend.repositories.PersonRepository;
+import backend.search.SuggestionTrie;
+import backend.search.SuggestionTrie.Suggestion;
+import backend.utils.TransactionUtils;
+
+/**
+ * Service that keeps the in-memory {@link SuggestionTrie} of the movie titles, people names and keywords,
+ * for the typeahead suggestions.
+ * <p>
+ * The suggestions are ranked by popularity: the total page views plus the total ratings of a movie, and the
+ * sum of the popularity of their movies for the people and the keywords. The tries are loaded once the
+ * application is ready, the services that add or remove movies, people and keywords keep the names up to date,
+ * the aggregated page views are added to the movies as they come, and all the popularities are reloaded every hour.
+ * </p>
+ */
+@Service
+public class SuggestionService {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final int LOAD_BATCH_SIZE = 10000;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private PersonRepository personRepository;
+
+	@Autowired
+	private KeywordRepository keywordRepository;
+
+	@Autowired
+	private ActorRepository actorRepository;
+
+	@Autowired
+	private DirectorRepository directorRepository;
+
+	private final SuggestionTrie movieSuggestions = new SuggestionTrie();
+
+	private final SuggestionTrie personSuggestions = new SuggestionTrie();
+
+	private final SuggestionTrie keywordSuggestions = new SuggestionTrie();
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void loadSuggestions() {
+		long startTime = System.currentTimeMillis();
+		// the movie rows are [id, name, totalPageViews, totalRatings]
+		load(movieSuggestions, (afterId, pageable) -> movieRepository.findSuggestionValuesAfter(afterId, pageable),
+				row -> popularity((Double) row[2], (Long) row[3]));
+		Map<Long, Double> personPopularities = findPersonPopularities();
+		load(personSuggestions, (afterId, pageable) -> personRepository.findIdAndNameAfter(afterId, pageable),
+				row -> personPopularities.getOrDefault((Long) row[0], 0d));
+		Map<Long, Double> keywordPopularities = toMap(movieRepository.findPopularityByKeyword());
+		load(keywordSuggestions, (afterId, pageable) -> keywordRepository.findIdAndNameAfter(afterId, pageable),
+				row -> keywordPopularities.getOrDefault((Long) row[0], 0d));
+		LOGGER.info("Loaded the suggestions of {} movies, {} people and {} keywords in {} ms", movieSuggestions.size(),
+				personSuggestions.size(), keywordSuggestions.size(), System.currentTimeMillis() - startTime);
+	}
+
+	private interface BatchQuery {
+
+		List<Object[]> findAfter(Long afterId, Pageable pageable);
+	}
+
+	private static void load(SuggestionTrie trie, BatchQuery query, Function<Object[], Double> popularity) {
+		Long lastId = 0L;
+		while(true) {
+			List<Object[]> rows = query.findAfter(lastId, PageRequest.of(0, LOAD_BATCH_SIZE));
+			List<Suggestion> suggestions = new ArrayList<>(rows.size());
+			for(Object[] row : rows) {
+				lastId = (Long) row[0];
+				suggestions.add(new Suggestion(lastId, (String) row[1], popularity.apply(row)));
+			}
+			trie.putAll(suggestions);
+			if(rows.size() < LOAD_BATCH_SIZE)
+				break;
+		}
+	}
+
+	/**
+	 * Reloads the popularity of the movies, people and keywords.
+	 */
+	@Scheduled(fixedRate = 60 * 60 * 1000, initialDelay = 60 * 60 * 1000) // every hour
+	public void refreshPopularity() {
+		movieSuggestions.setWeights(toMap(movieRepository.findPopularities()));
+		personSuggestions.setWeights(findPersonPopularities());
+		keywordSuggestions.setWeights(toMap(movieRepository.findPopularityByKeyword()));
+	}
+
+	private Map<Long, Double> findPersonPopularities() {
+		Map<Long, Double> popularities = toMap(actorRepository.findPopularityByPerson());
+		for(Object[] row : directorRepository.findPopularityByPerson())
+			popularities.merge((Long) row[0], ((Number) row[1]).doubleValue(), Double::sum);
+		return popularities;
+	}
+
+	private static Map<Long, Double> toMap(List<Object[]> rows) {
+		Map<Long, Double> popularities = new HashMap<>(rows.size() * 2);
+		for(Object[] row : rows)
+			popularities.put((Long) row[0], row[1] == null ? 0 : ((Number) row[1]).doubleValue());
+		return popularities;
+	}
+
+	private static double popularity(Double totalPageViews, Long totalRatings) {
+		return (totalPageViews == null ? 0 : totalPageViews) + (totalRatings == null ? 0 : totalRatings);
+	}
+
+	/**
+	 * Finds the most popular movies, people and keywords with a name, or a word of the name, that starts with the prefix.
+	 * <p>
+	 * Answered from memory only, a suggestion that is still loading is not returned.
+	 * </p>
+	 *
+	 * @param prefix the typed prefix.
+	 * @param limit the maximum number of suggestions of every kind, at most {@link SuggestionTrie#MAX_SUGGESTIONS}.
+	 * @return the suggestions, the most popular first.
+	 */
+	public SuggestionsDto suggest(String prefix, int limit) {
+		return new SuggestionsDto(toDtos(movieSuggestions.suggest(prefix, limit)),
+				toDtos(personSuggestions.suggest(prefix, limit)), toDtos(keywordSuggestions.suggest(prefix, limit)));
+	}
+
+	private static List<SuggestionDto> toDtos(List<Suggestion> suggestions) {
+		return suggestions.stream().map(suggestion -> new SuggestionDto(suggestion.id(), suggestion.name())).toList();
+	}
+
+	/**
+	 * Adds a new movie, or updates the title and popularity of a changed movie, once the current transaction commits.
+	 *
+	 * @param movie the saved movie.
+	 */
+	public void indexMovie(Movie movie) {
+		if(movie.getId() == null)
+			return;
+		Long totalRatings = movie.getMovieRating() == null ? null : movie.getMovieRating().getTotalRatings();
+		Suggestion suggestion = new Suggestion(movie.getId(), movie.getName(), popularity(movie.getTotalPageViews(), totalRatings));
+		TransactionUtils.afterCommit(() -> movieSuggestions.putAll(List.of(suggestion)));
+	}
+
+	/**
+	 * Adds aggregated page views to the popularity of a movie.
+	 */
+	public void addPageViews(Long movieId, double pageViews) {
+		movieSuggestions.addWeight(movieId, pageViews);
+	}
+
+	/**
+	 * Adds a new person once the current transaction commits, the popularity is loaded with the next refresh.
+	 */
+	public void indexPerson(Long personId, String name) {
+		if(personId != null)
+			TransactionUtils.afterCommit(() -> personSuggestions.put(personId, name));
+	}
+
+	public void removePerson(Long personId) {
+		if(personId != null)
+			TransactionUtils.afterCommit(() -> personSuggestions.remove(personId));
+	}
+
+	/**
+	 * Adds a new keyword once the current transaction commits, the popularity is loaded with the next refresh.
+	 */
+	public void indexKeyword(Long keywordId, String name) {
+		if(keywordId != null)
+			TransactionUtils.afterCommit(() -> keywordSuggestions.put(keywordId, name));
+	}
+
+	public void removeKeyword(Long keywordId) {
+		if(keywordId != null)
+			TransactionUtils.afterCommit(() -> keywordSuggestions.remove(keywordId));
+	}
+}
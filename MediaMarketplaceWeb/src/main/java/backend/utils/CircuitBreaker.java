@@ -0,0 +1,86 @@
+package backend.utils;
+
+/**
+ * A circuit breaker that stops calling a remote service after consecutive failures.
+ * <p>
+ * The breaker is {@link State#CLOSED} while the calls succeed. After {@code failureThreshold} consecutive
+ * failures it is {@link State#OPEN} and rejects the calls, so the callers fall back at once instead of
+ * waiting on a service that is down. Once {@code openNanos} passed, a single trial call is let through
+ * ({@link State#HALF_OPEN}): its success closes the breaker and its failure opens it again.
+ * </p>
+ * <p>
+ * The breaker is safe for concurrent use. The times are given by the callers, in the
+ * {@link System#nanoTime()} scale.
+ * </p>
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	private State state = State.CLOSED;
+
+	private int consecutiveFailures;
+
+	private long openedAtNanos;
+
+	/**
+	 * @param failureThreshold the number of consecutive failures that opens the breaker.
+	 * @param openNanos the time the breaker stays open before a trial call, in nanoseconds.
+	 */
+	public CircuitBreaker(int failureThreshold, long openNanos) {
+		if(failureThreshold <= 0)
+			throw new IllegalArgumentException("The failure threshold must be positive");
+		if(openNanos <= 0)
+			throw new IllegalArgumentException("The open time must be positive");
+		this.failureThreshold = failureThreshold;
+		this.openNanos = openNanos;
+	}
+
+	/**
+	 * Checks if a call is allowed. A caller that is allowed must report the result of its call with
+	 * {@link #recordSuccess()} or {@link #recordFailure(long)}.
+	 *
+	 * @param nowNanos the current time.
+	 * @return {@code true} if the call is allowed, {@code false} if the caller must fall back.
+	 */
+	public synchronized boolean tryAcquire(long nowNanos) {
+		switch(state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if(nowNanos - openedAtNanos < openNanos)
+					return false;
+				state = State.HALF_OPEN;
+				return true;
+			default:
+				// the trial call is still running
+				return false;
+		}
+	}
+
+	public synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+		state = State.CLOSED;
+	}
+
+	/**
+	 * @param nowNanos the time of the failure.
+	 */
+	public synchronized void recordFailure(long nowNanos) {
+		consecutiveFailures++;
+		if(state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			state = State.OPEN;
+			openedAtNanos = nowNanos;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+}
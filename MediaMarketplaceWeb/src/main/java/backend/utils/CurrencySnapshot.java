@@ -0,0 +1,214 @@
+package backend.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+import backend.entities.CurrencyExchange;
+import backend.entities.CurrencyKind;
+import backend.utils.collections.LongIntHashMap;
+
+/**
+ * An immutable snapshot of the supported currencies and of their exchange rates.
+ * <p>
+ * The currencies are numbered with small ordinals, and the rates are kept in a matrix indexed by the ordinals of
+ * the source and target currencies, so a conversion is an array lookup without any database access. A new snapshot
+ * is built whenever the currencies or the rates change and replaces the previous one as a whole, so a conversion
+ * never sees the rates of two different updates.
+ * </p>
+ * <p>
+ * The rates are also kept as unscaled {@code long}s and scales, to convert amounts in minor units with
+ * {@link MinorUnitPricing} without allocating.
+ * </p>
+ * <p>
+ * The {@link CurrencyKind} entities of the snapshot are detached and shared, they must not be modified.
+ * </p>
+ */
+public class CurrencySnapshot {
+
+	/**
+	 * The converted amount in minor units when there is no rate.
+	 */
+	public static final long NO_RATE = Long.MIN_VALUE;
+
+	/**
+	 * The scale of a rate that does not fit in a {@code long}, converted with {@link BigDecimal}.
+	 */
+	private static final int NOT_COMPACT = Integer.MIN_VALUE;
+
+	private final long version;
+
+	private final List<CurrencyKind> currencyKinds;
+
+	private final CurrencyUnit[] currencyUnits;
+
+	private final int[] decimalPlaces;
+
+	private final Map<String, Integer> ordinalsByCode;
+
+	private final LongIntHashMap ordinalsById;
+
+	/**
+	 * The rate from a currency to another by their ordinals, null if there is no rate.
+	 */
+	private final BigDecimal[][] rates;
+
+	/**
+	 * The unscaled values and scales of the rates.
+	 */
+	private final long[][] unscaledRates;
+	private final int[][] rateScales;
+
+	private final CurrencyExchange latestExchange;
+
+	/**
+	 * @param version the version of the snapshot, higher than the version of the previous snapshot.
+	 * @param currencyKinds the supported currencies.
+	 * @param exchanges the exchange rates between the currencies.
+	 */
+	public CurrencySnapshot(long version, List<CurrencyKind> currencyKinds, List<CurrencyExchange> exchanges) {
+		int count = currencyKinds.size();
+		this.version = version;
+		this.currencyKinds = List.copyOf(currencyKinds);
+		this.currencyUnits = new CurrencyUnit[count];
+		this.decimalPlaces = new int[count];
+		this.ordinalsByCode = new HashMap<>(count * 2);
+		this.ordinalsById = new LongIntHashMap(count, -1);
+		for(int ordinal = 0; ordinal < count; ordinal++) {
+			CurrencyKind currencyKind = currencyKinds.get(ordinal);
+			currencyUnits[ordinal] = CurrencyUnit.of(currencyKind.getCode());
+			decimalPlaces[ordinal] = currencyUnits[ordinal].getDecimalPlaces();
+			ordinalsByCode.put(currencyKind.getCode(), ordinal);
+			ordinalsById.put(currencyKind.getId(), ordinal);
+		}
+		this.rates = new BigDecimal[count][count];
+		this.unscaledRates = new long[count][count];
+		this.rateScales = new int[count][count];
+		for(int ordinal = 0; ordinal < count; ordinal++)
+			rates[ordinal][ordinal] = BigDecimal.ONE;
+		CurrencyExchange latest = null;
+		for(CurrencyExchange exchange : exchanges) {
+			int from = ordinalsById.get(exchange.getFromCurrencyKind().getId());
+			int to = ordinalsById.get(exchange.getToCurrencyKind().getId());
+			if(from < 0 || to < 0 || from == to)
+				continue;
+			rates[from][to] = exchange.getRate();
+			if(latest == null || exchange.getLastUpdated().isAfter(latest.getLastUpdated()))
+				latest = exchange;
+		}
+		this.latestExchange = latest;
+		for(int from = 0; from < count; from++) {
+			for(int to = 0; to < count; to++) {
+				BigDecimal rate = rates[from][to];
+				if(rate != null && rate.scale() < 0)
+					rate = rate.setScale(0);
+				// a negative rate is rejected by the conversion with BigDecimal
+				if(rate != null && rate.signum() > 0 && rate.precision() <= 18) {
+					unscaledRates[from][to] = rate.unscaledValue().longValue();
+					rateScales[from][to] = rate.scale();
+				} else {
+					rateScales[from][to] = NOT_COMPACT;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the version of the snapshot, anything computed with the rates of an older version is stale.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the supported currencies, in the order of their ordinals.
+	 */
+	public List<CurrencyKind> getCurrencyKinds() {
+		return currencyKinds;
+	}
+
+	/**
+	 * @return the number of supported currencies, that are numbered from {@code 0}.
+	 */
+	public int getCurrencyCount() {
+		return currencyUnits.length;
+	}
+
+	/**
+	 * @return the currency with the code, or null if it is not supported.
+	 */
+	public CurrencyKind getCurrencyKind(String code) {
+		Integer ordinal = ordinalsByCode.get(code);
+		return ordinal == null ? null : currencyKinds.get(ordinal);
+	}
+
+	/**
+	 * @return the ordinal of the currency, or {@code -1} if it is not supported.
+	 */
+	public int ordinal(CurrencyKind currencyKind) {
+		return currencyKind.getId() == null ? -1 : ordinalsById.get(currencyKind.getId());
+	}
+
+	public CurrencyUnit getCurrencyUnit(int ordinal) {
+		return currencyUnits[ordinal];
+	}
+
+	public int getDecimalPlaces(int ordinal) {
+		return decimalPlaces[ordinal];
+	}
+
+	/**
+	 * @return the rate from a currency to another by their ordinals, or null if there is no rate.
+	 */
+	public BigDecimal getRate(int fromOrdinal, int toOrdinal) {
+		return rates[fromOrdinal][toOrdinal];
+	}
+
+	/**
+	 * Converts an amount from a currency to another with the rate of the snapshot, using bankers rounding.
+	 *
+	 * @param amount the amount in the source currency.
+	 * @param fromOrdinal the ordinal of the source currency.
+	 * @param toOrdinal the ordinal of the target currency.
+	 * @return the converted amount, the amount itself for the same currency, or null if there is no rate.
+	 */
+	public Money convert(Money amount, int fromOrdinal, int toOrdinal) {
+		if(fromOrdinal == toOrdinal)
+			return amount;
+		BigDecimal rate = rates[fromOrdinal][toOrdinal];
+		return rate == null ? null : amount.convertedTo(currencyUnits[toOrdinal], rate, RoundingMode.HALF_EVEN);
+	}
+
+	/**
+	 * Converts an amount in minor units from a currency to another, with the same result as
+	 * {@link #convert(Money, int, int)}.
+	 *
+	 * @param amount the amount in minor units of the source currency.
+	 * @param fromOrdinal the ordinal of the source currency.
+	 * @param toOrdinal the ordinal of the target currency.
+	 * @return the converted amount in minor units, the amount itself for the same currency, or {@link #NO_RATE}.
+	 */
+	public long convertMinorUnits(long amount, int fromOrdinal, int toOrdinal) {
+		if(fromOrdinal == toOrdinal)
+			return amount;
+		if(rates[fromOrdinal][toOrdinal] == null)
+			return NO_RATE;
+		int rateScale = rateScales[fromOrdinal][toOrdinal];
+		if(rateScale == NOT_COMPACT)
+			return convert(Money.ofMinor(currencyUnits[fromOrdinal], amount), fromOrdinal, toOrdinal).getAmountMinorLong();
+		return MinorUnitPricing.convert(amount, decimalPlaces[fromOrdinal], unscaledRates[fromOrdinal][toOrdinal], rateScale,
+				decimalPlaces[toOrdinal]);
+	}
+
+	/**
+	 * @return the most recently updated exchange rate, or null if there are no rates.
+	 */
+	public CurrencyExchange getLatestExchange() {
+		return latestExchange;
+	}
+}
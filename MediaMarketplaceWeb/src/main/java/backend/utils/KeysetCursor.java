@@ -0,0 +1,137 @@
+package backend.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import backend.exceptions.BadRequestException;
+
+/**
+ * Encodes and decodes the opaque continuation tokens of the keyset (cursor) pagination.
+ * <p>
+ * A token holds the sort key values of the last row of a page, the id last, and a fingerprint of the
+ * search and sort orders it was created with, so a token is rejected if it is sent with a different
+ * search or different sort orders.
+ * </p>
+ */
+public class KeysetCursor {
+
+	private static final int VERSION = 1;
+
+	private final int sortFingerprint;
+
+	private final List<Object> values;
+
+	public KeysetCursor(int sortFingerprint, List<Object> values) {
+		this.sortFingerprint = sortFingerprint;
+		this.values = values;
+	}
+
+	public int getSortFingerprint() {
+		return sortFingerprint;
+	}
+
+	public List<Object> getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the token of the cursor, URL safe base64.
+	 */
+	public String encode() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeByte(VERSION);
+			output.writeInt(sortFingerprint);
+			output.writeShort(values.size());
+			for(Object value : values)
+				writeValue(output, value);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * Decodes a token.
+	 *
+	 * @param token the token returned by {@link #encode()}.
+	 * @return the cursor.
+	 * @throws BadRequestException if the token is not a valid cursor.
+	 */
+	public static KeysetCursor decode(String token) throws BadRequestException {
+		try(DataInputStream input = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+			if(input.readByte() != VERSION)
+				throw new BadRequestException("The cursor is not valid");
+			int sortFingerprint = input.readInt();
+			int size = input.readShort();
+			List<Object> values = new ArrayList<>(size);
+			for(int i = 0; i < size; i++)
+				values.add(readValue(input));
+			return new KeysetCursor(sortFingerprint, values);
+		} catch (IOException | IllegalArgumentException e) {
+			throw new BadRequestException("The cursor is not valid", e);
+		}
+	}
+
+	private static void writeValue(DataOutputStream output, Object value) throws IOException {
+		if(value == null) {
+			output.writeByte('N');
+		} else if(value instanceof String string) {
+			output.writeByte('S');
+			output.writeUTF(string);
+		} else if(value instanceof Long number) {
+			output.writeByte('L');
+			output.writeLong(number);
+		} else if(value instanceof Integer number) {
+			output.writeByte('I');
+			output.writeInt(number);
+		} else if(value instanceof Double number) {
+			output.writeByte('D');
+			output.writeDouble(number);
+		} else if(value instanceof BigDecimal number) {
+			output.writeByte('B');
+			output.writeUTF(number.toString());
+		} else if(value instanceof Boolean bool) {
+			output.writeByte('Z');
+			output.writeBoolean(bool);
+		} else if(value instanceof LocalDate date) {
+			output.writeByte('d');
+			output.writeLong(date.toEpochDay());
+		} else if(value instanceof LocalDateTime dateTime) {
+			output.writeByte('t');
+			output.writeUTF(dateTime.toString());
+		} else if(value instanceof Instant instant) {
+			output.writeByte('i');
+			output.writeUTF(instant.toString());
+		} else {
+			throw new IllegalArgumentException("Unsupported sort key type: " + value.getClass().getName());
+		}
+	}
+
+	private static Object readValue(DataInputStream input) throws IOException {
+		int type = input.readByte();
+		return switch(type) {
+			case 'N' -> null;
+			case 'S' -> input.readUTF();
+			case 'L' -> input.readLong();
+			case 'I' -> input.readInt();
+			case 'D' -> input.readDouble();
+			case 'B' -> new BigDecimal(input.readUTF());
+			case 'Z' -> input.readBoolean();
+			case 'd' -> LocalDate.ofEpochDay(input.readLong());
+			case 't' -> LocalDateTime.parse(input.readUTF());
+			case 'i' -> Instant.parse(input.readUTF());
+			default -> throw new IOException("Unknown value type: " + type);
+		};
+	}
+}
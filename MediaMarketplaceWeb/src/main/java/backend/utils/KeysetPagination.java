@@ -0,0 +1,244 @@
+package backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import backend.dtos.search.CursorPageDto;
+import backend.exceptions.BadRequestException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+
+/**
+ * Keyset (seek) pagination of the entities that match a {@link Specification}.
+ * <p>
+ * Instead of skipping the rows of the previous pages with an offset, every page continues after the sort
+ * key of the last row of the previous page, carried by an opaque {@link KeysetCursor}. The cost of a page
+ * does not grow with its depth, and no count query is made.
+ * </p>
+ * <p>
+ * The rows are ordered by the orders that the specification sets (like the relevance of a name search),
+ * then by the requested sort, and finally by the id, so the sort key of every row is unique.
+ * The seek predicate follows the MySQL null ordering: nulls are first in ascending order and last in
+ * descending order.
+ * </p>
+ * <p>
+ * A cursor only continues the search it was created by: its fingerprint covers the orders of the
+ * specification, the sort and the filter values of the search. The positions of the ids ranked in memory
+ * ({@link SpecificationUtils#filterByRankedIds}) change with the index, so their order is described by
+ * the ranked ids, and a cursor is rejected once the ranking it was created with has changed.
+ * </p>
+ */
+@Component
+public class KeysetPagination {
+
+	/**
+	 * The maximum number of rows of a page.
+	 */
+	public static final int MAX_PAGE_SIZE = 1000;
+
+	/**
+	 * The minimum number of rows read at once when the ids are filtered in memory.
+	 */
+	private static final int MIN_FILTERED_BATCH_SIZE = 100;
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	/**
+	 * Finds a page of entities.
+	 *
+	 * @param entityClass the class of the entity, its id attribute must be named {@code id}.
+	 * @param specification the search specification, may set orders of its own.
+	 * @param filterValues the values the specification was created from, that the cursor must be sent with.
+	 * @param sort the sort of the entity attributes.
+	 * @param cursor the cursor returned with the previous page, or null for the first page.
+	 * @param size the size of the page.
+	 * @return the page, with the cursor of the next page.
+	 * @throws BadRequestException if the cursor is not valid or was created with another search or sort.
+	 */
+	public <T> CursorPageDto<T> findPage(Class<T> entityClass, Specification<T> specification, List<?> filterValues, Sort sort,
+			String cursor, int size) throws BadRequestException {
+		return findPage(entityClass, specification, null, filterValues, sort, cursor, size);
+	}
+
+	/**
+	 * Finds a page of entities, with a filter of their ids that is checked in memory.
+	 * <p>
+	 * The rows that match the specification are read in batches, in the order of the page, until the page
+	 * has enough rows allowed by the id filter. The cursor continues after the last row of the page, the
+	 * rows skipped after it are read again by the next page.
+	 * </p>
+	 *
+	 * @param entityClass the class of the entity, its id attribute must be named {@code id}.
+	 * @param specification the search specification, may set orders of its own.
+	 * @param idFilter the ids of the entities allowed in the page, or null to allow all of them.
+	 * @param filterValues the values the specification and id filter were created from, that the cursor must
+	 * be sent with.
+	 * @param sort the sort of the entity attributes.
+	 * @param cursor the cursor returned with the previous page, or null for the first page.
+	 * @param size the size of the page.
+	 * @return the page, with the cursor of the next page.
+	 * @throws BadRequestException if the cursor is not valid or was created with another search or sort.
+	 */
+	public <T> CursorPageDto<T> findPage(Class<T> entityClass, Specification<T> specification, LongPredicate idFilter,
+			List<?> filterValues, Sort sort, String cursor, int size) throws BadRequestException {
+		int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+		int batchSize = idFilter == null ? pageSize + 1 : Math.max(pageSize + 1, MIN_FILTERED_BATCH_SIZE);
+		KeysetCursor after = cursor == null || cursor.isBlank() ? null : KeysetCursor.decode(cursor);
+		List<T> content = new ArrayList<>(pageSize);
+		KeysetCursor last = null;
+		boolean hasNext = false;
+		while(true) {
+			SeekQuery seekQuery = createQuery(entityClass, specification, filterValues, sort, after);
+			List<Tuple> rows = entityManager.createQuery(seekQuery.query()).setMaxResults(batchSize).getResultList();
+			for(Tuple row : rows) {
+				List<Object> values = new ArrayList<>(seekQuery.orderCount());
+				for(int i = 0; i < seekQuery.orderCount(); i++)
+					values.add(row.get(i + 1));
+				after = new KeysetCursor(seekQuery.sortFingerprint(), values);
+				// the id is the last sort key
+				if(idFilter != null && !idFilter.test(((Number) values.get(values.size() - 1)).longValue()))
+					continue;
+				if(content.size() == pageSize) {
+					hasNext = true;
+					break;
+				}
+				content.add(entityClass.cast(row.get(0)));
+				last = after;
+			}
+			if(hasNext || rows.size() < batchSize)
+				break;
+		}
+		String nextCursor = null;
+		if(hasNext) {
+			try {
+				nextCursor = last.encode();
+			} catch (IllegalArgumentException e) {
+				throw new BadRequestException("The sort is not supported by the cursor pagination", e);
+			}
+		}
+		return new CursorPageDto<>(content, pageSize, hasNext, nextCursor);
+	}
+
+	/**
+	 * A query of the rows of a page.
+	 *
+	 * @param query the query, that selects the entity and then the values of the orders.
+	 * @param orderCount the number of orders, the id last.
+	 * @param sortFingerprint the fingerprint of the search and sort of the query.
+	 */
+	private record SeekQuery(CriteriaQuery<Tuple> query, int orderCount, int sortFingerprint) {
+	}
+
+	/**
+	 * Creates the query of the rows that come after a cursor.
+	 *
+	 * @throws BadRequestException if the cursor was created with another search or sort.
+	 */
+	private <T> SeekQuery createQuery(Class<T> entityClass, Specification<T> specification, List<?> filterValues, Sort sort,
+			KeysetCursor after) throws BadRequestException {
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<Tuple> query = cb.createTupleQuery();
+		Root<T> root = query.from(entityClass);
+		Predicate predicate = specification == null ? null : specification.toPredicate(root, query, cb);
+
+		List<Order> orders = new ArrayList<>(query.getOrderList());
+		StringBuilder sortDescription = new StringBuilder();
+		for(Order order : orders)
+			describe(sortDescription, order.getExpression()).append(order.isAscending() ? "+;" : "-;");
+		for(Sort.Order order : sort) {
+			Path<?> path = getPath(root, order.getProperty());
+			orders.add(order.isAscending() ? cb.asc(path) : cb.desc(path));
+			sortDescription.append(order.getProperty()).append(order.isAscending() ? "+;" : "-;");
+		}
+		orders.add(cb.asc(root.get("id")));
+		sortDescription.append(filterValues);
+		int sortFingerprint = sortDescription.toString().hashCode();
+
+		List<Selection<?>> selections = new ArrayList<>(orders.size() + 1);
+		selections.add(root);
+		for(Order order : orders)
+			selections.add(order.getExpression());
+		query.multiselect(selections);
+
+		List<Predicate> predicates = new ArrayList<>();
+		if(predicate != null)
+			predicates.add(predicate);
+		if(after != null) {
+			if(after.getSortFingerprint() != sortFingerprint || after.getValues().size() != orders.size())
+				throw new BadRequestException("The cursor does not match the search and sort of the request");
+			predicates.add(seek(cb, orders, after.getValues()));
+		}
+		query.where(predicates.toArray(new Predicate[0]));
+		query.orderBy(orders);
+		return new SeekQuery(query, orders.size(), sortFingerprint);
+	}
+
+	/**
+	 * Creates the predicate of the rows that come after the sort key of the cursor:
+	 * {@code (k1 after v1) OR (k1 = v1 AND k2 after v2) OR ...}.
+	 */
+	private static Predicate seek(CriteriaBuilder cb, List<Order> orders, List<Object> values) {
+		List<Predicate> alternatives = new ArrayList<>();
+		List<Predicate> equalities = new ArrayList<>();
+		for(int i = 0; i < orders.size(); i++) {
+			Order order = orders.get(i);
+			Expression<?> expression = order.getExpression();
+			Object value = values.get(i);
+			Predicate after = after(cb, expression, value, order.isAscending());
+			if(after != null) {
+				List<Predicate> alternative = new ArrayList<>(equalities);
+				alternative.add(after);
+				alternatives.add(cb.and(alternative.toArray(new Predicate[0])));
+			}
+			equalities.add(value == null ? cb.isNull(expression) : cb.equal(expression, value));
+		}
+		return alternatives.isEmpty() ? cb.disjunction() : cb.or(alternatives.toArray(new Predicate[0]));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Predicate after(CriteriaBuilder cb, Expression<?> expression, Object value, boolean ascending) {
+		if(value == null)
+			// nulls are first in ascending order, so only the non null values come after them
+			return ascending ? cb.isNotNull(expression) : null;
+		Expression<Comparable> comparable = (Expression<Comparable>) expression;
+		if(ascending)
+			return cb.greaterThan(comparable, (Comparable) value);
+		return cb.or(cb.lessThan(comparable, (Comparable) value), cb.isNull(expression));
+	}
+
+	/**
+	 * Describes an order expression of a specification: the attribute path of an attribute, otherwise the
+	 * type and alias of the expression (the ranked ids set an alias that identifies their ranking).
+	 */
+	private static StringBuilder describe(StringBuilder description, Expression<?> expression) {
+		if(expression instanceof Path<?> path && path.getParentPath() != null && path.getModel() instanceof Attribute<?, ?> attribute)
+			return describe(description, path.getParentPath()).append('.').append(attribute.getName());
+		description.append(expression.getJavaType() == null ? "?" : expression.getJavaType().getSimpleName());
+		if(expression.getAlias() != null)
+			description.append('[').append(expression.getAlias()).append(']');
+		return description;
+	}
+
+	private static Path<?> getPath(Root<?> root, String property) {
+		Path<?> path = root;
+		for(String attribute : property.split("\\."))
+			path = path.get(attribute);
+		return path;
+	}
+}
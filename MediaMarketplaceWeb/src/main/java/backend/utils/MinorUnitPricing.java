@@ -0,0 +1,110 @@
+package backend.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Price arithmetic on amounts in minor units of their currency (cents for USD), in {@code long}s.
+ * <p>
+ * The results are the same as the {@link org.joda.money.Money} calculations they replace, bit for bit: an
+ * amount {@code a} with {@code s} decimals is the integer {@code a * 10^s}, a discount or rate is its unscaled
+ * value and scale, and every rounding is a single integer division with bankers rounding ({@code HALF_EVEN}) of
+ * the exact product, like {@link BigDecimal#setScale(int, RoundingMode)} of the exact {@link BigDecimal} product.
+ * A calculation that would overflow a {@code long} falls back to {@link BigDecimal}.
+ * </p>
+ */
+public class MinorUnitPricing {
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for(int i = 1; i < POWERS_OF_TEN.length; i++)
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+	}
+
+	/**
+	 * Converts an amount to minor units, like {@code Money.of(currency, amount).getAmountMinorLong()}.
+	 *
+	 * @param amount the amount.
+	 * @param decimalPlaces the decimal places of the currency.
+	 * @return the amount in minor units.
+	 * @throws ArithmeticException if the amount has more decimals than the currency.
+	 */
+	public static long toMinorUnits(BigDecimal amount, int decimalPlaces) {
+		int scale = amount.scale();
+		if(scale >= 0 && scale <= decimalPlaces && decimalPlaces < POWERS_OF_TEN.length && amount.precision() <= 15) {
+			// an unscaled value below 10^15 is rounded back exactly from the correctly rounded double, without allocating
+			long unscaled = Math.round(amount.doubleValue() * POWERS_OF_TEN[scale]);
+			return Math.multiplyExact(unscaled, POWERS_OF_TEN[decimalPlaces - scale]);
+		}
+		return amount.movePointRight(decimalPlaces).longValueExact();
+	}
+
+	/**
+	 * Applies a discount to a price, like {@code price.multipliedBy(1 - discount / 100, RoundingMode.HALF_EVEN)}.
+	 *
+	 * @param price the price in minor units.
+	 * @param discount the discount in percent, or null for no discount.
+	 * @return the discounted price in minor units.
+	 */
+	public static long applyDiscount(long price, BigDecimal discount) {
+		if(discount == null || discount.signum() == 0)
+			return price;
+		int scale = discount.scale();
+		if(scale >= 0 && scale <= 16 && discount.precision() <= 18) {
+			try {
+				// price * (1 - discount / 100) = price * (100 * 10^scale - unscaled) / (100 * 10^scale)
+				long denominator = 100 * POWERS_OF_TEN[scale];
+				long multiplier = Math.subtractExact(denominator, discount.movePointRight(scale).longValueExact());
+				return divideHalfEven(Math.multiplyExact(price, multiplier), denominator);
+			} catch (ArithmeticException e) {
+				// too large for a long
+			}
+		}
+		BigDecimal multiplier = BigDecimal.ONE.subtract(discount.divide(BigDecimal.valueOf(100)));
+		return BigDecimal.valueOf(price).multiply(multiplier).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+	}
+
+	/**
+	 * Converts an amount to another currency, like {@code amount.convertedTo(currency, rate, RoundingMode.HALF_EVEN)}.
+	 *
+	 * @param amount the amount in minor units of the source currency.
+	 * @param fromDecimalPlaces the decimal places of the source currency.
+	 * @param rate the unscaled value of the rate.
+	 * @param rateScale the scale of the rate.
+	 * @param toDecimalPlaces the decimal places of the target currency.
+	 * @return the converted amount in minor units of the target currency.
+	 */
+	public static long convert(long amount, int fromDecimalPlaces, long rate, int rateScale, int toDecimalPlaces) {
+		// amount / 10^from * rate / 10^rateScale * 10^to
+		int shift = toDecimalPlaces - fromDecimalPlaces - rateScale;
+		if(shift > -POWERS_OF_TEN.length && shift < POWERS_OF_TEN.length) {
+			try {
+				long product = Math.multiplyExact(amount, rate);
+				return shift >= 0 ? Math.multiplyExact(product, POWERS_OF_TEN[shift]) : divideHalfEven(product, POWERS_OF_TEN[-shift]);
+			} catch (ArithmeticException e) {
+				// too large for a long
+			}
+		}
+		return BigDecimal.valueOf(amount).multiply(BigDecimal.valueOf(rate)).scaleByPowerOfTen(shift)
+				.setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+	}
+
+	/**
+	 * Divides with bankers rounding: the nearest integer, and the even one for a half.
+	 *
+	 * @param dividend the dividend.
+	 * @param divisor the divisor, positive.
+	 * @return the rounded quotient.
+	 */
+	public static long divideHalfEven(long dividend, long divisor) {
+		long quotient = dividend / divisor;
+		long remainder = Math.abs(dividend % divisor);
+		// compares 2 * remainder with the divisor without overflowing
+		long half = remainder - (divisor - remainder);
+		if(half > 0 || (half == 0 && (quotient & 1) != 0))
+			quotient += dividend < 0 ? -1 : 1;
+		return quotient;
+	}
+}
@@ -0,0 +1,265 @@
+package backend.utils;
+
+import java.util.Arrays;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+/**
+ * The prices of the lines of a cart in one currency, with the total and the number of the selected lines.
+ * <p>
+ * A priced cart belongs to a version of the cart, and is priced with the rates of one {@link CurrencySnapshot}
+ * version and one version of the product prices, it is valid while the three versions are the current ones.
+ * It is computed once, and a change of the cart derives a new priced cart with a delta: the line that changed
+ * is added, replaced or removed, and its price added to or subtracted from the total, without pricing the
+ * other lines again.
+ * </p>
+ * <p>
+ * The lines are keyed by the product id, a cart has one line per product. The prices are in minor units of
+ * the currency. A priced cart is immutable, so it can be shared by the requests.
+ * </p>
+ */
+public class PricedCart {
+
+	/**
+	 * The price of a line that could not be priced, an unselected line with no rate to the currency.
+	 */
+	public static final long NO_PRICE = Long.MIN_VALUE;
+
+	private final long cartVersion;
+
+	private final int currencyOrdinal;
+
+	private final CurrencyUnit currencyUnit;
+
+	private final long ratesVersion;
+
+	private final long catalogVersion;
+
+	private final long[] productIds;
+
+	private final long[] prices;
+
+	private final boolean[] selected;
+
+	private final long selectedTotal;
+
+	private final int selectedItems;
+
+	/**
+	 * Prices a cart from its lines, the arrays are owned by the priced cart afterwards.
+	 *
+	 * @param cartVersion the version of the cart.
+	 * @param currencyOrdinal the ordinal of the currency in the rates snapshot.
+	 * @param currencyUnit the currency.
+	 * @param ratesVersion the version of the rates snapshot.
+	 * @param catalogVersion the version of the product prices.
+	 * @param productIds the product ids of the lines.
+	 * @param prices the prices of the lines, {@link #NO_PRICE} only for unselected lines.
+	 * @param selected whether the lines are selected.
+	 */
+	public PricedCart(long cartVersion, int currencyOrdinal, CurrencyUnit currencyUnit, long ratesVersion, long catalogVersion,
+			long[] productIds, long[] prices, boolean[] selected) {
+		this.cartVersion = cartVersion;
+		this.currencyOrdinal = currencyOrdinal;
+		this.currencyUnit = currencyUnit;
+		this.ratesVersion = ratesVersion;
+		this.catalogVersion = catalogVersion;
+		this.productIds = productIds;
+		this.prices = prices;
+		this.selected = selected;
+		long total = 0;
+		int items = 0;
+		for(int i = 0; i < productIds.length; i++) {
+			if(selected[i]) {
+				total = Math.addExact(total, selectedPrice(prices[i]));
+				items++;
+			}
+		}
+		this.selectedTotal = total;
+		this.selectedItems = items;
+	}
+
+	private PricedCart(PricedCart pricedCart, long cartVersion, long[] productIds, long[] prices, boolean[] selected,
+			long selectedTotal, int selectedItems) {
+		this.cartVersion = cartVersion;
+		this.currencyOrdinal = pricedCart.currencyOrdinal;
+		this.currencyUnit = pricedCart.currencyUnit;
+		this.ratesVersion = pricedCart.ratesVersion;
+		this.catalogVersion = pricedCart.catalogVersion;
+		this.productIds = productIds;
+		this.prices = prices;
+		this.selected = selected;
+		this.selectedTotal = selectedTotal;
+		this.selectedItems = selectedItems;
+	}
+
+	/**
+	 * @param productId the product id of the line.
+	 * @return the price of the line, or {@link #NO_PRICE} if the cart has no such line or it could not be priced.
+	 */
+	public long getPrice(long productId) {
+		int index = indexOf(productId);
+		return index < 0 ? NO_PRICE : prices[index];
+	}
+
+	/**
+	 * Adds a line, or replaces the line of the same product.
+	 *
+	 * @param productId the product id of the line.
+	 * @param price the price of the line, {@link #NO_PRICE} only for an unselected line.
+	 * @param isSelected whether the line is selected.
+	 * @return the priced cart with the line, of the same cart version.
+	 */
+	public PricedCart withLine(long productId, long price, boolean isSelected) {
+		int index = indexOf(productId);
+		long total = selectedTotal;
+		int items = selectedItems;
+		long[] newProductIds;
+		long[] newPrices;
+		boolean[] newSelected;
+		if(index < 0) {
+			index = productIds.length;
+			newProductIds = Arrays.copyOf(productIds, index + 1);
+			newPrices = Arrays.copyOf(prices, index + 1);
+			newSelected = Arrays.copyOf(selected, index + 1);
+			newProductIds[index] = productId;
+		} else {
+			newProductIds = productIds;
+			newPrices = prices.clone();
+			newSelected = selected.clone();
+			if(selected[index]) {
+				total -= prices[index];
+				items--;
+			}
+		}
+		newPrices[index] = price;
+		newSelected[index] = isSelected;
+		if(isSelected) {
+			total = Math.addExact(total, selectedPrice(price));
+			items++;
+		}
+		return new PricedCart(this, cartVersion, newProductIds, newPrices, newSelected, total, items);
+	}
+
+	/**
+	 * Removes the line of a product.
+	 *
+	 * @param productId the product id of the line.
+	 * @return the priced cart without the line, of the same cart version.
+	 */
+	public PricedCart withoutLine(long productId) {
+		int index = indexOf(productId);
+		if(index < 0)
+			return this;
+		long total = selected[index] ? selectedTotal - prices[index] : selectedTotal;
+		int items = selected[index] ? selectedItems - 1 : selectedItems;
+		return new PricedCart(this, cartVersion, remove(productIds, index), remove(prices, index), remove(selected, index), total, items);
+	}
+
+	/**
+	 * Removes the selected lines, like placing an order does.
+	 *
+	 * @return the priced cart of the unselected lines, of the same cart version.
+	 */
+	public PricedCart withoutSelectedLines() {
+		int remaining = productIds.length - selectedItems;
+		long[] newProductIds = new long[remaining];
+		long[] newPrices = new long[remaining];
+		boolean[] newSelected = new boolean[remaining];
+		int next = 0;
+		for(int i = 0; i < productIds.length; i++) {
+			if(!selected[i]) {
+				newProductIds[next] = productIds[i];
+				newPrices[next] = prices[i];
+				next++;
+			}
+		}
+		return new PricedCart(this, cartVersion, newProductIds, newPrices, newSelected, 0, 0);
+	}
+
+	/**
+	 * @param cartVersion the version of the cart once the changes are committed.
+	 * @return the same priced cart, for the version of the cart.
+	 */
+	public PricedCart withCartVersion(long cartVersion) {
+		return new PricedCart(this, cartVersion, productIds, prices, selected, selectedTotal, selectedItems);
+	}
+
+	public long getCartVersion() {
+		return cartVersion;
+	}
+
+	public int getCurrencyOrdinal() {
+		return currencyOrdinal;
+	}
+
+	public CurrencyUnit getCurrencyUnit() {
+		return currencyUnit;
+	}
+
+	public long getRatesVersion() {
+		return ratesVersion;
+	}
+
+	public long getCatalogVersion() {
+		return catalogVersion;
+	}
+
+	/**
+	 * @return the number of lines, selected or not.
+	 */
+	public int getLineCount() {
+		return productIds.length;
+	}
+
+	/**
+	 * @return the total price of the selected lines, in minor units.
+	 */
+	public long getSelectedTotal() {
+		return selectedTotal;
+	}
+
+	/**
+	 * @return the total price of the selected lines.
+	 */
+	public Money getSelectedTotalMoney() {
+		return Money.ofMinor(currencyUnit, selectedTotal);
+	}
+
+	/**
+	 * @return the number of selected lines.
+	 */
+	public int getSelectedItems() {
+		return selectedItems;
+	}
+
+	private int indexOf(long productId) {
+		// a cart has a few lines, a scan is faster than a hash lookup
+		for(int i = 0; i < productIds.length; i++) {
+			if(productIds[i] == productId)
+				return i;
+		}
+		return -1;
+	}
+
+	private static long selectedPrice(long price) {
+		if(price == NO_PRICE)
+			throw new IllegalArgumentException("A selected line must have a price");
+		return price;
+	}
+
+	private static long[] remove(long[] array, int index) {
+		long[] result = new long[array.length - 1];
+		System.arraycopy(array, 0, result, 0, index);
+		System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+		return result;
+	}
+
+	private static boolean[] remove(boolean[] array, int index) {
+		boolean[] result = new boolean[array.length - 1];
+		System.arraycopy(array, 0, result, 0, index);
+		System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+		return result;
+	}
+}
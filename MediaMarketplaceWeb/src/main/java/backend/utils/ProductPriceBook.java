@@ -0,0 +1,176 @@
+package backend.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import backend.utils.collections.LongIntHashMap;
+
+/**
+ * The final buy and rent prices of every product in every supported currency, in minor units.
+ * <p>
+ * The products are numbered with dense slots, and the prices are kept in one {@code long} array per currency
+ * ordinal (of a {@link CurrencySnapshot}) and purchase type, indexed by the slot, so reading a price is a hash
+ * lookup and an array access. A removed product is replaced by the last product, so the slots stay dense.
+ * </p>
+ * <p>
+ * The book is computed with the rates of one version of the currency snapshot, and must not be read with
+ * the rates of another version. It is safe for concurrent use, reads share a read lock and updates take
+ * the write lock.
+ * </p>
+ */
+public class ProductPriceBook {
+
+	/**
+	 * The price of a product that is not in the book, or that has no price in a currency.
+	 */
+	public static final long MISSING = Long.MIN_VALUE;
+
+	private final long ratesVersion;
+
+	private final int currencyCount;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final LongIntHashMap slots;
+
+	private long[] productIds;
+
+	/**
+	 * The prices by currency ordinal and slot.
+	 */
+	private long[][] buyPrices;
+	private long[][] rentPrices;
+
+	private int size;
+
+	/**
+	 * @param ratesVersion the version of the currency snapshot the prices are computed with.
+	 * @param currencyCount the number of currencies of the snapshot.
+	 * @param expectedSize the expected number of products.
+	 */
+	public ProductPriceBook(long ratesVersion, int currencyCount, int expectedSize) {
+		int capacity = Math.max(expectedSize, 16);
+		this.ratesVersion = ratesVersion;
+		this.currencyCount = currencyCount;
+		this.slots = new LongIntHashMap(capacity, -1);
+		this.productIds = new long[capacity];
+		this.buyPrices = new long[currencyCount][capacity];
+		this.rentPrices = new long[currencyCount][capacity];
+	}
+
+	public long getRatesVersion() {
+		return ratesVersion;
+	}
+
+	/**
+	 * Adds a product, or replaces the prices of a product of the book.
+	 *
+	 * @param productId the id of the product.
+	 * @param buy the buy prices of the product by currency ordinal, {@link #MISSING} if there is no price.
+	 * @param rent the rent prices of the product by currency ordinal, {@link #MISSING} if there is no price.
+	 */
+	public void put(long productId, long[] buy, long[] rent) {
+		lock.writeLock().lock();
+		try {
+			int slot = slots.get(productId);
+			if(slot < 0) {
+				if(size == productIds.length)
+					grow();
+				slot = size++;
+				productIds[slot] = productId;
+				slots.put(productId, slot);
+			}
+			for(int ordinal = 0; ordinal < currencyCount; ordinal++) {
+				buyPrices[ordinal][slot] = buy[ordinal];
+				rentPrices[ordinal][slot] = rent[ordinal];
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(long productId) {
+		lock.writeLock().lock();
+		try {
+			int slot = slots.remove(productId);
+			if(slot < 0)
+				return;
+			int last = --size;
+			if(slot != last) {
+				// the last product takes the slot of the removed one
+				productIds[slot] = productIds[last];
+				slots.put(productIds[slot], slot);
+				for(int ordinal = 0; ordinal < currencyCount; ordinal++) {
+					buyPrices[ordinal][slot] = buyPrices[ordinal][last];
+					rentPrices[ordinal][slot] = rentPrices[ordinal][last];
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @param productId the id of the product.
+	 * @param purchaseType buy or rent.
+	 * @param ordinal the ordinal of the currency.
+	 * @return the final price of the product in minor units of the currency, or {@link #MISSING}.
+	 */
+	public long getPrice(long productId, PurchaseType purchaseType, int ordinal) {
+		lock.readLock().lock();
+		try {
+			int slot = slots.get(productId);
+			if(slot < 0)
+				return MISSING;
+			return purchaseType == PurchaseType.BUY ? buyPrices[ordinal][slot] : rentPrices[ordinal][slot];
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param productId the id of the product.
+	 * @return {@code true} if the product is in the book.
+	 */
+	public boolean contains(long productId) {
+		lock.readLock().lock();
+		try {
+			return slots.get(productId) >= 0;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return a copy of the ids of the products, in slot order.
+	 */
+	public long[] getProductIds() {
+		lock.readLock().lock();
+		try {
+			return Arrays.copyOf(productIds, size);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the number of products.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void grow() {
+		int capacity = productIds.length * 2;
+		productIds = Arrays.copyOf(productIds, capacity);
+		for(int ordinal = 0; ordinal < currencyCount; ordinal++) {
+			buyPrices[ordinal] = Arrays.copyOf(buyPrices[ordinal], capacity);
+			rentPrices[ordinal] = Arrays.copyOf(rentPrices[ordinal], capacity);
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package backend.utils;
 
 import java.net.http.HttpClient;
+import java.time.Duration;
 
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.JdkClientHttpRequestFactory;
@@ -32,4 +33,23 @@ public class RestClientUtils {
 				.build();
 	}
 
+	/**
+	 * Create a RestClient that uses HTTP/1.1 with timeouts.
+	 * The client keeps its connections alive between the requests, so it should be created once and reused.
+	 * @param connectTimeout the maximum time to open a connection.
+	 * @param readTimeout the maximum time to wait for a response.
+	 * @return
+	 */
+	public static RestClient createRestClientVersion1(Duration connectTimeout, Duration readTimeout) {
+		HttpClient httpClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(connectTimeout)
+				.build();
+		JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+		requestFactory.setReadTimeout(readTimeout);
+		return RestClient.builder()
+				.requestFactory(requestFactory)
+				.build();
+	}
+
 }
\ No newline at end of file
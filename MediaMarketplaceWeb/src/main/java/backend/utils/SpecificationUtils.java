@@ -1,23 +1,121 @@
 package backend.utils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Order;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 
+
 public class SpecificationUtils {
+
+	/**
+	 * The escape character of the {@code LIKE} patterns built with {@link #escapeLike(String)}.
+	 */
+	public static final char LIKE_ESCAPE = '\\';
 	
 	public static Predicate filterByName(CriteriaBuilder cb, CriteriaQuery<?> query, String name, Path<Object> nameAttribute) {
+		List<Order> orderBy = new ArrayList<>();
+		Predicate predicate = filterByName(cb, name, nameAttribute, orderBy);
+		if(predicate != null)
+			query.orderBy(orderBy);
+		return predicate;
+	}
+
+	/**
+	 * Filters the entities by name with the {@code levenshtein_ratio} stored function, and orders them by
+	 * the closest matching.
+	 *
+	 * @param cb the criteria builder.
+	 * @param name the searched name, may be null.
+	 * @param nameAttribute the name attribute of the entity.
+	 * @param orderBy the order list of the query, the closest matching order is added to it.
+	 * @return the predicate of the filter, or null if there is no name to filter by.
+	 */
+	public static Predicate filterByName(CriteriaBuilder cb, String name, Path<Object> nameAttribute, List<Order> orderBy) {
         if(name != null) {
             Expression<Integer> differenceName = cb.function("levenshtein_ratio", Integer.class, nameAttribute, cb.literal(name));
             // You can compare if the difference is greater than a threshold value, e.g., 3
             
             // order by closest matching
-            query.orderBy(cb.asc(differenceName), cb.asc(nameAttribute));
+            orderBy.add(cb.asc(differenceName));
+            orderBy.add(cb.asc(nameAttribute));
             return cb.lessThan(differenceName, 70); // Adjust the threshold as needed
         }
         return null;
 	}
 
+	/**
+	 * Filters the entities by name with a MySQL {@code FULLTEXT} index of the name column
+	 * (mysql-fulltext-ngram.sql), and orders them by the highest relevance.
+	 *
+	 * @param cb the criteria builder.
+	 * @param name the searched name, may be null.
+	 * @param nameAttribute the name attribute of the entity, its column must have a {@code FULLTEXT} index.
+	 * @param orderBy the order list of the query, the relevance order is added to it.
+	 * @return the predicate of the filter, or null if there is no name to filter by.
+	 */
+	public static Predicate filterByFullText(CriteriaBuilder cb, String name, Path<Object> nameAttribute, List<Order> orderBy) {
+		if(name == null)
+			return null;
+		Expression<Double> relevance = cb.function("match_against", Double.class, nameAttribute, cb.literal(name));
+		orderBy.add(cb.desc(relevance));
+		orderBy.add(cb.asc(nameAttribute));
+		return cb.greaterThan(relevance, 0.0);
+	}
+
+	/**
+	 * Filters the entities by a list of ids and orders them by the position of their id in the list.
+	 * <p>
+	 * Used with the in-memory indexes, that return the matching ids already ranked.
+	 * The order uses the MySQL {@code FIELD} function, so the ranking is kept when paging.
+	 * The positions change with the ranking, so the position expression is aliased with a hash of the ids
+	 * and the {@link KeysetPagination} cursors of a ranking are rejected once it has changed.
+	 * </p>
+	 *
+	 * @param cb the criteria builder.
+	 * @param idAttribute the id attribute of the entity.
+	 * @param ids the ranked ids.
+	 * @param orderBy the order list of the query, the ranking order is added to it.
+	 * @return the predicate of the filter (always false if there are no ids).
+	 */
+	public static Predicate filterByRankedIds(CriteriaBuilder cb, Path<Object> idAttribute, long[] ids, List<Order> orderBy) {
+		if(ids.length == 0)
+			return cb.disjunction();
+		List<Long> idList = new ArrayList<>(ids.length);
+		List<Expression<?>> fieldArguments = new ArrayList<>(ids.length + 1);
+		fieldArguments.add(idAttribute);
+		for(long id : ids) {
+			idList.add(id);
+			fieldArguments.add(cb.literal(id));
+		}
+		Expression<Integer> position = cb.function("field", Integer.class, fieldArguments.toArray(new Expression<?>[0]));
+		// the index of the order keeps the aliases of two rankings of the same query distinct
+		position.alias("ranked_" + orderBy.size() + "_" + Integer.toHexString(Arrays.hashCode(ids)));
+		orderBy.add(cb.asc(position));
+		return idAttribute.in(idList);
+	}
+
+	/**
+	 * Escapes the wildcards of a {@code LIKE} pattern, to match the text literally with {@link #LIKE_ESCAPE}.
+	 *
+	 * @param text the text to match.
+	 * @return the text with {@code %}, {@code _} and the escape character escaped.
+	 */
+	public static String escapeLike(String text) {
+		StringBuilder escaped = new StringBuilder(text.length() + 8);
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c == LIKE_ESCAPE || c == '%' || c == '_')
+				escaped.append(LIKE_ESCAPE);
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
 }
@@ -0,0 +1,36 @@
+package backend.utils;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Utilities for the in-memory state that follows the database: the indexes and the caches.
+ * <p>
+ * The in-memory state is changed once the transaction that changed the database commits, so a rolled back
+ * transaction leaves it unchanged and the state never shows uncommitted data.
+ * </p>
+ */
+public class TransactionUtils {
+
+	/**
+	 * Runs an action once the current transaction commits, or now if there is no transaction.
+	 * <p>
+	 * The action runs after the commit, so the values it needs from the entities of the transaction should be
+	 * read before, when this method is called.
+	 * </p>
+	 *
+	 * @param action the change of the in-memory state.
+	 */
+	public static void afterCommit(Runnable action) {
+		if(TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+}
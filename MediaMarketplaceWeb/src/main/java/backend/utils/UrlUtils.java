@@ -36,7 +36,15 @@ public class UrlUtils {
 	
 	public String getFullImageURL(String imageUri) {
 		if(imageUri == null) return null;
-		return getServerURL() + "/" + ActivateSpringApplication.IMAGES_FOLDER + "/" + imageUri;
+		return getFullImageURL(getServerURL(), imageUri);
+	}
+	
+	/**
+	 * Resolves an image with a server URL already read from the request, for the many images of one response.
+	 */
+	public String getFullImageURL(String serverUrl, String imageUri) {
+		if(imageUri == null) return null;
+		return serverUrl + "/" + ActivateSpringApplication.IMAGES_FOLDER + "/" + imageUri;
 	}
 
 }
@@ -0,0 +1,326 @@
+package backend.utils.collections;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded in-process cache with least recently used eviction and a time to live.
+ * <p>
+ * Every entry expires after the time to live, and when the cache is full the least recently used entry is
+ * evicted. Entries can be invalidated selectively with {@link #invalidateIf(BiPredicate)}.
+ * </p>
+ * <p>
+ * A value computed while its key was invalidated may already be stale, so the callers read the
+ * {@link #generation()} before computing a value and store it with {@link #put(Object, Object, long)}, which
+ * drops the value if its key was invalidated in between. The invalidations are kept per key, and per condition
+ * for {@link #invalidateIf(BiPredicate)}, so invalidating a key does not drop the values of the other keys.
+ * The invalidations are kept for a minute, a value computed for longer than that may be dropped.
+ * </p>
+ * <p>
+ * The cache is safe for concurrent use. The keys are split in segments by hash, each with its own lock and
+ * least recently used order, so the operations on different keys rarely contend.
+ * </p>
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+public class BoundedCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * How long the invalidations are kept, the longest computation of a value that can still be cached.
+	 */
+	private static final long INVALIDATION_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * The counters of a cache.
+	 *
+	 * @param size the number of entries.
+	 * @param hits the number of lookups that found a value.
+	 * @param misses the number of lookups that did not find a value.
+	 * @param evictions the number of entries evicted because the cache was full.
+	 * @param expirations the number of entries that expired.
+	 * @param invalidations the number of entries invalidated.
+	 */
+	public record Stats(int size, long hits, long misses, long evictions, long expirations, long invalidations) {
+	}
+
+	private record Entry<V>(V value, long expiresAt) {
+	}
+
+	/**
+	 * An invalidation of a key, or of the keys that match a condition.
+	 *
+	 * @param generation the generation of the invalidation, the values of older generations are dropped.
+	 * @param time the time of the invalidation, on the clock of the cache.
+	 * @param condition the condition, null for the invalidation of a key.
+	 */
+	private record Invalidation<K, V>(long generation, long time, BiPredicate<? super K, ? super V> condition) {
+	}
+
+	private final List<Segment> segments;
+
+	private final long ttlNanos;
+
+	private final LongSupplier clock;
+
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * The generation of the newest invalidation that is not kept anymore, the values of older generations are
+	 * dropped since they may match it.
+	 */
+	private final AtomicLong forgottenGeneration = new AtomicLong();
+
+	/**
+	 * The invalidations by condition of the last minute, oldest first, guarded by the deque itself.
+	 */
+	private final ArrayDeque<Invalidation<K, V>> conditions = new ArrayDeque<>();
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+
+	public BoundedCache(int maxEntries, Duration ttl) {
+		this(maxEntries, ttl, System::nanoTime);
+	}
+
+	/**
+	 * @param maxEntries the maximum number of entries.
+	 * @param ttl the time to live of the entries.
+	 * @param clock the clock of the expiration, in nanoseconds.
+	 */
+	public BoundedCache(int maxEntries, Duration ttl, LongSupplier clock) {
+		if(maxEntries < 1)
+			throw new IllegalArgumentException("The cache must hold at least one entry");
+		this.ttlNanos = ttl.toNanos();
+		this.clock = clock;
+		int segmentCount = Math.min(MAX_SEGMENTS, maxEntries);
+		this.segments = new ArrayList<>(segmentCount);
+		for(int i = 0; i < segmentCount; i++)
+			segments.add(new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0)));
+	}
+
+	/**
+	 * @return the value of the key, or null if it is not cached or has expired.
+	 */
+	public V get(K key) {
+		Segment segment = segment(key);
+		Entry<V> entry;
+		synchronized(segment) {
+			entry = segment.entries.get(key);
+			if(entry != null && entry.expiresAt() - clock.getAsLong() <= 0) {
+				segment.entries.remove(key);
+				expirations.increment();
+				entry = null;
+			}
+		}
+		if(entry == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.value();
+	}
+
+	/**
+	 * @return the current generation, to read before computing a value and pass to {@link #put(Object, Object, long)}.
+	 */
+	public long generation() {
+		return generation.get();
+	}
+
+	/**
+	 * Caches a value.
+	 *
+	 * @param key the key.
+	 * @param value the value.
+	 * @param generation the {@link #generation()} read before the value was computed.
+	 * @return {@code true} if the value was cached, {@code false} if the key was invalidated since the generation.
+	 */
+	public boolean put(K key, V value, long generation) {
+		Segment segment = segment(key);
+		synchronized(segment) {
+			// checked with the lock of the segment, so an invalidation either drops the value here or removes it
+			if(generation < forgottenGeneration.get() || segment.isInvalidated(key, generation)
+					|| isInvalidatedByCondition(key, value, generation))
+				return false;
+			segment.entries.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+			return true;
+		}
+	}
+
+	/**
+	 * Replaces the value of a cached key, keeping its expiration. Like an invalidation of the key, a value of
+	 * the key computed before the update is not cached over it.
+	 *
+	 * @param key the key.
+	 * @param function the function that returns the new value from the cached one.
+	 * @return {@code true} if the key was cached and updated.
+	 */
+	public boolean update(K key, UnaryOperator<V> function) {
+		Segment segment = segment(key);
+		synchronized(segment) {
+			segment.recordInvalidation(key);
+			Entry<V> entry = segment.entries.get(key);
+			if(entry == null)
+				return false;
+			segment.entries.put(key, new Entry<>(function.apply(entry.value()), entry.expiresAt()));
+			return true;
+		}
+	}
+
+	/**
+	 * Invalidates the entry of a key.
+	 *
+	 * @param key the key.
+	 * @return {@code true} if the key was cached.
+	 */
+	public boolean invalidate(K key) {
+		Segment segment = segment(key);
+		synchronized(segment) {
+			segment.recordInvalidation(key);
+			if(segment.entries.remove(key) == null)
+				return false;
+		}
+		invalidations.increment();
+		return true;
+	}
+
+	/**
+	 * Invalidates the entries that match a condition, and the values that match it and are being computed.
+	 *
+	 * @param condition the condition on the key and value of an entry.
+	 * @return the number of invalidated entries.
+	 */
+	public int invalidateIf(BiPredicate<? super K, ? super V> condition) {
+		long now = clock.getAsLong();
+		synchronized(conditions) {
+			conditions.addLast(new Invalidation<>(generation.incrementAndGet(), now, condition));
+			while(now - conditions.peekFirst().time() > INVALIDATION_WINDOW_NANOS)
+				forget(conditions.pollFirst().generation());
+		}
+		int removed = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				for(Iterator<Map.Entry<K, Entry<V>>> iterator = segment.entries.entrySet().iterator(); iterator.hasNext();) {
+					Map.Entry<K, Entry<V>> entry = iterator.next();
+					if(condition.test(entry.getKey(), entry.getValue().value())) {
+						iterator.remove();
+						removed++;
+					}
+				}
+			}
+		}
+		invalidations.add(removed);
+		return removed;
+	}
+
+	/**
+	 * Invalidates all the entries.
+	 */
+	public void invalidateAll() {
+		invalidateIf((key, value) -> true);
+	}
+
+	public Stats stats() {
+		int size = 0;
+		for(Segment segment : segments) {
+			synchronized(segment) {
+				size += segment.entries.size();
+			}
+		}
+		return new Stats(size, hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), invalidations.sum());
+	}
+
+	private Segment segment(K key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return segments.get((hash & Integer.MAX_VALUE) % segments.size());
+	}
+
+	/**
+	 * @return whether a value computed at the generation matches a newer invalidation by condition.
+	 */
+	private boolean isInvalidatedByCondition(K key, V value, long generation) {
+		synchronized(conditions) {
+			for(Iterator<Invalidation<K, V>> iterator = conditions.descendingIterator(); iterator.hasNext();) {
+				Invalidation<K, V> invalidation = iterator.next();
+				if(invalidation.generation() <= generation)
+					return false;
+				if(invalidation.condition().test(key, value))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	private void forget(long forgotten) {
+		forgottenGeneration.accumulateAndGet(forgotten, Math::max);
+	}
+
+	/**
+	 * A part of the keys, with its own least recently used order and invalidations, guarded by itself.
+	 */
+	private final class Segment {
+
+		private final LinkedHashMap<K, Entry<V>> entries;
+
+		/**
+		 * The last invalidation of the keys invalidated in the last minute.
+		 */
+		private final HashMap<K, Invalidation<K, V>> invalidatedKeys = new HashMap<>();
+
+		private long lastPruneTime;
+
+		private Segment(int maxEntries) {
+			this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+					if(size() <= maxEntries)
+						return false;
+					evictions.increment();
+					return true;
+				}
+			};
+			this.lastPruneTime = clock.getAsLong();
+		}
+
+		private boolean isInvalidated(K key, long generation) {
+			Invalidation<K, V> invalidation = invalidatedKeys.get(key);
+			return invalidation != null && invalidation.generation() > generation;
+		}
+
+		private void recordInvalidation(K key) {
+			long now = clock.getAsLong();
+			invalidatedKeys.put(key, new Invalidation<>(generation.incrementAndGet(), now, null));
+			if(now - lastPruneTime > INVALIDATION_WINDOW_NANOS) {
+				lastPruneTime = now;
+				for(Iterator<Invalidation<K, V>> iterator = invalidatedKeys.values().iterator(); iterator.hasNext();) {
+					Invalidation<K, V> invalidation = iterator.next();
+					if(now - invalidation.time() > INVALIDATION_WINDOW_NANOS) {
+						iterator.remove();
+						forget(invalidation.generation());
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,444 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non negative {@code int} values, in the style of a Roaring bitmap.
+ * <p>
+ * The values are split by their high 16 bits into chunks. A chunk with few values keeps them
+ * in a sorted {@code char} array, and a chunk with more than {@value #ARRAY_MAX_SIZE} values
+ * keeps a bitmap of 65536 bits, so sparse and dense sets both stay small and their
+ * intersections only look at the chunks the two sets have in common.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class CompressedBitmap {
+
+	private static final int ARRAY_MAX_SIZE = 4096;
+
+	private static final int BITMAP_WORDS = 1024;
+
+	private char[] keys = new char[4];
+
+	private Container[] containers = new Container[4];
+
+	private int size;
+
+	public CompressedBitmap() {
+	}
+
+	/**
+	 * Creates a bitmap of the given values.
+	 *
+	 * @param values the values, in any order.
+	 * @return a new bitmap.
+	 */
+	public static CompressedBitmap of(int... values) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		int[] sorted = values.clone();
+		Arrays.sort(sorted);
+		for(int value : sorted)
+			bitmap.add(value);
+		return bitmap;
+	}
+
+	/**
+	 * @param value the value to add.
+	 * @return {@code true} if the value was not in the set.
+	 */
+	public boolean add(int value) {
+		checkValue(value);
+		char key = (char) (value >>> 16);
+		int index = indexOfKey(key);
+		if(index < 0) {
+			index = -index - 1;
+			insertContainer(index, key, new ArrayContainer());
+		}
+		Container container = containers[index];
+		boolean added = container.add((char) value);
+		if(container instanceof ArrayContainer array && array.cardinality > ARRAY_MAX_SIZE)
+			containers[index] = array.toBitmap();
+		return added;
+	}
+
+	/**
+	 * @param value the value to remove.
+	 * @return {@code true} if the value was in the set.
+	 */
+	public boolean remove(int value) {
+		if(value < 0)
+			return false;
+		int index = indexOfKey((char) (value >>> 16));
+		if(index < 0)
+			return false;
+		Container container = containers[index];
+		boolean removed = container.remove((char) value);
+		if(container.cardinality() == 0)
+			removeContainer(index);
+		else if(container instanceof BitmapContainer bitmap && bitmap.cardinality <= ARRAY_MAX_SIZE)
+			containers[index] = bitmap.toArray();
+		return removed;
+	}
+
+	public boolean contains(int value) {
+		if(value < 0)
+			return false;
+		int index = indexOfKey((char) (value >>> 16));
+		return index >= 0 && containers[index].contains((char) value);
+	}
+
+	/**
+	 * @return the number of values in the set.
+	 */
+	public int cardinality() {
+		int cardinality = 0;
+		for(int i = 0; i < size; i++)
+			cardinality += containers[i].cardinality();
+		return cardinality;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Counts the values that are in both sets, without creating the intersection.
+	 *
+	 * @param other the other set.
+	 * @return the size of the intersection.
+	 */
+	public int andCardinality(CompressedBitmap other) {
+		int cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while(i < size && j < other.size) {
+			char key = keys[i];
+			char otherKey = other.keys[j];
+			if(key < otherKey)
+				i++;
+			else if(key > otherKey)
+				j++;
+			else
+				cardinality += containers[i++].andCardinality(other.containers[j++]);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Creates the intersection of two sets.
+	 *
+	 * @param other the other set.
+	 * @return a new set with the values that are in both sets.
+	 */
+	public CompressedBitmap and(CompressedBitmap other) {
+		CompressedBitmap result = new CompressedBitmap();
+		int i = 0;
+		int j = 0;
+		while(i < size && j < other.size) {
+			char key = keys[i];
+			char otherKey = other.keys[j];
+			if(key < otherKey)
+				i++;
+			else if(key > otherKey)
+				j++;
+			else {
+				Container container = containers[i++].and(other.containers[j++]);
+				if(container.cardinality() > 0)
+					result.insertContainer(result.size, key, container);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calls the action with every value of the set, in ascending order.
+	 */
+	public void forEach(IntConsumer action) {
+		for(int i = 0; i < size; i++)
+			containers[i].forEach(keys[i] << 16, action);
+	}
+
+	/**
+	 * @return the values of the set, in ascending order.
+	 */
+	public int[] toArray() {
+		int[] values = new int[cardinality()];
+		int[] position = new int[1];
+		forEach(value -> values[position[0]++] = value);
+		return values;
+	}
+
+	public CompressedBitmap copy() {
+		CompressedBitmap copy = new CompressedBitmap();
+		copy.keys = Arrays.copyOf(keys, keys.length);
+		copy.containers = new Container[containers.length];
+		for(int i = 0; i < size; i++)
+			copy.containers[i] = containers[i].copy();
+		copy.size = size;
+		return copy;
+	}
+
+	private int indexOfKey(char key) {
+		// the last chunk is the common case when the values are added in ascending order
+		if(size > 0 && keys[size - 1] == key)
+			return size - 1;
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+
+	private void insertContainer(int index, char key, Container container) {
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = container;
+		size++;
+	}
+
+	private void removeContainer(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+		containers[--size] = null;
+	}
+
+	private static void checkValue(int value) {
+		if(value < 0)
+			throw new IllegalArgumentException("Negative values are not supported: " + value);
+	}
+
+	private abstract static class Container {
+
+		abstract boolean add(char value);
+
+		abstract boolean remove(char value);
+
+		abstract boolean contains(char value);
+
+		abstract int cardinality();
+
+		abstract int andCardinality(Container other);
+
+		abstract Container and(Container other);
+
+		abstract void forEach(int high, IntConsumer action);
+
+		abstract Container copy();
+	}
+
+	private static class ArrayContainer extends Container {
+
+		private char[] values = new char[4];
+
+		private int cardinality;
+
+		@Override
+		boolean add(char value) {
+			int index = cardinality > 0 && values[cardinality - 1] < value ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, value);
+			if(index >= 0)
+				return false;
+			index = -index - 1;
+			if(cardinality == values.length)
+				values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_MAX_SIZE + 1));
+			System.arraycopy(values, index, values, index + 1, cardinality - index);
+			values[index] = value;
+			cardinality++;
+			return true;
+		}
+
+		@Override
+		boolean remove(char value) {
+			int index = Arrays.binarySearch(values, 0, cardinality, value);
+			if(index < 0)
+				return false;
+			System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+			cardinality--;
+			return true;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if(other instanceof BitmapContainer bitmap) {
+				int count = 0;
+				for(int i = 0; i < cardinality; i++) {
+					if(bitmap.contains(values[i]))
+						count++;
+				}
+				return count;
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			int count = 0;
+			int i = 0;
+			int j = 0;
+			while(i < cardinality && j < array.cardinality) {
+				char value = values[i];
+				char otherValue = array.values[j];
+				if(value < otherValue)
+					i++;
+				else if(value > otherValue)
+					j++;
+				else {
+					count++;
+					i++;
+					j++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		Container and(Container other) {
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(1, Math.min(cardinality, other.cardinality()))];
+			if(other instanceof BitmapContainer bitmap) {
+				for(int i = 0; i < cardinality; i++) {
+					if(bitmap.contains(values[i]))
+						result.values[result.cardinality++] = values[i];
+				}
+				return result;
+			}
+			ArrayContainer array = (ArrayContainer) other;
+			int i = 0;
+			int j = 0;
+			while(i < cardinality && j < array.cardinality) {
+				char value = values[i];
+				char otherValue = array.values[j];
+				if(value < otherValue)
+					i++;
+				else if(value > otherValue)
+					j++;
+				else {
+					result.values[result.cardinality++] = value;
+					i++;
+					j++;
+				}
+			}
+			return result;
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for(int i = 0; i < cardinality; i++)
+				action.accept(high | values[i]);
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer copy = new ArrayContainer();
+			copy.values = Arrays.copyOf(values, Math.max(1, cardinality));
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		private BitmapContainer toBitmap() {
+			BitmapContainer bitmap = new BitmapContainer();
+			for(int i = 0; i < cardinality; i++)
+				bitmap.add(values[i]);
+			return bitmap;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+
+		private final long[] words = new long[BITMAP_WORDS];
+
+		private int cardinality;
+
+		@Override
+		boolean add(char value) {
+			long word = words[value >>> 6];
+			long updated = word | (1L << value);
+			if(word == updated)
+				return false;
+			words[value >>> 6] = updated;
+			cardinality++;
+			return true;
+		}
+
+		@Override
+		boolean remove(char value) {
+			long word = words[value >>> 6];
+			long updated = word & ~(1L << value);
+			if(word == updated)
+				return false;
+			words[value >>> 6] = updated;
+			cardinality--;
+			return true;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		int andCardinality(Container other) {
+			if(other instanceof ArrayContainer)
+				return other.andCardinality(this);
+			long[] otherWords = ((BitmapContainer) other).words;
+			int count = 0;
+			for(int i = 0; i < BITMAP_WORDS; i++)
+				count += Long.bitCount(words[i] & otherWords[i]);
+			return count;
+		}
+
+		@Override
+		Container and(Container other) {
+			if(other instanceof ArrayContainer)
+				return other.and(this);
+			long[] otherWords = ((BitmapContainer) other).words;
+			BitmapContainer result = new BitmapContainer();
+			for(int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i] & otherWords[i];
+				result.words[i] = word;
+				result.cardinality += Long.bitCount(word);
+			}
+			return result.cardinality > ARRAY_MAX_SIZE ? result : result.toArray();
+		}
+
+		@Override
+		void forEach(int high, IntConsumer action) {
+			for(int i = 0; i < BITMAP_WORDS; i++) {
+				long word = words[i];
+				while(word != 0) {
+					action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer copy = new BitmapContainer();
+			System.arraycopy(words, 0, copy.words, 0, BITMAP_WORDS);
+			copy.cardinality = cardinality;
+			return copy;
+		}
+
+		private ArrayContainer toArray() {
+			ArrayContainer array = new ArrayContainer();
+			array.values = new char[Math.max(1, cardinality)];
+			forEach(0, value -> array.values[array.cardinality++] = (char) value);
+			return array;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package backend.utils.collections;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-memory filter that accepts a key at most once per cooldown.
+ * <p>
+ * The keys are kept in time buckets as long as the cooldown: the current bucket and the previous one.
+ * When the time moves to the next bucket, the previous bucket is dropped as a whole, so the memory only holds
+ * the keys seen during the last two cooldowns, without scanning for the expired keys.
+ * </p>
+ * <p>
+ * The filter is safe for concurrent use. Two threads that race on the same key while the buckets rotate may
+ * both be accepted, which is acceptable for the deduplication of analytics events.
+ * </p>
+ *
+ * @param <K> the type of the keys.
+ */
+public class CooldownFilter<K> {
+
+	private record Buckets<K>(long index, ConcurrentHashMap<K, Long> current, ConcurrentHashMap<K, Long> previous) {
+	}
+
+	private final long cooldownNanos;
+
+	private volatile Buckets<K> buckets;
+
+	/**
+	 * @param cooldownNanos the cooldown of a key, in nanoseconds.
+	 */
+	public CooldownFilter(long cooldownNanos) {
+		if(cooldownNanos <= 0)
+			throw new IllegalArgumentException("The cooldown must be positive");
+		this.cooldownNanos = cooldownNanos;
+		this.buckets = new Buckets<>(Long.MIN_VALUE, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+	}
+
+	/**
+	 * Accepts a key if it was not accepted during the last cooldown.
+	 *
+	 * @param key the key.
+	 * @param now the current time, in nanoseconds ({@link System#nanoTime()}).
+	 * @return {@code true} if the key is accepted, {@code false} if it is still in its cooldown.
+	 */
+	public boolean tryAcquire(K key, long now) {
+		Buckets<K> current = rotate(now);
+		Long previousTime = current.previous().get(key);
+		if(previousTime != null && now - previousTime < cooldownNanos)
+			return false;
+		boolean[] accepted = new boolean[1];
+		current.current().compute(key, (k, lastTime) -> {
+			if(lastTime != null && now - lastTime < cooldownNanos)
+				return lastTime;
+			accepted[0] = true;
+			return now;
+		});
+		return accepted[0];
+	}
+
+	/**
+	 * Releases a key accepted at the given time, so it is accepted again before the end of its cooldown.
+	 * A key accepted again since then stays in its cooldown.
+	 *
+	 * @param key the key.
+	 * @param acquiredAt the time the key was accepted, as given to {@link #tryAcquire(Object, long)}.
+	 */
+	public void release(K key, long acquiredAt) {
+		Buckets<K> current = buckets;
+		current.current().remove(key, acquiredAt);
+		current.previous().remove(key, acquiredAt);
+	}
+
+	/**
+	 * @return the number of keys held by the filter.
+	 */
+	public int size() {
+		Buckets<K> current = buckets;
+		return current.current().size() + current.previous().size();
+	}
+
+	private Buckets<K> rotate(long now) {
+		long index = Math.floorDiv(now, cooldownNanos);
+		Buckets<K> current = buckets;
+		// a thread that read the time just before another one rotated uses the newer buckets
+		if(current.index() >= index)
+			return current;
+		synchronized(this) {
+			current = buckets;
+			if(current.index() >= index)
+				return current;
+			// the keys of the current bucket stay in their cooldown during the next bucket only
+			ConcurrentHashMap<K, Long> previous = current.index() == index - 1 ? current.current() : new ConcurrentHashMap<>();
+			current = new Buckets<>(index, new ConcurrentHashMap<>(), previous);
+			buckets = current;
+			return current;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package backend.utils.collections;
+
+/**
+ * Exponentially time-decayed scores per {@code long} id, like the trending score of the movies.
+ * <p>
+ * An event of weight {@code w} at time {@code t} is worth {@code w * 2^(-(now - t) / halfLife)} at the time
+ * {@code now}. Instead of decaying every score periodically, the scores use forward decay: an event is stored
+ * as {@code w * 2^((t - landmark) / halfLife)}, which all decay by the same factor, so the stored values rank
+ * the ids like the decayed scores and an event costs a single addition. The landmark moves forward once the
+ * stored values grow too large, which also drops the ids whose score decayed below {@link #MIN_SCORE}.
+ * </p>
+ * <p>
+ * The scores are safe for concurrent use, all the operations are guarded by the scores themselves.
+ * </p>
+ */
+public class DecayedScores {
+
+	/**
+	 * The decayed score below which an id is dropped when the landmark moves.
+	 */
+	static final double MIN_SCORE = 1e-3;
+
+	/**
+	 * The number of half-lives after the landmark that moves the landmark, far from the overflow of a double.
+	 */
+	private static final double MAX_EXPONENT = 256;
+
+	private final double halfLifeMillis;
+
+	private long landmarkMillis;
+
+	private LongDoubleHashMap scores = new LongDoubleHashMap();
+
+	/**
+	 * @param halfLifeMillis the half-life of the scores, in milliseconds.
+	 * @param startMillis the time of the first landmark, in milliseconds.
+	 */
+	public DecayedScores(long halfLifeMillis, long startMillis) {
+		if(halfLifeMillis <= 0)
+			throw new IllegalArgumentException("The half-life must be positive");
+		this.halfLifeMillis = halfLifeMillis;
+		this.landmarkMillis = startMillis;
+	}
+
+	/**
+	 * Adds an event to the score of an id.
+	 *
+	 * @param id the id.
+	 * @param weight the weight of the event.
+	 * @param timeMillis the time of the event, in milliseconds.
+	 */
+	public synchronized void add(long id, double weight, long timeMillis) {
+		double exponent = (timeMillis - landmarkMillis) / halfLifeMillis;
+		if(exponent > MAX_EXPONENT) {
+			moveLandmark(timeMillis);
+			exponent = 0;
+		}
+		scores.addTo(id, weight * Math.pow(2, exponent));
+	}
+
+	/**
+	 * @return the decayed score of the id at the given time.
+	 */
+	public synchronized double score(long id, long nowMillis) {
+		return scores.get(id) * Math.pow(2, (landmarkMillis - nowMillis) / halfLifeMillis);
+	}
+
+	/**
+	 * @return the number of ids with a score.
+	 */
+	public synchronized int size() {
+		return scores.size();
+	}
+
+	/**
+	 * Finds the ids with the highest scores.
+	 *
+	 * @param limit the maximum number of ids.
+	 * @return the ids, the highest score first (then the lowest id).
+	 */
+	public synchronized long[] top(int limit) {
+		TopK top = new TopK(Math.max(0, Math.min(limit, scores.size())));
+		scores.forEach(top::offer);
+		return top.ids();
+	}
+
+	/**
+	 * Rescales the stored values to a new landmark, and drops the ids that decayed below {@link #MIN_SCORE}.
+	 */
+	private void moveLandmark(long newLandmarkMillis) {
+		double factor = Math.pow(2, (landmarkMillis - newLandmarkMillis) / halfLifeMillis);
+		LongDoubleHashMap rescaled = new LongDoubleHashMap(scores.size());
+		scores.forEach((id, score) -> {
+			double decayed = score * factor;
+			if(decayed >= MIN_SCORE)
+				rescaled.addTo(id, decayed);
+		});
+		scores = rescaled;
+		landmarkMillis = newLandmarkMillis;
+	}
+}
@@ -0,0 +1,143 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive {@code int} values.
+ * <p>
+ * Used by the in-memory indexes instead of {@code List<Integer>} so that posting lists
+ * and candidate buffers do not box every element.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class IntList {
+
+	private static final int[] EMPTY = new int[0];
+
+	private int[] values;
+	private int size;
+
+	public IntList() {
+		this.values = EMPTY;
+	}
+
+	public IntList(int initialCapacity) {
+		this.values = initialCapacity == 0 ? EMPTY : new int[initialCapacity];
+	}
+
+	public void add(int value) {
+		if(size == values.length) {
+			values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+		}
+		values[size++] = value;
+	}
+
+	public int get(int index) {
+		if(index >= size)
+			throw new IndexOutOfBoundsException(index);
+		return values[index];
+	}
+
+	public void set(int index, int value) {
+		if(index >= size)
+			throw new IndexOutOfBoundsException(index);
+		values[index] = value;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Removes the first occurrence of the given value, without keeping the order of the list.
+	 *
+	 * @param value the value to remove.
+	 * @return {@code true} if the value was found and removed.
+	 */
+	public boolean removeUnordered(int value) {
+		for(int i = 0; i < size; i++) {
+			if(values[i] == value) {
+				values[i] = values[--size];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Inserts a value into a list sorted in ascending order, keeping it sorted and without duplicates.
+	 *
+	 * @param value the value to insert.
+	 * @return {@code true} if the value was not in the list.
+	 */
+	public boolean insertSorted(int value) {
+		int index = Arrays.binarySearch(values, 0, size, value);
+		if(index >= 0)
+			return false;
+		index = -index - 1;
+		add(value);
+		System.arraycopy(values, index, values, index + 1, size - index - 1);
+		values[index] = value;
+		return true;
+	}
+
+	/**
+	 * Removes a value from a list sorted in ascending order.
+	 *
+	 * @param value the value to remove.
+	 * @return {@code true} if the value was found and removed.
+	 */
+	public boolean removeSorted(int value) {
+		int index = Arrays.binarySearch(values, 0, size, value);
+		if(index < 0)
+			return false;
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		return true;
+	}
+
+	/**
+	 * Sorts the list in ascending order and removes the duplicate values.
+	 */
+	public void sortDistinct() {
+		Arrays.sort(values, 0, size);
+		int distinct = 0;
+		for(int i = 0; i < size; i++) {
+			if(distinct == 0 || values[i] != values[distinct - 1])
+				values[distinct++] = values[i];
+		}
+		size = distinct;
+	}
+
+	/**
+	 * Returns the backing array, only the first {@link #size()} values are valid.
+	 *
+	 * @return the backing array of the list.
+	 */
+	public int[] rawArray() {
+		return values;
+	}
+
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * Shrinks the backing array to the size of the list.
+	 */
+	public void trim() {
+		if(values.length != size) {
+			values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+		}
+	}
+}
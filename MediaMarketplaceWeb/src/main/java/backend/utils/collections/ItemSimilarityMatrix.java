@@ -0,0 +1,281 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A sparse user-item matrix that finds the most similar items of an item, for item-to-item collaborative filtering.
+ * <p>
+ * The items are numbered with dense ordinals, and the matrix is stored twice in compressed rows of {@code int}
+ * ordinals and {@code float} weights: the items of every user and the users of every item. The similarity of two
+ * items is the cosine of their user columns, {@code dot(i, j) / (|i| * |j|)}. The dot products of an item with all
+ * the other items are accumulated in a single pass over the users of the item and their items, into dense arrays
+ * of every worker thread. Only the entries of the items that share a user with the item are visited and reset
+ * after every item, so the arrays are allocated once per thread and reused by all the tasks and matrices.
+ * </p>
+ * <p>
+ * The matrix is immutable once built, and the neighbours of many items are computed in parallel with fork-join.
+ * </p>
+ */
+public class ItemSimilarityMatrix {
+
+	/**
+	 * The number of items computed by a fork-join task without splitting it.
+	 */
+	private static final int ITEMS_PER_TASK = 64;
+
+	private static final ThreadLocal<Accumulators> ACCUMULATORS = ThreadLocal.withInitial(Accumulators::new);
+
+	/**
+	 * The most similar items of an item.
+	 *
+	 * @param ids the ids of the similar items, the most similar first.
+	 * @param scores the cosine similarities of the items.
+	 */
+	public record Neighbours(long[] ids, float[] scores) {
+	}
+
+	private final long[] itemIds;
+
+	private final LongIntHashMap ordinals;
+
+	private final int[] userOffsets;
+	private final int[] userItems;
+	private final float[] userWeights;
+
+	private final int[] itemOffsets;
+	private final int[] itemUsers;
+	private final float[] itemWeights;
+
+	private final float[] norms;
+
+	private ItemSimilarityMatrix(Builder builder) {
+		int itemCount = builder.itemCount;
+		int entryCount = builder.entryCount;
+		this.itemIds = Arrays.copyOf(builder.itemIds, itemCount);
+		this.ordinals = builder.ordinals;
+		this.userOffsets = builder.userOffsets.toArray();
+		this.userItems = Arrays.copyOf(builder.entryItems, entryCount);
+		this.userWeights = Arrays.copyOf(builder.entryWeights, entryCount);
+		// the transposed matrix, the users of every item
+		this.itemOffsets = new int[itemCount + 1];
+		for(int e = 0; e < entryCount; e++)
+			itemOffsets[userItems[e] + 1]++;
+		for(int i = 0; i < itemCount; i++)
+			itemOffsets[i + 1] += itemOffsets[i];
+		this.itemUsers = new int[entryCount];
+		this.itemWeights = new float[entryCount];
+		this.norms = new float[itemCount];
+		int[] next = Arrays.copyOf(itemOffsets, itemCount);
+		int userCount = userOffsets.length - 1;
+		for(int u = 0; u < userCount; u++) {
+			for(int e = userOffsets[u]; e < userOffsets[u + 1]; e++) {
+				int item = userItems[e];
+				int position = next[item]++;
+				itemUsers[position] = u;
+				itemWeights[position] = userWeights[e];
+				norms[item] += userWeights[e] * userWeights[e];
+			}
+		}
+		for(int i = 0; i < itemCount; i++)
+			norms[i] = (float) Math.sqrt(norms[i]);
+	}
+
+	/**
+	 * @return the number of items, that are numbered from {@code 0}.
+	 */
+	public int itemCount() {
+		return itemIds.length;
+	}
+
+	/**
+	 * @return the ordinal of the item, or {@code -1} if no user has the item.
+	 */
+	public int ordinal(long itemId) {
+		return ordinals.get(itemId);
+	}
+
+	public long itemId(int ordinal) {
+		return itemIds[ordinal];
+	}
+
+	/**
+	 * Finds the most similar items of several items, in parallel.
+	 *
+	 * @param items the ordinals of the items.
+	 * @param k the maximum number of neighbours of an item.
+	 * @param minCommonUsers the minimum number of users that two items must share to be neighbours.
+	 * @param pool the pool that computes the neighbours.
+	 * @return the neighbours of the items, in the order of the ordinals.
+	 */
+	public Neighbours[] neighbours(int[] items, int k, int minCommonUsers, ForkJoinPool pool) {
+		Neighbours[] result = new Neighbours[items.length];
+		pool.invoke(new NeighboursTask(items, 0, items.length, k, minCommonUsers, result));
+		return result;
+	}
+
+	private class NeighboursTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] items;
+		private final int from;
+		private final int to;
+		private final int k;
+		private final int minCommonUsers;
+		// the task is never serialized
+		private final transient Neighbours[] result;
+
+		NeighboursTask(int[] items, int from, int to, int k, int minCommonUsers, Neighbours[] result) {
+			this.items = items;
+			this.from = from;
+			this.to = to;
+			this.k = k;
+			this.minCommonUsers = minCommonUsers;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > ITEMS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new NeighboursTask(items, from, middle, k, minCommonUsers, result),
+						new NeighboursTask(items, middle, to, k, minCommonUsers, result));
+				return;
+			}
+			Accumulators accumulators = ACCUMULATORS.get();
+			accumulators.ensureCapacity(itemCount());
+			TopK top = new TopK(k);
+			for(int index = from; index < to; index++) {
+				result[index] = computeNeighbours(items[index], accumulators, top);
+			}
+		}
+
+		private Neighbours computeNeighbours(int item, Accumulators accumulators, TopK top) {
+			float[] dots = accumulators.dots;
+			int[] commonUsers = accumulators.commonUsers;
+			IntList touched = accumulators.touched;
+			for(int p = itemOffsets[item]; p < itemOffsets[item + 1]; p++) {
+				int user = itemUsers[p];
+				float weight = itemWeights[p];
+				for(int e = userOffsets[user]; e < userOffsets[user + 1]; e++) {
+					int other = userItems[e];
+					if(other == item)
+						continue;
+					if(commonUsers[other]++ == 0)
+						touched.add(other);
+					dots[other] += weight * userWeights[e];
+				}
+			}
+			for(int t = 0; t < touched.size(); t++) {
+				int other = touched.get(t);
+				if(commonUsers[other] >= minCommonUsers)
+					top.offer(itemIds[other], dots[other] / (norms[item] * norms[other]));
+				dots[other] = 0;
+				commonUsers[other] = 0;
+			}
+			touched.clear();
+			long[] ids = top.ids();
+			float[] scores = new float[ids.length];
+			for(int rank = 0; rank < ids.length; rank++)
+				scores[rank] = (float) top.score(rank);
+			top.clear();
+			return new Neighbours(ids, scores);
+		}
+	}
+
+	/**
+	 * The dot products and common users of an item with the other items, all zero between two items.
+	 */
+	private static final class Accumulators {
+
+		private float[] dots = new float[0];
+		private int[] commonUsers = new int[0];
+		private final IntList touched = new IntList();
+
+		/**
+		 * Grows the arrays to the items of a matrix, the arrays of a bigger matrix are reused as they are.
+		 */
+		private void ensureCapacity(int itemCount) {
+			if(dots.length < itemCount) {
+				dots = new float[itemCount];
+				commonUsers = new int[itemCount];
+			}
+		}
+	}
+
+	/**
+	 * Builds a matrix user by user.
+	 */
+	public static class Builder {
+
+		private final int maxItemsPerUser;
+
+		private final LongIntHashMap ordinals = new LongIntHashMap(-1);
+
+		private long[] itemIds = new long[16];
+		private int itemCount;
+
+		private final IntList userOffsets = new IntList();
+
+		private int[] entryItems = new int[16];
+		private float[] entryWeights = new float[16];
+		private int entryCount;
+
+		/**
+		 * @param maxItemsPerUser the maximum number of items of a user, the users with more items are skipped,
+		 * since every item of a user is paired with all the others.
+		 */
+		public Builder(int maxItemsPerUser) {
+			this.maxItemsPerUser = maxItemsPerUser;
+			userOffsets.add(0);
+		}
+
+		/**
+		 * Adds the items of a user.
+		 *
+		 * @param items the weights of the items of the user, the items without a positive weight are ignored.
+		 * @return {@code true} if the user was added, {@code false} if the user has too many items.
+		 */
+		public boolean addUser(LongDoubleHashMap items) {
+			int[] count = new int[1];
+			items.forEach((itemId, weight) -> {
+				if(weight > 0)
+					count[0]++;
+			});
+			if(count[0] == 0)
+				return true;
+			if(count[0] > maxItemsPerUser)
+				return false;
+			items.forEach((itemId, weight) -> {
+				if(weight > 0)
+					addEntry(itemId, (float) weight);
+			});
+			userOffsets.add(entryCount);
+			return true;
+		}
+
+		public ItemSimilarityMatrix build() {
+			return new ItemSimilarityMatrix(this);
+		}
+
+		private void addEntry(long itemId, float weight) {
+			int ordinal = ordinals.get(itemId);
+			if(ordinal < 0) {
+				if(itemCount == itemIds.length)
+					itemIds = Arrays.copyOf(itemIds, itemCount * 2);
+				ordinal = itemCount++;
+				itemIds[ordinal] = itemId;
+				ordinals.put(itemId, ordinal);
+			}
+			if(entryCount == entryItems.length) {
+				entryItems = Arrays.copyOf(entryItems, entryCount * 2);
+				entryWeights = Arrays.copyOf(entryWeights, entryCount * 2);
+			}
+			entryItems[entryCount] = ordinal;
+			entryWeights[entryCount] = weight;
+			entryCount++;
+		}
+	}
+}
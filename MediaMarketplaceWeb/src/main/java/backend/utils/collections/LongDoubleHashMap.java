@@ -0,0 +1,157 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive {@code long} keys to primitive {@code double} values.
+ * <p>
+ * Used to sum weights per database id without boxing every key and partial sum.
+ * Missing keys have the value {@code 0}.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class LongDoubleHashMap {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	private double[] values;
+	private boolean[] used;
+	private int size;
+	private int threshold;
+
+	public LongDoubleHashMap() {
+		this(16);
+	}
+
+	public LongDoubleHashMap(int expectedSize) {
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * @return the value of the key, or {@code 0} if the key is not in the map.
+	 */
+	public double get(long key) {
+		int mask = keys.length - 1;
+		int index = LongIntHashMap.mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key)
+				return values[index];
+			index = (index + 1) & mask;
+		}
+		return 0;
+	}
+
+	public boolean containsKey(long key) {
+		int mask = keys.length - 1;
+		int index = LongIntHashMap.mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key)
+				return true;
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the delta to the value of the key, a missing key starts from zero.
+	 *
+	 * @return the new value of the key.
+	 */
+	public double addTo(long key, double delta) {
+		int mask = keys.length - 1;
+		int index = LongIntHashMap.mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key) {
+				return values[index] += delta;
+			}
+			index = (index + 1) & mask;
+		}
+		used[index] = true;
+		keys[index] = key;
+		values[index] = delta;
+		if(++size > threshold) {
+			rehash(keys.length << 1);
+		}
+		return delta;
+	}
+
+	/**
+	 * Associates the value with the key.
+	 *
+	 * @return the previous value of the key, or zero if there was none.
+	 */
+	public double put(long key, double value) {
+		int mask = keys.length - 1;
+		int index = LongIntHashMap.mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key) {
+				double previous = values[index];
+				values[index] = value;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		used[index] = true;
+		keys[index] = key;
+		values[index] = value;
+		if(++size > threshold) {
+			rehash(keys.length << 1);
+		}
+		return 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Calls the consumer for every entry of the map, in no particular order.
+	 */
+	public void forEach(LongDoubleConsumer consumer) {
+		for(int i = 0; i < keys.length; i++) {
+			if(used[i])
+				consumer.accept(keys[i], values[i]);
+		}
+	}
+
+	@FunctionalInterface
+	public interface LongDoubleConsumer {
+		void accept(long key, double value);
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		double[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(newCapacity);
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldUsed[i])
+				addTo(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new double[capacity];
+		used = new boolean[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		return Math.max(16, capacity);
+	}
+}
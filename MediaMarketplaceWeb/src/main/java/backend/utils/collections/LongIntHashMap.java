@@ -0,0 +1,202 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from primitive {@code long} keys to primitive {@code int} values.
+ * <p>
+ * The in-memory indexes map database ids (longs) to small dense ordinals (ints), with millions of
+ * entries a {@code HashMap<Long, Integer>} costs several times the memory of the data itself.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class LongIntHashMap {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private final int missingValue;
+
+	private long[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size;
+	private int threshold;
+
+	/**
+	 * @param missingValue the value returned by {@link #get(long)} when the key is not in the map.
+	 */
+	public LongIntHashMap(int missingValue) {
+		this(16, missingValue);
+	}
+
+	public LongIntHashMap(int expectedSize, int missingValue) {
+		this.missingValue = missingValue;
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	public int get(long key) {
+		int mask = keys.length - 1;
+		int index = mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key)
+				return values[index];
+			index = (index + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	public boolean containsKey(long key) {
+		int mask = keys.length - 1;
+		int index = mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key)
+				return true;
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/**
+	 * Associates the value with the key.
+	 *
+	 * @return the previous value of the key, or the missing value if there was none.
+	 */
+	public int put(long key, int value) {
+		int mask = keys.length - 1;
+		int index = mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key) {
+				int previous = values[index];
+				values[index] = value;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		used[index] = true;
+		keys[index] = key;
+		values[index] = value;
+		if(++size > threshold) {
+			rehash(keys.length << 1);
+		}
+		return missingValue;
+	}
+
+	/**
+	 * Adds the delta to the value of the key, a missing key starts from zero.
+	 *
+	 * @return the new value of the key.
+	 */
+	public int addTo(long key, int delta) {
+		int mask = keys.length - 1;
+		int index = mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key) {
+				return values[index] += delta;
+			}
+			index = (index + 1) & mask;
+		}
+		put(key, delta);
+		return delta;
+	}
+
+	/**
+	 * Removes the key from the map.
+	 *
+	 * @return the removed value, or the missing value if the key was not in the map.
+	 */
+	public int remove(long key) {
+		int mask = keys.length - 1;
+		int index = mix(key) & mask;
+		while(used[index]) {
+			if(keys[index] == key) {
+				int previous = values[index];
+				shiftKeys(index);
+				size--;
+				return previous;
+			}
+			index = (index + 1) & mask;
+		}
+		return missingValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Calls the consumer for every entry of the map, in no particular order.
+	 */
+	public void forEach(LongIntConsumer consumer) {
+		for(int i = 0; i < keys.length; i++) {
+			if(used[i])
+				consumer.accept(keys[i], values[i]);
+		}
+	}
+
+	@FunctionalInterface
+	public interface LongIntConsumer {
+		void accept(long key, int value);
+	}
+
+	private void shiftKeys(int index) {
+		// backward shift deletion, keeps the probe chains intact without tombstones
+		int mask = keys.length - 1;
+		int last;
+		while(true) {
+			last = index;
+			index = (index + 1) & mask;
+			while(true) {
+				if(!used[index]) {
+					used[last] = false;
+					return;
+				}
+				int slot = mix(keys[index]) & mask;
+				if(last <= index ? (last >= slot || slot > index) : (last >= slot && slot > index))
+					break;
+				index = (index + 1) & mask;
+			}
+			keys[last] = keys[index];
+			values[last] = values[index];
+		}
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(newCapacity);
+		size = 0;
+		for(int i = 0; i < oldKeys.length; i++) {
+			if(oldUsed[i])
+				put(oldKeys[i], oldValues[i]);
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		threshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		return Math.max(16, capacity);
+	}
+
+	static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
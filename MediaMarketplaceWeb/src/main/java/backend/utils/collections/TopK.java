@@ -0,0 +1,87 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * Selects the {@code k} {@code long} ids with the highest scores among the offered ones, without boxing.
+ * <p>
+ * The selected ids are kept sorted, the highest score first (then the lowest id), and an offered id is inserted
+ * in place. An offer that does not beat the last selected id costs a single comparison, so selecting a small
+ * {@code k} among many ids is linear.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class TopK {
+
+	private final long[] ids;
+
+	private final double[] scores;
+
+	private int size;
+
+	/**
+	 * @param k the maximum number of selected ids.
+	 */
+	public TopK(int k) {
+		if(k < 0)
+			throw new IllegalArgumentException("The number of ids must not be negative");
+		this.ids = new long[k];
+		this.scores = new double[k];
+	}
+
+	/**
+	 * Offers an id, which is selected if its score is among the {@code k} highest ones so far.
+	 * An id must be offered at most once.
+	 */
+	public void offer(long id, double score) {
+		int k = ids.length;
+		if(size == k && (k == 0 || !ranksBefore(score, id, scores[k - 1], ids[k - 1])))
+			return;
+		// insertion into the sorted selection, the last one falls out when the selection is full
+		int index = size == k ? k - 1 : size;
+		while(index > 0 && ranksBefore(score, id, scores[index - 1], ids[index - 1])) {
+			scores[index] = scores[index - 1];
+			ids[index] = ids[index - 1];
+			index--;
+		}
+		scores[index] = score;
+		ids[index] = id;
+		if(size < k)
+			size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the id at the given rank, 0 being the highest score.
+	 */
+	public long id(int rank) {
+		return ids[rank];
+	}
+
+	/**
+	 * @return the score at the given rank, 0 being the highest score.
+	 */
+	public double score(int rank) {
+		return scores[rank];
+	}
+
+	/**
+	 * @return the selected ids, the highest score first.
+	 */
+	public long[] ids() {
+		return Arrays.copyOf(ids, size);
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	private static boolean ranksBefore(double score, long id, double otherScore, long otherId) {
+		return score > otherScore || (score == otherScore && id < otherId);
+	}
+}
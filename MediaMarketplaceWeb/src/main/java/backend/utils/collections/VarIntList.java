@@ -0,0 +1,98 @@
+package backend.utils.collections;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of non-negative {@code int} values, encoded as variable length integers (varints).
+ * <p>
+ * Every byte holds 7 bits of the value, the high bit is set on every byte but the last one, so small values
+ * (like the gaps between the sorted ids of a posting list) take a single byte instead of four.
+ * The values are read sequentially with {@link #read(byte[], int)}.
+ * </p>
+ * <p>
+ * This class is not thread safe, the owners are responsible for guarding it.
+ * </p>
+ */
+public class VarIntList {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private byte[] bytes;
+	private int length;
+
+	public VarIntList() {
+		this.bytes = EMPTY;
+	}
+
+	public VarIntList(int initialCapacity) {
+		this.bytes = initialCapacity == 0 ? EMPTY : new byte[initialCapacity];
+	}
+
+	/**
+	 * @param value the value, must not be negative.
+	 */
+	public void add(int value) {
+		if(value < 0)
+			throw new IllegalArgumentException("Negative value: " + value);
+		if(length + 5 > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(8, length + 5 + (length >> 1)));
+		}
+		while(value >= 0x80) {
+			bytes[length++] = (byte) (value | 0x80);
+			value >>>= 7;
+		}
+		bytes[length++] = (byte) value;
+	}
+
+	/**
+	 * Reads the value at a position of the encoded bytes.
+	 *
+	 * @param bytes the encoded bytes ({@link #rawArray()}).
+	 * @param position the position of the first byte of the value.
+	 * @return the value in the high 32 bits and the position of the next value in the low 32 bits.
+	 */
+	public static long read(byte[] bytes, int position) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[position++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while(b < 0);
+		return (long) value << 32 | position;
+	}
+
+	/**
+	 * @return the number of encoded bytes.
+	 */
+	public int byteLength() {
+		return length;
+	}
+
+	public boolean isEmpty() {
+		return length == 0;
+	}
+
+	public void clear() {
+		length = 0;
+	}
+
+	/**
+	 * Returns the backing array, only the first {@link #byteLength()} bytes are valid.
+	 *
+	 * @return the backing array of the list.
+	 */
+	public byte[] rawArray() {
+		return bytes;
+	}
+
+	/**
+	 * Shrinks the backing array to the encoded bytes.
+	 */
+	public void trim() {
+		if(bytes.length != length) {
+			bytes = length == 0 ? EMPTY : Arrays.copyOf(bytes, length);
+		}
+	}
+}
@@ -0,0 +1,8 @@
+-- FULLTEXT indexes of the names, used by the FULLTEXT name search engine (search.name.engine=FULLTEXT).
+-- The ngram parser splits the names into sequences of ngram_token_size characters (2 by default),
+-- so partial words and misspelled names still share tokens with the query.
+use market;
+
+ALTER TABLE `movies` ADD FULLTEXT INDEX `ft_movies_name` (`name`) WITH PARSER ngram;
+ALTER TABLE `people` ADD FULLTEXT INDEX `ft_people_name` (`name`) WITH PARSER ngram;
+ALTER TABLE `keywords` ADD FULLTEXT INDEX `ft_keywords_name` (`name`) WITH PARSER ngram;
@@ -0,0 +1,110 @@
+package backend.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.reset;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import backend.UserSpringTest;
+import backend.dtos.CartDto;
+import backend.dtos.CartProductDto;
+import backend.dtos.carts.UpdatedCartProductDto;
+import backend.dtos.references.CartProductReference;
+import backend.services.PricedCartCacheService;
+
+/**
+ * Tests two concurrent updates of the same cart: both load the same version of the cart, so one of them must
+ * fail with a conflict, and the priced cart cached by the other must have the total of the cart lines.
+ */
+public class ConcurrentCartUpdateTests extends UserSpringTest {
+
+	private static final Long PRODUCT_ID = 30L;
+
+	@MockitoSpyBean
+	private PricedCartCacheService pricedCartCacheService;
+
+	@Test
+	public void concurrentUpdateTest() throws Exception {
+		CartProductDto line = getLine(getCartTest());
+		boolean isSelected = line.isSelected();
+		// both updates wait for each other once they changed the cart, before they commit
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		doAnswer(invocation -> {
+			barrier.await(30, TimeUnit.SECONDS);
+			return invocation.callRealMethod();
+		}).when(pricedCartCacheService).putChanged(any(), any());
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		List<MockHttpServletResponse> responses = new ArrayList<>();
+		try {
+			List<Future<MockHttpServletResponse>> futures = new ArrayList<>();
+			for (int i = 0; i < 2; i++)
+				futures.add(executor.submit(() -> updateCartProductTest(!isSelected)));
+			for (Future<MockHttpServletResponse> future : futures)
+				responses.add(future.get(60, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+			barrier.reset();
+		}
+		try {
+			assertThat(responses.stream().filter(response -> response.getStatus() == 200).count())
+					.as("One update should succeed").isEqualTo(1L);
+			assertThat(responses.stream().filter(response -> response.getStatus() == 409).count())
+					.as("One update should conflict").isEqualTo(1L);
+			MockHttpServletResponse updated = responses.stream().filter(response -> response.getStatus() == 200)
+					.findFirst().orElseThrow();
+			UpdatedCartProductDto updatedDto = asObject(updated.getContentAsString(), UpdatedCartProductDto.class);
+			// the cart is read with the priced cart cached by the successful update
+			CartDto cart = getCartTest();
+			assertThat(getLine(cart).isSelected()).isEqualTo(!isSelected);
+			BigDecimal total = BigDecimal.ZERO;
+			int items = 0;
+			for (CartProductDto cartProduct : cart.getCartProducts()) {
+				if (cartProduct.isSelected()) {
+					total = total.add(cartProduct.getPrice().getAmount());
+					items++;
+				}
+			}
+			assertThat(cart.getTotalPrice().getAmount()).isEqualByComparingTo(total);
+			assertThat(cart.getTotalItems()).isEqualTo(items);
+			assertThat(updatedDto.getTotalPrice().getAmount()).isEqualByComparingTo(total);
+		} finally {
+			// restore the selection of the line
+			reset(pricedCartCacheService);
+			assertThat(updateCartProductTest(isSelected).getStatus()).isEqualTo(200);
+		}
+	}
+
+	private CartDto getCartTest() throws Exception {
+		return asObject(getWithAuthTest("/api/users/carts/", status().isOk()).andReturn().getResponse().getContentAsString(),
+				CartDto.class);
+	}
+
+	private CartProductDto getLine(CartDto cart) {
+		return cart.getCartProducts().stream()
+				.filter(cartProduct -> cartProduct.getProduct().getId().equals(PRODUCT_ID))
+				.findFirst().orElseThrow(() -> new AssertionError("The product is not in the cart"));
+	}
+
+	private MockHttpServletResponse updateCartProductTest(boolean isSelected) throws Exception {
+		CartProductReference cartProductReference = new CartProductReference();
+		cartProductReference.setProductId(PRODUCT_ID);
+		cartProductReference.setSelected(isSelected);
+		return mockMvc.perform(withAuth(withJSON(MockMvcRequestBuilders.patch("/api/users/carts/{productId}", PRODUCT_ID),
+				cartProductReference))).andReturn().getResponse();
+	}
+}
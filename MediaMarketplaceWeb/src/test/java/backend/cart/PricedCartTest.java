@@ -0,0 +1,84 @@
+package backend.cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.joda.money.CurrencyUnit;
+import org.junit.jupiter.api.Test;
+
+import backend.utils.PricedCart;
+
+/**
+ * Property test of the {@link PricedCart} deltas: after random changes of the lines, the total, the items and
+ * the line prices must be the ones of the cart priced from scratch.
+ */
+public class PricedCartTest {
+
+	private static final int CARTS = 10_000;
+
+	private static final int CHANGES = 30;
+
+	@Test
+	public void testDeltasMatchFullPricing() {
+		Random random = new Random(1);
+		for (int cart = 0; cart < CARTS; cart++) {
+			// the expected lines, by product id: the price and whether the line is selected
+			Map<Long, Line> lines = new LinkedHashMap<>();
+			PricedCart pricedCart = new PricedCart(1, 0, CurrencyUnit.of("USD"), 1, 1, new long[0], new long[0], new boolean[0]);
+			for (int change = 0; change < CHANGES; change++) {
+				long productId = random.nextInt(8);
+				switch (random.nextInt(4)) {
+					case 0 -> {
+						pricedCart = pricedCart.withoutLine(productId);
+						lines.remove(productId);
+					}
+					case 1 -> {
+						pricedCart = pricedCart.withoutSelectedLines();
+						lines.values().removeIf(Line::selected);
+					}
+					default -> {
+						boolean selected = random.nextBoolean();
+						// only an unselected line can have no rate
+						long price = selected || random.nextBoolean() ? random.nextInt(100_000) : PricedCart.NO_PRICE;
+						pricedCart = pricedCart.withLine(productId, price, selected);
+						lines.put(productId, new Line(price, selected));
+					}
+				}
+				assertPricedCart(pricedCart, lines);
+			}
+			assertThat(pricedCart.withCartVersion(2).getCartVersion()).isEqualTo(2);
+		}
+	}
+
+	private static void assertPricedCart(PricedCart pricedCart, Map<Long, Line> lines) {
+		long total = 0;
+		int items = 0;
+		long[] productIds = new long[lines.size()];
+		long[] prices = new long[lines.size()];
+		boolean[] selected = new boolean[lines.size()];
+		int index = 0;
+		for (Map.Entry<Long, Line> line : lines.entrySet()) {
+			assertThat(pricedCart.getPrice(line.getKey())).isEqualTo(line.getValue().price());
+			if (line.getValue().selected()) {
+				total += line.getValue().price();
+				items++;
+			}
+			productIds[index] = line.getKey();
+			prices[index] = line.getValue().price();
+			selected[index] = line.getValue().selected();
+			index++;
+		}
+		assertThat(pricedCart.getLineCount()).isEqualTo(lines.size());
+		assertThat(pricedCart.getSelectedTotal()).isEqualTo(total);
+		assertThat(pricedCart.getSelectedItems()).isEqualTo(items);
+		PricedCart fullyPriced = new PricedCart(1, 0, CurrencyUnit.of("USD"), 1, 1, productIds, prices, selected);
+		assertThat(fullyPriced.getSelectedTotal()).isEqualTo(total);
+		assertThat(fullyPriced.getSelectedItems()).isEqualTo(items);
+	}
+
+	private record Line(long price, boolean selected) {
+	}
+}
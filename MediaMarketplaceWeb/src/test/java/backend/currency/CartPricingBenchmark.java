@@ -0,0 +1,146 @@
+package backend.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import backend.entities.CurrencyExchange;
+import backend.entities.CurrencyKind;
+import backend.utils.CurrencySnapshot;
+import backend.utils.MinorUnitPricing;
+
+/**
+ * Benchmark of the cart total in minor units against the {@link Money} calculation it replaces, in time and
+ * in bytes allocated per cart total.
+ * <p>
+ * The {@link Money} path is the previous {@code CartService.calculateCartTotalPrice}: a {@link CurrencyUnit}
+ * lookup by code, a {@link Money} and a conversion per line, and a sum of {@link Money}.
+ * </p>
+ * <p>
+ * Run with {@code mvn test -DskipTests=false -Dbenchmark=true -Dtest=CartPricingBenchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class CartPricingBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final String[] CODES = { "USD", "EUR", "ILS", "JPY", "GBP" };
+
+	private static final int CARTS = 1000;
+
+	private static final int LINES = 20;
+
+	@Test
+	public void benchmarkCartTotal() {
+		CurrencySnapshot snapshot = createSnapshot(new Random(1));
+		Random random = new Random(2);
+		int[][] lineCurrencies = new int[CARTS][LINES];
+		BigDecimal[][] linePrices = new BigDecimal[CARTS][LINES];
+		for(int cart = 0; cart < CARTS; cart++) {
+			for(int line = 0; line < LINES; line++) {
+				lineCurrencies[cart][line] = random.nextInt(CODES.length);
+				linePrices[cart][line] = BigDecimal.valueOf(random.nextInt(10_000), snapshot.getDecimalPlaces(lineCurrencies[cart][line]));
+			}
+		}
+
+		// warm up both paths
+		for(int i = 0; i < 20; i++) {
+			for(int cart = 0; cart < CARTS; cart++) {
+				assertThat(minorUnitsTotal(snapshot, lineCurrencies[cart], linePrices[cart], 0))
+						.isEqualTo(moneyTotal(snapshot, lineCurrencies[cart], linePrices[cart], 0).getAmountMinorLong());
+			}
+		}
+
+		int rounds = 50;
+		long moneySink = 0;
+		long moneyBytes = allocatedBytes();
+		long moneyStart = System.nanoTime();
+		for(int i = 0; i < rounds; i++) {
+			for(int cart = 0; cart < CARTS; cart++)
+				moneySink += moneyTotal(snapshot, lineCurrencies[cart], linePrices[cart], cart % CODES.length).getAmountMinorLong();
+		}
+		long moneyNanos = System.nanoTime() - moneyStart;
+		moneyBytes = allocatedBytes() - moneyBytes;
+
+		long minorSink = 0;
+		long minorBytes = allocatedBytes();
+		long minorStart = System.nanoTime();
+		for(int i = 0; i < rounds; i++) {
+			for(int cart = 0; cart < CARTS; cart++)
+				minorSink += minorUnitsTotal(snapshot, lineCurrencies[cart], linePrices[cart], cart % CODES.length);
+		}
+		long minorNanos = System.nanoTime() - minorStart;
+		minorBytes = allocatedBytes() - minorBytes;
+
+		assertThat(minorSink).isEqualTo(moneySink);
+		int totals = rounds * CARTS;
+		LOGGER.info("Cart total of {} lines: Money {} us and {} bytes, minor units {} us and {} bytes", LINES,
+				String.format("%.2f", moneyNanos / 1e3 / totals), moneyBytes / totals,
+				String.format("%.2f", minorNanos / 1e3 / totals), minorBytes / totals);
+	}
+
+	private static Money moneyTotal(CurrencySnapshot snapshot, int[] currencies, BigDecimal[] prices, int target) {
+		CurrencyUnit targetUnit = CurrencyUnit.of(CODES[target]);
+		Money total = Money.zero(targetUnit);
+		for(int line = 0; line < prices.length; line++) {
+			Money price = Money.of(CurrencyUnit.of(CODES[currencies[line]]), prices[line]);
+			if(currencies[line] != target)
+				price = price.convertedTo(targetUnit, snapshot.getRate(currencies[line], target), RoundingMode.HALF_EVEN);
+			total = total.plus(price);
+		}
+		return total;
+	}
+
+	private static long minorUnitsTotal(CurrencySnapshot snapshot, int[] currencies, BigDecimal[] prices, int target) {
+		long total = 0;
+		for(int line = 0; line < prices.length; line++) {
+			long price = MinorUnitPricing.toMinorUnits(prices[line], snapshot.getDecimalPlaces(currencies[line]));
+			total += snapshot.convertMinorUnits(price, currencies[line], target);
+		}
+		return total;
+	}
+
+	private static CurrencySnapshot createSnapshot(Random random) {
+		List<CurrencyKind> currencyKinds = new ArrayList<>();
+		for(int i = 0; i < CODES.length; i++) {
+			CurrencyKind currencyKind = new CurrencyKind();
+			currencyKind.setId((long) i + 1);
+			currencyKind.setCode(CODES[i]);
+			currencyKinds.add(currencyKind);
+		}
+		List<CurrencyExchange> exchanges = new ArrayList<>();
+		for(CurrencyKind from : currencyKinds) {
+			for(CurrencyKind to : currencyKinds) {
+				if(from != to) {
+					CurrencyExchange exchange = new CurrencyExchange();
+					exchange.setFromCurrencyKind(from);
+					exchange.setToCurrencyKind(to);
+					exchange.setRate(BigDecimal.valueOf(1 + random.nextInt(200_000_000), 6));
+					exchange.setLastUpdated(LocalDateTime.now());
+					exchanges.add(exchange);
+				}
+			}
+		}
+		return new CurrencySnapshot(1, currencyKinds, exchanges);
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+}
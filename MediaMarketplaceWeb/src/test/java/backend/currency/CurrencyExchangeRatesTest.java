@@ -0,0 +1,81 @@
+package backend.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.sun.net.httpserver.HttpServer;
+
+import backend.services.CurrencyService;
+
+/**
+ * Test of the daily refresh of the exchange rates against a local stub of the rates endpoint, without a database
+ * or network access.
+ */
+public class CurrencyExchangeRatesTest {
+
+	private static final String USD_RATES = "{\"date\": \"2025-01-01\", \"usd\": {\"usd\": 1, \"eur\": 0.9, \"ils\": 3.6, \"jpy\": 150.25, \"xyz\": \"n/a\"}}";
+
+	private HttpServer server;
+
+	private CurrencyService currencyService;
+
+	@BeforeEach
+	public void startStub() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/currencies/usd.json", exchange -> {
+			byte[] body = USD_RATES.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		currencyService = new CurrencyService();
+		ReflectionTestUtils.setField(currencyService, "currencyApiUrlTemplate",
+				"http://localhost:" + server.getAddress().getPort() + "/currencies/%s.json");
+	}
+
+	@AfterEach
+	public void stopStub() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testFetchBaseRates() {
+		Map<String, BigDecimal> rates = currencyService.fetchBaseRates("USD");
+
+		assertThat(rates).containsOnlyKeys("usd", "eur", "ils", "jpy");
+		assertThat(rates.get("ils")).isEqualByComparingTo("3.6");
+	}
+
+	@Test
+	public void testCrossRates() {
+		Map<String, BigDecimal> rates = currencyService.fetchBaseRates("USD");
+		// the currencies are USD, EUR, ILS, JPY and a currency without a rate
+		BigDecimal[] ratesFromBase = { rates.get("usd"), rates.get("eur"), rates.get("ils"), rates.get("jpy"), rates.get("gbp") };
+
+		BigDecimal[][] crossRates = CurrencyService.computeCrossRates(ratesFromBase);
+
+		assertThat(crossRates[1][2]).isEqualTo(new BigDecimal("4.000000"));
+		assertThat(crossRates[2][1]).isEqualTo(new BigDecimal("0.250000"));
+		assertThat(crossRates[0][3]).isEqualTo(new BigDecimal("150.250000"));
+		// 1 / 150.25 = 0.0066555...
+		assertThat(crossRates[3][0]).isEqualTo(new BigDecimal("0.006656"));
+		for (int i = 0; i < ratesFromBase.length; i++) {
+			assertThat(crossRates[i][i]).isNull();
+			assertThat(crossRates[i][4]).isNull();
+			assertThat(crossRates[4][i]).isNull();
+		}
+	}
+}
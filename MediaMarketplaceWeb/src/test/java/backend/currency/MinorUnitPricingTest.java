@@ -0,0 +1,154 @@
+package backend.currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+import org.junit.jupiter.api.Test;
+
+import backend.entities.CurrencyExchange;
+import backend.entities.CurrencyKind;
+import backend.utils.CurrencySnapshot;
+import backend.utils.MinorUnitPricing;
+
+/**
+ * Property test of the {@link MinorUnitPricing} arithmetic against the {@link Money} calculations it replaces:
+ * random prices, discounts and rates must give the same minor units, bit for bit.
+ */
+public class MinorUnitPricingTest {
+
+	private static final int CASES = 100_000;
+
+	/**
+	 * Currencies with 0, 2 and 3 decimal places.
+	 */
+	private static final String[] CODES = { "USD", "EUR", "ILS", "JPY", "KRW", "KWD", "BHD" };
+
+	@Test
+	public void testDivideHalfEven() {
+		Random random = new Random(1);
+		for (int i = 0; i < CASES; i++) {
+			long dividend = i % 10 == 0 ? random.nextLong() : random.nextInt(2001) - 1000;
+			long divisor = i % 10 == 1 ? 1 + (random.nextLong() >>> 1) % Long.MAX_VALUE : 1 + random.nextInt(100);
+			long expected = new BigDecimal(dividend).divide(new BigDecimal(divisor), 0, RoundingMode.HALF_EVEN).longValueExact();
+			assertThat(MinorUnitPricing.divideHalfEven(dividend, divisor)).as("%d / %d", dividend, divisor).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testToMinorUnits() {
+		Random random = new Random(4);
+		for (int i = 0; i < CASES; i++) {
+			int decimalPlaces = random.nextInt(4);
+			int scale = random.nextInt(decimalPlaces + 1);
+			// up to 15 digits, the largest values of the path without BigDecimal
+			long unscaled = random.nextLong(1_000_000_000_000_000L) - (i % 2 == 0 ? 0 : 500_000_000_000_000L);
+			BigDecimal amount = BigDecimal.valueOf(unscaled, scale);
+			long expected = amount.setScale(decimalPlaces).unscaledValue().longValueExact();
+			assertThat(MinorUnitPricing.toMinorUnits(amount, decimalPlaces)).as("%s", amount).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testDiscountedConvertedPrices() {
+		Random random = new Random(2);
+		for (int i = 0; i < CASES; i++) {
+			CurrencyUnit from = CurrencyUnit.of(CODES[random.nextInt(CODES.length)]);
+			CurrencyUnit to = CurrencyUnit.of(CODES[random.nextInt(CODES.length)]);
+			BigDecimal amount = randomAmount(random, from.getDecimalPlaces());
+			BigDecimal discount = randomDiscount(random);
+			BigDecimal rate = randomRate(random);
+
+			// the calculation of ProductService.calculatePrice and CurrencyService.exchangeCurrencyAmount
+			Money price = Money.of(from, amount);
+			if (discount != null && discount.compareTo(BigDecimal.ZERO) != 0)
+				price = price.multipliedBy(BigDecimal.ONE.subtract(discount.divide(new BigDecimal(100))), RoundingMode.HALF_EVEN);
+			Money expected = from.equals(to) ? price : price.convertedTo(to, rate, RoundingMode.HALF_EVEN);
+
+			long minorPrice = MinorUnitPricing.applyDiscount(MinorUnitPricing.toMinorUnits(amount, from.getDecimalPlaces()), discount);
+			assertThat(minorPrice).as("%s %s - %s%%", amount, from, discount).isEqualTo(price.getAmountMinorLong());
+			if (!from.equals(to)) {
+				long converted = MinorUnitPricing.convert(minorPrice, from.getDecimalPlaces(), rate.unscaledValue().longValueExact(),
+						rate.scale(), to.getDecimalPlaces());
+				assertThat(converted).as("%s to %s at %s", price, to, rate).isEqualTo(expected.getAmountMinorLong());
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotCartTotals() {
+		Random random = new Random(3);
+		List<CurrencyKind> currencyKinds = new ArrayList<>();
+		for (int i = 0; i < CODES.length; i++) {
+			CurrencyKind currencyKind = new CurrencyKind();
+			currencyKind.setId((long) i + 1);
+			currencyKind.setCode(CODES[i]);
+			currencyKinds.add(currencyKind);
+		}
+		List<CurrencyExchange> exchanges = new ArrayList<>();
+		for (CurrencyKind from : currencyKinds) {
+			for (CurrencyKind to : currencyKinds) {
+				if (from != to) {
+					CurrencyExchange exchange = new CurrencyExchange();
+					exchange.setFromCurrencyKind(from);
+					exchange.setToCurrencyKind(to);
+					// a few rates too precise for a long, converted with BigDecimal
+					exchange.setRate(random.nextInt(10) == 0 ? new BigDecimal(random.nextDouble() * 100) : randomRate(random));
+					exchange.setLastUpdated(LocalDateTime.now());
+					exchanges.add(exchange);
+				}
+			}
+		}
+		CurrencySnapshot snapshot = new CurrencySnapshot(1, currencyKinds, exchanges);
+
+		for (int cart = 0; cart < CASES / 10; cart++) {
+			int target = random.nextInt(CODES.length);
+			Money expectedTotal = Money.zero(snapshot.getCurrencyUnit(target));
+			long total = 0;
+			for (int line = random.nextInt(20); line > 0; line--) {
+				int source = random.nextInt(CODES.length);
+				BigDecimal amount = randomAmount(random, snapshot.getDecimalPlaces(source));
+				// the calculation of CartService.calculateCartTotalPrice
+				Money price = Money.of(snapshot.getCurrencyUnit(source), amount);
+				expectedTotal = expectedTotal.plus(snapshot.convert(price, source, target));
+				total += snapshot.convertMinorUnits(MinorUnitPricing.toMinorUnits(amount, snapshot.getDecimalPlaces(source)), source, target);
+			}
+			assertThat(Money.ofMinor(snapshot.getCurrencyUnit(target), total)).isEqualTo(expectedTotal);
+		}
+	}
+
+	/**
+	 * @return an amount with at most the decimal places, sometimes fewer.
+	 */
+	private static BigDecimal randomAmount(Random random, int decimalPlaces) {
+		int scale = random.nextInt(decimalPlaces + 1);
+		long unscaled = random.nextInt(4) == 0 ? random.nextLong(10_000_000_000L) : random.nextInt(100_000);
+		return BigDecimal.valueOf(unscaled, scale);
+	}
+
+	/**
+	 * @return a discount like the stored ones, or like the ones set with a double, or null.
+	 */
+	private static BigDecimal randomDiscount(Random random) {
+		return switch (random.nextInt(5)) {
+			case 0 -> null;
+			case 1 -> BigDecimal.ZERO;
+			case 2 -> new BigDecimal(random.nextDouble() * 100);
+			default -> BigDecimal.valueOf(random.nextInt(10_001), 2);
+		};
+	}
+
+	/**
+	 * @return a positive rate with the scale of the stored rates.
+	 */
+	private static BigDecimal randomRate(Random random) {
+		return BigDecimal.valueOf(1 + random.nextLong(random.nextBoolean() ? 10_000_000L : 10_000_000_000L), 6);
+	}
+}
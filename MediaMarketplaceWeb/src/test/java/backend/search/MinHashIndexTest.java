@@ -0,0 +1,146 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link MinHashIndex} searches against comparing the signature of the movie with every other movie,
+ * and its estimated similarities against the Jaccard similarity of the feature sets.
+ */
+public class MinHashIndexTest {
+
+	private final Random random = new Random(1);
+
+	/**
+	 * The features of the indexed movies.
+	 */
+	private final Map<Long, long[]> movies = new HashMap<>();
+
+	@Test
+	public void testSingleRowBandsMatchFullScan() {
+		// with one row per band, the movies sharing any signature value are candidates
+		MinHashIndex index = new MinHashIndex(32, 1, 7);
+		for(long movieId = 1; movieId <= 500; movieId++)
+			put(index, movieId, createFeatures());
+		assertSearchesMatchFullScan(index);
+		// replaced and removed movies
+		for(long movieId = 1; movieId <= 500; movieId += 3)
+			put(index, movieId, createFeatures());
+		for(long movieId = 2; movieId <= 500; movieId += 5) {
+			index.remove(movieId);
+			movies.remove(movieId);
+		}
+		assertSearchesMatchFullScan(index);
+		assertThat(index.size()).isEqualTo(movies.size());
+	}
+
+	@Test
+	public void testMultipleRowBandsFindTheMostSimilarMovies() {
+		MinHashIndex index = new MinHashIndex(16, 4, 7);
+		long[] features = createFeatures(40);
+		put(index, 1, features);
+		// a near copy shares most bands, the unrelated movies share none
+		long[] nearCopy = features.clone();
+		nearCopy[0] = 1_000_000;
+		put(index, 2, nearCopy);
+		for(long movieId = 3; movieId <= 200; movieId++)
+			put(index, movieId, createFeatures());
+		long[] similar = index.findSimilar(1, 5, 1000);
+		assertThat(similar.length).isGreaterThan(0);
+		assertThat(similar[0]).isEqualTo(2L);
+	}
+
+	@Test
+	public void testSimilarityEstimatesJaccard() {
+		MinHashIndex index = new MinHashIndex(64, 4, 3);
+		for(int i = 0; i < 50; i++) {
+			long[] first = createFeatures(5 + random.nextInt(30));
+			long[] second = createFeatures(5 + random.nextInt(30));
+			double estimate = MinHashIndex.similarity(index.signature(first), index.signature(second));
+			assertThat(Math.abs(estimate - jaccard(first, second))).isLessThan(0.15);
+		}
+	}
+
+	@Test
+	public void testMoviesWithoutFeaturesAreNotIndexed() {
+		MinHashIndex index = new MinHashIndex(8, 2, 1);
+		index.put(1, new long[] { 1, 2, 3 });
+		index.put(1, new long[0]);
+		assertThat(index.size()).isEqualTo(0);
+		assertThat(index.findSimilar(1, 10, 100)).isEqualTo(new long[0]);
+	}
+
+	private void assertSearchesMatchFullScan(MinHashIndex index) {
+		for(long movieId : movies.keySet()) {
+			assertThat(index.findSimilar(movieId, 10, Integer.MAX_VALUE))
+					.as("The similar movies of %d", movieId)
+					.isEqualTo(fullScan(index, movieId, 10));
+		}
+	}
+
+	/**
+	 * Compares the signature of a movie with every other movie sharing a signature value, the highest
+	 * similarity first, then the lowest id.
+	 */
+	private long[] fullScan(MinHashIndex index, long movieId, int limit) {
+		int[] signature = index.signature(movies.get(movieId));
+		List<double[]> matches = new ArrayList<>();
+		for(Map.Entry<Long, long[]> movie : movies.entrySet()) {
+			if(movie.getKey() == movieId)
+				continue;
+			double similarity = MinHashIndex.similarity(signature, index.signature(movie.getValue()));
+			if(similarity > 0)
+				matches.add(new double[] { similarity, movie.getKey() });
+		}
+		matches.sort((first, second) -> {
+			int bySimilarity = Double.compare(second[0], first[0]);
+			return bySimilarity != 0 ? bySimilarity : Double.compare(first[1], second[1]);
+		});
+		return matches.stream().limit(limit).mapToLong(match -> (long) match[1]).toArray();
+	}
+
+	private void put(MinHashIndex index, long movieId, long[] features) {
+		index.put(movieId, features);
+		movies.put(movieId, features);
+	}
+
+	private static double jaccard(long[] first, long[] second) {
+		Set<Long> union = new HashSet<>();
+		Set<Long> firstSet = new HashSet<>();
+		for(long feature : first) {
+			union.add(feature);
+			firstSet.add(feature);
+		}
+		int intersection = 0;
+		Set<Long> secondSet = new HashSet<>();
+		for(long feature : second) {
+			union.add(feature);
+			if(secondSet.add(feature) && firstSet.contains(feature))
+				intersection++;
+		}
+		return (double) intersection / union.size();
+	}
+
+	private long[] createFeatures() {
+		return createFeatures(1 + random.nextInt(8));
+	}
+
+	/**
+	 * @return distinct features among a small vocabulary, so the movies share some of them.
+	 */
+	private long[] createFeatures(int count) {
+		Set<Long> features = new HashSet<>();
+		while(features.size() < count)
+			features.add((long) random.nextInt(count > 8 ? 60 : 40));
+		return features.stream().mapToLong(Long::longValue).toArray();
+	}
+}
@@ -0,0 +1,195 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the {@link MovieTokenIndex} against the original string comparison of the movie search,
+ * that normalized, split and matched the names with new strings on every comparison.
+ * <p>
+ * The original comparison is copied below, and every search checks that both find the same movies.
+ * </p>
+ * <p>
+ * Run with {@code mvn test -DskipTests=false -Dbenchmark=true -Dtest=MovieTokenIndexBenchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class MovieTokenIndexBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final String[] WORDS = {
+			"the", "dark", "knight", "return", "star", "war", "love", "story", "last", "night",
+			"city", "blood", "house", "dead", "man", "girl", "king", "queen", "lost", "world",
+			"john", "mary", "smith", "doe", "anna", "lee", "park", "kim", "garcia", "brown"
+	};
+
+	private static final String[] QUERIES = { "dark knight", "john smith", "queen", "lost in the city", "anna lee" };
+
+	private record Movie(String title, String[][] actors, String[] directors) {
+	}
+
+	private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	@AfterEach
+	public void stopPool() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void benchmarkSearch() {
+		for(int size : new int[] { 10_000, 100_000 }) {
+			List<Movie> movies = createMovies(size, new Random(size));
+			MovieTokenIndex index = new MovieTokenIndex(pool);
+			long buildStart = System.nanoTime();
+			long[] movieIds = new long[movies.size()];
+			MovieTokens[] tokens = new MovieTokens[movies.size()];
+			for(int i = 0; i < movies.size(); i++) {
+				Movie movie = movies.get(i);
+				MovieTokens.Builder builder = index.newTokens().title(movie.title());
+				for(int a = 0; a < movie.actors().length; a++)
+					builder.actor(a + 1, movie.actors()[a][0], movie.actors()[a][1]);
+				for(int d = 0; d < movie.directors().length; d++)
+					builder.director(d + 1, movie.directors()[d]);
+				movieIds[i] = i + 1;
+				tokens[i] = builder.build();
+			}
+			index.putAll(movieIds, tokens);
+			long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+			// warm up both paths
+			for(int i = 0; i < 3; i++) {
+				for(String query : QUERIES) {
+					index.search(query, Integer.MAX_VALUE);
+					legacyScan(movies, query);
+				}
+			}
+
+			long indexNanos = 0;
+			long legacyNanos = 0;
+			int rounds = 3;
+			for(int i = 0; i < rounds; i++) {
+				for(String query : QUERIES) {
+					long start = System.nanoTime();
+					long[] indexResult = index.search(query, Integer.MAX_VALUE);
+					indexNanos += System.nanoTime() - start;
+					start = System.nanoTime();
+					long[] legacyResult = legacyScan(movies, query);
+					legacyNanos += System.nanoTime() - start;
+					Arrays.sort(indexResult);
+					assertThat(indexResult).isEqualTo(legacyResult);
+				}
+			}
+			int searches = rounds * QUERIES.length;
+			LOGGER.info("Movie token index with {} movies: built in {} ms, {} ms per search, legacy scan {} ms per search", size,
+					buildMillis, String.format("%.3f", indexNanos / 1e6 / searches), String.format("%.3f", legacyNanos / 1e6 / searches));
+		}
+	}
+
+	private static long[] legacyScan(List<Movie> movies, String query) {
+		List<Long> matches = new ArrayList<>();
+		for(int i = 0; i < movies.size(); i++) {
+			if(legacyMatches(movies.get(i), query))
+				matches.add((long) i + 1);
+		}
+		return matches.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private static boolean legacyMatches(Movie movie, String name) {
+		if(compare(movie.title(), name) > 0)
+			return true;
+		for(String[] actor : movie.actors()) {
+			if(compare(actor[1], name) > 1)
+				return true;
+			if(compare(actor[0], name) > 1)
+				return true;
+		}
+		for(String director : movie.directors()) {
+			if(compare(director, name) > 1)
+				return true;
+		}
+		return false;
+	}
+
+	// the original comparison of MovieSearchService
+
+	private static String getString(String str) {
+		str = str.toLowerCase();
+		str = str.replace(',', ' ');
+		str = str.replace('/', ' ');
+		str = str.replace(':', ' ');
+		str = str.replace('-', ' ');
+		str = str.replace('.', ' ');
+		str = str.replace('!', ' ');
+		return str;
+	}
+
+	private static int compare(String str1, String str2) {
+		str1 = getString(str1);
+		str2 = getString(str2);
+		List<String> list1 = new ArrayList<>(Arrays.asList(str1.split("\\s+")));
+		List<String> list2 = new ArrayList<>(Arrays.asList(str2.split("\\s+")));
+		int mainCount = 0;
+		for(int i = 0;i < list1.size(); i++)
+			for(int j = 0;j < list2.size(); j++) {
+				String st = getSubStringMatched(list1.get(i), list2.get(j));
+				if(st.equals(list2.get(j))) {
+					if(list1.get(i).startsWith(st))
+						mainCount++;
+					mainCount++;
+					list2.remove(j);
+					break;
+				}
+			}
+		return mainCount;
+	}
+
+	private static String getSubStringMatched(String str1, String str2) {
+		String st = "";
+		char[] c1 = str1.toCharArray();
+		char[] c2 = str2.toCharArray();
+		for(int m = 0; m < c1.length; m++)
+			for(int n = 0; n < c2.length; n++) {
+				if(c1[m] == c2[n]) {
+					st = st + c2[n];
+					c2[n] = ' ';
+					break;
+				}
+			}
+		return st;
+	}
+
+	private static List<Movie> createMovies(int size, Random random) {
+		List<Movie> movies = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			String[][] actors = new String[2 + random.nextInt(6)][];
+			for(int a = 0; a < actors.length; a++)
+				actors[a] = new String[] { createName(random, 2), createName(random, 1 + random.nextInt(2)) };
+			String[] directors = new String[1 + random.nextInt(2)];
+			for(int d = 0; d < directors.length; d++)
+				directors[d] = createName(random, 2);
+			movies.add(new Movie(createName(random, 1 + random.nextInt(4)), actors, directors));
+		}
+		return movies;
+	}
+
+	private static String createName(Random random, int words) {
+		String[] name = new String[words];
+		for(int w = 0; w < words; w++)
+			name[w] = WORDS[random.nextInt(WORDS.length)];
+		return String.join(" ", name);
+	}
+}
@@ -0,0 +1,119 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Benchmark of the {@link NameIndex} against the full scan done by the {@code levenshtein_ratio} stored function.
+ * <p>
+ * The full scan is measured with {@link FuzzyMatch}, the Java port of the stored function, over every title
+ * (like the {@code WHERE levenshtein_ratio(name, ?) < 70} query does), so it is a lower bound of the
+ * cost of the database path, which also pays for the interpreted stored function and the sort.
+ * </p>
+ * <p>
+ * Run with {@code mvn test -DskipTests=false -Dbenchmark=true -Dtest=NameIndexBenchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class NameIndexBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final String[] WORDS = {
+			"the", "dark", "knight", "return", "star", "war", "love", "story", "last", "night",
+			"city", "blood", "house", "dead", "man", "girl", "king", "queen", "lost", "world",
+			"time", "secret", "life", "death", "black", "white", "red", "blue", "shadow", "fire",
+			"ice", "river", "mountain", "dream", "game", "heart", "ghost", "hunter", "road", "home"
+	};
+
+	private static final String[] QUERIES = { "dark knight", "star wars", "lost in the city", "ghost huntr", "the kng" };
+
+	@Test
+	public void benchmarkSearch() {
+		for(int size : new int[] { 10_000, 100_000, 1_000_000 }) {
+			List<String> titles = createTitles(size, new Random(size));
+			NameIndex nameIndex = new NameIndex();
+			long buildStart = System.nanoTime();
+			for(int i = 0; i < titles.size(); i++)
+				nameIndex.put(i + 1, titles.get(i));
+			long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+			char[][] normalizedTitles = new char[titles.size()][];
+			for(int i = 0; i < titles.size(); i++)
+				normalizedTitles[i] = FuzzyMatch.normalize(titles.get(i));
+
+			// warm up both paths
+			for(int i = 0; i < 3; i++) {
+				for(String query : QUERIES) {
+					nameIndex.search(query);
+					fullScan(normalizedTitles, query);
+				}
+			}
+
+			long indexNanos = 0;
+			long scanNanos = 0;
+			int rounds = size >= 1_000_000 ? 2 : 10;
+			for(int i = 0; i < rounds; i++) {
+				for(String query : QUERIES) {
+					long start = System.nanoTime();
+					long[] indexResult = nameIndex.search(query);
+					indexNanos += System.nanoTime() - start;
+					start = System.nanoTime();
+					long[] scanResult = fullScan(normalizedTitles, query);
+					scanNanos += System.nanoTime() - start;
+					assertThat(indexResult).as("The results of \"%s\"", query).isEqualTo(scanResult);
+				}
+			}
+			int searches = rounds * QUERIES.length;
+			LOGGER.info("Name index with {} titles: built in {} ms, {} ms per search, full scan {} ms per search", size,
+					buildMillis, String.format("%.3f", indexNanos / 1e6 / searches), String.format("%.3f", scanNanos / 1e6 / searches));
+		}
+	}
+
+	/**
+	 * Scores every title, and orders the matches like the stored function query, by ratio and then name.
+	 *
+	 * @return the ids of the best {@link NameIndex#MAX_RESULTS} matches.
+	 */
+	static long[] fullScan(char[][] normalizedTitles, String query) {
+		char[] normalizedQuery = FuzzyMatch.normalize(query);
+		int[] row = new int[normalizedQuery.length + 1];
+		List<long[]> matches = new ArrayList<>();
+		for(int i = 0; i < normalizedTitles.length; i++) {
+			int ratio = FuzzyMatch.ratio(normalizedTitles[i], normalizedQuery, row);
+			if(ratio < FuzzyMatch.RATIO_THRESHOLD)
+				matches.add(new long[] { ratio, i });
+		}
+		matches.sort((first, second) -> {
+			int byRatio = Long.compare(first[0], second[0]);
+			if(byRatio != 0)
+				return byRatio;
+			int byName = Arrays.compare(normalizedTitles[(int) first[1]], normalizedTitles[(int) second[1]]);
+			return byName != 0 ? byName : Long.compare(first[1], second[1]);
+		});
+		return matches.stream().limit(NameIndex.MAX_RESULTS).mapToLong(match -> match[1] + 1).toArray();
+	}
+
+	private static List<String> createTitles(int size, Random random) {
+		List<String> titles = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			int words = 1 + random.nextInt(4);
+			String[] title = new String[words];
+			for(int w = 0; w < words; w++)
+				title[w] = WORDS[random.nextInt(WORDS.length)];
+			titles.add(String.join(" ", Arrays.asList(title)) + (random.nextInt(4) == 0 ? " " + (2 + random.nextInt(5)) : ""));
+		}
+		return titles;
+	}
+}
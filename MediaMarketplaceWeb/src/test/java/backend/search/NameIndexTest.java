@@ -0,0 +1,89 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongPredicate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link NameIndex} searches give the same ids, in the same order, as scoring every name with
+ * {@link FuzzyMatch}, the Java port of the {@code levenshtein_ratio} stored function.
+ */
+public class NameIndexTest {
+
+	private static final String[] WORDS = { "the", "dark", "knight", "star", "war", "love", "atbr", "z", "9", "city", "ice" };
+
+	@Test
+	public void testSearchMatchesFullScan() {
+		Random random = new Random(1);
+		NameIndex nameIndex = new NameIndex();
+		Map<Long, String> names = new HashMap<>();
+		for(int round = 0; round < 200; round++) {
+			// add, rename and remove names, so the index has tombstones
+			for(int i = 0; i < 50; i++) {
+				long id = 1 + random.nextInt(400);
+				if(random.nextInt(5) == 0) {
+					nameIndex.remove(id);
+					names.remove(id);
+				} else {
+					String name = createName(random);
+					nameIndex.put(id, name);
+					names.put(id, name);
+				}
+			}
+			String query = createName(random);
+			int maxResults = 1 + random.nextInt(60);
+			LongPredicate filter = random.nextBoolean() ? null : id -> id % 3 != 0;
+			assertThat(nameIndex.search(query, FuzzyMatch.RATIO_THRESHOLD, maxResults, filter))
+					.as("The results of \"%s\"", query)
+					.isEqualTo(fullScan(names, query, maxResults, filter));
+		}
+		assertThat(nameIndex.size()).isEqualTo(names.size());
+	}
+
+	@Test
+	public void testNamesWithoutSharedTrigramsMatch() {
+		NameIndex nameIndex = new NameIndex();
+		nameIndex.put(1, "atbr");
+		nameIndex.put(2, "star");
+		// "atbr" shares no trigram with "star", but is 2 edits away from it
+		assertThat(nameIndex.search("star")).isEqualTo(new long[] { 2, 1 });
+	}
+
+	private static long[] fullScan(Map<Long, String> names, String query, int maxResults, LongPredicate filter) {
+		char[] normalizedQuery = FuzzyMatch.normalize(query);
+		List<Object[]> matches = new ArrayList<>();
+		names.forEach((id, name) -> {
+			char[] normalized = FuzzyMatch.normalize(name);
+			int ratio = FuzzyMatch.ratio(normalized, normalizedQuery);
+			if(ratio < FuzzyMatch.RATIO_THRESHOLD && (filter == null || filter.test(id)))
+				matches.add(new Object[] { ratio, normalized, id });
+		});
+		matches.sort((first, second) -> {
+			int byRatio = Integer.compare((Integer) first[0], (Integer) second[0]);
+			if(byRatio != 0)
+				return byRatio;
+			int byName = Arrays.compare((char[]) first[1], (char[]) second[1]);
+			return byName != 0 ? byName : Long.compare((Long) first[2], (Long) second[2]);
+		});
+		return matches.stream().limit(maxResults).mapToLong(match -> (Long) match[2]).toArray();
+	}
+
+	private static String createName(Random random) {
+		int words = 1 + random.nextInt(3);
+		StringBuilder name = new StringBuilder();
+		for(int w = 0; w < words; w++) {
+			if(w > 0)
+				name.append(' ');
+			name.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return name.toString();
+	}
+}
@@ -0,0 +1,206 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import backend.ActivateSpringApplication;
+import backend.dtos.search.MovieFilter;
+import backend.entities.Movie;
+import backend.services.MovieService;
+import backend.services.search.NameIndexService;
+
+/**
+ * Benchmark of the three name search engines ({@link NameSearchEngine}) on the same synthetic catalog.
+ * <p>
+ * The titles are inserted in the movies of the test database and every engine runs the first page of a
+ * movie search by name through {@link MovieService#searchMoviesResult}, so {@code MEMORY} searches the
+ * trigram {@link NameIndex}, {@code FULLTEXT} the ngram index of mysql-fulltext-ngram.sql (created if
+ * missing) and {@code UDF} the {@code levenshtein_ratio} stored function, which must be installed in the test
+ * database (mysql-levenshtein.sql and mysql-levenshtein-ratio.sql).
+ * </p>
+ * <p>
+ * Run with {@code mvn test -DskipTests=false -Dbenchmark=true -Dtest=NameSearchEngineBenchmark}.
+ * </p>
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestPropertySource(locations = "classpath:test.properties", properties = "search.name.engine=MEMORY")
+@SpringBootTest(classes = { ActivateSpringApplication.class })
+public class NameSearchEngineBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("myapp.logging.system");
+
+	private static final String MEDIA_ID_PREFIX = "name-benchmark-";
+
+	private static final int PAGE_SIZE = 20;
+
+	private static final int INSERT_BATCH_SIZE = 5000;
+
+	private static final String[] WORDS = {
+			"the", "dark", "knight", "return", "star", "war", "love", "story", "last", "night",
+			"city", "blood", "house", "dead", "man", "girl", "king", "queen", "lost", "world",
+			"time", "secret", "life", "death", "black", "white", "red", "blue", "shadow", "fire",
+			"ice", "river", "mountain", "dream", "game", "heart", "ghost", "hunter", "road", "home"
+	};
+
+	private static final String[] QUERIES = { "dark knight", "star wars", "lost in the city", "ghost huntr", "the kng" };
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private NameIndexService nameIndexService;
+
+	private final List<Long> movieIds = new ArrayList<>();
+
+	@AfterEach
+	public void deleteMovies() {
+		ReflectionTestUtils.setField(nameIndexService, "engine", NameSearchEngine.MEMORY);
+		for(Long movieId : movieIds)
+			nameIndexService.remove(NameIndexType.MOVIE, movieId);
+		movieIds.clear();
+		jdbcTemplate.update("DELETE FROM movies WHERE media_id LIKE ?", MEDIA_ID_PREFIX + "%");
+	}
+
+	@Test
+	public void benchmarkEngines() {
+		Integer fullTextIndexes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics"
+				+ " WHERE table_schema = DATABASE() AND table_name = 'movies' AND index_type = 'FULLTEXT'", Integer.class);
+		if(fullTextIndexes == 0)
+			jdbcTemplate.execute("ALTER TABLE movies ADD FULLTEXT INDEX ft_movies_name (name) WITH PARSER ngram");
+		int inserted = 0;
+		for(int size : new int[] { 10_000, 100_000 }) {
+			insertMovies(inserted, size - inserted, new Random(size));
+			inserted = size;
+
+			// warm up the engines and the buffer pool
+			for(NameSearchEngine engine : NameSearchEngine.values()) {
+				for(String query : QUERIES)
+					search(engine, query);
+			}
+
+			long[] nanos = new long[NameSearchEngine.values().length];
+			int rounds = 3;
+			for(int i = 0; i < rounds; i++) {
+				for(String query : QUERIES) {
+					List<List<String>> pages = new ArrayList<>();
+					for(NameSearchEngine engine : NameSearchEngine.values()) {
+						long start = System.nanoTime();
+						pages.add(search(engine, query));
+						nanos[engine.ordinal()] += System.nanoTime() - start;
+					}
+					assertPages(query, pages);
+				}
+			}
+			int searches = rounds * QUERIES.length;
+			for(NameSearchEngine engine : NameSearchEngine.values()) {
+				LOGGER.info("Name search engine {} with {} titles: {} ms per search", engine, size,
+						String.format("%.3f", nanos[engine.ordinal()] / 1e6 / searches));
+			}
+		}
+	}
+
+	/**
+	 * Checks that {@code MEMORY} gives the same page as the stored function, and that {@code FULLTEXT} only
+	 * gives names sharing an ngram with the query.
+	 */
+	private void assertPages(String query, List<List<String>> pages) {
+		List<String> memoryPage = pages.get(NameSearchEngine.MEMORY.ordinal());
+		List<String> udfPage = pages.get(NameSearchEngine.UDF.ordinal());
+		List<String> fullTextPage = pages.get(NameSearchEngine.FULLTEXT.ordinal());
+		// the names with the same ratio can be ordered differently, their ratios are the same
+		assertThat(ratios(memoryPage, query)).as("The ratios of the MEMORY page of \"%s\"", query)
+				.isEqualTo(ratios(udfPage, query));
+		assertThat(memoryPage).as("The MEMORY page of \"%s\"", query).isNotEmpty().hasSizeLessThanOrEqualTo(PAGE_SIZE);
+		assertThat(fullTextPage).as("The FULLTEXT page of \"%s\"", query).isNotEmpty().hasSizeLessThanOrEqualTo(PAGE_SIZE);
+		for(String name : fullTextPage)
+			assertThat(sharesBigram(name, query)).as("\"%s\" shares an ngram with \"%s\"", name, query).isTrue();
+	}
+
+	private List<String> search(NameSearchEngine engine, String name) {
+		ReflectionTestUtils.setField(nameIndexService, "engine", engine);
+		try {
+			MovieFilter movieFilter = new MovieFilter();
+			movieFilter.setName(name);
+			return movieService.searchMoviesResult(movieFilter, PageRequest.of(0, PAGE_SIZE)).getContent().stream()
+					.map(Movie::getName)
+					.toList();
+		} finally {
+			ReflectionTestUtils.setField(nameIndexService, "engine", NameSearchEngine.MEMORY);
+		}
+	}
+
+	/**
+	 * Inserts movies with synthetic titles, and puts them in the name index of the movies.
+	 */
+	private void insertMovies(int from, int count, Random random) {
+		List<Object[]> rows = new ArrayList<>(INSERT_BATCH_SIZE);
+		for(int i = 0; i < count; i++) {
+			rows.add(new Object[] { MEDIA_ID_PREFIX + (from + i), createTitle(random) });
+			if(rows.size() == INSERT_BATCH_SIZE || i == count - 1) {
+				jdbcTemplate.batchUpdate("INSERT INTO movies (media_id, name, total_page_views) VALUES (?, ?, 0)", rows);
+				rows.clear();
+			}
+		}
+		List<Map<String, Object>> movies = jdbcTemplate.queryForList("SELECT id, name FROM movies WHERE media_id LIKE ?"
+				+ " AND id > ? ORDER BY id", MEDIA_ID_PREFIX + "%", movieIds.isEmpty() ? 0L : movieIds.get(movieIds.size() - 1));
+		for(Map<String, Object> movie : movies) {
+			Long movieId = ((Number) movie.get("id")).longValue();
+			nameIndexService.index(NameIndexType.MOVIE, movieId, (String) movie.get("name"));
+			movieIds.add(movieId);
+		}
+	}
+
+	private static List<Integer> ratios(List<String> names, String query) {
+		char[] normalizedQuery = FuzzyMatch.normalize(query);
+		return names.stream()
+				.map(name -> FuzzyMatch.ratio(FuzzyMatch.normalize(name), normalizedQuery))
+				.toList();
+	}
+
+	/**
+	 * @return {@code true} if the name contains a pair of letters of the query, the ngram parser splits the
+	 * names in pairs of characters.
+	 */
+	private static boolean sharesBigram(String name, String query) {
+		String lowerName = name.toLowerCase();
+		String lowerQuery = query.toLowerCase();
+		for(int i = 0; i + 2 <= lowerQuery.length(); i++) {
+			String bigram = lowerQuery.substring(i, i + 2);
+			if(bigram.indexOf(' ') < 0 && lowerName.contains(bigram))
+				return true;
+		}
+		return false;
+	}
+
+	private static String createTitle(Random random) {
+		int words = 1 + random.nextInt(4);
+		StringBuilder title = new StringBuilder();
+		for(int w = 0; w < words; w++) {
+			if(w > 0)
+				title.append(' ');
+			title.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return title.toString();
+	}
+}
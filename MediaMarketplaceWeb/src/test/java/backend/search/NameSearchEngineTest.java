@@ -0,0 +1,120 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import backend.ActivateSpringApplication;
+import backend.dtos.search.MovieFilter;
+import backend.entities.Movie;
+import backend.services.MovieService;
+import backend.services.search.NameIndexService;
+
+/**
+ * Tests the {@link NameSearchEngine#FULLTEXT} engine through the movie search, against the
+ * {@link NameSearchEngine#UDF} engine on the same movies.
+ * <p>
+ * The {@code levenshtein_ratio} stored function must be installed in the test database
+ * (mysql-levenshtein.sql and mysql-levenshtein-ratio.sql). The {@code FULLTEXT} index of the movie names is
+ * created like mysql-fulltext-ngram.sql does if it is missing.
+ * </p>
+ */
+@TestPropertySource(locations = "classpath:test.properties", properties = "search.name.engine=FULLTEXT")
+@SpringBootTest(classes = { ActivateSpringApplication.class })
+public class NameSearchEngineTest {
+
+	private static final String MEDIA_ID_PREFIX = "name-search-engine-";
+
+	private static final String[] NAMES = {
+			"Zorblax Quintavel", "Zorblax Quintaval", "Zorblux Quinta", "Quintavel Zorblax Returns", "Mervadine Oskelby"
+	};
+
+	private static final String[] QUERIES = { "Zorblax Quintavel", "zorblax quintavl", "Quinta", "Mervadine Oskelbi" };
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private NameIndexService nameIndexService;
+
+	private final List<Long> movieIds = new ArrayList<>();
+
+	@BeforeEach
+	public void insertMovies() {
+		Integer fullTextIndexes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.statistics"
+				+ " WHERE table_schema = DATABASE() AND table_name = 'movies' AND index_type = 'FULLTEXT'", Integer.class);
+		if(fullTextIndexes == 0)
+			jdbcTemplate.execute("ALTER TABLE movies ADD FULLTEXT INDEX ft_movies_name (name) WITH PARSER ngram");
+		// committed one by one, the FULLTEXT index only shows the committed rows
+		for(int i = 0; i < NAMES.length; i++) {
+			String mediaId = MEDIA_ID_PREFIX + i;
+			jdbcTemplate.update("INSERT INTO movies (media_id, name, total_page_views) VALUES (?, ?, 0)", mediaId, NAMES[i]);
+			movieIds.add(jdbcTemplate.queryForObject("SELECT id FROM movies WHERE media_id = ?", Long.class, mediaId));
+		}
+	}
+
+	@AfterEach
+	public void deleteMovies() {
+		jdbcTemplate.update("DELETE FROM movies WHERE media_id LIKE ?", MEDIA_ID_PREFIX + "%");
+		movieIds.clear();
+	}
+
+	@Test
+	public void fullTextFindsTheNamesOfTheStoredFunctionTest() {
+		for(String query : QUERIES) {
+			List<Long> fullTextIds = search(NameSearchEngine.FULLTEXT, query);
+			List<Long> udfIds = search(NameSearchEngine.UDF, query);
+			assertThat(udfIds).as("The stored function results of \"%s\"", query).isNotEmpty();
+			// the close names share ngrams with the query, so the FULLTEXT index finds them too
+			assertThat(fullTextIds).as("The FULLTEXT results of \"%s\"", query).containsAll(udfIds);
+		}
+	}
+
+	@Test
+	public void fullTextIsOrderedByRelevanceTest() {
+		for(String query : QUERIES) {
+			List<Long> fullTextIds = search(NameSearchEngine.FULLTEXT, query);
+			double previous = Double.MAX_VALUE;
+			for(Long movieId : fullTextIds) {
+				double relevance = jdbcTemplate.queryForObject("SELECT MATCH(name) AGAINST(? IN NATURAL LANGUAGE MODE)"
+						+ " FROM movies WHERE id = ?", Double.class, query, movieId);
+				assertThat(relevance).as("The relevance of %d for \"%s\"", movieId, query)
+						.isGreaterThan(0.0).isLessThanOrEqualTo(previous);
+				previous = relevance;
+			}
+		}
+	}
+
+	/**
+	 * Searches the movies by name with an engine, through the movie search without its result cache.
+	 *
+	 * @return the ids of the inserted movies of the first page, in the order of the page.
+	 */
+	private List<Long> search(NameSearchEngine engine, String name) {
+		ReflectionTestUtils.setField(nameIndexService, "engine", engine);
+		try {
+			MovieFilter movieFilter = new MovieFilter();
+			movieFilter.setName(name);
+			return movieService.searchMoviesResult(movieFilter, PageRequest.of(0, 100)).getContent().stream()
+					.map(Movie::getId)
+					.filter(movieIds::contains)
+					.toList();
+		} finally {
+			ReflectionTestUtils.setField(nameIndexService, "engine", NameSearchEngine.FULLTEXT);
+		}
+	}
+}
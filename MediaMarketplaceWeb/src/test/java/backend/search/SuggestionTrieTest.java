@@ -0,0 +1,150 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import backend.search.SuggestionTrie.Suggestion;
+
+/**
+ * Tests that the {@link SuggestionTrie} suggestions are the same, in the same order, as filtering and sorting
+ * all the names, through the renames, removals and weight changes that mark its nodes dirty.
+ */
+public class SuggestionTrieTest {
+
+	private static final String[] WORDS = { "dark", "darkness", "knight", "kn", "star", "stars", "start", "war", "wars", "love", "lost", "a" };
+
+	private static final Comparator<Suggestion> BY_WEIGHT = Comparator.comparingDouble(Suggestion::weight).reversed()
+			.thenComparing(Suggestion::name)
+			.thenComparingLong(Suggestion::id);
+
+	private final Random random = new Random(1);
+
+	private final SuggestionTrie trie = new SuggestionTrie();
+
+	/**
+	 * The names and weights of the entities in the trie.
+	 */
+	private final Map<Long, Suggestion> suggestions = new LinkedHashMap<>();
+
+	@Test
+	public void testSuggestionsMatchFullScan() {
+		List<Suggestion> added = new ArrayList<>();
+		for(long id = 1; id <= 300; id++)
+			added.add(new Suggestion(id, createName(), random.nextInt(20)));
+		putAll(added);
+		assertSuggestionsMatchFullScan();
+		for(int i = 0; i < 500; i++) {
+			long id = 1 + random.nextInt(350);
+			switch(random.nextInt(4)) {
+				case 0 -> put(id, createName());
+				case 1 -> remove(id);
+				case 2 -> addWeight(id, random.nextInt(10) - 5);
+				default -> putAll(List.of(new Suggestion(id, createName(), random.nextInt(20))));
+			}
+			if(i % 50 == 0)
+				assertSuggestionsMatchFullScan();
+		}
+		assertSuggestionsMatchFullScan();
+		Map<Long, Double> weights = new HashMap<>();
+		for(long id : suggestions.keySet()) {
+			if(random.nextBoolean())
+				weights.put(id, (double) random.nextInt(20));
+		}
+		setWeights(weights);
+		assertSuggestionsMatchFullScan();
+		assertThat(trie.size()).isEqualTo(suggestions.size());
+	}
+
+	@Test
+	public void testWordsOfTheNameAreSuggested() {
+		trie.putAll(List.of(new Suggestion(1, "The Dark Knight", 5), new Suggestion(2, "Dark City", 3)));
+		assertThat(trie.suggest("dar", 10).stream().map(Suggestion::id).toList()).isEqualTo(List.of(1L, 2L));
+		assertThat(trie.suggest("kni", 10).stream().map(Suggestion::id).toList()).isEqualTo(List.of(1L));
+		assertThat(trie.suggest("ark", 10)).isEmpty();
+		trie.remove(1);
+		assertThat(trie.suggest("dar", 10).stream().map(Suggestion::id).toList()).isEqualTo(List.of(2L));
+	}
+
+	private void assertSuggestionsMatchFullScan() {
+		for(String word : WORDS) {
+			for(int length = 1; length <= word.length(); length++) {
+				String prefix = word.substring(0, length);
+				assertThat(trie.suggest(prefix, SuggestionTrie.MAX_SUGGESTIONS))
+						.as("The suggestions of \"%s\"", prefix)
+						.isEqualTo(fullScan(prefix));
+			}
+			String twoWords = word + " " + WORDS[random.nextInt(WORDS.length)].substring(0, 1);
+			assertThat(trie.suggest(twoWords, SuggestionTrie.MAX_SUGGESTIONS))
+					.as("The suggestions of \"%s\"", twoWords)
+					.isEqualTo(fullScan(twoWords));
+		}
+	}
+
+	/**
+	 * Keeps the names that start with the prefix, or with a word suffix that does, the highest weight first.
+	 */
+	private List<Suggestion> fullScan(String prefix) {
+		String key = new String(FuzzyMatch.normalize(prefix));
+		return suggestions.values().stream()
+				.filter(suggestion -> {
+					String name = new String(FuzzyMatch.normalize(suggestion.name()));
+					return name.startsWith(key) || name.contains(" " + key);
+				})
+				.sorted(BY_WEIGHT)
+				.limit(SuggestionTrie.MAX_SUGGESTIONS)
+				.toList();
+	}
+
+	private void put(long id, String name) {
+		trie.put(id, name);
+		Suggestion suggestion = suggestions.get(id);
+		suggestions.put(id, new Suggestion(id, name, suggestion == null ? 0 : suggestion.weight()));
+	}
+
+	private void putAll(List<Suggestion> added) {
+		trie.putAll(added);
+		for(Suggestion suggestion : added)
+			suggestions.put(suggestion.id(), suggestion);
+	}
+
+	private void remove(long id) {
+		trie.remove(id);
+		suggestions.remove(id);
+	}
+
+	private void addWeight(long id, double delta) {
+		trie.addWeight(id, delta);
+		Suggestion suggestion = suggestions.get(id);
+		if(suggestion != null)
+			suggestions.put(id, new Suggestion(id, suggestion.name(), suggestion.weight() + delta));
+	}
+
+	private void setWeights(Map<Long, Double> weights) {
+		trie.setWeights(weights);
+		for(Suggestion suggestion : new ArrayList<>(suggestions.values())) {
+			suggestions.put(suggestion.id(), new Suggestion(suggestion.id(), suggestion.name(),
+					weights.getOrDefault(suggestion.id(), 0d)));
+		}
+	}
+
+	private String createName() {
+		int words = 1 + random.nextInt(3);
+		StringBuilder name = new StringBuilder();
+		for(int w = 0; w < words; w++) {
+			if(w > 0)
+				name.append(' ');
+			String word = WORDS[random.nextInt(WORDS.length)];
+			name.append(random.nextBoolean() ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+		}
+		return name.toString();
+	}
+}
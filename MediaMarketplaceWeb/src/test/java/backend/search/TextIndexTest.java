@@ -0,0 +1,174 @@
+package backend.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link TextIndex} searches give the same ids, in the same order, as scoring every document
+ * with BM25, before and after the index compacts its tombstones.
+ */
+public class TextIndexTest {
+
+	private static final String[] WORDS = { "the", "dark", "knight", "star", "war", "love", "of", "9", "x", "city", "ice", "district" };
+
+	private static final Set<String> STOP_WORDS = Set.of("the", "of");
+
+	private final Random random = new Random(1);
+
+	private final TextIndex textIndex = new TextIndex();
+
+	/**
+	 * The weighted term frequencies of the documents, in the order they were added.
+	 */
+	private final Map<Long, Map<String, Integer>> documents = new LinkedHashMap<>();
+
+	@Test
+	public void testSearchMatchesFullScan() {
+		for(long id = 1; id <= 2000; id++)
+			put(id);
+		assertSearchesMatchFullScan();
+		// the removed documents reach a quarter of tombstones, so the index is compacted
+		for(long id = 2; id <= 1000; id += 2)
+			remove(id);
+		assertSearchesMatchFullScan();
+		assertThat(textIndex.size()).isEqualTo(documents.size());
+	}
+
+	@Test
+	public void testFilterIsAppliedBeforeTheBestIdsAreKept() {
+		for(long id = 1; id <= 1500; id++)
+			put(id);
+		LongPredicate filter = id -> id % 7 == 0;
+		for(String query : new String[] { "love", "dark knight", "star war" }) {
+			assertThat(textIndex.search(query, 10, filter))
+					.as("The results of \"%s\"", query)
+					.isEqualTo(fullScan(query, 10, filter));
+		}
+	}
+
+	@Test
+	public void testSingleCharacterWordsMatch() {
+		textIndex.put(1, "District 9", null, null);
+		textIndex.put(2, "District", null, List.of("x"));
+		assertThat(textIndex.search("9")).isEqualTo(new long[] { 1 });
+		assertThat(textIndex.search("x")).isEqualTo(new long[] { 2 });
+		assertThat(textIndex.search("the of")).isEqualTo(new long[0]);
+	}
+
+	@Test
+	public void testReplacedAndRemovedDocumentsAreNotFound() {
+		textIndex.put(1, "Dark City", null, null);
+		textIndex.put(2, "Dark Star", null, null);
+		textIndex.put(1, "Ice Age", null, null);
+		textIndex.remove(2);
+		assertThat(textIndex.search("dark")).isEqualTo(new long[0]);
+		assertThat(textIndex.search("ice")).isEqualTo(new long[] { 1 });
+		assertThat(textIndex.size()).isEqualTo(1);
+	}
+
+	private void assertSearchesMatchFullScan() {
+		for(int i = 0; i < 50; i++) {
+			String query = createText(1 + random.nextInt(3));
+			assertThat(textIndex.search(query))
+					.as("The results of \"%s\"", query)
+					.isEqualTo(fullScan(query, TextIndex.MAX_RESULTS, null));
+		}
+	}
+
+	private void put(long id) {
+		String title = createText(1 + random.nextInt(3));
+		String synopsis = createText(random.nextInt(8));
+		List<String> keywords = random.nextBoolean() ? null : List.of(createText(1), createText(2));
+		textIndex.put(id, title, synopsis, keywords);
+		Map<String, Integer> termFrequencies = new HashMap<>();
+		addTerms(termFrequencies, title, TextIndex.TITLE_WEIGHT);
+		addTerms(termFrequencies, synopsis, 1);
+		if(keywords != null) {
+			for(String keyword : keywords)
+				addTerms(termFrequencies, keyword, TextIndex.KEYWORD_WEIGHT);
+		}
+		documents.remove(id);
+		if(!termFrequencies.isEmpty())
+			documents.put(id, termFrequencies);
+	}
+
+	private void remove(long id) {
+		textIndex.remove(id);
+		documents.remove(id);
+	}
+
+	/**
+	 * Scores every document with BM25, the highest score first, then in the order the documents were added.
+	 */
+	private long[] fullScan(String query, int maxResults, LongPredicate filter) {
+		Set<String> queryTerms = new LinkedHashSet<>();
+		for(String word : query.toLowerCase().split("[^a-z0-9]+")) {
+			if(!word.isEmpty() && !STOP_WORDS.contains(word))
+				queryTerms.add(word);
+		}
+		int size = documents.size();
+		long totalLength = 0;
+		Map<String, Integer> documentFrequencies = new HashMap<>();
+		for(Map<String, Integer> termFrequencies : documents.values()) {
+			for(Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+				totalLength += entry.getValue();
+				documentFrequencies.merge(entry.getKey(), 1, Integer::sum);
+			}
+		}
+		double averageLength = (double) totalLength / size;
+		List<Object[]> matches = new ArrayList<>();
+		int order = 0;
+		for(Map.Entry<Long, Map<String, Integer>> document : documents.entrySet()) {
+			Map<String, Integer> termFrequencies = document.getValue();
+			int length = termFrequencies.values().stream().mapToInt(Integer::intValue).sum();
+			float score = 0;
+			boolean matched = false;
+			for(String term : queryTerms) {
+				Integer frequency = termFrequencies.get(term);
+				if(frequency == null)
+					continue;
+				int documentFrequency = documentFrequencies.get(term);
+				double idf = Math.log(1 + (size - documentFrequency + 0.5) / (documentFrequency + 0.5));
+				double norm = 1.2 * (1 - 0.75 + 0.75 * length / averageLength);
+				score += (float) (idf * frequency * (1.2 + 1) / (frequency + norm));
+				matched = true;
+			}
+			if(matched && (filter == null || filter.test(document.getKey())))
+				matches.add(new Object[] { score, order, document.getKey() });
+			order++;
+		}
+		matches.sort((first, second) -> {
+			int byScore = Float.compare((Float) second[0], (Float) first[0]);
+			return byScore != 0 ? byScore : Integer.compare((Integer) first[1], (Integer) second[1]);
+		});
+		return matches.stream().limit(maxResults).mapToLong(match -> (Long) match[2]).toArray();
+	}
+
+	private static void addTerms(Map<String, Integer> termFrequencies, String text, int weight) {
+		for(String word : text.toLowerCase().split("[^a-z0-9]+")) {
+			if(!word.isEmpty() && !STOP_WORDS.contains(word))
+				termFrequencies.merge(word, weight, Integer::sum);
+		}
+	}
+
+	private String createText(int words) {
+		StringBuilder text = new StringBuilder();
+		for(int w = 0; w < words; w++) {
+			if(w > 0)
+				text.append(' ');
+			text.append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return text.toString();
+	}
+}
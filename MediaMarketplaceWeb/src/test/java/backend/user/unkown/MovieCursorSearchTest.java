@@ -0,0 +1,43 @@
+package backend.user.unkown;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+
+import backend.UnknownSpringTest;
+import backend.dtos.search.CursorPageDto;
+
+/**
+ * Tests that a cursor of the movie search only continues the search and sort it was created by.
+ */
+public class MovieCursorSearchTest extends UnknownSpringTest {
+
+	private static final String SEARCH_URI = "/api/main/movies/search/cursor?size=2";
+
+	@Test
+	public void cursorContinuesItsSearchTest() throws Exception {
+		String cursor = getNextCursor(SEARCH_URI + "&yearAbove=1900");
+		getTest(SEARCH_URI + "&yearAbove=1900&cursor=" + cursor, status().isOk());
+	}
+
+	@Test
+	public void cursorOfAnotherFilterTest() throws Exception {
+		String cursor = getNextCursor(SEARCH_URI + "&yearAbove=1900");
+		getTest(SEARCH_URI + "&yearAbove=2000&cursor=" + cursor, status().isBadRequest());
+		getTest(SEARCH_URI + "&cursor=" + cursor, status().isBadRequest());
+	}
+
+	@Test
+	public void cursorOfAnotherSortTest() throws Exception {
+		String cursor = getNextCursor(SEARCH_URI + "&sort=name,asc");
+		getTest(SEARCH_URI + "&sort=name,desc&cursor=" + cursor, status().isBadRequest());
+	}
+
+	private String getNextCursor(String uri) throws Exception {
+		CursorPageDto<?> page = asObject(getTest(uri, status().isOk()).andReturn().getResponse().getContentAsString(),
+				CursorPageDto.class);
+		assertThat(page.getNextCursor()).as("The cursor of the next page").isNotNull();
+		return page.getNextCursor();
+	}
+}
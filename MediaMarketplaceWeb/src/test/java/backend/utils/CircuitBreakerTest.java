@@ -0,0 +1,107 @@
+package backend.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link CircuitBreaker} transitions, and compares a random sequence of calls with the time the
+ * service is shunned after a run of failures.
+ */
+public class CircuitBreakerTest {
+
+	private static final int THRESHOLD = 3;
+
+	private static final long OPEN_NANOS = 100;
+
+	@Test
+	public void testOpensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(THRESHOLD, OPEN_NANOS);
+		for(int i = 0; i < THRESHOLD - 1; i++) {
+			assertThat(breaker.tryAcquire(i)).isTrue();
+			breaker.recordFailure(i);
+		}
+		// a success resets the run of failures
+		assertThat(breaker.tryAcquire(5)).isTrue();
+		breaker.recordSuccess();
+		for(int i = 0; i < THRESHOLD; i++) {
+			assertThat(breaker.tryAcquire(10 + i)).isTrue();
+			breaker.recordFailure(10 + i);
+		}
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.tryAcquire(12 + OPEN_NANOS - 1)).isFalse();
+	}
+
+	@Test
+	public void testSingleTrialCallAfterTheOpenTime() {
+		CircuitBreaker breaker = open();
+		assertThat(breaker.tryAcquire(OPEN_NANOS)).isTrue();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+		// the other callers fall back while the trial call runs
+		assertThat(breaker.tryAcquire(OPEN_NANOS + 1)).isFalse();
+		breaker.recordSuccess();
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+		assertThat(breaker.tryAcquire(OPEN_NANOS + 2)).isTrue();
+	}
+
+	@Test
+	public void testFailedTrialOpensAgain() {
+		CircuitBreaker breaker = open();
+		assertThat(breaker.tryAcquire(OPEN_NANOS)).isTrue();
+		breaker.recordFailure(OPEN_NANOS + 5);
+		assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+		assertThat(breaker.tryAcquire(2 * OPEN_NANOS + 4)).isFalse();
+		assertThat(breaker.tryAcquire(2 * OPEN_NANOS + 5)).isTrue();
+	}
+
+	@Test
+	public void testRandomCallsMatchTheShunnedTimes() {
+		Random random = new Random(1);
+		CircuitBreaker breaker = new CircuitBreaker(THRESHOLD, OPEN_NANOS);
+		int failures = 0;
+		long shunnedUntil = Long.MIN_VALUE;
+		boolean trial = false;
+		long now = 0;
+		for(int i = 0; i < 10000; i++) {
+			now += random.nextInt(30);
+			// the service is shunned until the open time passed, then a single call tries it
+			boolean expected = !trial && now >= shunnedUntil;
+			assertThat(breaker.tryAcquire(now)).as("Call %d at %d", i, now).isEqualTo(expected);
+			if(!expected)
+				continue;
+			trial = shunnedUntil != Long.MIN_VALUE;
+			// the calls fail in runs
+			if(random.nextInt(3) == 0) {
+				breaker.recordSuccess();
+				failures = 0;
+				shunnedUntil = Long.MIN_VALUE;
+				trial = false;
+			} else {
+				breaker.recordFailure(now);
+				failures++;
+				if(trial || failures >= THRESHOLD)
+					shunnedUntil = now + OPEN_NANOS;
+				trial = false;
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidSettingsAreRejected() {
+		assertThatThrownBy(() -> new CircuitBreaker(0, OPEN_NANOS)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new CircuitBreaker(THRESHOLD, 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * @return a breaker opened at the time 0.
+	 */
+	private static CircuitBreaker open() {
+		CircuitBreaker breaker = new CircuitBreaker(1, OPEN_NANOS);
+		assertThat(breaker.tryAcquire(0)).isTrue();
+		breaker.recordFailure(0);
+		return breaker;
+	}
+}
@@ -0,0 +1,81 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of the {@link BoundedCache} invalidations, that only drop the values computed before them for the keys
+ * they invalidate, of the eviction and of the expiration.
+ */
+public class BoundedCacheTest {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	private final BoundedCache<Long, String> cache = new BoundedCache<>(100, Duration.ofSeconds(10), clock::get);
+
+	@Test
+	public void testInvalidationOfAKeyOnlyDropsThatKey() {
+		long generation = cache.generation();
+		cache.invalidate(1L);
+		// computed before the invalidation of its key
+		assertThat(cache.put(1L, "stale", generation)).isFalse();
+		assertThat(cache.get(1L)).isNull();
+		// the other keys are not affected
+		assertThat(cache.put(2L, "two", generation)).isTrue();
+		assertThat(cache.get(2L)).isEqualTo("two");
+		// computed after the invalidation
+		assertThat(cache.put(1L, "fresh", cache.generation())).isTrue();
+		assertThat(cache.get(1L)).isEqualTo("fresh");
+	}
+
+	@Test
+	public void testInvalidationByConditionDropsMatchingValues() {
+		long generation = cache.generation();
+		assertThat(cache.put(1L, "a", generation)).isTrue();
+		assertThat(cache.invalidateIf((key, value) -> value.startsWith("a"))).isEqualTo(1);
+		assertThat(cache.get(1L)).isNull();
+		// a value being computed that matches the condition is dropped, the others are cached
+		assertThat(cache.put(2L, "ab", generation)).isFalse();
+		assertThat(cache.put(3L, "b", generation)).isTrue();
+		assertThat(cache.put(2L, "ab", cache.generation())).isTrue();
+	}
+
+	@Test
+	public void testUpdateKeepsOtherKeys() {
+		long generation = cache.generation();
+		cache.put(1L, "one", generation);
+		assertThat(cache.update(1L, value -> value + "!")).isTrue();
+		assertThat(cache.get(1L)).isEqualTo("one!");
+		assertThat(cache.put(1L, "stale", generation)).isFalse();
+		assertThat(cache.put(2L, "two", generation)).isTrue();
+		assertThat(cache.update(3L, value -> value)).isFalse();
+	}
+
+	@Test
+	public void testOldComputationsAreDroppedOnceTheInvalidationIsForgotten() {
+		long generation = cache.generation();
+		cache.invalidateIf((key, value) -> key == 1L);
+		clock.addAndGet(TimeUnit.MINUTES.toNanos(2));
+		// the next invalidation forgets the old one, a value computed before it may match it
+		cache.invalidateIf((key, value) -> false);
+		assertThat(cache.put(2L, "two", generation)).isFalse();
+		assertThat(cache.put(2L, "two", cache.generation())).isTrue();
+	}
+
+	@Test
+	public void testExpirationAndEviction() {
+		BoundedCache<Long, String> small = new BoundedCache<>(2, Duration.ofSeconds(10), clock::get);
+		small.put(1L, "one", small.generation());
+		small.put(2L, "two", small.generation());
+		small.put(3L, "three", small.generation());
+		assertThat(small.stats().size()).isEqualTo(2);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+		assertThat(small.get(3L)).isNull();
+		assertThat(small.stats().expirations()).isEqualTo(1);
+	}
+}
@@ -0,0 +1,105 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link CompressedBitmap} holds the same values as a {@link BitSet}, for sparse and dense chunks
+ * and the conversions between them, and that the intersections match.
+ */
+public class CompressedBitmapTest {
+
+	private final Random random = new Random(1);
+
+	@Test
+	public void testValuesMatchBitSet() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		BitSet expected = new BitSet();
+		// a dense chunk, a sparse one and a chunk that crosses the array limit
+		for(int i = 0; i < 200000; i++) {
+			int value = createValue();
+			if(random.nextInt(3) == 0) {
+				assertThat(bitmap.remove(value)).as("Removed %d", value).isEqualTo(expected.get(value));
+				expected.clear(value);
+			} else {
+				assertThat(bitmap.add(value)).as("Added %d", value).isEqualTo(!expected.get(value));
+				expected.set(value);
+			}
+			assertThat(bitmap.contains(value)).as("Contains %d", value).isEqualTo(expected.get(value));
+		}
+		assertSameValues(bitmap, expected);
+		for(int value = 0; value < 4 * 65536; value++) {
+			if(bitmap.contains(value) != expected.get(value))
+				assertThat(bitmap.contains(value)).as("Contains %d", value).isEqualTo(expected.get(value));
+		}
+		// removing every value turns the dense chunks back into arrays, then empties them
+		expected.stream().forEach(bitmap::remove);
+		assertThat(bitmap.isEmpty()).isTrue();
+		assertThat(bitmap.cardinality()).isEqualTo(0);
+	}
+
+	@Test
+	public void testIntersectionsMatchBitSet() {
+		for(int round = 0; round < 20; round++) {
+			CompressedBitmap first = new CompressedBitmap();
+			CompressedBitmap second = new CompressedBitmap();
+			BitSet firstExpected = new BitSet();
+			BitSet secondExpected = new BitSet();
+			int count = random.nextInt(30000);
+			for(int i = 0; i < count; i++) {
+				int value = createValue();
+				first.add(value);
+				firstExpected.set(value);
+				value = createValue();
+				second.add(value);
+				secondExpected.set(value);
+			}
+			BitSet intersection = (BitSet) firstExpected.clone();
+			intersection.and(secondExpected);
+			assertThat(first.andCardinality(second)).isEqualTo(intersection.cardinality());
+			assertThat(second.andCardinality(first)).isEqualTo(intersection.cardinality());
+			assertSameValues(first.and(second), intersection);
+			assertSameValues(second.and(first), intersection);
+		}
+	}
+
+	@Test
+	public void testCopyIsIndependent() {
+		CompressedBitmap bitmap = CompressedBitmap.of(3, 1, 70000, 2);
+		CompressedBitmap copy = bitmap.copy();
+		copy.add(5);
+		copy.remove(70000);
+		assertThat(bitmap.toArray()).isEqualTo(new int[] { 1, 2, 3, 70000 });
+		assertThat(copy.toArray()).isEqualTo(new int[] { 1, 2, 3, 5 });
+	}
+
+	@Test
+	public void testNegativeValuesAreRejected() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		assertThatThrownBy(() -> bitmap.add(-1)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(bitmap.contains(-1)).isFalse();
+		assertThat(bitmap.remove(-1)).isFalse();
+	}
+
+	private static void assertSameValues(CompressedBitmap bitmap, BitSet expected) {
+		assertThat(bitmap.toArray()).isEqualTo(expected.stream().toArray());
+		assertThat(bitmap.cardinality()).isEqualTo(expected.cardinality());
+		assertThat(bitmap.isEmpty()).isEqualTo(expected.isEmpty());
+	}
+
+	/**
+	 * @return a value of a dense chunk, a sparse chunk, or a chunk around the 4096 values of the largest array.
+	 */
+	private int createValue() {
+		return switch(random.nextInt(3)) {
+			case 0 -> random.nextInt(20000);
+			case 1 -> 65536 + random.nextInt(65536) * 16;
+			default -> 2 * 65536 + random.nextInt(12000);
+		};
+	}
+}
@@ -0,0 +1,65 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link CooldownFilter} accepts the same keys as keeping the last accepted time of every key,
+ * across the rotations of its buckets.
+ */
+public class CooldownFilterTest {
+
+	private static final long COOLDOWN = 1000;
+
+	@Test
+	public void testAcceptsLikeTheLastAcceptedTimes() {
+		Random random = new Random(1);
+		CooldownFilter<Integer> filter = new CooldownFilter<>(COOLDOWN);
+		Map<Integer, Long> lastAccepted = new HashMap<>();
+		long now = -5 * COOLDOWN;
+		for(int i = 0; i < 100000; i++) {
+			// the time moves by less than a cooldown, or jumps over several buckets
+			now += random.nextInt(10) == 0 ? random.nextInt((int) (3 * COOLDOWN)) : random.nextInt(20);
+			Integer key = random.nextInt(50);
+			Long last = lastAccepted.get(key);
+			boolean expected = last == null || now - last >= COOLDOWN;
+			assertThat(filter.tryAcquire(key, now)).as("Key %d at %d", key, now).isEqualTo(expected);
+			if(expected)
+				lastAccepted.put(key, now);
+		}
+		assertThat(filter.size()).isLessThanOrEqualTo(2 * 50);
+	}
+
+	@Test
+	public void testReleasedKeyIsAcceptedAgain() {
+		CooldownFilter<String> filter = new CooldownFilter<>(COOLDOWN);
+		assertThat(filter.tryAcquire("a", 10)).isTrue();
+		assertThat(filter.tryAcquire("a", 20)).isFalse();
+		filter.release("a", 10);
+		assertThat(filter.tryAcquire("a", 30)).isTrue();
+		// a release of an older acceptance leaves the key in its cooldown
+		filter.release("a", 10);
+		assertThat(filter.tryAcquire("a", 40)).isFalse();
+	}
+
+	@Test
+	public void testKeyOfThePreviousBucketIsReleased() {
+		CooldownFilter<String> filter = new CooldownFilter<>(COOLDOWN);
+		assertThat(filter.tryAcquire("a", COOLDOWN - 10)).isTrue();
+		assertThat(filter.tryAcquire("b", COOLDOWN + 10)).isTrue();
+		assertThat(filter.tryAcquire("a", COOLDOWN + 20)).isFalse();
+		filter.release("a", COOLDOWN - 10);
+		assertThat(filter.tryAcquire("a", COOLDOWN + 30)).isTrue();
+	}
+
+	@Test
+	public void testCooldownMustBePositive() {
+		assertThatThrownBy(() -> new CooldownFilter<String>(0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
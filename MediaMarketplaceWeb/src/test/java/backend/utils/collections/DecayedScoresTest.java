@@ -0,0 +1,102 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the {@link DecayedScores} match decaying every event from its own time, across the moves of the
+ * landmark.
+ */
+public class DecayedScoresTest {
+
+	private static final long HALF_LIFE = 1000;
+
+	private final Random random = new Random(1);
+
+	/**
+	 * The weights and times of the events of every id.
+	 */
+	private final Map<Long, List<double[]>> events = new HashMap<>();
+
+	@Test
+	public void testScoresMatchTheDecayedEvents() {
+		DecayedScores scores = new DecayedScores(HALF_LIFE, 0);
+		long now = 0;
+		// the events span several hundred half-lives, so the landmark moves
+		for(int i = 0; i < 20000; i++) {
+			now += random.nextInt(50);
+			add(scores, random.nextInt(200), 1 + random.nextInt(5), now);
+			if(i % 1000 == 0)
+				assertScoresMatch(scores, now);
+		}
+		assertScoresMatch(scores, now);
+		assertTopMatches(scores, now, 20);
+	}
+
+	@Test
+	public void testDecayedIdsAreDropped() {
+		DecayedScores scores = new DecayedScores(HALF_LIFE, 0);
+		scores.add(1, 1, 0);
+		scores.add(2, 1, 300 * HALF_LIFE);
+		assertThat(scores.size()).isEqualTo(1);
+		assertThat(scores.score(1, 300 * HALF_LIFE)).isEqualTo(0.0);
+		assertThat(scores.score(2, 301 * HALF_LIFE)).isCloseTo(0.5, within(1e-9));
+		assertThat(scores.top(5)).isEqualTo(new long[] { 2 });
+	}
+
+	@Test
+	public void testHalfLifeMustBePositive() {
+		assertThatThrownBy(() -> new DecayedScores(0, 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private void add(DecayedScores scores, long id, double weight, long timeMillis) {
+		scores.add(id, weight, timeMillis);
+		events.computeIfAbsent(id, k -> new ArrayList<>()).add(new double[] { weight, timeMillis });
+	}
+
+	/**
+	 * The ids that decayed below {@link DecayedScores#MIN_SCORE} may be dropped, so the scores only match up
+	 * to that score.
+	 */
+	private void assertScoresMatch(DecayedScores scores, long nowMillis) {
+		for(long id : events.keySet()) {
+			double expected = decayedScore(id, nowMillis);
+			assertThat(scores.score(id, nowMillis)).as("The score of %d at %d", id, nowMillis)
+					.isCloseTo(expected, within(DecayedScores.MIN_SCORE + expected * 1e-9));
+		}
+	}
+
+	/**
+	 * Checks that the top ids have the highest decayed scores, the ids with close scores may be swapped by the
+	 * rounding.
+	 */
+	private void assertTopMatches(DecayedScores scores, long nowMillis, int limit) {
+		List<Double> expected = events.keySet().stream()
+				.map(id -> decayedScore(id, nowMillis))
+				.sorted((first, second) -> Double.compare(second, first))
+				.limit(limit)
+				.toList();
+		long[] top = scores.top(limit);
+		assertThat(top.length).isEqualTo(expected.size());
+		for(int rank = 0; rank < top.length; rank++) {
+			assertThat(decayedScore(top[rank], nowMillis)).as("The score at rank %d", rank)
+					.isCloseTo(expected.get(rank), within(expected.get(rank) * 1e-9));
+		}
+	}
+
+	private double decayedScore(long id, long nowMillis) {
+		double score = 0;
+		for(double[] event : events.get(id))
+			score += event[0] * Math.pow(2, -(nowMillis - event[1]) / HALF_LIFE);
+		return score;
+	}
+}
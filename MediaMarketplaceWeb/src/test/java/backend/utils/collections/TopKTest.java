@@ -0,0 +1,73 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@link TopK} selects the same ids, in the same order, as sorting all the offered ids.
+ */
+public class TopKTest {
+
+	@Test
+	public void testSelectionMatchesSort() {
+		Random random = new Random(1);
+		for(int k : new int[] { 0, 1, 5, 50 }) {
+			for(int count : new int[] { 0, 3, 49, 1000 }) {
+				TopK top = new TopK(k);
+				List<double[]> offered = new ArrayList<>();
+				List<Long> ids = new ArrayList<>();
+				for(long id = 0; id < count; id++)
+					ids.add(id * 7);
+				// the ids are offered at most once, in no particular order
+				Collections.shuffle(ids, random);
+				for(long id : ids) {
+					// a small range of scores, so many ids have the same score
+					double score = random.nextInt(10);
+					top.offer(id, score);
+					offered.add(new double[] { score, id });
+				}
+				long[] expected = sort(offered, k);
+				assertThat(top.ids()).as("The top %d of %d ids", k, count).isEqualTo(expected);
+				assertThat(top.size()).isEqualTo(expected.length);
+				for(int rank = 0; rank < expected.length; rank++)
+					assertThat(top.id(rank)).isEqualTo(expected[rank]);
+			}
+		}
+	}
+
+	@Test
+	public void testClearedSelectionIsReused() {
+		TopK top = new TopK(2);
+		top.offer(1, 1.0);
+		top.offer(2, 3.0);
+		top.offer(3, 2.0);
+		assertThat(top.ids()).isEqualTo(new long[] { 2, 3 });
+		assertThat(top.score(0)).isEqualTo(3.0);
+		top.clear();
+		top.offer(4, 0.5);
+		assertThat(top.ids()).isEqualTo(new long[] { 4 });
+	}
+
+	@Test
+	public void testNegativeSizeIsRejected() {
+		assertThatThrownBy(() -> new TopK(-1)).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	/**
+	 * @return the ids of the {@code k} highest scores, then the lowest ids.
+	 */
+	private static long[] sort(List<double[]> offered, int k) {
+		offered.sort((first, second) -> {
+			int byScore = Double.compare(second[0], first[0]);
+			return byScore != 0 ? byScore : Double.compare(first[1], second[1]);
+		});
+		return offered.stream().limit(k).mapToLong(entry -> (long) entry[1]).toArray();
+	}
+}
@@ -0,0 +1,62 @@
+package backend.utils.collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the values of a {@link VarIntList} are read back in order, with the length of their encoding.
+ */
+public class VarIntListTest {
+
+	@Test
+	public void testValuesAreReadBack() {
+		Random random = new Random(1);
+		int[] values = new int[10000];
+		VarIntList list = new VarIntList();
+		for(int i = 0; i < values.length; i++) {
+			values[i] = switch(random.nextInt(4)) {
+				case 0 -> random.nextInt(0x80);
+				case 1 -> random.nextInt(0x4000);
+				case 2 -> random.nextInt(Integer.MAX_VALUE);
+				default -> i % 2 == 0 ? 0 : Integer.MAX_VALUE;
+			};
+			list.add(values[i]);
+		}
+		byte[] bytes = list.rawArray();
+		int position = 0;
+		int expectedLength = 0;
+		for(int value : values) {
+			long read = VarIntList.read(bytes, position);
+			assertThat((int) (read >>> 32)).isEqualTo(value);
+			position = (int) read;
+			expectedLength += encodedLength(value);
+			assertThat(position).isEqualTo(expectedLength);
+		}
+		assertThat(list.byteLength()).isEqualTo(expectedLength);
+		list.trim();
+		assertThat(list.rawArray().length).isEqualTo(expectedLength);
+	}
+
+	@Test
+	public void testNegativeValuesAreRejected() {
+		VarIntList list = new VarIntList(0);
+		assertThatThrownBy(() -> list.add(-1)).isInstanceOf(IllegalArgumentException.class);
+		assertThat(list.isEmpty()).isTrue();
+	}
+
+	/**
+	 * @return the number of bytes of a value, 7 bits per byte.
+	 */
+	private static int encodedLength(int value) {
+		int length = 1;
+		while(value >= 0x80) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+}